@@ -0,0 +1,760 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import ua.at.tsvetkov.data_processor.cache.CompressedStorage;
+import ua.at.tsvetkov.data_processor.cache.DiskCache;
+import ua.at.tsvetkov.data_processor.cache.DiskResponseCache;
+import ua.at.tsvetkov.data_processor.cache.FileDownloads;
+import ua.at.tsvetkov.data_processor.cache.MemoryResponseCache;
+import ua.at.tsvetkov.data_processor.cache.NegativeCache;
+import ua.at.tsvetkov.data_processor.cache.ProcessorsCache;
+import ua.at.tsvetkov.data_processor.cache.ResponseCache;
+import ua.at.tsvetkov.data_processor.cache.TieredResponseCache;
+import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
+import ua.at.tsvetkov.data_processor.platform.Log;
+import ua.at.tsvetkov.data_processor.platform.MemoryTrimLevel;
+import ua.at.tsvetkov.data_processor.processors.BatchProcessor;
+import ua.at.tsvetkov.data_processor.processors.BatchProcessor.BatchCallback;
+import ua.at.tsvetkov.data_processor.processors.Processor;
+import ua.at.tsvetkov.data_processor.processors.Processor.Callback;
+import ua.at.tsvetkov.data_processor.processors.RequestHandle;
+import ua.at.tsvetkov.data_processor.processors.ResultFuture;
+import ua.at.tsvetkov.data_processor.processors.SingleFlightGroup;
+import ua.at.tsvetkov.data_processor.requests.ConnectionPoolStats;
+import ua.at.tsvetkov.data_processor.requests.Request;
+import ua.at.tsvetkov.data_processor.requests.TransferStats;
+import ua.at.tsvetkov.data_processor.requests.WebRequest;
+import ua.at.tsvetkov.data_processor.threads.DataProcessingThreadFactory;
+import ua.at.tsvetkov.data_processor.threads.DataProcessorThreadPool;
+import ua.at.tsvetkov.data_processor.threads.ExecutionMode;
+import ua.at.tsvetkov.data_processor.threads.HostConcurrencyLimiter;
+import ua.at.tsvetkov.data_processor.threads.RejectionPolicy;
+import ua.at.tsvetkov.data_processor.threads.RequestExecutor;
+import ua.at.tsvetkov.data_processor.threads.VirtualThreadExecutor;
+import ua.at.tsvetkov.data_processor.transport.HttpUrlConnectionTransport;
+
+/**
+ * @author lordtao
+ */
+public class DataProcessor {
+
+   private static final String ERROR_NOT_INIT              = "DataProcessor must be init with configuration before using.";
+   private static final String ERROR_INIT_CONFIG_WITH_NULL = "DataProcessor configuration can not be initialized with null.";
+   private static final String LOG_INIT_CONFIG             = "Initialize DataProcessor with configuration.";
+   private static final String WARNING_RE_INIT_CONFIG      = "Try to initialize DataProcessor which had already been initialized before.";
+   private static final String WARNING_NO_VIRTUAL_THREADS  = "Virtual threads are not supported by this runtime, the thread pool is used.";
+   private static final String AR_R                        = "\u2192";
+   /**
+    * Max idle connections per host of the JDK pool, max idle connections of the Android pool.
+    */
+   private static final String HTTP_MAX_CONNECTIONS        = "http.maxConnections";
+   /**
+    * Keep-alive duration of the Android pool in ms.
+    */
+   private static final String HTTP_KEEP_ALIVE_DURATION    = "http.keepAliveDuration";
+   /**
+    * Keep-alive duration of the JDK pool in seconds, if the server does not set it.
+    */
+   private static final String HTTP_KEEP_ALIVE_TIME_SERVER = "http.keepAlive.time.server";
+
+   private static volatile DataProcessor instance;
+
+   /**
+    * Written once in {@link #init(DataProcessorConfiguration)} and then only read. Execution methods are not synchronized, so the
+    * fields are volatile to publish them safely to any calling thread without holding the monitor during a request.
+    */
+   private volatile DataProcessorConfiguration configuration;
+   private volatile RequestExecutor            executor;
+   private volatile DataProcessorThreadPool    parseExecutor;
+   private volatile ProcessorsCache            processors;
+   private volatile HostConcurrencyLimiter     hostLimiter;
+   private volatile SingleFlightGroup          singleFlights;
+   private volatile ResponseCache              responseCache;
+   private volatile MemoryResponseCache        memoryResponseCache;
+   private volatile DiskCache                  diskCache;
+   private volatile NegativeCache              negativeCache;
+   private volatile CompressedStorage          compressedStorage = new CompressedStorage();
+   private final    FileDownloads              fileDownloads = new FileDownloads();
+   private final    TransferStats              transferStats = new TransferStats();
+   private volatile ConnectionPoolStats        connectionPoolStats = new ConnectionPoolStats();
+
+   public static DataProcessor getInstance() {
+      if (instance == null) {
+         synchronized (DataProcessor.class) {
+            if (instance == null) {
+               instance = new DataProcessor();
+            }
+         }
+      }
+      return instance;
+   }
+
+   /**
+    * Return current data processor configuration
+    *
+    * @return configuration
+    */
+   public DataProcessorConfiguration getConfiguration() {
+      return configuration;
+   }
+
+   /**
+    * Build new data processor with given configuration
+    *
+    * @param configuration new configuration
+    */
+   public synchronized void init(DataProcessorConfiguration configuration) {
+      if (configuration == null) {
+         throw new IllegalArgumentException(ERROR_INIT_CONFIG_WITH_NULL);
+      }
+      if (configuration.isThreadPoolEnabled) {
+         executor = createExecutor(configuration);
+         if (configuration.isParseStageEnabled()) {
+            parseExecutor = new DataProcessorThreadPool(1, configuration.getParseThreadPoolSize(), configuration.getThreadKeepAliveTime(),
+                    false, configuration.getThreadPoolQueueCapacity(), RejectionPolicy.CALLER_RUNS);
+            parseExecutor.setThreadFactory(new DataProcessingThreadFactory(DataProcessingThreadFactory.PARSE_THREAD_NAME));
+         }
+      }
+      if (configuration.isCacheEnabled()) {
+         processors = new ProcessorsCache(configuration.getCacheSize(), configuration.getCacheMaxBytes(), configuration.getSizeEstimators());
+      }
+      configureKeepAlive(configuration);
+      compressedStorage = new CompressedStorage(configuration.isCacheCompressionEnabled(), configuration.getCacheCompressionLevel());
+      if (configuration.getDiskCacheDirectory() != null) {
+         diskCache = new DiskCache(configuration.getDiskCacheDirectory(), configuration.getDiskCacheSize());
+      }
+      if (configuration.isResponseCacheEnabled()) {
+         memoryResponseCache = new MemoryResponseCache(configuration.getResponseCacheSize());
+         if (diskCache != null) {
+            responseCache = new TieredResponseCache(memoryResponseCache, new DiskResponseCache(diskCache, compressedStorage,
+                  configuration.getResponseCacheMaxEntrySize()));
+         } else {
+            responseCache = memoryResponseCache;
+         }
+      }
+      if (configuration.isSingleFlightEnabled()) {
+         singleFlights = new SingleFlightGroup();
+      }
+      if (configuration.isNegativeCacheEnabled()) {
+         negativeCache = new NegativeCache(configuration.getNegativeCacheBackoff(), configuration.getNegativeCacheMaxBackoff(),
+                 configuration.isNegativeCachePerHost());
+      }
+      if (configuration.isHostLimitEnabled()) {
+         hostLimiter = new HostConcurrencyLimiter(configuration.getHostInitialLimit(), configuration.getHostMinLimit(),
+                 configuration.getHostMaxLimit(), configuration.getHostLimitWaitTimeout());
+      }
+      // Publish the configuration last so that a thread which passes checkConfiguration() also sees the pool and the cache.
+      if (this.configuration == null) {
+         if (configuration.isLogEnabled) {
+            Log.d(LOG_INIT_CONFIG);
+         }
+         this.configuration = configuration;
+      } else {
+         Log.w(WARNING_RE_INIT_CONFIG);
+      }
+   }
+
+   /**
+    * Set up the pool of the keep-alive connections of {@link java.net.HttpURLConnection}. The pool reads the system properties once, so
+    * the data processor must be initialized before the first connection of the application. The properties are JVM-wide, they are set
+    * only if the limits were set with {@link DataProcessorConfiguration.Builder#setIdleConnections(int, long)} and the connections are
+    * opened by {@link HttpUrlConnectionTransport}, otherwise the defaults of the platform are kept.
+    */
+   private void configureKeepAlive(DataProcessorConfiguration configuration) {
+      int maxIdleConnections = configuration.getMaxIdleConnections();
+      long keepAliveDuration = configuration.getKeepAliveDuration();
+      boolean isPoolConfigured = configuration.isKeepAliveEnabled() && configuration.getTransport() instanceof HttpUrlConnectionTransport;
+      if (isPoolConfigured && maxIdleConnections > 0) {
+         System.setProperty(HTTP_MAX_CONNECTIONS, Integer.toString(maxIdleConnections));
+      }
+      if (isPoolConfigured && keepAliveDuration > 0) {
+         System.setProperty(HTTP_KEEP_ALIVE_DURATION, Long.toString(keepAliveDuration));
+         System.setProperty(HTTP_KEEP_ALIVE_TIME_SERVER, Long.toString(Math.max(1, keepAliveDuration / 1000)));
+      }
+      connectionPoolStats = new ConnectionPoolStats(maxIdleConnections > 0 ? maxIdleConnections : ConnectionPoolStats.DEFAULT_MAX_IDLE_CONNECTIONS,
+              keepAliveDuration > 0 ? keepAliveDuration : ConnectionPoolStats.DEFAULT_KEEP_ALIVE_DURATION);
+   }
+
+   private RequestExecutor createExecutor(DataProcessorConfiguration configuration) {
+      if (configuration.getExecutionMode() == ExecutionMode.VIRTUAL_THREADS) {
+         if (VirtualThreadExecutor.isSupported()) {
+            try {
+               return new VirtualThreadExecutor();
+            } catch (IllegalStateException e) {
+               Log.w(WARNING_NO_VIRTUAL_THREADS, e);
+            }
+         } else {
+            Log.w(WARNING_NO_VIRTUAL_THREADS);
+         }
+      }
+      return new DataProcessorThreadPool(configuration.getThreadPoolMinSize(), configuration.getThreadPoolMaxSize(),
+              configuration.getThreadKeepAliveTime(), configuration.isPrestartThreads(), configuration.getThreadPoolQueueCapacity(),
+              configuration.getRejectionPolicy());
+   }
+
+   private DataProcessorConfiguration checkConfiguration() {
+      DataProcessorConfiguration configuration = this.configuration;
+      if (configuration == null || configuration.httpUserAgent == null) {
+         throw new IllegalStateException(ERROR_NOT_INIT);
+      }
+      return configuration;
+   }
+
+   /**
+    * Return data processor thread pool, or null if the requests are executed on virtual threads
+    *
+    * @return thread pool
+    */
+   public DataProcessorThreadPool getThreadPool() {
+      RequestExecutor executor = this.executor;
+      return executor instanceof DataProcessorThreadPool ? (DataProcessorThreadPool) executor : null;
+   }
+
+   /**
+    * Return the cache of GET responses, null if the response cache is disabled. With the disk cache set up the responses are kept in memory
+    * and on disk
+    *
+    * @return response cache
+    */
+   public ResponseCache getResponseCache() {
+      return responseCache;
+   }
+
+   /**
+    * Return the cache of the results of {@code executeCachedAsync()}, null if the cache is disabled
+    *
+    * @return results cache
+    */
+   public ProcessorsCache getProcessorsCache() {
+      return processors;
+   }
+
+   /**
+    * Return the disk cache of the requests, null if it is not set up
+    *
+    * @return disk cache
+    */
+   public DiskCache getDiskCache() {
+      return diskCache;
+   }
+
+   /**
+    * Return the storage format of the cached files, with the compression statistics
+    *
+    * @return compressed storage
+    */
+   public CompressedStorage getCompressedStorage() {
+      return compressedStorage;
+   }
+
+   /**
+    * Return the recent failures of the web requests, null if the negative cache is disabled
+    *
+    * @return negative cache
+    */
+   public NegativeCache getNegativeCache() {
+      return negativeCache;
+   }
+
+   /**
+    * Return the counters of the keep-alive connections of the web requests sent over {@link HttpUrlConnectionTransport}
+    *
+    * @return connection pool statistics
+    */
+   public ConnectionPoolStats getConnectionPoolStats() {
+      return connectionPoolStats;
+   }
+
+   /**
+    * Return the transferred and the decoded bytes of the web responses per endpoint
+    *
+    * @return transfer statistics
+    */
+   public TransferStats getTransferStats() {
+      return transferStats;
+   }
+
+   /**
+    * Return the files being downloaded to the disk cache or to the cache files of the requests
+    *
+    * @return file downloads
+    */
+   public FileDownloads getFileDownloads() {
+      return fileDownloads;
+   }
+
+   /**
+    * Return the thread pool of the parse stage, null if the parse stage is disabled
+    *
+    * @return parse thread pool
+    */
+   public DataProcessorThreadPool getParseExecutor() {
+      return parseExecutor;
+   }
+
+   /**
+    * Return the executor of async requests, null if the thread pool is disabled
+    *
+    * @return executor
+    */
+   public RequestExecutor getExecutor() {
+      return executor;
+   }
+
+   /**
+    * Return the per host limiter of in-flight web requests or null if it is disabled
+    *
+    * @return host limiter
+    */
+   public HostConcurrencyLimiter getHostLimiter() {
+      return hostLimiter;
+   }
+
+   /**
+    * Release the memory held by the caches: the cached results and the response bodies kept in memory. The disk cache is not touched.
+    * On Android call it from {@code ComponentCallbacks2.onTrimMemory()}, or register {@code TrimMemoryCallbacks} of the android module.
+    * <ul>
+    * <li>{@link MemoryTrimLevel#RUNNING_CRITICAL} and {@link MemoryTrimLevel#MODERATE} or higher - the caches are cleared</li>
+    * <li>{@link MemoryTrimLevel#RUNNING_LOW} and {@link MemoryTrimLevel#BACKGROUND} - trimmed to a quarter of their max size</li>
+    * <li>{@link MemoryTrimLevel#RUNNING_MODERATE} and {@link MemoryTrimLevel#UI_HIDDEN} - trimmed to a half of their max size</li>
+    * </ul>
+    * The caches fill up again to their max size afterwards.
+    *
+    * @param level memory pressure level
+    */
+   public void trimMemory(@MemoryTrimLevel.TrimLevel int level) {
+      int divisor;
+      if (level >= MemoryTrimLevel.MODERATE || level == MemoryTrimLevel.RUNNING_CRITICAL) {
+         divisor = 0;
+      } else if (level >= MemoryTrimLevel.BACKGROUND || level == MemoryTrimLevel.RUNNING_LOW) {
+         divisor = 4;
+      } else if (level >= MemoryTrimLevel.RUNNING_MODERATE) {
+         divisor = 2;
+      } else {
+         return;
+      }
+      ProcessorsCache processors = this.processors;
+      if (processors != null) {
+         processors.trimToSize(divisor == 0 ? 0 : processors.getMaxSize() / divisor);
+      }
+      MemoryResponseCache memoryResponseCache = this.memoryResponseCache;
+      if (memoryResponseCache != null) {
+         memoryResponseCache.trimToSize(divisor == 0 ? 0 : memoryResponseCache.getMaxSize() / divisor);
+      }
+      Log.v("Trim memory, level " + level);
+   }
+
+   /**
+    * Initiates an orderly shutdown in which previously submitted tasks are executed, but no new tasks will be accepted. Invocation has no
+    * additional effect if already shut down.
+    */
+   public void shutdown() {
+      executor.shutdown();
+      if (parseExecutor != null) {
+         parseExecutor.shutdown();
+      }
+      Log.v("Thread pool will shutdown.");
+   }
+
+   /**
+    * Attempts to stop all actively executing tasks, halts the processing of waiting tasks, and returns a list of the tasks that were
+    * awaiting execution. These tasks are drained (removed) from the task queue upon return from this method.
+    *
+    * @return list of tasks that never commenced execution
+    */
+   public List<Runnable> shutdownNow() {
+      Log.v("Thread pool will shutdown now.");
+      List<Runnable> tasks = executor.shutdownNow();
+      if (parseExecutor != null) {
+         tasks.addAll(parseExecutor.shutdownNow());
+      }
+      return tasks;
+   }
+
+   // ******************************** Execution methods ********************************
+   // Execution methods do not hold the DataProcessor monitor, so a long synchronous request never blocks other threads.
+
+   /**
+    * Execute the request, process the results in instance of <b>clazz</b> and return result object
+    *
+    * @param <T>     class implements one of the abstract interfaces
+    *                {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
+    *                {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
+    * @param request prepared request
+    * @param clazz   class to generate
+    * @return generated object
+    */
+   public <T> T execute(Request request, Class<T> clazz) {
+      checkConfiguration();
+      return new Processor<T>(this, request, clazz).execute();
+   }
+
+   /**
+    * Execute async request, process the results in instance of <b>clazz</b> and return created clazz in callback
+    *
+    * @param <T>     class implements one of the abstract interfaces
+    *                {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
+    *                {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
+    * @param request prepared request
+    * @param clazz   class to generate
+    * @return handle to cancel the request
+    */
+   public <T> RequestHandle executeAsync(Request request, Class<T> clazz) {
+      return executeAsync(request, clazz, null);
+   }
+
+   /**
+    * Execute async request, process the results in instance of <b>clazz</b> and return created clazz in callback
+    *
+    * @param <T>      class implements one of the abstract interfaces
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
+    * @param request  prepared request
+    * @param clazz    class to generate
+    * @param callback return result of request and the generated object (if success) in this callback
+    *                 <p>
+    *                 If single-flight is enabled in the configuration and an equal request of the same class is in flight, the request
+    *                 joins it and the callback receives the same result object.
+    * @return handle to cancel the request
+    */
+   public <T> RequestHandle executeAsync(Request request, Class<T> clazz, Callback<T> callback) {
+      checkConfiguration();
+      Processor<T> processor = new Processor<T>(this, request, clazz, callback);
+      SingleFlightGroup singleFlights = this.singleFlights;
+      if (singleFlights != null && request.isCoalescingAllowed()) {
+         RequestHandle handle = singleFlights.executeAsync(clazz.getName() + ' ' + request.getRequestKey(), processor, callback);
+         if (handle != processor) {
+            Log.v(AR_R + " Joined in-flight request: " + request);
+         }
+         return handle;
+      } else {
+         return processor.executeAsync();
+      }
+   }
+
+   /**
+    * Execute async request and return the future of the created <b>clazz</b>. Callbacks and dependent stages of the future run in the
+    * worker thread.
+    *
+    * @param <T>     class implements one of the abstract interfaces
+    *                {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
+    *                {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
+    * @param request prepared request
+    * @param clazz   class to generate
+    * @return future of the result
+    */
+   public <T> ResultFuture<T> executeFuture(Request request, Class<T> clazz) {
+      return executeFuture(request, clazz, null);
+   }
+
+   /**
+    * Execute async request and return the future of the created <b>clazz</b>. Callbacks and dependent stages of the future run in the
+    * given executor by default.
+    *
+    * @param <T>      class implements one of the abstract interfaces
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
+    * @param request  prepared request
+    * @param clazz    class to generate
+    * @param executor default executor of the future callbacks and dependent stages, null - the worker thread
+    * @return future of the result
+    */
+   public <T> ResultFuture<T> executeFuture(Request request, Class<T> clazz, Executor executor) {
+      checkConfiguration();
+      return new Processor<T>(this, request, clazz).executeFuture(executor);
+   }
+
+   /**
+    * Execute async the list of requests with the batch parallelism from the configuration, see
+    * {@link #executeAll(List, Class, int, BatchCallback)}.
+    *
+    * @param <T>      class implements one of the abstract interfaces
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
+    * @param requests prepared requests
+    * @param clazz    class to generate for each request
+    * @param callback return results of each request and of the whole batch in this callback
+    * @return handle to cancel the batch
+    */
+   public <T> RequestHandle executeAll(List<? extends Request> requests, Class<T> clazz, BatchCallback<T> callback) {
+      return executeAll(requests, clazz, checkConfiguration().getBatchParallelism(), callback);
+   }
+
+   /**
+    * Execute async the list of requests, at most <b>parallelism</b> of them at once. The result of each request is returned in
+    * {@link BatchCallback#onItemFinish(int, Object, int, String) onItemFinish} in a worker thread as soon as it is ready, the results of
+    * all requests are returned once in {@link BatchCallback#onFinish(List, int[]) onFinish} in the calling thread.
+    *
+    * @param <T>         class implements one of the abstract interfaces
+    *                    {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
+    *                    {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
+    * @param requests    prepared requests
+    * @param clazz       class to generate for each request
+    * @param parallelism max number of requests executed at once
+    * @param callback    return results of each request and of the whole batch in this callback
+    * @return handle to cancel the batch
+    */
+   public <T> RequestHandle executeAll(List<? extends Request> requests, Class<T> clazz, int parallelism, BatchCallback<T> callback) {
+      checkConfiguration();
+      return new BatchProcessor<T>(this, requests, clazz, parallelism, callback).executeAsync();
+   }
+
+   /**
+    * Execute async request, process the results in instance of <b>clazz</b> and return created clazz in callback. Use LruCache for store
+    * result. If the result was loaded earlier and is not older than the cache TTL then returns it, if it is still loading then returns its
+    * result when it is loaded. Otherwise the response is taken from the
+    * memory or disk response cache while it is fresh, see {@link DataProcessorConfiguration.Builder#setCacheTtl(long)}.
+    *
+    * @param key      for identification of the Request for saving in LruCache
+    * @param <T>      class implements one of the abstract interfaces
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
+    * @param request  prepared request
+    * @param clazz    class to generate
+    * @param callback return result of request and the generated object (if success) in this callback
+    */
+   public <T> void executeCachedAsync(int key, Request request, Class<T> clazz, Callback<T> callback) {
+      executeCached(key, request, clazz, callback, false);
+   }
+
+   /**
+    * Execute async request like {@link #executeCachedAsync(int, Request, Class, Callback)}, the result is cached with the canonical key
+    * of the request, see {@link Request#getKey()}.
+    *
+    * @param <T>      class implements one of the abstract interfaces
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
+    * @param request  built request
+    * @param clazz    class to generate
+    * @param callback return result of request and the generated object (if success) in this callback
+    */
+   public <T> void executeCachedAsync(Request request, Class<T> clazz, Callback<T> callback) {
+      executeCached(request.getKey(), request, clazz, callback, false);
+   }
+
+   /**
+    * Execute async request, process the results in instance of <b>clazz</b> and return created clazz in callback. Use LruCache for store
+    * result. Ignore the previous result if it was loaded. Forcing the download.
+    *
+    * @param key      for identification of the Request for saving in LruCache
+    * @param <T>      class implements one of the abstract interfaces
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
+    * @param request  prepared request
+    * @param clazz    class to generate
+    * @param callback return result of request and the generated object (if success) in this callback
+    */
+   public <T> void executeCachedAsyncForce(int key, Request request, Class<T> clazz, Callback<T> callback) {
+      executeCached(key, request, clazz, callback, true);
+   }
+
+   /**
+    * Execute async request, process the results in instance of <b>clazz</b> and return created clazz in callback. Use LruCache for store
+    * result. <code>isForce</code> specifies whether to force the download.
+    *
+    * @param key      for identification of the Request for saving in LruCache
+    * @param <T>      class implements one of the abstract interfaces
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
+    * @param request  prepared request
+    * @param clazz    class to generate
+    * @param callback return result of request and the generated object (if success) in this callback
+    * @param isForce  is need to force reload data
+    */
+   public <T> void executeCachedAsync(int key, Request request, Class<T> clazz, Callback<T> callback, boolean isForce) {
+      executeCached(key, request, clazz, callback, isForce);
+   }
+
+   private <T> void executeCached(Object key, Request request, Class<T> clazz, Callback<T> callback, boolean isForce) {
+      DataProcessorConfiguration configuration = checkCacheConfiguration();
+      ProcessorsCache processors = this.processors;
+      Processor<?> pr = processors.get(key);
+      if (pr == null) {
+         Processor<T> processor = new Processor<T>(this, request, clazz, callback);
+         pr = processors.putIfAbsent(key, processor);
+         if (pr == null) {
+            processor.executeAsync();
+            return;
+         }
+      }
+      @SuppressWarnings("unchecked")
+      Processor<T> processor = (Processor<T>) pr;
+      if (isForce) {
+         processor.setCallback(null);
+         processor = new Processor<T>(this, request, clazz, callback);
+         processor.setNoCache(true);
+         processors.put(key, processor);
+         processor.executeAsync();
+         Log.v(AR_R + " Forced execute: " + request);
+      } else if (processor.isFinished() && isExpired(processor, configuration.getCacheTtl(request))) {
+         processor = new Processor<T>(this, request, clazz, callback);
+         processors.put(key, processor);
+         processor.executeAsync();
+         Log.v(AR_R + " Expired, execute: " + request);
+      } else if (processor.isFinished() || processor.addFollower(callback) == null) {
+         processor.redelivery(callback);
+         Log.v(AR_R + " Redelivery data: " + request);
+      } else {
+         Log.v(AR_R + " Still running, wait for result: " + request);
+      }
+   }
+
+   /**
+    * Execute async request in stale-while-revalidate mode: the cached result is delivered to the callback at once and the request is
+    * revalidated with the server in the background. The callback is called the second time only if the response body of the server
+    * differs from the cached one. The cached result is the result of the previous execution with the same key or, after a restart, the
+    * stale response from the response cache. Revalidation is skipped while the cached result is not older than the cache TTL.
+    *
+    * @param key      for identification of the Request for saving in LruCache
+    * @param <T>      class implements one of the abstract interfaces
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
+    * @param request  prepared request
+    * @param clazz    class to generate
+    * @param callback return the cached and, if it was changed, the fresh result in this callback
+    */
+   public <T> void executeCachedAsyncRevalidate(int key, Request request, Class<T> clazz, Callback<T> callback) {
+      executeRevalidate(key, request, clazz, callback);
+   }
+
+   /**
+    * Execute async request in stale-while-revalidate mode like {@link #executeCachedAsyncRevalidate(int, Request, Class, Callback)}, the
+    * result is cached with the canonical key of the request, see {@link Request#getKey()}.
+    *
+    * @param <T>      class implements one of the abstract interfaces
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
+    * @param request  built request
+    * @param clazz    class to generate
+    * @param callback return the cached and, if it was changed, the fresh result in this callback
+    */
+   public <T> void executeCachedAsyncRevalidate(Request request, Class<T> clazz, Callback<T> callback) {
+      executeRevalidate(request.getKey(), request, clazz, callback);
+   }
+
+   private <T> void executeRevalidate(Object key, Request request, Class<T> clazz, Callback<T> callback) {
+      DataProcessorConfiguration configuration = checkCacheConfiguration();
+      ProcessorsCache processors = this.processors;
+      Processor<?> pr = processors.get(key);
+      if (pr == null) {
+         Processor<T> processor = new Processor<T>(this, request, clazz);
+         processor.setBodyDigestEnabled();
+         processor.setStaleAllowed(true);
+         processor.setCallback(new RevalidatingCallback<T>(key, request, clazz, callback, processor));
+         pr = processors.putIfAbsent(key, processor);
+         if (pr == null) {
+            processor.executeAsync();
+            return;
+         }
+      }
+      @SuppressWarnings("unchecked")
+      Processor<T> cached = (Processor<T>) pr;
+      if (!cached.isFinished() && cached.addFollower(callback) != null) {
+         Log.v(AR_R + " Still running, wait for result: " + request);
+         return;
+      }
+      cached.redelivery(callback);
+      Log.v(AR_R + " Redelivery data: " + request);
+      long ttl = configuration.getCacheTtl(request);
+      if (ttl <= 0 || isExpired(cached, ttl)) {
+         revalidate(key, request, clazz, callback, cached.getBodyDigest());
+      }
+   }
+
+   private <T> void revalidate(final Object key, final Request request, Class<T> clazz, final Callback<T> callback, final byte[] digest) {
+      Log.v(AR_R + " Revalidate: " + request);
+      final Processor<T> processor = new Processor<T>(this, request, clazz);
+      processor.setNoCache(true);
+      processor.setStaleAllowed(false);
+      processor.setBodyDigestEnabled();
+      processor.setCallback(new Callback<T>() {
+
+         @Override
+         public void onFinish(T obj, @ConnectionConstants.ConnectionResponseCode int statusCode, String errMessage) {
+            if (statusCode != ConnectionConstants.HTTP_OK && statusCode != ConnectionConstants.FILE_SUCCESS) {
+               Log.w(AR_R + " Revalidation failed, status " + statusCode + ": " + request);
+               return;
+            }
+            processors.put(key, processor);
+            if (digest == null || !Arrays.equals(digest, processor.getBodyDigest())) {
+               callback.onFinish(obj, statusCode, errMessage);
+            } else {
+               Log.v(AR_R + " Not changed: " + request);
+            }
+         }
+
+      });
+      processor.executeAsync();
+   }
+
+   private DataProcessorConfiguration checkCacheConfiguration() {
+      DataProcessorConfiguration configuration = checkConfiguration();
+      if (!configuration.isCacheEnabled()) {
+         throw new IllegalArgumentException("Wrong cache settings: cache is not enabled");
+      }
+      if (configuration.getCacheSize() <= 0) {
+         throw new IllegalArgumentException("Wrong cache settings: cacheSize = " + configuration.getCacheSize());
+      }
+      return configuration;
+   }
+
+   private static boolean isExpired(Processor<?> processor, long ttl) {
+      return ttl > 0 && System.currentTimeMillis() - processor.getFinishTime() >= ttl;
+   }
+
+   /**
+    * Delivers the first result of stale-while-revalidate execution and revalidates it, if it was a stale cached response.
+    */
+   private class RevalidatingCallback<T> implements Callback<T> {
+
+      private final Object       key;
+      private final Request      request;
+      private final Class<T>     clazz;
+      private final Callback<T>  callback;
+      private final Processor<T> processor;
+
+      private RevalidatingCallback(Object key, Request request, Class<T> clazz, Callback<T> callback, Processor<T> processor) {
+         this.key = key;
+         this.request = request;
+         this.clazz = clazz;
+         this.callback = callback;
+         this.processor = processor;
+      }
+
+      @Override
+      public void onFinish(T obj, @ConnectionConstants.ConnectionResponseCode int statusCode, String errMessage) {
+         callback.onFinish(obj, statusCode, errMessage);
+         if (request instanceof WebRequest && ((WebRequest) request).isStale()) {
+            revalidate(key, request, clazz, callback, processor.getBodyDigest());
+         }
+      }
+
+   }
+
+}
@@ -0,0 +1,1174 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ua.at.tsvetkov.data_processor.cache.CompressedStorage;
+import ua.at.tsvetkov.data_processor.cache.DiskCache;
+import ua.at.tsvetkov.data_processor.cache.MemoryResponseCache;
+import ua.at.tsvetkov.data_processor.cache.NegativeCache;
+import ua.at.tsvetkov.data_processor.cache.ProcessorsCache;
+import ua.at.tsvetkov.data_processor.cache.SizeEstimator;
+import ua.at.tsvetkov.data_processor.helpers.Encoding;
+import ua.at.tsvetkov.data_processor.helpers.Scheme;
+import ua.at.tsvetkov.data_processor.platform.Log;
+import ua.at.tsvetkov.data_processor.requests.Request;
+import ua.at.tsvetkov.data_processor.threads.DataProcessorThreadPool;
+import ua.at.tsvetkov.data_processor.threads.ExecutionMode;
+import ua.at.tsvetkov.data_processor.threads.HostConcurrencyLimiter;
+import ua.at.tsvetkov.data_processor.threads.RejectionPolicy;
+import ua.at.tsvetkov.data_processor.transport.HttpUrlConnectionTransport;
+import ua.at.tsvetkov.data_processor.transport.Transport;
+
+/**
+ * @author lordtao
+ */
+public final class DataProcessorConfiguration {
+
+   public static final String HTTP_ANDROID_USER_AGENT = "Mozilla/5.0 (Linux; U; Android 2.2.1; en-us; Nexus One Build/FRG83) AppleWebKit/533.1 (KHTML, like Gecko) Version/4.0 Mobile Safari/533.1";
+   public static final int DEFAULT_TIMEOUT = 5000;
+   public static final int DEFAULT_CACHE_SIZE = 64;
+   public static final int DEFAULT_BATCH_PARALLELISM = 4;
+   public static final int DEFAULT_PARSE_BUFFER_SIZE = 1024 * 1024;
+   public static final int DEFAULT_RESPONSE_CACHE_MAX_ENTRY_SIZE = 512 * 1024;
+
+   protected boolean isLogEnabled;
+   protected boolean isCheckingRequestStringEnabled;
+   protected boolean isShowProcessingTime;
+   protected boolean isThreadPoolEnabled;
+   protected int timeout;
+   protected String httpUserAgent;
+   protected String host;
+   protected String port;
+   protected String scheme;
+   protected String encoding;
+   protected String testServerUrl;
+   private boolean isCacheEnabled;
+   private int cacheSize;
+   private long cacheMaxBytes;
+   private LinkedHashMap<Class<?>, SizeEstimator<?>> sizeEstimators;
+   private ExecutionMode executionMode;
+   private int threadPoolMinSize;
+   private int threadPoolMaxSize;
+   private long threadKeepAliveTime;
+   private boolean isPrestartThreads;
+   private int threadPoolQueueCapacity;
+   private RejectionPolicy rejectionPolicy;
+   private boolean isParseStageEnabled;
+   private int parseThreadPoolSize;
+   private int parseBufferSize;
+   private int batchParallelism;
+   private boolean isSingleFlightEnabled;
+   private List<String> requestKeyHeaders;
+   private boolean isResponseCacheEnabled;
+   private int responseCacheSize;
+   private int responseCacheMaxEntrySize;
+   private boolean isReuseParsedResult;
+   private File diskCacheDirectory;
+   private long diskCacheSize;
+   private boolean isCacheCompressionEnabled;
+   private int cacheCompressionLevel;
+   private long cacheTtl;
+   private LinkedHashMap<String, Long> endpointCacheTtls;
+   private boolean isHostLimitEnabled;
+   private int hostInitialLimit;
+   private int hostMinLimit;
+   private int hostMaxLimit;
+   private int hostLimitWaitTimeout;
+   private Transport transport;
+   private boolean isTransferCompressionEnabled;
+   private boolean isKeepAliveEnabled;
+   private int maxIdleConnections;
+   private long keepAliveDuration;
+   private boolean isNegativeCacheEnabled;
+   private long negativeCacheBackoff;
+   private long negativeCacheMaxBackoff;
+   private boolean isNegativeCachePerHost;
+
+   private DataProcessorConfiguration(final Builder builder) {
+      isLogEnabled = builder.isLogEnabled;
+      httpUserAgent = builder.httpUserAgent;
+      timeout = builder.timeout;
+      isThreadPoolEnabled = builder.isThreadPoolEnabled;
+      host = builder.host;
+      port = builder.port;
+      scheme = builder.scheme;
+      encoding = builder.encoding;
+      isCheckingRequestStringEnabled = builder.isCheckingRequestStringEnabled;
+      isShowProcessingTime = builder.isShowProcessingTime;
+      testServerUrl = builder.testServerUrl;
+      isCacheEnabled = builder.isCacheEnabled;
+      cacheSize = builder.cacheSize;
+      cacheMaxBytes = builder.cacheMaxBytes;
+      sizeEstimators = new LinkedHashMap<Class<?>, SizeEstimator<?>>(builder.sizeEstimators);
+      executionMode = builder.executionMode;
+      threadPoolMinSize = builder.threadPoolMinSize;
+      threadPoolMaxSize = builder.threadPoolMaxSize;
+      threadKeepAliveTime = builder.threadKeepAliveTime;
+      isPrestartThreads = builder.isPrestartThreads;
+      threadPoolQueueCapacity = builder.threadPoolQueueCapacity;
+      rejectionPolicy = builder.rejectionPolicy;
+      isParseStageEnabled = builder.isParseStageEnabled;
+      parseThreadPoolSize = builder.parseThreadPoolSize;
+      parseBufferSize = builder.parseBufferSize;
+      batchParallelism = builder.batchParallelism;
+      isSingleFlightEnabled = builder.isSingleFlightEnabled;
+      requestKeyHeaders = builder.requestKeyHeaders == null ? null : Collections.unmodifiableList(new ArrayList<String>(builder.requestKeyHeaders));
+      isResponseCacheEnabled = builder.isResponseCacheEnabled;
+      responseCacheSize = builder.responseCacheSize;
+      responseCacheMaxEntrySize = builder.responseCacheMaxEntrySize;
+      isReuseParsedResult = builder.isReuseParsedResult;
+      diskCacheDirectory = builder.diskCacheDirectory;
+      diskCacheSize = builder.diskCacheSize;
+      isCacheCompressionEnabled = builder.isCacheCompressionEnabled;
+      cacheCompressionLevel = builder.cacheCompressionLevel;
+      cacheTtl = builder.cacheTtl;
+      endpointCacheTtls = new LinkedHashMap<String, Long>(builder.endpointCacheTtls);
+      isHostLimitEnabled = builder.isHostLimitEnabled;
+      hostInitialLimit = builder.hostInitialLimit;
+      hostMinLimit = builder.hostMinLimit;
+      hostMaxLimit = builder.hostMaxLimit;
+      hostLimitWaitTimeout = builder.hostLimitWaitTimeout;
+      transport = builder.transport;
+      isTransferCompressionEnabled = builder.isTransferCompressionEnabled;
+      isKeepAliveEnabled = builder.isKeepAliveEnabled;
+      maxIdleConnections = builder.maxIdleConnections;
+      keepAliveDuration = builder.keepAliveDuration;
+      isNegativeCacheEnabled = builder.isNegativeCacheEnabled;
+      negativeCacheBackoff = builder.negativeCacheBackoff;
+      negativeCacheMaxBackoff = builder.negativeCacheMaxBackoff;
+      isNegativeCachePerHost = builder.isNegativeCachePerHost;
+      if (isLogEnabled) {
+         Log.i("========= Data Processor Configuration ==========");
+         Log.i("Host = " + scheme + host + port);
+         Log.i("Test url = " + testServerUrl);
+         Log.i("isShowProcessingTime = " + isShowProcessingTime);
+         if (isCacheEnabled) {
+            Log.i("isCacheEnabled = true, cacheSize = " + cacheSize + ", cacheMaxBytes = " + cacheMaxBytes + ", sizeEstimators = "
+                    + sizeEstimators.keySet());
+         } else {
+            Log.i("isCacheEnabled = false");
+         }
+         if (isThreadPoolEnabled) {
+            Log.i("executionMode = " + executionMode);
+            Log.i("threadPoolSize = " + threadPoolMinSize + ".." + threadPoolMaxSize + ", keepAliveTime = " + threadKeepAliveTime
+                    + ", prestart = " + isPrestartThreads);
+            Log.i("queueCapacity = " + threadPoolQueueCapacity + ", rejectionPolicy = " + rejectionPolicy);
+            if (isParseStageEnabled) {
+               Log.i("isParseStageEnabled = true, parseThreadPoolSize = " + parseThreadPoolSize + ", parseBufferSize = " + parseBufferSize);
+            } else {
+               Log.i("isParseStageEnabled = false");
+            }
+         }
+         Log.i("batchParallelism = " + batchParallelism + ", isSingleFlightEnabled = " + isSingleFlightEnabled);
+         Log.i("requestKeyHeaders = " + (requestKeyHeaders == null ? "all" : requestKeyHeaders));
+         if (isResponseCacheEnabled) {
+            Log.i("isResponseCacheEnabled = true, responseCacheSize = " + responseCacheSize + ", maxEntrySize = " + responseCacheMaxEntrySize
+                    + ", isReuseParsedResult = " + isReuseParsedResult);
+         } else {
+            Log.i("isResponseCacheEnabled = false");
+         }
+         if (diskCacheDirectory != null) {
+            Log.i("diskCacheDirectory = " + diskCacheDirectory + ", diskCacheSize = " + diskCacheSize);
+         }
+         if (isCacheCompressionEnabled) {
+            Log.i("isCacheCompressionEnabled = true, cacheCompressionLevel = " + cacheCompressionLevel);
+         } else {
+            Log.i("isCacheCompressionEnabled = false");
+         }
+         Log.i("cacheTtl = " + cacheTtl + ", endpointCacheTtls = " + endpointCacheTtls);
+         if (isHostLimitEnabled) {
+            Log.i("isHostLimitEnabled = true, hostLimit = " + hostInitialLimit + " [" + hostMinLimit + ".." + hostMaxLimit + "], waitTimeout = " + hostLimitWaitTimeout);
+         } else {
+            Log.i("isHostLimitEnabled = false");
+         }
+         if (isNegativeCacheEnabled) {
+            Log.i("isNegativeCacheEnabled = true, backoff = " + negativeCacheBackoff + ".." + negativeCacheMaxBackoff + ", isPerHost = "
+                    + isNegativeCachePerHost);
+         } else {
+            Log.i("isNegativeCacheEnabled = false");
+         }
+         Log.i("transport = " + transport);
+         Log.i("isTransferCompressionEnabled = " + isTransferCompressionEnabled);
+         if (isKeepAliveEnabled) {
+            Log.i("isKeepAliveEnabled = true, maxIdleConnections = " + maxIdleConnections + ", keepAliveDuration = " + keepAliveDuration);
+         } else {
+            Log.i("isKeepAliveEnabled = false");
+         }
+         Log.i("httpUserAgent = " + httpUserAgent);
+         Log.i("=================================================");
+      }
+   }
+
+   public boolean isLogEnabled() {
+      return isLogEnabled;
+   }
+
+   public boolean isCheckingRequestStringEnabled() {
+      return isCheckingRequestStringEnabled;
+   }
+
+   public boolean isShowProcessingTime() {
+      return isShowProcessingTime;
+   }
+
+   public boolean isCacheEnabled() {
+      return isCacheEnabled;
+   }
+
+   public int getTimeout() {
+      return timeout;
+   }
+
+   public int getCacheSize() {
+      return cacheSize;
+   }
+
+   public long getCacheMaxBytes() {
+      return cacheMaxBytes;
+   }
+
+   public Map<Class<?>, SizeEstimator<?>> getSizeEstimators() {
+      return Collections.unmodifiableMap(sizeEstimators);
+   }
+
+   public ExecutionMode getExecutionMode() {
+      return executionMode;
+   }
+
+   public int getThreadPoolMinSize() {
+      return threadPoolMinSize;
+   }
+
+   public int getThreadPoolMaxSize() {
+      return threadPoolMaxSize;
+   }
+
+   public long getThreadKeepAliveTime() {
+      return threadKeepAliveTime;
+   }
+
+   public boolean isPrestartThreads() {
+      return isPrestartThreads;
+   }
+
+   public int getThreadPoolQueueCapacity() {
+      return threadPoolQueueCapacity;
+   }
+
+   public RejectionPolicy getRejectionPolicy() {
+      return rejectionPolicy;
+   }
+
+   public boolean isParseStageEnabled() {
+      return isParseStageEnabled;
+   }
+
+   public int getParseThreadPoolSize() {
+      return parseThreadPoolSize;
+   }
+
+   public int getParseBufferSize() {
+      return parseBufferSize;
+   }
+
+   public int getBatchParallelism() {
+      return batchParallelism;
+   }
+
+   public boolean isSingleFlightEnabled() {
+      return isSingleFlightEnabled;
+   }
+
+   /**
+    * Returns the names of the headers which are a part of the request key, or null if all headers are.
+    *
+    * @return header names or null
+    */
+   public List<String> getRequestKeyHeaders() {
+      return requestKeyHeaders;
+   }
+
+   public boolean isResponseCacheEnabled() {
+      return isResponseCacheEnabled;
+   }
+
+   public int getResponseCacheSize() {
+      return responseCacheSize;
+   }
+
+   public int getResponseCacheMaxEntrySize() {
+      return responseCacheMaxEntrySize;
+   }
+
+   public boolean isReuseParsedResult() {
+      return isReuseParsedResult;
+   }
+
+   public File getDiskCacheDirectory() {
+      return diskCacheDirectory;
+   }
+
+   public long getDiskCacheSize() {
+      return diskCacheSize;
+   }
+
+   public boolean isCacheCompressionEnabled() {
+      return isCacheCompressionEnabled;
+   }
+
+   public int getCacheCompressionLevel() {
+      return cacheCompressionLevel;
+   }
+
+   public long getCacheTtl() {
+      return cacheTtl;
+   }
+
+   /**
+    * Returns the time during which the cached response of the request is used without a request to the server: the TTL of the request,
+    * or the TTL of the longest endpoint URL prefix which matches the request, or the default TTL.
+    *
+    * @param request built request
+    * @return time in ms
+    */
+   public long getCacheTtl(Request request) {
+      if (request.getCacheTtl() != Request.TTL_NOT_SET) {
+         return request.getCacheTtl();
+      }
+      String url = request.toString();
+      long ttl = cacheTtl;
+      int matchLength = -1;
+      if (url != null) {
+         for (Map.Entry<String, Long> entry : endpointCacheTtls.entrySet()) {
+            if (url.startsWith(entry.getKey()) && entry.getKey().length() > matchLength) {
+               ttl = entry.getValue();
+               matchLength = entry.getKey().length();
+            }
+         }
+      }
+      return ttl;
+   }
+
+   public boolean isHostLimitEnabled() {
+      return isHostLimitEnabled;
+   }
+
+   public int getHostInitialLimit() {
+      return hostInitialLimit;
+   }
+
+   public int getHostMinLimit() {
+      return hostMinLimit;
+   }
+
+   public int getHostMaxLimit() {
+      return hostMaxLimit;
+   }
+
+   public int getHostLimitWaitTimeout() {
+      return hostLimitWaitTimeout;
+   }
+
+   public Transport getTransport() {
+      return transport;
+   }
+
+   public boolean isTransferCompressionEnabled() {
+      return isTransferCompressionEnabled;
+   }
+
+   public boolean isKeepAliveEnabled() {
+      return isKeepAliveEnabled;
+   }
+
+   public int getMaxIdleConnections() {
+      return maxIdleConnections;
+   }
+
+   public long getKeepAliveDuration() {
+      return keepAliveDuration;
+   }
+
+   public boolean isNegativeCacheEnabled() {
+      return isNegativeCacheEnabled;
+   }
+
+   public long getNegativeCacheBackoff() {
+      return negativeCacheBackoff;
+   }
+
+   public long getNegativeCacheMaxBackoff() {
+      return negativeCacheMaxBackoff;
+   }
+
+   public boolean isNegativeCachePerHost() {
+      return isNegativeCachePerHost;
+   }
+
+   public String getHttpUserAgent() {
+      return httpUserAgent;
+   }
+
+   public String getHost() {
+      return host;
+   }
+
+   public String getPort() {
+      return port;
+   }
+
+   public String getScheme() {
+      return scheme;
+   }
+
+   public String getEncoding() {
+      return encoding;
+   }
+
+   public String getTestServerUrl() {
+      return testServerUrl;
+   }
+
+   @Override
+   public String toString() {
+      StringBuilder builder2 = new StringBuilder();
+      builder2.append("DataProcessorConfiguration [isLogEnabled=");
+      builder2.append(isLogEnabled);
+      builder2.append(", isCheckingRequestStringEnabled=");
+      builder2.append(isCheckingRequestStringEnabled);
+      builder2.append(", isShowProcessingTime=");
+      builder2.append(isShowProcessingTime);
+      builder2.append(", timeout=");
+      builder2.append(timeout);
+      builder2.append(", httpUserAgent=");
+      builder2.append(httpUserAgent);
+      builder2.append(", host=");
+      builder2.append(host);
+      builder2.append(", port=");
+      builder2.append(port);
+      builder2.append(", scheme=");
+      builder2.append(scheme);
+      builder2.append(", encoding=");
+      builder2.append(encoding);
+      builder2.append(", testServerUrl=");
+      builder2.append(testServerUrl);
+      builder2.append(", isCacheEnabled=");
+      builder2.append(isCacheEnabled);
+      builder2.append(", cacheSize=");
+      builder2.append(cacheSize);
+      builder2.append(", cacheMaxBytes=");
+      builder2.append(cacheMaxBytes);
+      builder2.append(", executionMode=");
+      builder2.append(executionMode);
+      builder2.append(", threadPoolMinSize=");
+      builder2.append(threadPoolMinSize);
+      builder2.append(", threadPoolMaxSize=");
+      builder2.append(threadPoolMaxSize);
+      builder2.append(", threadKeepAliveTime=");
+      builder2.append(threadKeepAliveTime);
+      builder2.append(", isPrestartThreads=");
+      builder2.append(isPrestartThreads);
+      builder2.append(", threadPoolQueueCapacity=");
+      builder2.append(threadPoolQueueCapacity);
+      builder2.append(", rejectionPolicy=");
+      builder2.append(rejectionPolicy);
+      builder2.append(", isParseStageEnabled=");
+      builder2.append(isParseStageEnabled);
+      builder2.append(", parseThreadPoolSize=");
+      builder2.append(parseThreadPoolSize);
+      builder2.append(", parseBufferSize=");
+      builder2.append(parseBufferSize);
+      builder2.append(", isResponseCacheEnabled=");
+      builder2.append(isResponseCacheEnabled);
+      builder2.append(", responseCacheSize=");
+      builder2.append(responseCacheSize);
+      builder2.append(", responseCacheMaxEntrySize=");
+      builder2.append(responseCacheMaxEntrySize);
+      builder2.append(", isReuseParsedResult=");
+      builder2.append(isReuseParsedResult);
+      builder2.append(", diskCacheDirectory=");
+      builder2.append(diskCacheDirectory);
+      builder2.append(", diskCacheSize=");
+      builder2.append(diskCacheSize);
+      builder2.append(", isCacheCompressionEnabled=");
+      builder2.append(isCacheCompressionEnabled);
+      builder2.append(", cacheCompressionLevel=");
+      builder2.append(cacheCompressionLevel);
+      builder2.append(", cacheTtl=");
+      builder2.append(cacheTtl);
+      builder2.append(", endpointCacheTtls=");
+      builder2.append(endpointCacheTtls);
+      builder2.append(", batchParallelism=");
+      builder2.append(batchParallelism);
+      builder2.append(", isSingleFlightEnabled=");
+      builder2.append(isSingleFlightEnabled);
+      builder2.append(", requestKeyHeaders=");
+      builder2.append(requestKeyHeaders);
+      builder2.append(", isHostLimitEnabled=");
+      builder2.append(isHostLimitEnabled);
+      builder2.append(", hostInitialLimit=");
+      builder2.append(hostInitialLimit);
+      builder2.append(", hostMinLimit=");
+      builder2.append(hostMinLimit);
+      builder2.append(", hostMaxLimit=");
+      builder2.append(hostMaxLimit);
+      builder2.append(", hostLimitWaitTimeout=");
+      builder2.append(hostLimitWaitTimeout);
+      builder2.append(", transport=");
+      builder2.append(transport);
+      builder2.append(", isTransferCompressionEnabled=");
+      builder2.append(isTransferCompressionEnabled);
+      builder2.append(", isKeepAliveEnabled=");
+      builder2.append(isKeepAliveEnabled);
+      builder2.append(", maxIdleConnections=");
+      builder2.append(maxIdleConnections);
+      builder2.append(", keepAliveDuration=");
+      builder2.append(keepAliveDuration);
+      builder2.append(", isNegativeCacheEnabled=");
+      builder2.append(isNegativeCacheEnabled);
+      builder2.append(", negativeCacheBackoff=");
+      builder2.append(negativeCacheBackoff);
+      builder2.append(", negativeCacheMaxBackoff=");
+      builder2.append(negativeCacheMaxBackoff);
+      builder2.append(", isNegativeCachePerHost=");
+      builder2.append(isNegativeCachePerHost);
+      builder2.append("]");
+      return builder2.toString();
+   }
+
+   public static Builder getBuilder() {
+      return new Builder();
+   }
+
+   public static class Builder {
+
+      public int cacheSize = DEFAULT_CACHE_SIZE;
+      private long cacheMaxBytes = ProcessorsCache.getDefaultMaxSize();
+      private LinkedHashMap<Class<?>, SizeEstimator<?>> sizeEstimators = new LinkedHashMap<Class<?>, SizeEstimator<?>>();
+      public boolean isCacheEnabled = true;
+      public boolean isThreadPoolEnabled = true;
+      private ExecutionMode executionMode = ExecutionMode.THREAD_POOL;
+      private int threadPoolMinSize = DataProcessorThreadPool.DEFAULT_MIN_POOL_SIZE;
+      private int threadPoolMaxSize = DataProcessorThreadPool.DEFAULT_MAX_POOL_SIZE;
+      private long threadKeepAliveTime = DataProcessorThreadPool.DEFAULT_KEEP_ALIVE_TIME;
+      private boolean isPrestartThreads = false;
+      private int threadPoolQueueCapacity = DataProcessorThreadPool.DEFAULT_QUEUE_CAPACITY;
+      private RejectionPolicy rejectionPolicy = DataProcessorThreadPool.DEFAULT_REJECTION_POLICY;
+      private boolean isParseStageEnabled = false;
+      private int parseThreadPoolSize = DataProcessorThreadPool.CPU_COUNT;
+      private int parseBufferSize = DEFAULT_PARSE_BUFFER_SIZE;
+      private int batchParallelism = DEFAULT_BATCH_PARALLELISM;
+      private boolean isSingleFlightEnabled = false;
+      private List<String> requestKeyHeaders;
+      private boolean isResponseCacheEnabled = false;
+      private int responseCacheSize = MemoryResponseCache.DEFAULT_MAX_SIZE;
+      private int responseCacheMaxEntrySize = DEFAULT_RESPONSE_CACHE_MAX_ENTRY_SIZE;
+      private boolean isReuseParsedResult = false;
+      private File diskCacheDirectory;
+      private long diskCacheSize = DiskCache.DEFAULT_MAX_SIZE;
+      private boolean isCacheCompressionEnabled = false;
+      private int cacheCompressionLevel = CompressedStorage.DEFAULT_LEVEL;
+      private long cacheTtl = 0;
+      private LinkedHashMap<String, Long> endpointCacheTtls = new LinkedHashMap<String, Long>();
+      private boolean isHostLimitEnabled = false;
+      private int hostInitialLimit = HostConcurrencyLimiter.DEFAULT_INITIAL_LIMIT;
+      private int hostMinLimit = HostConcurrencyLimiter.DEFAULT_MIN_LIMIT;
+      private int hostMaxLimit = HostConcurrencyLimiter.DEFAULT_MAX_LIMIT;
+      private int hostLimitWaitTimeout = 0;
+      private Transport transport = null;
+      private boolean isTransferCompressionEnabled = true;
+      private boolean isKeepAliveEnabled = true;
+      private int maxIdleConnections = -1;
+      private long keepAliveDuration = -1;
+      private boolean isNegativeCacheEnabled = false;
+      private long negativeCacheBackoff = NegativeCache.DEFAULT_BACKOFF;
+      private long negativeCacheMaxBackoff = NegativeCache.DEFAULT_MAX_BACKOFF;
+      private boolean isNegativeCachePerHost = false;
+      private int timeout = 0;
+      public boolean isCheckingRequestStringEnabled = false;
+      private boolean isLogEnabled = true;
+      public boolean isShowProcessingTime = true;
+      private String httpUserAgent = null;
+      private String host = null;
+      private String port = null;
+      private String scheme = null;
+      private String encoding = null;
+      public String testServerUrl = null;
+
+      private Builder() {
+
+      }
+
+      public DataProcessorConfiguration build() {
+         initWithDefaultValues();
+         return new DataProcessorConfiguration(this);
+      }
+
+      public DataProcessorConfiguration buildForAssets() {
+         initWithAssetsValues();
+         return new DataProcessorConfiguration(this);
+      }
+
+      public Builder setHttpUserAgent(String httpUserAgent) {
+         this.httpUserAgent = httpUserAgent;
+         return this;
+      }
+
+      public Builder setLogEnabled(boolean isEnabled) {
+         isLogEnabled = isEnabled;
+         return this;
+      }
+
+      public Builder setThreadPoolEnabled(boolean isEnabled) {
+         isThreadPoolEnabled = isEnabled;
+         return this;
+      }
+
+      /**
+       * Set how async requests are executed. {@link ExecutionMode#VIRTUAL_THREADS} requires JDK 21+, on other runtimes the thread pool
+       * is used.
+       *
+       * @param mode execution mode
+       */
+      public Builder setExecutionMode(ExecutionMode mode) {
+         executionMode = mode;
+         return this;
+      }
+
+      /**
+       * Set fixed number of worker threads of the thread pool.
+       *
+       * @param size number of threads
+       */
+      public Builder setThreadPoolSize(int size) {
+         return setThreadPoolSize(size, size);
+      }
+
+      /**
+       * Set number of worker threads of the thread pool. The pool keeps the min number of threads and starts new ones up to the max number
+       * while all threads are busy.
+       *
+       * @param minSize number of threads kept when idle
+       * @param maxSize max number of threads
+       */
+      public Builder setThreadPoolSize(int minSize, int maxSize) {
+         threadPoolMinSize = minSize;
+         threadPoolMaxSize = maxSize;
+         return this;
+      }
+
+      /**
+       * Set the max number of worker threads for the requests which mostly wait for the network: {@code cores * (1 + blockingRatio)}.
+       *
+       * @param blockingRatio ratio of the time a request waits for I/O to the time it uses the CPU
+       */
+      public Builder setBlockingRatio(double blockingRatio) {
+         threadPoolMaxSize = Math.max(threadPoolMinSize, DataProcessorThreadPool.getBlockingPoolSize(blockingRatio));
+         return this;
+      }
+
+      /**
+       * Set the time after which an idle thread above the min number is stopped.
+       *
+       * @param keepAliveTime time in ms
+       */
+      public Builder setThreadKeepAliveTime(long keepAliveTime) {
+         threadKeepAliveTime = keepAliveTime;
+         return this;
+      }
+
+      /**
+       * Start the min number of threads at initialization, so the first requests do not wait for thread creation.
+       *
+       * @param isPrestart start threads at once
+       */
+      public Builder setPrestartThreads(boolean isPrestart) {
+         isPrestartThreads = isPrestart;
+         return this;
+      }
+
+      /**
+       * Set max number of requests waiting in the thread pool queue.
+       *
+       * @param capacity queue capacity
+       */
+      public Builder setThreadPoolQueueCapacity(int capacity) {
+         threadPoolQueueCapacity = capacity;
+         return this;
+      }
+
+      /**
+       * Set what to do with a new request when the thread pool queue is full.
+       *
+       * @param policy rejection policy
+       */
+      public Builder setRejectionPolicy(RejectionPolicy policy) {
+         rejectionPolicy = policy;
+         return this;
+      }
+
+      /**
+       * Enable separate parse stage for async requests: the I/O thread reads the response body in memory and passes the parsing to a
+       * thread pool sized by the number of CPU cores, so slow connections do not hold the parse threads and big payloads do not hold the
+       * I/O threads. The body up to the parse buffer size is held in memory until it is parsed, so enable it only when the parsing is
+       * slow compared to the reading. Bodies saved to a file or to the disk cache are always parsed in the I/O thread. Disabled by default.
+       *
+       * @param isEnabled is parse stage enabled
+       */
+      public Builder setParseStageEnabled(boolean isEnabled) {
+         isParseStageEnabled = isEnabled;
+         return this;
+      }
+
+      /**
+       * Set max number of threads of the parse stage.
+       *
+       * @param size number of threads
+       */
+      public Builder setParseThreadPoolSize(int size) {
+         parseThreadPoolSize = size;
+         return this;
+      }
+
+      /**
+       * Set max size of the response body which is read in memory for the parse stage. A larger body is parsed in the I/O thread while it
+       * is read.
+       *
+       * @param size size in bytes
+       */
+      public Builder setParseBufferSize(int size) {
+         parseBufferSize = size;
+         return this;
+      }
+
+      /**
+       * Set default max number of requests of a batch executed at once, see
+       * {@link DataProcessor#executeAll(java.util.List, Class, ua.at.tsvetkov.data_processor.processors.BatchProcessor.BatchCallback)}.
+       *
+       * @param parallelism max number of requests
+       */
+      public Builder setBatchParallelism(int parallelism) {
+         batchParallelism = parallelism;
+         return this;
+      }
+
+      /**
+       * Enable single-flight mode: concurrent async executions of equal requests share one fetch, one parse and one result object.
+       *
+       * @param isEnabled is enabled
+       */
+      public Builder setSingleFlightEnabled(boolean isEnabled) {
+         isSingleFlightEnabled = isEnabled;
+         return this;
+      }
+
+      /**
+       * Set the headers which are a part of the request key, see {@link Request#getKey()}. Other headers, like authorization tokens, do
+       * not split the caches and the single-flight executions. By default all headers are a part of the key. The values of the
+       * Authorization, Proxy-Authorization and Cookie headers are never stored in the key, only their digest.
+       *
+       * @param names header names, case insensitive
+       */
+      public Builder setRequestKeyHeaders(String... names) {
+         requestKeyHeaders = Arrays.asList(names);
+         return this;
+      }
+
+      /**
+       * Enable the response cache of GET requests. A response with ETag or Last-Modified is stored, the next equal request is sent with
+       * If-None-Match / If-Modified-Since and on 304 Not Modified the stored body is used. The status code of a request served from the
+       * cache, including a revalidated one, is 200 OK, see {@link ua.at.tsvetkov.data_processor.requests.WebRequest#isNotModified()}. The
+       * stored bodies are kept in memory up to the response cache size. Disabled by default.
+       *
+       * @param isEnabled is enabled
+       */
+      public Builder setResponseCacheEnabled(boolean isEnabled) {
+         isResponseCacheEnabled = isEnabled;
+         return this;
+      }
+
+      /**
+       * Set max size of the response cache and max size of a stored response body.
+       *
+       * @param size         max total size of the stored bodies in bytes
+       * @param maxEntrySize max size of a stored body in bytes
+       */
+      public Builder setResponseCacheSize(int size, int maxEntrySize) {
+         responseCacheSize = size;
+         responseCacheMaxEntrySize = maxEntrySize;
+         return this;
+      }
+
+      /**
+       * Keep the parsed result with the cached response and deliver the same object again on 304 Not Modified, without parsing. The
+       * result object is shared by the requests, so it must not be modified. Disabled by default.
+       *
+       * @param isReuse is reuse parsed result
+       */
+      public Builder setReuseParsedResult(boolean isReuse) {
+         isReuseParsedResult = isReuse;
+         return this;
+      }
+
+      /**
+       * Set up the disk cache used by the requests with {@code saveToDiskCache()}. The directory must be used only by the cache, on Android
+       * it can be a subdirectory of {@code Context.getCacheDir()}. Disabled by default.
+       *
+       * @param directory cache directory
+       * @param maxSize   max total size of the cached files in bytes
+       */
+      public Builder setDiskCache(File directory, long maxSize) {
+         diskCacheDirectory = directory;
+         diskCacheSize = maxSize;
+         return this;
+      }
+
+      /**
+       * Write the files of the disk cache and the cache files of the requests compressed. The files are decompressed transparently when
+       * they are read by the data processor, but a cache file can't be used as is by other code anymore. The files written before are
+       * read as they are. Disabled by default.
+       *
+       * @param isEnabled is enabled
+       */
+      public Builder setCacheCompressionEnabled(boolean isEnabled) {
+         isCacheCompressionEnabled = isEnabled;
+         return this;
+      }
+
+      /**
+       * Set the level of the cache compression, from {@code Deflater.BEST_SPEED} (default) to {@code Deflater.BEST_COMPRESSION}. A higher
+       * level saves more space for more CPU time, see the statistics of {@code DataProcessor.getCompressedStorage()}.
+       *
+       * @param level compression level
+       */
+      public Builder setCacheCompressionLevel(int level) {
+         cacheCompressionLevel = level;
+         return this;
+      }
+
+      /**
+       * Set default time during which a cached response is used without a request to the server. With the disk cache set up the responses
+       * are kept on disk, so after a restart they are served without the network. The cached result of
+       * {@link DataProcessor#executeCachedAsync(int, Request, Class, ua.at.tsvetkov.data_processor.processors.Processor.Callback)} is executed again when it is older than a positive TTL.
+       * Default is 0: a cached response is always revalidated with the server and a cached result does not expire.
+       *
+       * @param ttl time in ms
+       */
+      public Builder setCacheTtl(long ttl) {
+         cacheTtl = ttl;
+         return this;
+      }
+
+      /**
+       * Set the cache TTL for the requests whose URL starts with the prefix, see {@link #setCacheTtl(long)}. The longest matching prefix
+       * wins, the TTL of a request overrides it.
+       *
+       * @param urlPrefix URL prefix of the endpoint, for example "https://api.example.com/catalog/"
+       * @param ttl       time in ms
+       */
+      public Builder addCacheTtl(String urlPrefix, long ttl) {
+         endpointCacheTtls.put(urlPrefix, ttl);
+         return this;
+      }
+
+      /**
+       * Enable the adaptive limit of in-flight web requests per host. Only the requests which go to the network take a slot, the cache
+       * hits are not limited. Disabled by default.
+       *
+       * @param isEnabled is enabled
+       */
+      public Builder setHostLimitEnabled(boolean isEnabled) {
+         isHostLimitEnabled = isEnabled;
+         return this;
+      }
+
+      /**
+       * Set the bounds of the adaptive in-flight limit per host.
+       *
+       * @param initialLimit limit of a host which was not requested before
+       * @param minLimit     lowest limit
+       * @param maxLimit     highest limit
+       */
+      public Builder setHostLimit(int initialLimit, int minLimit, int maxLimit) {
+         hostInitialLimit = initialLimit;
+         hostMinLimit = minLimit;
+         hostMaxLimit = maxLimit;
+         return this;
+      }
+
+      /**
+       * Set how long a request waits for a free slot of its host before it fails with HOST_LIMIT_EXCEEDED. By default 0 - fail fast. A
+       * waiting request holds its worker thread, so a long wait brings back the starvation of the pool by a slow host.
+       *
+       * @param timeout wait timeout in ms
+       */
+      public Builder setHostLimitWaitTimeout(int timeout) {
+         hostLimitWaitTimeout = timeout;
+         return this;
+      }
+
+      /**
+       * Set the transport the web requests are sent over. By default {@link HttpUrlConnectionTransport}, the platform
+       * {@link java.net.HttpURLConnection HttpURLConnection}. A single request may be sent over another transport with
+       * {@code WebRequest.setTransport(Transport)}, see {@link ua.at.tsvetkov.data_processor.transport.MemoryTransport MemoryTransport}
+       * to run the requests without the network. On JDK 11+ {@link ua.at.tsvetkov.data_processor.transport.HttpClientTransport
+       * HttpClientTransport} multiplexes the requests to a host over HTTP/2.
+       *
+       * @param transport transport
+       */
+      public Builder setTransport(Transport transport) {
+         this.transport = transport;
+         return this;
+      }
+
+      /**
+       * Ask the servers for the compressed response bodies with the Accept-Encoding header gzip, deflate. Enabled by default. The bodies
+       * compressed by the server are decoded in any case, see {@code DataProcessor.getTransferStats()} for the saved bandwidth.
+       *
+       * @param isEnabled is enabled
+       */
+      public Builder setTransferCompressionEnabled(boolean isEnabled) {
+         isTransferCompressionEnabled = isEnabled;
+         return this;
+      }
+
+      /**
+       * Keep the connections of the web requests alive: the rest of the response body is read on close and the connection is released to
+       * the pool, so the next request to the host does not open a new TCP and TLS connection. If disabled, every connection is
+       * disconnected after its request. Enabled by default, see {@code DataProcessor.getConnectionPoolStats()} for the reuse rate.
+       *
+       * @param isEnabled is enabled
+       */
+      public Builder setKeepAliveEnabled(boolean isEnabled) {
+         isKeepAliveEnabled = isEnabled;
+         return this;
+      }
+
+      /**
+       * Set the limits of the idle keep-alive connections. They are set to the JVM-wide system properties http.maxConnections,
+       * http.keepAliveDuration and http.keepAlive.time.server of the connection pool of {@link java.net.HttpURLConnection}, so they apply
+       * to all connections of the application, including the connections of other libraries, and only if the data processor is
+       * initialized before the first connection. The properties are not changed unless this method is called with positive values, by
+       * default the limits of the platform are used. They have no effect on other transports.
+       *
+       * @param maxIdleConnections max idle connections, per host on the JVM and in total on Android
+       * @param keepAliveDuration  time in ms an idle connection is kept
+       */
+      public Builder setIdleConnections(int maxIdleConnections, long keepAliveDuration) {
+         this.maxIdleConnections = maxIdleConnections;
+         this.keepAliveDuration = keepAliveDuration;
+         return this;
+      }
+
+      /**
+       * Enable the negative cache: after a web request failed with a timeout, a 5xx status or no connection, the same request is not sent
+       * during the backoff window. It gets the cached response, if there is one, or fails at once with
+       * {@link ua.at.tsvetkov.data_processor.helpers.ConnectionConstants#BACKED_OFF BACKED_OFF}.
+       *
+       * @param isEnabled is enabled
+       */
+      public Builder setNegativeCacheEnabled(boolean isEnabled) {
+         isNegativeCacheEnabled = isEnabled;
+         return this;
+      }
+
+      /**
+       * Set the backoff window of the negative cache. The window starts from the backoff and is doubled on every next failure up to the
+       * max backoff.
+       *
+       * @param backoff    window after the first failure in ms
+       * @param maxBackoff max window in ms
+       */
+      public Builder setNegativeCacheBackoff(long backoff, long maxBackoff) {
+         negativeCacheBackoff = backoff;
+         negativeCacheMaxBackoff = maxBackoff;
+         return this;
+      }
+
+      /**
+       * Back off all requests of the host after a failure, not only the failed request. By default false.
+       *
+       * @param isPerHost is per host
+       */
+      public Builder setNegativeCachePerHost(boolean isPerHost) {
+         isNegativeCachePerHost = isPerHost;
+         return this;
+      }
+
+      public Builder setCheckingRequestStringEnabled(boolean isEnabled) {
+         isCheckingRequestStringEnabled = isEnabled;
+         return this;
+      }
+
+      public Builder setShowProcessingTime(boolean isEnabled) {
+         isShowProcessingTime = isEnabled;
+         return this;
+      }
+
+      public Builder setCacheEnabled(boolean isEnabled) {
+         isCacheEnabled = isEnabled;
+         return this;
+      }
+
+      /**
+       * Set max number of the results in the cache of {@code executeCachedAsync()}. The cache is bounded by the size of the results as
+       * well, see {@link #setCacheMaxBytes(long)}.
+       *
+       * @param size max number of the results
+       */
+      public Builder setCacheSize(int size) {
+         cacheSize = size;
+         return this;
+      }
+
+      /**
+       * Set max estimated size of the results in the cache of {@code executeCachedAsync()}. By default 1/16 of the heap.
+       *
+       * @param maxBytes max size in bytes
+       */
+      public Builder setCacheMaxBytes(long maxBytes) {
+         cacheMaxBytes = maxBytes;
+         return this;
+      }
+
+      /**
+       * Set the estimator of the memory retained by the results of the class and its subclasses. Without it the size of a result is
+       * estimated from the size of the response body, see {@link ProcessorsCache#DEFAULT_SIZE_ESTIMATOR}.
+       *
+       * @param clazz     result class or interface
+       * @param estimator size estimator
+       */
+      public <T> Builder addSizeEstimator(Class<T> clazz, SizeEstimator<? super T> estimator) {
+         sizeEstimators.put(clazz, estimator);
+         return this;
+      }
+
+      public Builder setHost(String host) {
+         if (host.endsWith("/")) {
+            this.host = host.substring(0, host.length() - 1);
+         } else {
+            this.host = host;
+         }
+         if (!isSchemePresent(Scheme.HTTP, host)) {
+            if (!isSchemePresent(Scheme.HTTPS, host)) {
+               if (!isSchemePresent(Scheme.FILE, host)) {
+                  this.scheme = Scheme.ASSETS.toString();
+               }
+            }
+         }
+         return this;
+      }
+
+      private boolean isSchemePresent(Scheme scheme, String host) {
+         if (host.toLowerCase().startsWith(scheme.name().toLowerCase())) {
+            this.scheme = scheme.name();
+            this.host = host.substring(this.scheme.length());
+            return true;
+         }
+         return false;
+      }
+
+      public Builder setScheme(String scheme) {
+         this.scheme = scheme;
+         return this;
+      }
+
+      public Builder setPort(String port) {
+         this.port = port;
+         return this;
+      }
+
+      public Builder setTimeout(int timeout) {
+         this.timeout = timeout;
+         return this;
+      }
+
+      public Builder setTestServerUrl(String testServerUrl) {
+         this.testServerUrl = testServerUrl;
+         return this;
+      }
+
+      private void initWithDefaultValues() {
+         if (host == null || host.length() == 0) {
+            throw new IllegalArgumentException("Server host is empty. Set up it with setHost(String host) method.");
+         }
+         if (port == null) {
+            port = "";
+         }
+         if (scheme == null) {
+            scheme = Scheme.HTTP.toString();
+         }
+         if (encoding == null) {
+            encoding = Encoding.UTF_8.getString();
+         }
+         if (transport == null) {
+            transport = new HttpUrlConnectionTransport();
+         }
+         if (timeout == 0) {
+            timeout = DEFAULT_TIMEOUT;
+         }
+         if (httpUserAgent == null) {
+            httpUserAgent = HTTP_ANDROID_USER_AGENT;
+         }
+         if (testServerUrl == null) {
+            testServerUrl = scheme + host + port;
+         }
+      }
+
+      private void initWithAssetsValues() {
+         if (host == null) {
+            host = "";
+         }
+         if (port == null) {
+            port = "";
+         }
+         if (scheme == null) {
+            scheme = Scheme.ASSETS.toString();
+         }
+         if (encoding == null) {
+            encoding = Encoding.UTF_8.getString();
+         }
+         if (transport == null) {
+            transport = new HttpUrlConnectionTransport();
+         }
+         if (timeout == 0) {
+            timeout = DEFAULT_TIMEOUT;
+         }
+         if (httpUserAgent == null) {
+            httpUserAgent = "";
+         }
+         if (testServerUrl == null) {
+            testServerUrl = "";
+         }
+      }
+   }
+}
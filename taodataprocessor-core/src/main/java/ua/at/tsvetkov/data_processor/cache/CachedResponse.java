@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+/**
+ * Response body stored with its validators and expiration time. The parsed result of the body can be kept with it in memory, so a revalidated response
+ * does not need to be parsed again.
+ *
+ * @author lordtao
+ */
+public class CachedResponse {
+
+   private final byte[] body;
+   private final String eTag;
+   private final String lastModified;
+   private final long   storedTime;
+   private final long   expiresTime;
+   private volatile Object result;
+
+   /**
+    * @param body         response body
+    * @param eTag         value of the ETag header or null
+    * @param lastModified value of the Last-Modified header or null
+    * @param storedTime   time when the response was received, ms
+    * @param expiresTime  time until which the response is used without a request to the server, ms
+    */
+   public CachedResponse(byte[] body, String eTag, String lastModified, long storedTime, long expiresTime) {
+      this.body = body;
+      this.eTag = eTag;
+      this.lastModified = lastModified;
+      this.storedTime = storedTime;
+      this.expiresTime = expiresTime;
+   }
+
+   public byte[] getBody() {
+      return body;
+   }
+
+   public String getETag() {
+      return eTag;
+   }
+
+   public String getLastModified() {
+      return lastModified;
+   }
+
+   public long getStoredTime() {
+      return storedTime;
+   }
+
+   public long getExpiresTime() {
+      return expiresTime;
+   }
+
+   /**
+    * Returns whether the response can be used without a request to the server.
+    *
+    * @param now current time, ms
+    * @return is not expired
+    */
+   public boolean isFresh(long now) {
+      return now < expiresTime;
+   }
+
+   /**
+    * Returns whether the response can be revalidated with a conditional request.
+    *
+    * @return has ETag or Last-Modified
+    */
+   public boolean hasValidators() {
+      return eTag != null || lastModified != null;
+   }
+
+   /**
+    * Returns the size of the body.
+    *
+    * @return size in bytes
+    */
+   public int getSize() {
+      return body.length;
+   }
+
+   /**
+    * Returns the result parsed from the body, if it is an instance of the given class.
+    *
+    * @param clazz result class
+    * @param <T>   result class
+    * @return parsed result or null
+    */
+   public <T> T getResult(Class<T> clazz) {
+      Object result = this.result;
+      return clazz.isInstance(result) ? clazz.cast(result) : null;
+   }
+
+   /**
+    * Keep the result parsed from the body.
+    *
+    * @param result parsed result
+    */
+   public void setResult(Object result) {
+      this.result = result;
+   }
+
+}
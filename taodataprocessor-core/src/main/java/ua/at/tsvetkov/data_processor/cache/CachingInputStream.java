@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import ua.at.tsvetkov.data_processor.platform.Log;
+
+/**
+ * Copies the response body while it is read and stores it to the {@link ResponseCache} when the end of the stream is reached. If the
+ * parser stops before the end, the rest of the body is copied on {@link #close()}. A body which is larger than the max size or can not
+ * be read to the end is not stored.
+ *
+ * @author lordtao
+ */
+public class CachingInputStream extends FilterInputStream {
+
+   private static final int BUFFER = 8 * 1024;
+
+   private final ResponseCache         cache;
+   private final String                key;
+   private final String                eTag;
+   private final String                lastModified;
+   private final long                  ttl;
+   private final int                   maxSize;
+   private       ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+   /**
+    * @param in           response body
+    * @param cache        cache to store the body
+    * @param key          request key
+    * @param eTag         value of the ETag header or null
+    * @param lastModified value of the Last-Modified header or null
+    * @param ttl          time in ms during which the stored body is used without a request to the server
+    * @param maxSize      max size of the stored body in bytes
+    */
+   public CachingInputStream(InputStream in, ResponseCache cache, String key, String eTag, String lastModified, long ttl, int maxSize) {
+      super(in);
+      this.cache = cache;
+      this.key = key;
+      this.eTag = eTag;
+      this.lastModified = lastModified;
+      this.ttl = ttl;
+      this.maxSize = maxSize;
+   }
+
+   @Override
+   public int read() throws IOException {
+      int b = super.read();
+      if (b == -1) {
+         store();
+      } else if (copy != null) {
+         copy.write(b);
+         checkSize();
+      }
+      return b;
+   }
+
+   @Override
+   public int read(byte[] buffer, int offset, int count) throws IOException {
+      int bytesRead = super.read(buffer, offset, count);
+      if (bytesRead == -1) {
+         store();
+      } else if (copy != null) {
+         copy.write(buffer, offset, bytesRead);
+         checkSize();
+      }
+      return bytesRead;
+   }
+
+   @Override
+   public long skip(long count) throws IOException {
+      // Skipped bytes are not copied, the body can not be stored
+      copy = null;
+      return super.skip(count);
+   }
+
+   /**
+    * Copy the rest of the body and close the stream.
+    */
+   @Override
+   public void close() throws IOException {
+      try {
+         if (copy != null) {
+            byte[] buffer = new byte[BUFFER];
+            while (copy != null && read(buffer, 0, buffer.length) != -1) {
+               // Drain the rest of the body to the copy
+            }
+         }
+      } catch (IOException e) {
+         Log.w("Can't read the rest of the response for the cache", e);
+         copy = null;
+      } finally {
+         super.close();
+      }
+   }
+
+   @Override
+   public boolean markSupported() {
+      return false;
+   }
+
+   private void checkSize() {
+      if (copy.size() > maxSize) {
+         copy = null;
+      }
+   }
+
+   private void store() {
+      if (copy != null) {
+         long now = System.currentTimeMillis();
+         cache.put(key, new CachedResponse(copy.toByteArray(), eTag, lastModified, now, now + ttl));
+         copy = null;
+      }
+   }
+
+}
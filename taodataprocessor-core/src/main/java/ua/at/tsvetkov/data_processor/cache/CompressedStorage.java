@@ -0,0 +1,365 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Storage format of the cached files. If the compression is enabled, a file is written compressed with {@link Deflater} after a short
+ * header with the codec of the file. A file is read through {@link #open(File)}, which decompresses it if it has the header and reads it
+ * as is otherwise, so the files written with and without compression can be read at any time and the parsers always get the original
+ * body.
+ * <p/>
+ * The storage counts the bytes and the time of the compression and the decompression, to compare the saved space and disk reads with the
+ * spent CPU time.
+ *
+ * @author lordtao
+ */
+public class CompressedStorage {
+
+   /**
+    * Fast compression with a lower ratio, the default level.
+    */
+   public static final int DEFAULT_LEVEL = Deflater.BEST_SPEED;
+   /**
+    * Codec of the compressed file, written after the magic bytes of the header.
+    */
+   public static final int CODEC_DEFLATE = 1;
+
+   /**
+    * The first byte of a text body is never 0, the responses of {@link DiskResponseCache} start with 0, 0.
+    */
+   private static final byte[] MAGIC       = {0, 'T', 'D', 'C'};
+   private static final int    HEADER_SIZE = MAGIC.length + 1;
+   private static final int    BUFFER      = 8 * 1024;
+
+   private final boolean    isEnabled;
+   private final int        level;
+   private final AtomicLong encodedCount      = new AtomicLong();
+   private final AtomicLong encodedBytes      = new AtomicLong();
+   private final AtomicLong encodedStoredSize = new AtomicLong();
+   private final AtomicLong encodeTime        = new AtomicLong();
+   private final AtomicLong decodedCount      = new AtomicLong();
+   private final AtomicLong decodedBytes      = new AtomicLong();
+   private final AtomicLong decodedStoredSize = new AtomicLong();
+   private final AtomicLong decodeTime        = new AtomicLong();
+
+   /**
+    * Storage which writes the files as is and reads both compressed and not compressed files.
+    */
+   public CompressedStorage() {
+      this(false, DEFAULT_LEVEL);
+   }
+
+   /**
+    * @param isEnabled write the files compressed
+    * @param level     compression level from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+    */
+   public CompressedStorage(boolean isEnabled, int level) {
+      if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+         throw new IllegalArgumentException("Wrong compression level: " + level);
+      }
+      this.isEnabled = isEnabled;
+      this.level = level;
+   }
+
+   /**
+    * Create or truncate the file and open it for writing, with compression if it is enabled.
+    *
+    * @param file file to write
+    * @return stream to write the original body to
+    * @throws IOException if the file can not be opened
+    */
+   public OutputStream newOutputStream(File file) throws IOException {
+      FileOutputStream out = new FileOutputStream(file);
+      if (!isEnabled) {
+         return out;
+      }
+      try {
+         out.write(MAGIC);
+         out.write(CODEC_DEFLATE);
+      } catch (IOException e) {
+         out.close();
+         throw e;
+      }
+      return new EncodingOutputStream(out, file);
+   }
+
+   /**
+    * Open the cached file for reading. A compressed file is decompressed while it is read.
+    *
+    * @param file file to read
+    * @return stream of the original body
+    * @throws IOException if the file can not be opened or has an unknown codec
+    */
+   public InputStream open(File file) throws IOException {
+      FileInputStream in = new FileInputStream(file);
+      try {
+         byte[] header = new byte[HEADER_SIZE];
+         int count = 0;
+         int bytesRead;
+         while (count < HEADER_SIZE && (bytesRead = in.read(header, count, HEADER_SIZE - count)) != -1) {
+            count += bytesRead;
+         }
+         if (count == HEADER_SIZE && isHeader(header)) {
+            if (header[MAGIC.length] != CODEC_DEFLATE) {
+               throw new IOException("Unknown codec " + header[MAGIC.length] + " of " + file);
+            }
+            return new DecodingInputStream(in, file.length());
+         }
+         // Not compressed file is read as is from the start
+         in.getChannel().position(0);
+         return in;
+      } catch (IOException e) {
+         in.close();
+         throw e;
+      }
+   }
+
+   public boolean isEnabled() {
+      return isEnabled;
+   }
+
+   public int getLevel() {
+      return level;
+   }
+
+   /**
+    * Returns the size of the compressed files relative to the size of their bodies, for all files written by this storage.
+    *
+    * @return compression ratio, 1 if no file was compressed
+    */
+   public double getCompressionRatio() {
+      long bytes = encodedBytes.get();
+      return bytes == 0 ? 1 : (double) encodedStoredSize.get() / bytes;
+   }
+
+   /**
+    * Returns the number of the compressed files written by this storage.
+    *
+    * @return compressed files count
+    */
+   public long getEncodedCount() {
+      return encodedCount.get();
+   }
+
+   /**
+    * Returns the total size of the bodies of the compressed files.
+    *
+    * @return size in bytes
+    */
+   public long getEncodedBytes() {
+      return encodedBytes.get();
+   }
+
+   /**
+    * Returns the total size of the compressed files on the disk.
+    *
+    * @return size in bytes
+    */
+   public long getEncodedStoredSize() {
+      return encodedStoredSize.get();
+   }
+
+   /**
+    * Returns the CPU time spent to compress the files, without the time of the disk writes.
+    *
+    * @return time in ns
+    */
+   public long getEncodeTime() {
+      return encodeTime.get();
+   }
+
+   /**
+    * Returns the number of the compressed files read completely.
+    *
+    * @return decompressed files count
+    */
+   public long getDecodedCount() {
+      return decodedCount.get();
+   }
+
+   /**
+    * Returns the total size of the decompressed bodies.
+    *
+    * @return size in bytes
+    */
+   public long getDecodedBytes() {
+      return decodedBytes.get();
+   }
+
+   /**
+    * Returns the total size of the decompressed files on the disk.
+    *
+    * @return size in bytes
+    */
+   public long getDecodedStoredSize() {
+      return decodedStoredSize.get();
+   }
+
+   /**
+    * Returns the CPU time spent to decompress the files, without the time of the disk reads.
+    *
+    * @return time in ns
+    */
+   public long getDecodeTime() {
+      return decodeTime.get();
+   }
+
+   @Override
+   public String toString() {
+      return "CompressedStorage [isEnabled=" + isEnabled + ", level=" + level + ", ratio=" + getCompressionRatio() + ", encoded="
+              + encodedCount + " files " + encodedBytes + " -> " + encodedStoredSize + " bytes in " + encodeTime + " ns, decoded="
+              + decodedCount + " files " + decodedStoredSize + " -> " + decodedBytes + " bytes in " + decodeTime + " ns]";
+   }
+
+   private static boolean isHeader(byte[] header) {
+      for (int i = 0; i < MAGIC.length; i++) {
+         if (header[i] != MAGIC[i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Compresses the body and measures the time spent in {@link Deflater}.
+    */
+   private class EncodingOutputStream extends DeflaterOutputStream {
+
+      private final File    file;
+      private       long    bytes;
+      private       long    time;
+      private       boolean isClosed;
+
+      private EncodingOutputStream(OutputStream out, File file) {
+         super(out, new Deflater(level), BUFFER);
+         this.file = file;
+      }
+
+      @Override
+      public void write(byte[] buffer, int offset, int count) throws IOException {
+         super.write(buffer, offset, count);
+         bytes += count;
+      }
+
+      @Override
+      protected void deflate() throws IOException {
+         long start = System.nanoTime();
+         int count = def.deflate(buf, 0, buf.length);
+         time += System.nanoTime() - start;
+         if (count > 0) {
+            out.write(buf, 0, count);
+         }
+      }
+
+      @Override
+      public void close() throws IOException {
+         if (isClosed) {
+            return;
+         }
+         isClosed = true;
+         try {
+            super.close();
+         } finally {
+            def.end();
+         }
+         encodedCount.incrementAndGet();
+         encodedBytes.addAndGet(bytes);
+         encodedStoredSize.addAndGet(file.length());
+         encodeTime.addAndGet(time);
+      }
+
+   }
+
+   /**
+    * Decompresses the body and measures the time spent in {@link Inflater}.
+    */
+   private class DecodingInputStream extends InflaterInputStream {
+
+      private final long    storedSize;
+      private       long    bytes;
+      private       long    time;
+      private       long    ioTime;
+      private       boolean isEof;
+      private       boolean isClosed;
+
+      private DecodingInputStream(InputStream in, long storedSize) {
+         super(in, new Inflater(), BUFFER);
+         this.storedSize = storedSize;
+      }
+
+      @Override
+      public int read(byte[] buffer, int offset, int count) throws IOException {
+         long start = System.nanoTime();
+         int bytesRead = super.read(buffer, offset, count);
+         time += System.nanoTime() - start;
+         if (bytesRead > 0) {
+            bytes += bytesRead;
+         } else if (bytesRead == -1) {
+            isEof = true;
+         }
+         return bytesRead;
+      }
+
+      @Override
+      protected void fill() throws IOException {
+         long start = System.nanoTime();
+         super.fill();
+         ioTime += System.nanoTime() - start;
+      }
+
+      @Override
+      public void close() throws IOException {
+         if (isClosed) {
+            return;
+         }
+         isClosed = true;
+         try {
+            super.close();
+         } finally {
+            inf.end();
+         }
+         // A partially read file would distort the ratio
+         if (isEof) {
+            decodedCount.incrementAndGet();
+            decodedBytes.addAndGet(bytes);
+            decodedStoredSize.addAndGet(storedSize);
+            decodeTime.addAndGet(time - ioTime);
+         }
+      }
+
+   }
+
+}
@@ -0,0 +1,386 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ua.at.tsvetkov.data_processor.platform.Log;
+
+/**
+ * Size-bounded disk cache of files in its own directory. The least recently used files are deleted when the total size exceeds the max
+ * size. The entries and their access order are kept in a journal file, so the cache is restored at startup without scanning the
+ * directory.
+ * <p/>
+ * A file is written to a temp file first, see {@link #newTempFile()}, and then moved to the cache with {@link #commit(String, File)}, so
+ * a reader never sees a partially written file.
+ *
+ * @author lordtao
+ */
+public class DiskCache {
+
+   public static final long DEFAULT_MAX_SIZE = 20 * 1024 * 1024;
+
+   static final String JOURNAL     = "journal";
+   static final String JOURNAL_TMP = "journal.tmp";
+   static final String TEMP_DIR    = "tmp";
+   static final String MAGIC       = "ua.at.tsvetkov.data_processor.DiskCache";
+   static final String VERSION     = "1";
+
+   private static final String PUT    = "PUT";
+   private static final String REMOVE = "REMOVE";
+   private static final String READ   = "READ";
+   private static final String UTF_8  = "UTF-8";
+   private static final int    REBUILD_THRESHOLD = 2000;
+
+   private final File directory;
+   private final File tempDirectory;
+   private final long maxSize;
+   private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+   private long    size;
+   private int     redundantOps;
+   private Writer  journalWriter;
+   private boolean isOpened;
+
+   /**
+    * @param directory cache directory, used only by this cache
+    * @param maxSize   max total size of the cached files in bytes
+    */
+   public DiskCache(File directory, long maxSize) {
+      if (maxSize <= 0) {
+         throw new IllegalArgumentException("Max size must be positive: " + maxSize);
+      }
+      this.directory = directory;
+      this.tempDirectory = new File(directory, TEMP_DIR);
+      this.maxSize = maxSize;
+   }
+
+   /**
+    * Returns the cached file of the key.
+    *
+    * @param key key, for example the request key
+    * @return file or null if it is not cached
+    * @throws IOException if the cache directory can not be opened
+    */
+   public synchronized File get(String key) throws IOException {
+      open();
+      String name = toFileName(key);
+      if (!entries.containsKey(name)) {
+         return null;
+      }
+      File file = new File(directory, name);
+      if (!file.exists()) {
+         removeEntry(name);
+         return null;
+      }
+      appendToJournal(READ, name, -1, false);
+      rebuildJournalIfNeeded();
+      return file;
+   }
+
+   /**
+    * Create a temp file to write a new cached file.
+    *
+    * @return empty temp file
+    * @throws IOException if the file can not be created
+    */
+   public File newTempFile() throws IOException {
+      synchronized (this) {
+         open();
+      }
+      return File.createTempFile("entry", ".tmp", tempDirectory);
+   }
+
+   /**
+    * Move the written temp file to the cache, replacing the previous file of the key.
+    *
+    * @param key      key, for example the request key
+    * @param tempFile file created by {@link #newTempFile()}
+    * @return cached file or null if the file is larger than the max size of the cache and is not cached, the temp file is kept in this case
+    * @throws IOException if the file can not be moved
+    */
+   public synchronized File commit(String key, File tempFile) throws IOException {
+      open();
+      long length = tempFile.length();
+      if (length > maxSize) {
+         return null;
+      }
+      String name = toFileName(key);
+      File file = new File(directory, name);
+      FileDownloads.moveTo(tempFile, file);
+      Long previous = entries.put(name, length);
+      if (previous != null) {
+         size -= previous;
+         redundantOps++;
+      }
+      size += length;
+      appendToJournal(PUT, name, length, true);
+      trimToSize();
+      rebuildJournalIfNeeded();
+      return file;
+   }
+
+   /**
+    * Remove the cached file of the key.
+    *
+    * @param key key
+    * @throws IOException if the cache directory can not be opened
+    */
+   public synchronized void remove(String key) throws IOException {
+      open();
+      String name = toFileName(key);
+      if (entries.containsKey(name)) {
+         removeEntry(name);
+         rebuildJournalIfNeeded();
+      }
+   }
+
+   /**
+    * Delete all cached files.
+    *
+    * @throws IOException if the cache directory can not be opened
+    */
+   public synchronized void clear() throws IOException {
+      open();
+      for (String name : entries.keySet()) {
+         new File(directory, name).delete();
+      }
+      entries.clear();
+      size = 0;
+      rebuildJournal();
+   }
+
+   /**
+    * Returns the total size of the cached files.
+    *
+    * @return size in bytes
+    */
+   public synchronized long getSize() {
+      return size;
+   }
+
+   public long getMaxSize() {
+      return maxSize;
+   }
+
+   public File getDirectory() {
+      return directory;
+   }
+
+   /**
+    * Returns the name of the cached file of the key: hex SHA-1 of the key.
+    *
+    * @param key key
+    * @return file name
+    */
+   public static String toFileName(String key) {
+      try {
+         byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+         StringBuilder name = new StringBuilder(digest.length * 2);
+         for (byte b : digest) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16));
+            name.append(Character.forDigit(b & 0xF, 16));
+         }
+         return name.toString();
+      } catch (NoSuchAlgorithmException e) {
+         throw new IllegalStateException(e);
+      } catch (UnsupportedEncodingException e) {
+         throw new IllegalStateException(e);
+      }
+   }
+
+   // ********************************************************************************
+
+   private void open() throws IOException {
+      if (isOpened) {
+         return;
+      }
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+         throw new IOException("Can't create cache directory " + directory);
+      }
+      deleteTempFiles();
+      File journal = new File(directory, JOURNAL);
+      if (journal.exists()) {
+         try {
+            readJournal(journal);
+         } catch (IOException e) {
+            Log.w("Disk cache journal is corrupted, the cache is cleared: " + e.getMessage());
+            deleteEntries();
+         }
+      }
+      isOpened = true;
+      rebuildJournal();
+      trimToSize();
+   }
+
+   private void readJournal(File journal) throws IOException {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), UTF_8));
+      try {
+         if (!MAGIC.equals(reader.readLine()) || !VERSION.equals(reader.readLine())) {
+            throw new IOException("Unexpected journal header");
+         }
+         String line;
+         while ((line = reader.readLine()) != null) {
+            String[] parts = line.split(" ");
+            if (parts.length == 3 && PUT.equals(parts[0])) {
+               Long previous = entries.put(parts[1], Long.parseLong(parts[2]));
+               if (previous != null) {
+                  size -= previous;
+               }
+               size += Long.parseLong(parts[2]);
+            } else if (parts.length == 2 && REMOVE.equals(parts[0])) {
+               Long previous = entries.remove(parts[1]);
+               if (previous != null) {
+                  size -= previous;
+               }
+            } else if (parts.length == 2 && READ.equals(parts[0])) {
+               entries.get(parts[1]);
+            } else {
+               // The last line is incomplete if the process was killed while writing it
+               break;
+            }
+         }
+      } catch (NumberFormatException e) {
+         throw new IOException("Invalid journal line: " + e.getMessage());
+      } finally {
+         reader.close();
+      }
+   }
+
+   /**
+    * Delete all the files of the directory except the temp directory, the entries read before the corrupted line do not list all of
+    * them.
+    */
+   private void deleteEntries() {
+      File[] files = directory.listFiles();
+      if (files != null) {
+         for (File file : files) {
+            if (!file.equals(tempDirectory)) {
+               file.delete();
+            }
+         }
+      }
+      entries.clear();
+      size = 0;
+   }
+
+   private void deleteTempFiles() {
+      File[] files = tempDirectory.listFiles();
+      if (files != null) {
+         for (File file : files) {
+            file.delete();
+         }
+      } else if (!tempDirectory.mkdirs()) {
+         Log.w("Can't create " + tempDirectory);
+      }
+   }
+
+   private void trimToSize() throws IOException {
+      Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+      while (size > maxSize && iterator.hasNext()) {
+         Map.Entry<String, Long> eldest = iterator.next();
+         iterator.remove();
+         size -= eldest.getValue();
+         new File(directory, eldest.getKey()).delete();
+         appendToJournal(REMOVE, eldest.getKey(), -1, false);
+      }
+      journalWriter.flush();
+   }
+
+   private void removeEntry(String name) throws IOException {
+      Long length = entries.remove(name);
+      if (length != null) {
+         size -= length;
+      }
+      new File(directory, name).delete();
+      appendToJournal(REMOVE, name, -1, true);
+   }
+
+   private void appendToJournal(String operation, String name, long length, boolean isFlush) throws IOException {
+      journalWriter.write(operation);
+      journalWriter.write(' ');
+      journalWriter.write(name);
+      if (length >= 0) {
+         journalWriter.write(' ');
+         journalWriter.write(Long.toString(length));
+      }
+      journalWriter.write('\n');
+      if (!PUT.equals(operation)) {
+         redundantOps++;
+      }
+      if (isFlush) {
+         journalWriter.flush();
+      }
+   }
+
+   private void rebuildJournalIfNeeded() throws IOException {
+      if (redundantOps >= REBUILD_THRESHOLD && redundantOps >= entries.size()) {
+         rebuildJournal();
+      }
+   }
+
+   /**
+    * Write the journal with only the current entries in the access order and replace the old one.
+    */
+   private void rebuildJournal() throws IOException {
+      if (journalWriter != null) {
+         journalWriter.close();
+      }
+      File journalTmp = new File(directory, JOURNAL_TMP);
+      Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journalTmp), UTF_8));
+      try {
+         writer.write(MAGIC);
+         writer.write('\n');
+         writer.write(VERSION);
+         writer.write('\n');
+         for (Map.Entry<String, Long> entry : entries.entrySet()) {
+            writer.write(PUT + ' ' + entry.getKey() + ' ' + entry.getValue() + '\n');
+         }
+      } finally {
+         writer.close();
+      }
+      File journal = new File(directory, JOURNAL);
+      if (!journalTmp.renameTo(journal)) {
+         if (!journal.delete() || !journalTmp.renameTo(journal)) {
+            throw new IOException("Can't replace the journal " + journal);
+         }
+      }
+      journalWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journal, true), UTF_8));
+      redundantOps = 0;
+   }
+
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import ua.at.tsvetkov.data_processor.DataProcessorConfiguration;
+import ua.at.tsvetkov.data_processor.platform.Log;
+
+/**
+ * {@link ResponseCache} stored in the {@link DiskCache}. Each response is a file with the validators, the expiration time and the body.
+ *
+ * @author lordtao
+ */
+public class DiskResponseCache implements ResponseCache {
+
+   private static final int    FORMAT_VERSION = 1;
+   private static final String KEY_PREFIX     = "response ";
+
+   private final DiskCache         diskCache;
+   private final CompressedStorage storage;
+   private final int               maxEntrySize;
+
+   /**
+    * @param diskCache disk cache to store the responses
+    */
+   public DiskResponseCache(DiskCache diskCache) {
+      this(diskCache, new CompressedStorage());
+   }
+
+   /**
+    * @param diskCache disk cache to store the responses
+    * @param storage   storage format of the response files
+    */
+   public DiskResponseCache(DiskCache diskCache, CompressedStorage storage) {
+      this(diskCache, storage, DataProcessorConfiguration.DEFAULT_RESPONSE_CACHE_MAX_ENTRY_SIZE);
+   }
+
+   /**
+    * @param diskCache    disk cache to store the responses
+    * @param storage      storage format of the response files
+    * @param maxEntrySize max size of a stored body, a file declaring a larger body is treated as corrupted
+    */
+   public DiskResponseCache(DiskCache diskCache, CompressedStorage storage, int maxEntrySize) {
+      this.diskCache = diskCache;
+      this.storage = storage;
+      this.maxEntrySize = maxEntrySize;
+   }
+
+   @Override
+   public CachedResponse get(String key) {
+      try {
+         File file = diskCache.get(KEY_PREFIX + key);
+         if (file == null) {
+            return null;
+         }
+         return read(file);
+      } catch (IOException e) {
+         Log.w("Can't read cached response " + toLogName(key) + ": " + e.getMessage());
+         remove(key);
+         return null;
+      }
+   }
+
+   @Override
+   public void put(String key, CachedResponse response) {
+      File temp = null;
+      try {
+         temp = diskCache.newTempFile();
+         write(temp, response);
+         if (diskCache.commit(KEY_PREFIX + key, temp) != null) {
+            temp = null;
+         }
+      } catch (IOException e) {
+         Log.w("Can't write cached response " + toLogName(key) + ": " + e.getMessage());
+      } finally {
+         if (temp != null) {
+            temp.delete();
+         }
+      }
+   }
+
+   @Override
+   public void remove(String key) {
+      try {
+         diskCache.remove(KEY_PREFIX + key);
+      } catch (IOException e) {
+         Log.w("Can't remove cached response " + toLogName(key) + ": " + e.getMessage());
+      }
+   }
+
+   /**
+    * Delete all files of the disk cache, including the responses of the disk cached requests.
+    */
+   @Override
+   public void clear() {
+      try {
+         diskCache.clear();
+      } catch (IOException e) {
+         Log.w("Can't clear disk cache: " + e.getMessage());
+      }
+   }
+
+   // ********************************************************************************
+
+   /**
+    * The key may contain a digest of the credentials of the request, only the name of its file is logged.
+    */
+   private static String toLogName(String key) {
+      return DiskCache.toFileName(KEY_PREFIX + key);
+   }
+
+   private CachedResponse read(File file) throws IOException {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(storage.open(file)));
+      try {
+         if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unknown format of " + file);
+         }
+         String eTag = readString(in);
+         String lastModified = readString(in);
+         long storedTime = in.readLong();
+         long expiresTime = in.readLong();
+         int length = in.readInt();
+         if (length < 0 || length > maxEntrySize) {
+            throw new IOException("Wrong body length " + length + " in " + file);
+         }
+         byte[] body = new byte[length];
+         in.readFully(body);
+         return new CachedResponse(body, eTag, lastModified, storedTime, expiresTime);
+      } finally {
+         in.close();
+      }
+   }
+
+   private void write(File file, CachedResponse response) throws IOException {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(storage.newOutputStream(file)));
+      try {
+         out.writeInt(FORMAT_VERSION);
+         writeString(out, response.getETag());
+         writeString(out, response.getLastModified());
+         out.writeLong(response.getStoredTime());
+         out.writeLong(response.getExpiresTime());
+         out.writeInt(response.getSize());
+         out.write(response.getBody());
+      } finally {
+         out.close();
+      }
+   }
+
+   private static String readString(DataInputStream in) throws IOException {
+      return in.readBoolean() ? in.readUTF() : null;
+   }
+
+   private static void writeString(DataOutputStream out, String value) throws IOException {
+      out.writeBoolean(value != null);
+      if (value != null) {
+         out.writeUTF(value);
+      }
+   }
+
+}
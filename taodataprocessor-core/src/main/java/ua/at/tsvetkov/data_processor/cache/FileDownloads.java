@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Files being downloaded, keyed by the file path. Only one request downloads a file, the other requests of the same file wait until
+ * the download is finished and then read the completed file. A file is written to a temp file and is moved to its name with
+ * {@link #moveTo(File, File)} only after it is completed, so a reader never sees a partially written file and does not need a lock.
+ *
+ * @author lordtao
+ */
+public class FileDownloads {
+
+   private final ConcurrentHashMap<String, CountDownLatch> downloads = new ConcurrentHashMap<String, CountDownLatch>();
+
+   /**
+    * Try to become the downloader of the file. The downloader must call {@link #release(String)} when the download is finished.
+    *
+    * @param key path of the file
+    * @return true if the caller must download the file, false if the file is being downloaded by another request
+    */
+   public boolean tryAcquire(String key) {
+      return downloads.putIfAbsent(key, new CountDownLatch(1)) == null;
+   }
+
+   /**
+    * Wait until the current download of the file is finished. Returns at once if the file is not being downloaded.
+    *
+    * @param key     path of the file
+    * @param timeout max time to wait in ms, 0 to wait until the download is finished
+    * @throws SocketTimeoutException if the download is not finished in time
+    * @throws InterruptedIOException if the waiting thread is interrupted, for example the request is cancelled
+    */
+   public void await(String key, long timeout) throws InterruptedIOException {
+      CountDownLatch latch = downloads.get(key);
+      if (latch == null) {
+         return;
+      }
+      try {
+         if (timeout <= 0) {
+            latch.await();
+         } else if (!latch.await(timeout, TimeUnit.MILLISECONDS)) {
+            throw new SocketTimeoutException("The download of " + key + " is not finished in " + timeout + " ms");
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("Interrupted while waiting for the download of " + key);
+      }
+   }
+
+   /**
+    * Finish the download of the file and wake up the requests waiting for it.
+    *
+    * @param key path of the file
+    */
+   public void release(String key) {
+      CountDownLatch latch = downloads.remove(key);
+      if (latch != null) {
+         latch.countDown();
+      }
+   }
+
+   /**
+    * Returns the number of the files being downloaded.
+    *
+    * @return downloads count
+    */
+   public int size() {
+      return downloads.size();
+   }
+
+   /**
+    * Move the completed temp file to its name, replacing the previous file. The temp file must be in the same directory, so the move is
+    * a rename.
+    *
+    * @param tempFile completed temp file
+    * @param file     target file
+    * @throws IOException if the file can not be moved
+    */
+   public static void moveTo(File tempFile, File file) throws IOException {
+      if (!tempFile.renameTo(file)) {
+         if (!file.delete() || !tempFile.renameTo(file)) {
+            throw new IOException("Can't move " + tempFile + " to " + file);
+         }
+      }
+   }
+
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+/**
+ * Count-Min sketch of the access frequency of the keys with 4-bit counters, the admission filter of TinyLFU. The counters are halved after
+ * a sample of accesses, so the frequency of the keys which are not used anymore decays. Not thread safe.
+ *
+ * @author lordtao
+ */
+final class FrequencySketch {
+
+   private static final long[] SEED       = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+   private static final long   RESET_MASK = 0x7777777777777777L;
+   private static final long   ONE_MASK   = 0x1111111111111111L;
+   private static final int    MAX_COUNT  = 15;
+
+   private final long[] table;
+   private final int    tableMask;
+   private final int    sampleSize;
+   private int size;
+
+   /**
+    * @param maxEntries expected max number of the entries of the cache
+    */
+   FrequencySketch(int maxEntries) {
+      int capacity = ceilingPowerOfTwo(Math.max(maxEntries, 16));
+      table = new long[capacity];
+      tableMask = capacity - 1;
+      sampleSize = 10 * capacity;
+   }
+
+   /**
+    * Returns the estimated number of the accesses of the key, up to 15.
+    *
+    * @param hash hash of the key
+    * @return frequency
+    */
+   int frequency(int hash) {
+      int spread = spread(hash);
+      int start = (spread & 3) << 2;
+      int frequency = MAX_COUNT;
+      for (int i = 0; i < 4; i++) {
+         int count = (int) ((table[indexOf(spread, i)] >>> ((start + i) << 2)) & 0xfL);
+         frequency = Math.min(frequency, count);
+      }
+      return frequency;
+   }
+
+   /**
+    * Count the access of the key.
+    *
+    * @param hash hash of the key
+    */
+   void increment(int hash) {
+      int spread = spread(hash);
+      int start = (spread & 3) << 2;
+      boolean isAdded = false;
+      for (int i = 0; i < 4; i++) {
+         isAdded |= incrementAt(indexOf(spread, i), start + i);
+      }
+      if (isAdded && ++size == sampleSize) {
+         reset();
+      }
+   }
+
+   private boolean incrementAt(int index, int counter) {
+      int offset = counter << 2;
+      long mask = 0xfL << offset;
+      if ((table[index] & mask) != mask) {
+         table[index] += 1L << offset;
+         return true;
+      }
+      return false;
+   }
+
+   private void reset() {
+      int odd = 0;
+      for (int i = 0; i < table.length; i++) {
+         odd += Long.bitCount(table[i] & ONE_MASK);
+         table[i] = (table[i] >>> 1) & RESET_MASK;
+      }
+      size = (size - (odd >>> 2)) >>> 1;
+   }
+
+   private int indexOf(int spread, int i) {
+      long hash = (spread + SEED[i]) * SEED[i];
+      hash += hash >>> 32;
+      return ((int) hash) & tableMask;
+   }
+
+   private static int spread(int x) {
+      x = ((x >>> 16) ^ x) * 0x45d9f3b;
+      x = ((x >>> 16) ^ x) * 0x45d9f3b;
+      return (x >>> 16) ^ x;
+   }
+
+   static int ceilingPowerOfTwo(int x) {
+      return 1 << -Integer.numberOfLeadingZeros(x - 1);
+   }
+
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory {@link ResponseCache}, bounded by the total size of the stored bodies. The least recently used responses are evicted first.
+ *
+ * @author lordtao
+ */
+public class MemoryResponseCache implements ResponseCache {
+
+   public static final int DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+
+   private final LinkedHashMap<String, CachedResponse> responses = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true);
+   private final int maxSize;
+   private int  size;
+   private long hitCount;
+   private long missCount;
+
+   public MemoryResponseCache() {
+      this(DEFAULT_MAX_SIZE);
+   }
+
+   /**
+    * @param maxSize max total size of the stored bodies in bytes
+    */
+   public MemoryResponseCache(int maxSize) {
+      if (maxSize <= 0) {
+         throw new IllegalArgumentException("Max size must be positive: " + maxSize);
+      }
+      this.maxSize = maxSize;
+   }
+
+   @Override
+   public synchronized CachedResponse get(String key) {
+      CachedResponse response = responses.get(key);
+      if (response == null) {
+         missCount++;
+      } else {
+         hitCount++;
+      }
+      return response;
+   }
+
+   @Override
+   public synchronized void put(String key, CachedResponse response) {
+      if (response.getSize() > maxSize) {
+         remove(key);
+         return;
+      }
+      CachedResponse previous = responses.put(key, response);
+      if (previous != null) {
+         size -= previous.getSize();
+      }
+      size += response.getSize();
+      trimToSize(maxSize);
+   }
+
+   /**
+    * Evict the least recently used responses until the total size of the bodies is not greater than the given one.
+    *
+    * @param size size in bytes
+    */
+   public synchronized void trimToSize(int size) {
+      Iterator<Map.Entry<String, CachedResponse>> iterator = responses.entrySet().iterator();
+      while (this.size > size && iterator.hasNext()) {
+         this.size -= iterator.next().getValue().getSize();
+         iterator.remove();
+      }
+   }
+
+   @Override
+   public synchronized void remove(String key) {
+      CachedResponse previous = responses.remove(key);
+      if (previous != null) {
+         size -= previous.getSize();
+      }
+   }
+
+   @Override
+   public synchronized void clear() {
+      responses.clear();
+      size = 0;
+   }
+
+   /**
+    * Returns the total size of the stored bodies.
+    *
+    * @return size in bytes
+    */
+   public synchronized int getSize() {
+      return size;
+   }
+
+   public int getMaxSize() {
+      return maxSize;
+   }
+
+   public synchronized long getHitCount() {
+      return hitCount;
+   }
+
+   public synchronized long getMissCount() {
+      return missCount;
+   }
+
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recent failures of the requests, keyed by request or by host. After a failure the key is backed off: its requests are not sent until
+ * the backoff window is over, so they do not hold the workers for the whole timeout while the server is down. The window is doubled on
+ * every next failure up to the max backoff and is dropped on a success. When the window is over only one request probes the server, the
+ * others stay backed off until its result.
+ *
+ * @author lordtao
+ */
+public class NegativeCache {
+
+   public static final long DEFAULT_BACKOFF     = 5 * 1000;
+   public static final long DEFAULT_MAX_BACKOFF = 5 * 60 * 1000;
+
+   private final ConcurrentHashMap<String, Failure> failures = new ConcurrentHashMap<String, Failure>();
+   private final long    backoff;
+   private final long    maxBackoff;
+   private final boolean isPerHost;
+
+   public NegativeCache() {
+      this(DEFAULT_BACKOFF, DEFAULT_MAX_BACKOFF, false);
+   }
+
+   /**
+    * @param backoff    backoff window after the first failure in ms
+    * @param maxBackoff max backoff window in ms
+    * @param isPerHost  back off the whole host instead of the failed request only
+    */
+   public NegativeCache(long backoff, long maxBackoff, boolean isPerHost) {
+      if (backoff <= 0 || maxBackoff < backoff) {
+         throw new IllegalArgumentException("Wrong backoff: " + backoff + ".." + maxBackoff);
+      }
+      this.backoff = backoff;
+      this.maxBackoff = maxBackoff;
+      this.isPerHost = isPerHost;
+   }
+
+   /**
+    * Returns the time left until the requests of the key may be sent again. If the window is over, the caller becomes the probe of the
+    * key and gets 0, the other callers get the time left until the probe is timed out.
+    *
+    * @param key request key or host
+    * @return time in ms, 0 if the request must be sent
+    */
+   public long getBackoff(String key) {
+      Failure failure = failures.get(key);
+      if (failure == null) {
+         return 0;
+      }
+      long now = System.currentTimeMillis();
+      long until = failure.until.get();
+      if (now < until) {
+         return until - now;
+      }
+      // A probe which never reports its result releases the key after one more window
+      if (failure.until.compareAndSet(until, now + failure.window)) {
+         return 0;
+      }
+      return Math.max(failure.until.get() - now, 1);
+   }
+
+   /**
+    * Record a failure of the request and back off its key.
+    *
+    * @param key      request key or host
+    * @param sendTime time when the failed request was sent, the failures of the requests sent before the current window was opened are
+    *                 counted once
+    */
+   public void onFailure(String key, long sendTime) {
+      Failure failure = failures.get(key);
+      if (failure == null) {
+         Failure created = new Failure();
+         failure = failures.putIfAbsent(key, created);
+         if (failure == null) {
+            failure = created;
+         }
+      }
+      synchronized (failure) {
+         if (failure.count > 0 && sendTime < failure.windowStart) {
+            return;
+         }
+         failure.count++;
+         failure.window = failure.count == 1 ? backoff : Math.min(failure.window * 2, maxBackoff);
+         failure.windowStart = System.currentTimeMillis();
+         failure.until.set(failure.windowStart + failure.window);
+      }
+   }
+
+   /**
+    * Record a success of the request, its key is not backed off anymore.
+    *
+    * @param key request key or host
+    */
+   public void onSuccess(String key) {
+      failures.remove(key);
+   }
+
+   /**
+    * Forget all failures, for example when the network connection is restored.
+    */
+   public void clear() {
+      failures.clear();
+   }
+
+   /**
+    * Returns the number of the failed keys, including the ones whose window is over.
+    *
+    * @return failed keys count
+    */
+   public int size() {
+      return failures.size();
+   }
+
+   public long getBackoff() {
+      return backoff;
+   }
+
+   public long getMaxBackoff() {
+      return maxBackoff;
+   }
+
+   /**
+    * Returns whether the failures are keyed by host, otherwise by request key.
+    *
+    * @return is per host
+    */
+   public boolean isPerHost() {
+      return isPerHost;
+   }
+
+   private static class Failure {
+
+      private final AtomicLong until = new AtomicLong();
+      private int  count;
+      private long window;
+      private long windowStart;
+
+   }
+
+}
@@ -0,0 +1,516 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import ua.at.tsvetkov.data_processor.processors.Processor;
+
+/**
+ * Cache of the executed processors and their results, safe for use from any thread. It is bounded by the estimated size of the results and
+ * by the number of the results.
+ * <p/>
+ * The eviction policy is W-TinyLFU: a new result enters a small LRU window, then it has to win against the least recently used result of
+ * the main space by the access frequency, which is counted in {@link FrequencySketch}. The main space is a segmented LRU, a result which was
+ * read again moves to its protected segment. So a scan of the results which are requested once does not evict the hot working set.
+ * <p/>
+ * Reads do not take a lock: the accesses are recorded in striped lossy buffers and applied to the policy in batches by the thread which
+ * gets the lock. A processor which is still running holds no result, it joins the policy when it is finished and measured, so the running
+ * requests are never evicted.
+ *
+ * @author lordtao
+ */
+public class ProcessorsCache {
+
+   /**
+    * Size of a result when the size of the response body is unknown.
+    */
+   public static final int DEFAULT_ENTRY_SIZE = 16 * 1024;
+   /**
+    * Size of the processor and the cache entry, added to each result.
+    */
+   public static final int ENTRY_OVERHEAD     = 256;
+
+   /**
+    * Default estimator: a parsed result retains about twice the size of the response body, text is kept in UTF-16 strings.
+    */
+   public static final SizeEstimator<Object> DEFAULT_SIZE_ESTIMATOR = new SizeEstimator<Object>() {
+
+      @Override
+      public long sizeOf(Object result, long bodySize) {
+         return bodySize >= 0 ? bodySize * 2 : DEFAULT_ENTRY_SIZE;
+      }
+
+   };
+
+   private static final int WINDOW_PERCENT    = 1;
+   private static final int PROTECTED_PERCENT = 80;
+   private static final int READ_BUFFER_SIZE  = 16;
+   private static final int READ_BUFFER_MASK  = READ_BUFFER_SIZE - 1;
+   private static final int DRAIN_THRESHOLD   = READ_BUFFER_SIZE / 2;
+
+   private static final int PENDING   = 0;
+   private static final int WINDOW    = 1;
+   private static final int PROBATION = 2;
+   private static final int PROTECTED = 3;
+   private static final int REMOVED   = 4;
+
+   private final ConcurrentHashMap<Object, Node> data = new ConcurrentHashMap<Object, Node>();
+   private final ReadBuffer[]                    readBuffers;
+   private final AtomicLong                      hitCount     = new AtomicLong();
+   private final AtomicLong                      missCount    = new AtomicLong();
+   private final ReentrantLock                   evictionLock = new ReentrantLock();
+   private final Map<Class<?>, SizeEstimator<?>> estimators;
+   private final int                             maxCount;
+   private final long                            maxSize;
+   private final long                            windowMaxSize;
+   private final int                             windowMaxCount;
+   private final long                            protectedMaxSize;
+   private final int                             protectedMaxCount;
+
+   // Guarded by evictionLock
+   private final FrequencySketch sketch;
+   private final NodeDeque       pending        = new NodeDeque();
+   private final NodeDeque       window         = new NodeDeque();
+   private final NodeDeque       probation      = new NodeDeque();
+   private final NodeDeque       protectedNodes = new NodeDeque();
+   private long size;
+   private int  count;
+   private long windowSize;
+   private int  windowCount;
+   private long protectedSize;
+   private int  protectedCount;
+   private long evictionCount;
+
+   /**
+    * @param maxCount   max number of the entries
+    * @param maxSize    max total size of the results in bytes
+    * @param estimators size estimators of the result classes
+    */
+   public ProcessorsCache(int maxCount, long maxSize, Map<Class<?>, SizeEstimator<?>> estimators) {
+      if (maxCount <= 0 || maxSize <= 0) {
+         throw new IllegalArgumentException("Wrong cache settings: maxCount = " + maxCount + ", maxSize = " + maxSize);
+      }
+      this.maxCount = maxCount;
+      this.maxSize = maxSize;
+      this.estimators = new LinkedHashMap<Class<?>, SizeEstimator<?>>(estimators);
+      windowMaxSize = maxSize * WINDOW_PERCENT / 100;
+      windowMaxCount = Math.max(1, maxCount * WINDOW_PERCENT / 100);
+      protectedMaxSize = (maxSize - windowMaxSize) * PROTECTED_PERCENT / 100;
+      protectedMaxCount = (maxCount - windowMaxCount) * PROTECTED_PERCENT / 100;
+      sketch = new FrequencySketch(maxCount);
+      readBuffers = new ReadBuffer[FrequencySketch.ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors())];
+      for (int i = 0; i < readBuffers.length; i++) {
+         readBuffers[i] = new ReadBuffer();
+      }
+   }
+
+   /**
+    * Returns the default max size of the cache: 1/16 of the heap, so the devices with more memory keep more results.
+    *
+    * @return size in bytes
+    */
+   public static long getDefaultMaxSize() {
+      return Runtime.getRuntime().maxMemory() / 16;
+   }
+
+   public Processor<?> get(Object key) {
+      Node node = data.get(key);
+      if (node == null) {
+         missCount.incrementAndGet();
+         return null;
+      }
+      hitCount.incrementAndGet();
+      ReadBuffer buffer = readBuffers[(int) Thread.currentThread().getId() & (readBuffers.length - 1)];
+      boolean isDrainNeeded = buffer.offer(node);
+      if ((isDrainNeeded || (node.queue == PENDING && node.processor.isFinished())) && evictionLock.tryLock()) {
+         try {
+            maintenance();
+         } finally {
+            evictionLock.unlock();
+         }
+      }
+      return node.processor;
+   }
+
+   public Processor<?> put(Object key, Processor<?> processor) {
+      return put(key, processor, false);
+   }
+
+   /**
+    * Put the processor if there is no processor with the key. Used to start only one execution when several threads miss the same key.
+    *
+    * @param key       key
+    * @param processor processor
+    * @return the processor with the key or null if the given one was put
+    */
+   public Processor<?> putIfAbsent(Object key, Processor<?> processor) {
+      return put(key, processor, true);
+   }
+
+   private Processor<?> put(Object key, Processor<?> processor, boolean isOnlyIfAbsent) {
+      evictionLock.lock();
+      try {
+         Node previous = data.get(key);
+         if (previous != null && isOnlyIfAbsent) {
+            onAccess(previous);
+            return previous.processor;
+         }
+         Node node = new Node(key, processor);
+         data.put(key, node);
+         if (previous != null) {
+            unlink(previous);
+         }
+         sketch.increment(key.hashCode());
+         pending.addLast(node);
+         maintenance();
+         return previous == null ? null : previous.processor;
+      } finally {
+         evictionLock.unlock();
+      }
+   }
+
+   /**
+    * Evict the results until the total size is not greater than the given one, the results on probation first. Used to release the
+    * memory on memory pressure, the cache fills up again to its max size later.
+    *
+    * @param size size in bytes
+    */
+   public void trimToSize(long size) {
+      evictionLock.lock();
+      try {
+         maintenance();
+         while (this.size > size) {
+            Node victim = probation.peekFirst();
+            if (victim == null) {
+               victim = window.peekFirst();
+            }
+            if (victim == null) {
+               victim = protectedNodes.peekFirst();
+            }
+            if (victim == null) {
+               break;
+            }
+            evict(victim);
+         }
+      } finally {
+         evictionLock.unlock();
+      }
+   }
+
+   /**
+    * Evict all finished processors. The running ones are kept, so their requests are not executed twice.
+    */
+   public void clear() {
+      trimToSize(0);
+   }
+
+   /**
+    * Returns the estimated total size of the results.
+    *
+    * @return size in bytes
+    */
+   public long getSize() {
+      evictionLock.lock();
+      try {
+         maintenance();
+         return size;
+      } finally {
+         evictionLock.unlock();
+      }
+   }
+
+   public long getMaxSize() {
+      return maxSize;
+   }
+
+   public int getCount() {
+      return data.size();
+   }
+
+   public int getMaxCount() {
+      return maxCount;
+   }
+
+   public long getHitCount() {
+      return hitCount.get();
+   }
+
+   public long getMissCount() {
+      return missCount.get();
+   }
+
+   public long getEvictionCount() {
+      evictionLock.lock();
+      try {
+         return evictionCount;
+      } finally {
+         evictionLock.unlock();
+      }
+   }
+
+   private void maintenance() {
+      for (ReadBuffer buffer : readBuffers) {
+         buffer.drainedCount = buffer.writeCount.get();
+         for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+            Node node = buffer.nodes.getAndSet(i, null);
+            if (node != null) {
+               onAccess(node);
+            }
+         }
+      }
+      for (Node node = pending.peekFirst(); node != null; ) {
+         Node next = pending.nextOf(node);
+         if (node.processor.isFinished()) {
+            pending.remove(node);
+            node.size = sizeOf(node.processor);
+            size += node.size;
+            count++;
+            windowSize += node.size;
+            windowCount++;
+            window.addLast(node);
+            node.queue = WINDOW;
+         }
+         node = next;
+      }
+      evictOverflow();
+   }
+
+   private void onAccess(Node node) {
+      if (node.queue == REMOVED) {
+         return;
+      }
+      sketch.increment(node.key.hashCode());
+      if (node.queue == WINDOW) {
+         window.moveToBack(node);
+      } else if (node.queue == PROBATION) {
+         probation.remove(node);
+         protectedNodes.addLast(node);
+         node.queue = PROTECTED;
+         protectedSize += node.size;
+         protectedCount++;
+         while (protectedSize > protectedMaxSize || protectedCount > protectedMaxCount) {
+            Node demoted = protectedNodes.peekFirst();
+            protectedNodes.remove(demoted);
+            protectedSize -= demoted.size;
+            protectedCount--;
+            probation.addLast(demoted);
+            demoted.queue = PROBATION;
+         }
+      } else if (node.queue == PROTECTED) {
+         protectedNodes.moveToBack(node);
+      }
+   }
+
+   private void evictOverflow() {
+      Node candidate = null;
+      while (windowSize > windowMaxSize || windowCount > windowMaxCount) {
+         Node node = window.peekFirst();
+         window.remove(node);
+         windowSize -= node.size;
+         windowCount--;
+         probation.addLast(node);
+         node.queue = PROBATION;
+         if (candidate == null) {
+            candidate = node;
+         }
+      }
+      while (size > maxSize || count > maxCount) {
+         Node victim = probation.peekFirst();
+         if (victim == null) {
+            victim = protectedNodes.peekFirst();
+         }
+         if (victim == null) {
+            victim = window.peekFirst();
+         }
+         if (victim == null) {
+            break;
+         }
+         if (candidate == null || candidate == victim) {
+            if (candidate == victim) {
+               candidate = probation.nextOf(candidate);
+            }
+            evict(victim);
+         } else if (candidate.size > maxSize || sketch.frequency(candidate.key.hashCode()) <= sketch.frequency(victim.key.hashCode())) {
+            Node next = probation.nextOf(candidate);
+            evict(candidate);
+            candidate = next;
+         } else {
+            evict(victim);
+         }
+      }
+   }
+
+   private void evict(Node node) {
+      data.remove(node.key, node);
+      unlink(node);
+      evictionCount++;
+   }
+
+   private void unlink(Node node) {
+      if (node.queue != PENDING && node.queue != REMOVED) {
+         count--;
+      }
+      switch (node.queue) {
+         case PENDING:
+            pending.remove(node);
+            break;
+         case WINDOW:
+            window.remove(node);
+            windowSize -= node.size;
+            windowCount--;
+            size -= node.size;
+            break;
+         case PROBATION:
+            probation.remove(node);
+            size -= node.size;
+            break;
+         case PROTECTED:
+            protectedNodes.remove(node);
+            protectedSize -= node.size;
+            protectedCount--;
+            size -= node.size;
+            break;
+         default:
+            break;
+      }
+      node.queue = REMOVED;
+   }
+
+   private long sizeOf(Processor<?> processor) {
+      Object result = processor.getResult();
+      if (result == null) {
+         return ENTRY_OVERHEAD;
+      }
+      long resultSize = findEstimator(result.getClass()).sizeOf(result, processor.getBodySize());
+      if (resultSize < 0) {
+         throw new IllegalStateException("Negative size of " + result.getClass().getName() + ": " + resultSize);
+      }
+      return resultSize + ENTRY_OVERHEAD;
+   }
+
+   @SuppressWarnings("unchecked")
+   private SizeEstimator<Object> findEstimator(Class<?> clazz) {
+      for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+         SizeEstimator<?> estimator = estimators.get(c);
+         if (estimator == null) {
+            for (Class<?> i : c.getInterfaces()) {
+               estimator = estimators.get(i);
+               if (estimator != null) {
+                  break;
+               }
+            }
+         }
+         if (estimator != null) {
+            return (SizeEstimator<Object>) estimator;
+         }
+      }
+      return DEFAULT_SIZE_ESTIMATOR;
+   }
+
+   private static final class Node {
+
+      private final Object       key;
+      private final Processor<?> processor;
+      private volatile int queue = PENDING;
+      private long size;
+      private Node prev;
+      private Node next;
+
+      private Node(Object key, Processor<?> processor) {
+         this.key = key;
+         this.processor = processor;
+      }
+
+   }
+
+   /**
+    * Doubly linked list of the nodes in the access order, the least recently used node is the first.
+    */
+   private static final class NodeDeque {
+
+      private final Node head = new Node(null, null);
+
+      private NodeDeque() {
+         head.prev = head;
+         head.next = head;
+      }
+
+      private Node peekFirst() {
+         return head.next == head ? null : head.next;
+      }
+
+      private Node nextOf(Node node) {
+         return node.next == head ? null : node.next;
+      }
+
+      private void addLast(Node node) {
+         node.prev = head.prev;
+         node.next = head;
+         head.prev.next = node;
+         head.prev = node;
+      }
+
+      private void remove(Node node) {
+         node.prev.next = node.next;
+         node.next.prev = node.prev;
+         node.prev = null;
+         node.next = null;
+      }
+
+      private void moveToBack(Node node) {
+         remove(node);
+         addLast(node);
+      }
+
+   }
+
+   /**
+    * Lossy buffer of the reads of one stripe: when it is full the oldest reads are overwritten, so a read never waits for the lock.
+    */
+   private static final class ReadBuffer {
+
+      private final AtomicReferenceArray<Node> nodes      = new AtomicReferenceArray<Node>(READ_BUFFER_SIZE);
+      private final AtomicLong                 writeCount = new AtomicLong();
+      private volatile long drainedCount;
+
+      /**
+       * Record the read.
+       *
+       * @return whether the buffer should be drained
+       */
+      private boolean offer(Node node) {
+         long count = writeCount.getAndIncrement();
+         nodes.lazySet((int) (count & READ_BUFFER_MASK), node);
+         return count - drainedCount >= DRAIN_THRESHOLD;
+      }
+
+   }
+
+}
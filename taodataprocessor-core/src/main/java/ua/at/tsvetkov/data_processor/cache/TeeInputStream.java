@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import ua.at.tsvetkov.data_processor.platform.Log;
+
+/**
+ * Writes the response body to a file while it is read by the parser, so the body is parsed as it arrives and is not read from the disk
+ * again. If the parser stops before the end, the rest of the body is copied on {@link #close()}. A failed write does not break the
+ * reading: the file is deleted and the body is still returned to the parser. The file is written in the format of the
+ * {@link CompressedStorage}.
+ *
+ * @author lordtao
+ */
+public class TeeInputStream extends FilterInputStream {
+
+   private static final int BUFFER = 8 * 1024;
+
+   private final File         file;
+   private       OutputStream out;
+   private       boolean      isEof;
+   private       boolean      isFailed;
+
+   /**
+    * @param in   response body
+    * @param file file to write the body to as is, it is created or truncated
+    * @throws IOException if the file can not be opened
+    */
+   public TeeInputStream(InputStream in, File file) throws IOException {
+      this(in, file, new CompressedStorage());
+   }
+
+   /**
+    * @param in      response body
+    * @param file    file to write the body to, it is created or truncated
+    * @param storage storage format of the file
+    * @throws IOException if the file can not be opened
+    */
+   public TeeInputStream(InputStream in, File file, CompressedStorage storage) throws IOException {
+      super(in);
+      this.file = file;
+      out = storage.newOutputStream(file);
+   }
+
+   @Override
+   public int read() throws IOException {
+      int b = in.read();
+      if (b == -1) {
+         finishCopy();
+      } else if (out != null) {
+         try {
+            out.write(b);
+         } catch (IOException e) {
+            failCopy(e);
+         }
+      }
+      return b;
+   }
+
+   @Override
+   public int read(byte[] buffer, int offset, int count) throws IOException {
+      int bytesRead = in.read(buffer, offset, count);
+      if (bytesRead == -1) {
+         finishCopy();
+      } else if (bytesRead > 0 && out != null) {
+         try {
+            out.write(buffer, offset, bytesRead);
+         } catch (IOException e) {
+            failCopy(e);
+         }
+      }
+      return bytesRead;
+   }
+
+   @Override
+   public long skip(long count) throws IOException {
+      // Skipped bytes are read, so that they are written to the file too
+      byte[] buffer = new byte[(int) Math.min(BUFFER, Math.max(count, 1))];
+      long skipped = 0;
+      while (skipped < count) {
+         int bytesRead = read(buffer, 0, (int) Math.min(buffer.length, count - skipped));
+         if (bytesRead == -1) {
+            break;
+         }
+         skipped += bytesRead;
+      }
+      return skipped;
+   }
+
+   @Override
+   public boolean markSupported() {
+      return false;
+   }
+
+   /**
+    * Copy the rest of the body to the file and close the stream.
+    */
+   @Override
+   public void close() throws IOException {
+      try {
+         if (out != null) {
+            byte[] buffer = new byte[BUFFER];
+            while (out != null && read(buffer, 0, buffer.length) != -1) {
+               // Drain the rest of the body to the file
+            }
+         }
+      } catch (IOException e) {
+         failCopy(e);
+      } finally {
+         super.close();
+      }
+   }
+
+   /**
+    * Returns whether the whole body was written to the file.
+    *
+    * @return is complete
+    */
+   public boolean isComplete() {
+      return isEof && !isFailed;
+   }
+
+   public File getFile() {
+      return file;
+   }
+
+   private void finishCopy() {
+      if (out != null) {
+         try {
+            out.close();
+            out = null;
+            isEof = true;
+         } catch (IOException e) {
+            failCopy(e);
+         }
+      }
+   }
+
+   private void failCopy(IOException e) {
+      if (!isFailed) {
+         Log.w("Can't write the response to " + file, e);
+      }
+      isFailed = true;
+      if (out != null) {
+         try {
+            out.close();
+         } catch (IOException ignored) {
+            // Closed anyway
+         }
+         out = null;
+      }
+      file.delete();
+   }
+
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+/**
+ * Two-tier {@link ResponseCache}: hot responses are kept in memory, all of them are written through to disk. A response found only on
+ * disk is promoted to memory, a response evicted from memory stays on disk. Thus after a restart the responses are served from disk.
+ *
+ * @author lordtao
+ */
+public class TieredResponseCache implements ResponseCache {
+
+   private final MemoryResponseCache memoryCache;
+   private final ResponseCache       diskCache;
+   private long memoryHitCount;
+   private long diskHitCount;
+   private long missCount;
+
+   /**
+    * @param memoryCache memory tier
+    * @param diskCache   disk tier
+    */
+   public TieredResponseCache(MemoryResponseCache memoryCache, ResponseCache diskCache) {
+      this.memoryCache = memoryCache;
+      this.diskCache = diskCache;
+   }
+
+   @Override
+   public CachedResponse get(String key) {
+      CachedResponse response = memoryCache.get(key);
+      if (response != null) {
+         count(true, false);
+         return response;
+      }
+      response = diskCache.get(key);
+      if (response != null) {
+         memoryCache.put(key, response);
+      }
+      count(false, response != null);
+      return response;
+   }
+
+   @Override
+   public void put(String key, CachedResponse response) {
+      memoryCache.put(key, response);
+      diskCache.put(key, response);
+   }
+
+   @Override
+   public void remove(String key) {
+      memoryCache.remove(key);
+      diskCache.remove(key);
+   }
+
+   @Override
+   public void clear() {
+      memoryCache.clear();
+      diskCache.clear();
+   }
+
+   public MemoryResponseCache getMemoryCache() {
+      return memoryCache;
+   }
+
+   public ResponseCache getDiskCache() {
+      return diskCache;
+   }
+
+   public synchronized long getMemoryHitCount() {
+      return memoryHitCount;
+   }
+
+   public synchronized long getDiskHitCount() {
+      return diskHitCount;
+   }
+
+   public synchronized long getMissCount() {
+      return missCount;
+   }
+
+   private synchronized void count(boolean isMemoryHit, boolean isDiskHit) {
+      if (isMemoryHit) {
+         memoryHitCount++;
+      } else if (isDiskHit) {
+         diskHitCount++;
+      } else {
+         missCount++;
+      }
+   }
+
+}
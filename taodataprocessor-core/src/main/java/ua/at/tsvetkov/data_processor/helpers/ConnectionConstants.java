@@ -16,6 +16,19 @@ public final class ConnectionConstants {
     * No internet connection
     */
    public static final int NO_INTERNET_CONNECTION = 1001;
+   /**
+    * Request was discarded by the thread pool because its queue was full.
+    */
+   public static final int REQUEST_DISCARDED = 1002;
+   /**
+    * Request was not started because the host reached its in-flight requests limit.
+    */
+   public static final int HOST_LIMIT_EXCEEDED = 1003;
+   /**
+    * Request was not sent because recent requests to it failed and it is backed off, see
+    * {@link ua.at.tsvetkov.data_processor.cache.NegativeCache NegativeCache}.
+    */
+   public static final int BACKED_OFF = 1004;
    /**
     * HTTP Status-Code 202: Accepted.
     */
@@ -141,6 +154,9 @@ public final class ConnectionConstants {
    @IntDef({
            FILE_SUCCESS,
            NO_INTERNET_CONNECTION,
+           REQUEST_DISCARDED,
+           HOST_LIMIT_EXCEEDED,
+           BACKED_OFF,
            HttpURLConnection.HTTP_ACCEPTED,
            HttpURLConnection.HTTP_BAD_GATEWAY,
            HttpURLConnection.HTTP_BAD_METHOD,
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.helpers;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from the stream.
+ *
+ * @author lordtao
+ */
+public class CountingInputStream extends FilterInputStream {
+
+   private long count;
+
+   public CountingInputStream(InputStream in) {
+      super(in);
+   }
+
+   @Override
+   public int read() throws IOException {
+      int b = in.read();
+      if (b != -1) {
+         count++;
+      }
+      return b;
+   }
+
+   @Override
+   public int read(byte[] buffer, int offset, int length) throws IOException {
+      int n = in.read(buffer, offset, length);
+      if (n > 0) {
+         count += n;
+      }
+      return n;
+   }
+
+   @Override
+   public long skip(long n) throws IOException {
+      long skipped = in.skip(n);
+      count += skipped;
+      return skipped;
+   }
+
+   @Override
+   public boolean markSupported() {
+      return false;
+   }
+
+   /**
+    * Returns the number of the bytes read or skipped.
+    *
+    * @return count of bytes
+    */
+   public long getCount() {
+      return count;
+   }
+
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.platform;
+
+/**
+ * Log of the data processor, printed by the current {@link Platform}.
+ *
+ * @author lordtao
+ */
+public final class Log {
+
+   public static final int VERBOSE = 2;
+   public static final int DEBUG   = 3;
+   public static final int INFO    = 4;
+   public static final int WARN    = 5;
+   public static final int ERROR   = 6;
+
+   private Log() {
+   }
+
+   public static void v(String message) {
+      Platform.get().log(VERBOSE, message, null);
+   }
+
+   public static void d(String message) {
+      Platform.get().log(DEBUG, message, null);
+   }
+
+   public static void i(String message) {
+      Platform.get().log(INFO, message, null);
+   }
+
+   public static void w(String message) {
+      Platform.get().log(WARN, message, null);
+   }
+
+   public static void w(String message, Throwable throwable) {
+      Platform.get().log(WARN, message, throwable);
+   }
+
+   public static void e(String message) {
+      Platform.get().log(ERROR, message, null);
+   }
+
+   public static void e(Throwable throwable) {
+      Platform.get().log(ERROR, String.valueOf(throwable), throwable);
+   }
+
+   public static void e(String message, Throwable throwable) {
+      Platform.get().log(ERROR, message, throwable);
+   }
+
+   public static void threadInfo(Thread thread, Throwable throwable) {
+      Platform.get().logThreadInfo(thread, throwable);
+   }
+
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.platform;
+
+import android.support.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Levels of the memory pressure for {@link ua.at.tsvetkov.data_processor.DataProcessor#trimMemory(int)}. The values are equal to the
+ * {@code TRIM_MEMORY_*} levels of {@code android.content.ComponentCallbacks2}, so the level of {@code onTrimMemory()} is passed as is.
+ *
+ * @author lordtao
+ */
+public final class MemoryTrimLevel {
+
+   /**
+    * The process is near the end of the background LRU list and will be killed soon.
+    */
+   public static final int COMPLETE         = 80;
+   /**
+    * The process is in the middle of the background LRU list.
+    */
+   public static final int MODERATE         = 60;
+   /**
+    * The process went to the background LRU list.
+    */
+   public static final int BACKGROUND       = 40;
+   /**
+    * The UI of the process is not visible anymore.
+    */
+   public static final int UI_HIDDEN        = 20;
+   /**
+    * The process is running, but the system is about to kill the background processes.
+    */
+   public static final int RUNNING_CRITICAL = 15;
+   /**
+    * The process is running, but the device is low on memory.
+    */
+   public static final int RUNNING_LOW      = 10;
+   /**
+    * The process is running, but the device begins to run low on memory.
+    */
+   public static final int RUNNING_MODERATE = 5;
+
+   @Retention(RetentionPolicy.SOURCE)
+   @IntDef({COMPLETE, MODERATE, BACKGROUND, UI_HIDDEN, RUNNING_CRITICAL, RUNNING_LOW, RUNNING_MODERATE})
+   public @interface TrimLevel {
+   }
+
+   private MemoryTrimLevel() {}
+
+}
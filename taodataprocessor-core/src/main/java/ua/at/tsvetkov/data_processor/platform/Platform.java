@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.platform;
+
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Access to the facilities of the runtime platform: event loop of the calling thread, UI thread and logging. The core of the data
+ * processor does not depend on Android, on Android this class is replaced by {@code AndroidPlatform} from the android module, which is
+ * found on the classpath at runtime. On a plain JVM the default implementation is used.
+ *
+ * @author lordtao
+ */
+public class Platform {
+
+   private static final String ANDROID_PLATFORM = "ua.at.tsvetkov.data_processor.platform.AndroidPlatform";
+   private static final Logger LOGGER           = Logger.getLogger("DataProcessor");
+
+   private static volatile Platform platform = findPlatform();
+
+   /**
+    * Returns the current platform.
+    *
+    * @return platform
+    */
+   public static Platform get() {
+      return platform;
+   }
+
+   /**
+    * Replace the platform, for example to redirect the log of the data processor.
+    *
+    * @param platform new platform
+    */
+   public static void set(Platform platform) {
+      if (platform == null) {
+         throw new IllegalArgumentException("Platform can not be null.");
+      }
+      Platform.platform = platform;
+   }
+
+   private static Platform findPlatform() {
+      try {
+         return (Platform) Class.forName(ANDROID_PLATFORM).getDeclaredConstructor().newInstance();
+      } catch (ClassNotFoundException e) {
+         return new Platform();
+      } catch (Exception | LinkageError e) {
+         // The android module is on the classpath but broken, Log is not available until the platform is created
+         LOGGER.log(Level.SEVERE, "Can't create " + ANDROID_PLATFORM + ", the JVM platform is used", e);
+         return new Platform();
+      }
+   }
+
+   /**
+    * Returns the executor which runs tasks in the event loop of the calling thread, or null if the thread has no event loop. Callbacks
+    * of a request are delivered through it to the thread which started the request.
+    *
+    * @return event loop executor or null
+    */
+   public Executor getCurrentThreadExecutor() {
+      return null;
+   }
+
+   /**
+    * Returns whether the platform has a dedicated UI thread.
+    *
+    * @return has UI thread
+    */
+   public boolean hasMainThread() {
+      return false;
+   }
+
+   /**
+    * Returns whether the calling thread is the UI thread.
+    *
+    * @return is UI thread
+    */
+   public boolean isMainThread() {
+      return false;
+   }
+
+   /**
+    * Print the message to the log.
+    *
+    * @param level     one of {@link Log} levels
+    * @param message   message
+    * @param throwable error or null
+    */
+   public void log(int level, String message, Throwable throwable) {
+      LOGGER.log(toLevel(level), message, throwable);
+   }
+
+   /**
+    * Print to the log the error which terminated the thread.
+    *
+    * @param thread    terminated thread
+    * @param throwable error
+    */
+   public void logThreadInfo(Thread thread, Throwable throwable) {
+      LOGGER.log(Level.SEVERE, "Uncaught exception in thread " + thread.getName(), throwable);
+   }
+
+   private static Level toLevel(int level) {
+      switch (level) {
+         case Log.VERBOSE:
+            return Level.FINER;
+         case Log.DEBUG:
+            return Level.FINE;
+         case Log.INFO:
+            return Level.INFO;
+         case Log.WARN:
+            return Level.WARNING;
+         default:
+            return Level.SEVERE;
+      }
+   }
+
+}
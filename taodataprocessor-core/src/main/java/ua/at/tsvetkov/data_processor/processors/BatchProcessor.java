@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.processors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
+import ua.at.tsvetkov.data_processor.platform.Log;
+import ua.at.tsvetkov.data_processor.platform.Platform;
+import ua.at.tsvetkov.data_processor.requests.Request;
+
+/**
+ * Executes a list of requests with at most <b>parallelism</b> of them in the thread pool at once. The next request is submitted when
+ * one of the running requests finishes, so a large batch does not flood the pool queue. Results of the items are reported in the worker
+ * threads as they complete and the aggregated result is delivered once in the thread which started the batch.
+ *
+ * @param <T> class of the result of each request
+ * @author lordtao
+ */
+public class BatchProcessor<T> implements RequestHandle {
+
+   private static final String INVALID_PARALLELISM = "Batch parallelism must be positive: ";
+
+   private final DataProcessor dataProcessor;
+   private final List<Request> requests;
+   private final Class<T> clazz;
+   private final int parallelism;
+   private final BatchCallback<T> callback;
+   private final Thread thread;
+   private final Executor callbackExecutor;
+   private final AtomicInteger nextIndex = new AtomicInteger();
+   private final AtomicInteger finishedCount = new AtomicInteger();
+   private final AtomicReferenceArray<T> results;
+   private final AtomicReferenceArray<RequestHandle> handles;
+   private final AtomicIntegerArray statusCodes;
+   private volatile boolean isCancelled;
+   private volatile boolean isFinished;
+
+   /**
+    * @param dataProcessor data processor
+    * @param requests      built requests
+    * @param clazz         class to generate for each request
+    * @param parallelism   max number of requests executed at once
+    * @param callback      receives the results, can be null
+    */
+   public BatchProcessor(DataProcessor dataProcessor, List<? extends Request> requests, Class<T> clazz, int parallelism, BatchCallback<T> callback) {
+      if (parallelism <= 0) {
+         throw new IllegalArgumentException(INVALID_PARALLELISM + parallelism);
+      }
+      this.dataProcessor = dataProcessor;
+      this.requests = new ArrayList<Request>(requests);
+      this.clazz = clazz;
+      this.parallelism = parallelism;
+      this.callback = callback;
+      results = new AtomicReferenceArray<T>(this.requests.size());
+      handles = new AtomicReferenceArray<RequestHandle>(this.requests.size());
+      statusCodes = new AtomicIntegerArray(this.requests.size());
+
+      callbackExecutor = Platform.get().getCurrentThreadExecutor();
+      thread = Thread.currentThread();
+   }
+
+   /**
+    * Start the batch.
+    *
+    * @return handle to cancel all not finished requests of the batch
+    */
+   public RequestHandle executeAsync() {
+      if (requests.isEmpty()) {
+         finish();
+         return this;
+      }
+      int count = Math.min(parallelism, requests.size());
+      for (int i = 0; i < count; i++) {
+         executeNext();
+      }
+      return this;
+   }
+
+   @Override
+   public boolean cancel() {
+      if (isFinished || isCancelled) {
+         return false;
+      }
+      isCancelled = true;
+      for (int i = 0; i < handles.length(); i++) {
+         RequestHandle handle = handles.get(i);
+         if (handle != null) {
+            handle.cancel();
+         }
+      }
+      return true;
+   }
+
+   @Override
+   public boolean isCancelled() {
+      return isCancelled;
+   }
+
+   @Override
+   public boolean isDone() {
+      return isFinished || isCancelled;
+   }
+
+   private void executeNext() {
+      if (isCancelled) {
+         return;
+      }
+      final int index = nextIndex.getAndIncrement();
+      if (index >= requests.size()) {
+         return;
+      }
+      Processor<T> processor = new Processor<T>(dataProcessor, requests.get(index), clazz, new Processor.Callback<T>() {
+
+         @Override
+         public void onFinish(T obj, @ConnectionConstants.ConnectionResponseCode int statusCode, String errMessage) {
+            onItemFinish(index, obj, statusCode, errMessage);
+         }
+
+      });
+      processor.setDirectDelivery();
+      // The request may finish and clear its slot before the handle is stored, so the handle is cancelled through the local variable
+      RequestHandle handle = processor.executeAsync();
+      handles.set(index, handle);
+      if (isCancelled) {
+         handle.cancel();
+      }
+   }
+
+   private void onItemFinish(int index, T obj, int statusCode, String errMessage) {
+      results.set(index, obj);
+      statusCodes.set(index, statusCode);
+      handles.set(index, null);
+      if (callback != null && !isCancelled) {
+         try {
+            callback.onItemFinish(index, obj, statusCode, errMessage);
+         } catch (Exception e) {
+            Log.e("Error in batch item callback for " + requests.get(index), e);
+         }
+      }
+      executeNext();
+      if (finishedCount.incrementAndGet() == requests.size()) {
+         finish();
+      }
+   }
+
+   private void finish() {
+      isFinished = true;
+      if (callback == null || isCancelled) {
+         return;
+      }
+      ArrayList<T> list = new ArrayList<T>(results.length());
+      for (int i = 0; i < results.length(); i++) {
+         list.add(results.get(i));
+      }
+      final List<T> resultList = Collections.unmodifiableList(list);
+      final int[] codes = new int[statusCodes.length()];
+      for (int i = 0; i < codes.length; i++) {
+         codes[i] = statusCodes.get(i);
+      }
+      if (thread == Thread.currentThread() || callbackExecutor == null) {
+         callback.onFinish(resultList, codes);
+      } else {
+         callbackExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+               callback.onFinish(resultList, codes);
+            }
+         });
+      }
+   }
+
+   public interface BatchCallback<T> {
+
+      /**
+       * Called in a worker thread as soon as a request of the batch is finished. Must be short: the next request of the batch is
+       * submitted after it returns.
+       *
+       * @param index      index of the request in the batch
+       * @param obj        created object or null
+       * @param statusCode status of request execution, see {@link ConnectionConstants}
+       * @param errMessage result message
+       */
+      void onItemFinish(int index, T obj, @ConnectionConstants.ConnectionResponseCode int statusCode, String errMessage);
+
+      /**
+       * Called once, in the thread which started the batch, when all requests of the batch are finished.
+       *
+       * @param results     created objects or nulls, in the order of the requests
+       * @param statusCodes statuses of the requests, in the order of the requests
+       */
+      void onFinish(List<T> results, int[] statusCodes);
+
+   }
+
+}
@@ -0,0 +1,1080 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.processors;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.lang.reflect.Constructor;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.security.DigestInputStream;
+import java.security.InvalidParameterException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.cache.CachedResponse;
+import ua.at.tsvetkov.data_processor.cache.DiskCache;
+import ua.at.tsvetkov.data_processor.cache.FileDownloads;
+import ua.at.tsvetkov.data_processor.cache.NegativeCache;
+import ua.at.tsvetkov.data_processor.cache.TeeInputStream;
+import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
+import ua.at.tsvetkov.data_processor.helpers.CountingInputStream;
+import ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface;
+import ua.at.tsvetkov.data_processor.interfaces.StringDataInterface;
+import ua.at.tsvetkov.data_processor.platform.Log;
+import ua.at.tsvetkov.data_processor.platform.Platform;
+import ua.at.tsvetkov.data_processor.processors.abstractclasses.AbstractProcessor;
+import ua.at.tsvetkov.data_processor.requests.Request;
+import ua.at.tsvetkov.data_processor.requests.WebRequest;
+import ua.at.tsvetkov.data_processor.threads.DataProcessingThreadFactory;
+import ua.at.tsvetkov.data_processor.threads.DataProcessorThreadPool;
+import ua.at.tsvetkov.data_processor.threads.DiscardableRunnable;
+import ua.at.tsvetkov.data_processor.threads.HostConcurrencyLimiter;
+import ua.at.tsvetkov.data_processor.threads.RequestExecutor;
+
+@SuppressWarnings("deprecation")
+public class Processor<T> implements RequestHandle {
+
+   /**
+    * Processing ERROR code.
+    */
+   public static final int ERROR = -1;
+   public static final int BUFFER = 8 * 1024;
+
+   private static final String FILE_EXIST = "File exist: ";
+   private static final String CAN_T_CREATE = "Can't create ";
+   private static final String LOADING_TIME = "Loading time = ";
+   private static final String END_STRING = " ]";
+   private static final String MS = " ms. [ ";
+   private static final String HOST_LIMIT_EXCEEDED = "Request rejected, the host reached its in-flight requests limit.";
+   private static final String REQUEST_CANCELLED = "Request cancelled:";
+   private static final String NO_DISK_CACHE = "Disk cache is not set up in the configuration, the response is not cached: ";
+   private static final String REQUEST_DISCARDED = "Request discarded, the thread pool queue is full.";
+   private static final String BACKED_OFF = "Request is not sent, recent requests to it failed.";
+
+   private static final String INVALID_CLASS_PARAMETER = "Invalid class parameter. A class for data processing must implement InputStreamDataInterface or StringDataInterface either extend AbstractProcessor";
+   private static final String INVALID_PARAMETER = "Invalid parameter. Request or Class can't be eq null";
+
+   private Request request;
+   private AbstractProcessor<T> processor;
+   private InputStream inputStream;
+   private String cacheFileName;
+   private TeeInputStream teeStream;
+   private String diskCacheKey;
+   private String downloadKey;
+   private Class<T> clazz;
+   private volatile Callback<T> callback;
+   private Thread thread;
+   private final Executor callbackExecutor;
+   private DataProcessor dataProcessor;
+   private T result;
+   private volatile boolean isFinished = false;
+   private volatile boolean isCancelled = false;
+   private volatile boolean isAborted = false;
+   private DiscardableRunnable asyncTask;
+   private RequestExecutor taskExecutor;
+   private DataProcessorThreadPool parseExecutor;
+   private Thread workerThread;
+   private boolean isDirectDelivery = false;
+   private List<Follower> followers;
+   private SingleFlightGroup singleFlightGroup;
+   private String singleFlightKey;
+   private int statusCode;
+   private long responseTime;
+   private String limitedHost;
+   private boolean isOpened = false;
+   private long finishTime;
+   private boolean isBodyDigestEnabled = false;
+   private Boolean isNoCache;
+   private Boolean isStaleAllowed;
+   private DigestInputStream digestStream;
+   private byte[] bodyDigest;
+   private CountingInputStream countingStream;
+   private long bodySize = -1;
+
+   /**
+    * @param dataProcessor
+    * @param request
+    * @param clazz
+    */
+   public Processor(DataProcessor dataProcessor, Request request, Class<T> clazz) {
+      if (request == null || clazz == null) {
+         throw new InvalidParameterException(INVALID_PARAMETER);
+      }
+      this.dataProcessor = dataProcessor;
+      this.request = request;
+      this.clazz = clazz;
+      this.callback = null;
+
+      callbackExecutor = Platform.get().getCurrentThreadExecutor();
+      thread = Thread.currentThread();
+   }
+
+   /**
+    * @param dataProcessor
+    * @param request
+    * @param clazz
+    * @param callback
+    */
+   public Processor(DataProcessor dataProcessor, Request request, Class<T> clazz, Callback<T> callback) {
+      if (request == null || clazz == null) {
+         throw new InvalidParameterException(INVALID_PARAMETER);
+      }
+      this.dataProcessor = dataProcessor;
+      this.request = request;
+      this.clazz = clazz;
+      this.callback = callback;
+
+      callbackExecutor = Platform.get().getCurrentThreadExecutor();
+      thread = Thread.currentThread();
+   }
+
+   public T execute() {
+      if (isAborted) {
+         request.dismissProgressDialog();
+         return null;
+      }
+      request.showProgressDialog();
+      if (!isCorrectClass()) {
+         throw new InvalidParameterException(INVALID_CLASS_PARAMETER);
+      }
+      cacheFileName = request.getCacheFileName();
+      NegativeCache negativeCache = dataProcessor.getNegativeCache();
+      String failureKey = getFailureKey(negativeCache);
+      InputStream staleStream = null;
+      if (failureKey != null) {
+         long backoff = negativeCache.getBackoff(failureKey);
+         if (backoff > 0) {
+            staleStream = openStaleResponse();
+            if (staleStream == null) {
+               Log.w(BACKED_OFF + " Retry after " + backoff + " ms " + request);
+               request.dismissProgressDialog();
+               sendMessage(ConnectionConstants.BACKED_OFF, null, BACKED_OFF);
+               return null;
+            }
+            Log.w(BACKED_OFF + " The cached response is used " + request);
+            failureKey = null;
+         }
+      }
+      boolean isFailed = false;
+      boolean isRejected = false;
+      boolean isHandedOff = false;
+      long sendTime = System.currentTimeMillis();
+      try {
+         if (staleStream != null) {
+            inputStream = staleStream;
+         } else if (request.isDiskCached()) {
+            loadThroughDiskCache();
+         } else if (cacheFileName != null && cacheFileName.length() > 0) {
+            saveToFile();
+         } else {
+            inputStream = openInputStream();
+         }
+         if (request.getStatusCode() == ConnectionConstants.FILE_SUCCESS || inputStream != null) {
+            createProcessor();
+         } else {
+            Log.e("Request " + request.toString() + " status:" + request.getStatusCode());
+         }
+         if (processor != null && !isAborted) {
+            if (inputStream != null) {
+               inputStream = countingStream = new CountingInputStream(inputStream);
+            }
+            if (isBodyDigestEnabled && inputStream != null) {
+               inputStream = digestStream = new DigestInputStream(inputStream, newBodyDigest());
+            }
+            if (parseExecutor != null) {
+               isHandedOff = handOffToParseStage();
+            }
+            if (!isHandedOff) {
+               parse(inputStream);
+            }
+         } else {
+            sendMessage(request.getStatusCode(), null, request.getStatusMessage());
+            // sendMessage(request.getStatusCode(), inputStream); WTF???
+         }
+      } catch (HostLimitExceededException e) {
+         isRejected = true;
+         Log.w(HOST_LIMIT_EXCEEDED + " " + e.getMessage() + " " + request);
+         sendMessage(ConnectionConstants.HOST_LIMIT_EXCEEDED, null, HOST_LIMIT_EXCEEDED);
+      } catch (SocketTimeoutException e) {
+         isFailed = true;
+         Log.e("Timeout during creation " + clazz.getSimpleName() + " in request " + request.toString(), e);
+         sendMessage(request.getStatusCode(), null, request.getStatusMessage());
+      } catch (FileNotFoundException e) {
+         Log.e("Path is not found during creation " + clazz.getSimpleName() + " in request " + request.toString(), e);
+         sendMessage(request.getStatusCode(), null, request.getStatusMessage());
+      } catch (IOException e) {
+         if (isAborted) {
+            Log.v(REQUEST_CANCELLED + " " + request);
+         } else {
+            isFailed = true;
+            Log.e("IOException during creation " + clazz.getSimpleName() + " in request " + request.toString(), e);
+         }
+         sendMessage(request.getStatusCode(), null, request.getStatusMessage());
+      } finally {
+         try {
+            if (inputStream != null) {
+               inputStream.close();
+            }
+            request.close();
+         } catch (Exception e) {
+            Log.e(e);
+         }
+         commitDownload();
+         // A request which timed out waiting for the download of another request did not reach the server, it is not a failure of the host
+         boolean isSent = isOpened && !isAborted && !isRejected && !request.isFromCache();
+         HostConcurrencyLimiter hostLimiter = dataProcessor.getHostLimiter();
+         if (isSent && (limitedHost != null || failureKey != null)) {
+            int statusCode = request.getStatusCode();
+            isFailed = isFailed || statusCode == ConnectionConstants.NO_INTERNET_CONNECTION || statusCode >= ConnectionConstants.HTTP_INTERNAL_ERROR;
+         }
+         if (limitedHost != null && isSent) {
+            hostLimiter.release(limitedHost, responseTime, isFailed);
+         } else if (limitedHost != null) {
+            hostLimiter.release(limitedHost);
+         }
+         limitedHost = null;
+         if (failureKey != null && isSent && isFailed) {
+            negativeCache.onFailure(failureKey, sendTime);
+         } else if (failureKey != null && isSent) {
+            negativeCache.onSuccess(failureKey);
+         }
+      }
+      if (isHandedOff) {
+         return null;
+      }
+      finish();
+      if (processor != null) {
+         return result != null ? result : processor.getResult();
+      } else {
+         return null;
+      }
+   }
+
+   private void parse(InputStream inputStream) {
+      CachedResponse revalidated = getReusableResponse();
+      if (revalidated != null) {
+         T cached = revalidated.getResult(clazz);
+         if (cached != null) {
+            countingStream = null;
+            bodySize = revalidated.getBody().length;
+            if (digestStream != null) {
+               digestStream = null;
+               bodyDigest = newBodyDigest().digest(revalidated.getBody());
+            }
+            sendMessage(request.getStatusCode(), cached, request.getStatusMessage());
+            return;
+         }
+      }
+      try {
+         processor.parse(inputStream);
+      } catch (Exception e) {
+         Log.e("Parsing Error for " + clazz + " in request " + request.toString(), e);
+      }
+      captureBody();
+      if (revalidated != null) {
+         revalidated.setResult(processor.getResult());
+      }
+      sendMessage(request.getStatusCode(), processor.getResult(), request.getStatusMessage());
+   }
+
+   private void captureBody() {
+      if (countingStream != null) {
+         bodySize = countingStream.getCount();
+         countingStream = null;
+      }
+      if (digestStream != null) {
+         bodyDigest = digestStream.getMessageDigest().digest();
+         digestStream = null;
+      }
+   }
+
+   private static MessageDigest newBodyDigest() {
+      try {
+         return MessageDigest.getInstance("SHA-1");
+      } catch (NoSuchAlgorithmException e) {
+         throw new IllegalStateException(e);
+      }
+   }
+
+   /**
+    * Returns the fresh or revalidated cached response, if its parsed result can be reused.
+    */
+   private CachedResponse getReusableResponse() {
+      if (!(request instanceof WebRequest) || !dataProcessor.getConfiguration().isReuseParsedResult()) {
+         return null;
+      }
+      return ((WebRequest) request).getCachedResponse();
+   }
+
+   private void finish() {
+      if (DataProcessor.getInstance().getConfiguration().isLogEnabled() && DataProcessor.getInstance().getConfiguration().isShowProcessingTime()) {
+         long time = System.currentTimeMillis() - request.getStartTime();
+         Log.v(LOADING_TIME + time + MS + request + END_STRING + " status:" + request.getStatusCode());
+      }
+      request.dismissProgressDialog();
+   }
+
+   /**
+    * Read the response body in memory and pass the parsing to the parse stage, so the I/O thread is free for the next request. A body
+    * larger than the parse buffer is parsed in the I/O thread while it is read, as well as a body that is written to a file.
+    *
+    * @return true if the parsing was passed to the parse stage
+    */
+   private boolean handOffToParseStage() throws IOException {
+      if (teeStream != null) {
+         return false;
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER);
+      if (inputStream != null) {
+         int maxSize = dataProcessor.getConfiguration().getParseBufferSize();
+         byte[] buffer = new byte[BUFFER];
+         int bytesRead;
+         while (out.size() <= maxSize && (bytesRead = inputStream.read(buffer)) != -1) {
+            out.write(buffer, 0, bytesRead);
+         }
+         if (out.size() > maxSize) {
+            inputStream = new SequenceInputStream(new ByteArrayInputStream(out.toByteArray()), inputStream);
+            return false;
+         }
+      }
+      captureBody();
+      final byte[] body = out.toByteArray();
+      DiscardableRunnable parseTask = new DiscardableRunnable() {
+
+         @Override
+         public void run() {
+            synchronized (Processor.this) {
+               if (isAborted) {
+                  return;
+               }
+               workerThread = Thread.currentThread();
+            }
+            try {
+               parse(new ByteArrayInputStream(body));
+               finish();
+            } finally {
+               releaseWorkerThread();
+            }
+         }
+
+         @Override
+         public void onDiscard() {
+            Log.w(REQUEST_DISCARDED + " " + request);
+            request.dismissProgressDialog();
+            sendMessage(ConnectionConstants.REQUEST_DISCARDED, null, REQUEST_DISCARDED);
+         }
+
+      };
+      synchronized (this) {
+         asyncTask = parseTask;
+         taskExecutor = parseExecutor;
+      }
+      try {
+         parseExecutor.execute(parseTask, request.getPriority());
+      } catch (RejectedExecutionException e) {
+         // The parse stage is shut down
+         inputStream = new ByteArrayInputStream(body);
+         return false;
+      }
+      return true;
+   }
+
+   /**
+    * Returns the key of the request host for the in-flight limiter or null if the request is not limited.
+    */
+   private String getLimitedHost(HostConcurrencyLimiter hostLimiter) {
+      if (hostLimiter == null || !(request instanceof WebRequest)) {
+         return null;
+      }
+      URL url = request.getURL();
+      if (url == null) {
+         return null;
+      }
+      return url.getHost() + ':' + url.getPort();
+   }
+
+   private String getFailureKey(NegativeCache negativeCache) {
+      if (negativeCache == null || !(request instanceof WebRequest)) {
+         return null;
+      }
+      if (!negativeCache.isPerHost()) {
+         return request.getRequestKey();
+      }
+      URL url = request.getURL();
+      return url == null ? null : url.getHost() + ':' + url.getPort();
+   }
+
+   /**
+    * Open the cached response of the backed off request regardless of its age: the file of the disk cache, the cache file or the body
+    * from the response cache.
+    *
+    * @return cached body or null if there is no cached response
+    */
+   private InputStream openStaleResponse() {
+      if (isNoCache()) {
+         return null;
+      }
+      DiskCache diskCache = dataProcessor.getDiskCache();
+      try {
+         File file = null;
+         if (request.isDiskCached() && diskCache != null) {
+            file = diskCache.get(request.getRequestKey());
+         } else if (cacheFileName != null && cacheFileName.length() > 0) {
+            file = new File(cacheFileName);
+         }
+         if (file != null && file.length() > 0) {
+            InputStream stream = dataProcessor.getCompressedStorage().open(file);
+            request.setFromCache(true);
+            return stream;
+         }
+      } catch (IOException e) {
+         // Not cached, try the response cache
+      }
+      return ((WebRequest) request).getStaleCachedStream(isNoCache());
+   }
+
+   /**
+    * Starts the request and measures the time to the response. A request which goes to the network takes a slot of its host first, the
+    * cache hits are not limited.
+    *
+    * @throws HostLimitExceededException if the host is at its in-flight limit
+    */
+   private InputStream openInputStream() throws IOException {
+      HostConcurrencyLimiter hostLimiter = dataProcessor.getHostLimiter();
+      String host = getLimitedHost(hostLimiter);
+      if (host != null && !((WebRequest) request).hasFreshCachedResponse(isNoCache(), isStaleAllowed())) {
+         if (!hostLimiter.acquire(host)) {
+            throw new HostLimitExceededException(host + " limit = " + hostLimiter.getLimit(host));
+         }
+         limitedHost = host;
+      }
+      isOpened = true;
+      long start = System.nanoTime();
+      try {
+         return request.getInputStream(isNoCache(), isStaleAllowed());
+      } finally {
+         responseTime = System.nanoTime() - start;
+      }
+   }
+
+   /**
+    *
+    */
+   @SuppressWarnings({"rawtypes", "unchecked"})
+   private void createProcessor() {
+      try {
+         if (AbstractProcessor.class.isAssignableFrom(clazz)) {
+            Constructor[] construct = clazz.getDeclaredConstructors();
+            processor = (AbstractProcessor) construct[0].newInstance();
+         } else if (InputStreamDataInterface.class.isAssignableFrom(clazz)) {
+            Constructor[] construct = clazz.getDeclaredConstructors();
+            processor = new InputStreamProcessor((InputStreamDataInterface) construct[0].newInstance());
+         } else if (StringDataInterface.class.isAssignableFrom(clazz)) {
+            Constructor[] construct = clazz.getDeclaredConstructors();
+            processor = new StringProcessor((StringDataInterface) construct[0].newInstance());
+         } else {
+            Log.e(INVALID_CLASS_PARAMETER);
+         }
+      } catch (Exception e) {
+         Log.e(CAN_T_CREATE + clazz.getCanonicalName(), e);
+      }
+   }
+
+   /**
+    * @return
+    */
+   private boolean isCorrectClass() {
+      if (InputStreamDataInterface.class.isAssignableFrom(clazz)) {
+         return true;
+      } else if (StringDataInterface.class.isAssignableFrom(clazz)) {
+         return true;
+      } else if (AbstractProcessor.class.isAssignableFrom(clazz)) {
+         return true;
+      } else {
+         return false;
+      }
+   }
+
+   private void sendMessage(final @ConnectionConstants.ConnectionResponseCode int statusCode, final T object, final String errMessage) {
+      List<Follower> followers;
+      synchronized (this) {
+         setStatus(statusCode);
+         setStatusMessage(errMessage);
+         setResult(object);
+         followers = this.followers;
+         this.followers = null;
+      }
+      if (singleFlightGroup != null) {
+         singleFlightGroup.remove(singleFlightKey, this);
+      }
+      final Callback<T> callback = this.callback;
+      if (callback != null && !isCancelled) {
+         if (thread == Thread.currentThread() || callbackExecutor == null || isDirectDelivery) {
+            callback.onFinish(object, statusCode, errMessage);
+         } else {
+            callbackExecutor.execute(new Runnable() {
+
+               @Override
+               public void run() {
+                  callback.onFinish(object, statusCode, errMessage);
+               }
+            });
+         }
+      }
+      if (followers != null) {
+         for (Follower follower : followers) {
+            follower.deliver(object, statusCode, errMessage);
+         }
+      }
+   }
+
+   /**
+    * Add the callback of an equal request which shares this execution instead of starting its own. The callback receives the same
+    * result object.
+    *
+    * @param callback callback of the equal request, can be null
+    * @return handle to cancel the callback or null if the execution is already finished and the callback was not added
+    */
+   public synchronized RequestHandle addFollower(Callback<T> callback) {
+      if (isFinished || isAborted) {
+         return null;
+      }
+      if (followers == null) {
+         followers = new ArrayList<Follower>();
+      }
+      Follower follower = new Follower(callback);
+      followers.add(follower);
+      return follower;
+   }
+
+   /**
+    * Do not use a fresh cached response in this execution, see {@link Request#setNoCache(boolean)}. The request itself is not changed.
+    *
+    * @param isNoCache is revalidation required
+    */
+   public void setNoCache(boolean isNoCache) {
+      this.isNoCache = isNoCache;
+   }
+
+   /**
+    * Use the cached response even if it is expired in this execution, see {@link Request#setStaleAllowed(boolean)}. The request itself
+    * is not changed.
+    *
+    * @param isStaleAllowed is expired response allowed
+    */
+   public void setStaleAllowed(boolean isStaleAllowed) {
+      this.isStaleAllowed = isStaleAllowed;
+   }
+
+   private boolean isNoCache() {
+      return isNoCache != null ? isNoCache : request.isNoCache();
+   }
+
+   private boolean isStaleAllowed() {
+      return isStaleAllowed != null ? isStaleAllowed : request.isStaleAllowed();
+   }
+
+   /**
+    * Compute the digest of the response body while it is parsed, see {@link #getBodyDigest()}.
+    */
+   public void setBodyDigestEnabled() {
+      isBodyDigestEnabled = true;
+   }
+
+   /**
+    * Returns SHA-1 of the part of the response body which was read by the parser. Equal digests mean that the results are parsed from
+    * equal bodies.
+    *
+    * @return digest or null if it is not enabled or the body was not received
+    */
+   public byte[] getBodyDigest() {
+      return bodyDigest;
+   }
+
+   /**
+    * Returns the size of the part of the response body which was read by the parser.
+    *
+    * @return size in bytes or -1 if the body was not received
+    */
+   public long getBodySize() {
+      return bodySize;
+   }
+
+   /**
+    * Call the callback directly in the worker thread instead of posting it to the thread which created the processor.
+    */
+   void setDirectDelivery() {
+      isDirectDelivery = true;
+   }
+
+   /**
+    * Register the execution in the single-flight group, it is removed from the group when the result is ready.
+    *
+    * @param group single-flight group
+    * @param key   key of the execution in the group
+    */
+   void setSingleFlight(SingleFlightGroup group, String key) {
+      singleFlightGroup = group;
+      singleFlightKey = key;
+   }
+
+   private void setStatusMessage(String message) {
+      request.setStatusMessage(message);
+   }
+
+   private String getStatusMessage() {
+      return request.getStatusMessage();
+   }
+
+   /**
+    * Execute the request in the thread pool.
+    *
+    * @return handle to cancel the request
+    */
+   public RequestHandle executeAsync() {
+      request.showProgressDialog();
+      asyncTask = new DiscardableRunnable() {
+
+         @Override
+         public void run() {
+            synchronized (Processor.this) {
+               if (isAborted) {
+                  return;
+               }
+               workerThread = Thread.currentThread();
+            }
+            try {
+               execute();
+            } finally {
+               releaseWorkerThread();
+            }
+         }
+
+         @Override
+         public void onDiscard() {
+            Log.w(REQUEST_DISCARDED + " " + request);
+            request.dismissProgressDialog();
+            sendMessage(ConnectionConstants.REQUEST_DISCARDED, null, REQUEST_DISCARDED);
+         }
+
+      };
+      RequestExecutor executor = dataProcessor.getExecutor();
+      taskExecutor = executor;
+      parseExecutor = dataProcessor.getParseExecutor();
+      if (executor != null) {
+         executor.execute(asyncTask, request.getPriority());
+      } else {
+         new Thread(asyncTask, DataProcessingThreadFactory.THREAD_NAME).start();
+      }
+      return this;
+   }
+
+   /**
+    * Called by the thread which finished its stage of the request.
+    */
+   private void releaseWorkerThread() {
+      synchronized (this) {
+         if (workerThread == Thread.currentThread()) {
+            workerThread = null;
+         }
+      }
+      // Clear the interruption of a cancelled request, the worker thread is reused
+      Thread.interrupted();
+   }
+
+   /**
+    * Execute the request in the thread pool and return its result as a future. The callback of the processor is replaced by the future.
+    *
+    * @param executor default executor of the future callbacks and dependent stages, null - the worker thread
+    * @return future of the result
+    */
+   public ResultFuture<T> executeFuture(Executor executor) {
+      final ResultFuture<T> future = new ResultFuture<T>(executor);
+      callback = new Callback<T>() {
+
+         @Override
+         public void onFinish(T obj, @ConnectionConstants.ConnectionResponseCode int statusCode, String errMessage) {
+            future.complete(obj, statusCode, errMessage);
+         }
+
+      };
+      isDirectDelivery = true;
+      future.setHandle(executeAsync());
+      return future;
+   }
+
+   /**
+    * Cancel the request. The callback will not be called. If no one else waits for the result, the queued request is removed from the
+    * thread pool, a running one is aborted: the connection is closed and the worker thread is interrupted.
+    *
+    * @return false if the request was already finished or cancelled
+    */
+   @Override
+   public boolean cancel() {
+      synchronized (this) {
+         if (isFinished || isCancelled) {
+            return false;
+         }
+         isCancelled = true;
+         if (followers != null && !followers.isEmpty()) {
+            return true;
+         }
+         isAborted = true;
+      }
+      abort();
+      return true;
+   }
+
+   @Override
+   public boolean isCancelled() {
+      return isCancelled;
+   }
+
+   @Override
+   public boolean isDone() {
+      return isFinished || isCancelled;
+   }
+
+   /**
+    * Stop the execution which nobody waits for.
+    */
+   private void abort() {
+      if (singleFlightGroup != null) {
+         singleFlightGroup.remove(singleFlightKey, this);
+      }
+      DiscardableRunnable task;
+      RequestExecutor executor;
+      synchronized (this) {
+         task = asyncTask;
+         executor = taskExecutor;
+      }
+      if (executor != null && task != null && executor.remove(task)) {
+         Log.v(REQUEST_CANCELLED + " " + request);
+      } else {
+         request.abort();
+         synchronized (this) {
+            if (workerThread != null) {
+               workerThread.interrupt();
+            }
+         }
+      }
+      request.dismissProgressDialog();
+   }
+
+   /**
+    * Open the response from the disk cache or download it to the disk cache.
+    */
+   private void loadThroughDiskCache() throws IOException {
+      DiskCache diskCache = dataProcessor.getDiskCache();
+      if (diskCache == null) {
+         Log.w(NO_DISK_CACHE + request);
+         inputStream = openInputStream();
+         return;
+      }
+      String key = request.getRequestKey();
+      request.setFromCache(false);
+      FileDownloads downloads = dataProcessor.getFileDownloads();
+      String fileKey = new File(diskCache.getDirectory(), DiskCache.toFileName(key)).getPath();
+      boolean isRewrite = request.isNeedToRewriteFile();
+      while (true) {
+         if (!isRewrite) {
+            File file = diskCache.get(key);
+            if (file != null) {
+               try {
+                  inputStream = dataProcessor.getCompressedStorage().open(file);
+                  request.setFromCache(true);
+                  return;
+               } catch (FileNotFoundException e) {
+                  // Evicted meanwhile, download it again
+               }
+            }
+         }
+         if (downloads.tryAcquire(fileKey)) {
+            break;
+         }
+         // Another request downloads the same response, its file is fresh for this request too
+         downloads.await(fileKey, dataProcessor.getConfiguration().getTimeout());
+         isRewrite = false;
+      }
+      downloadKey = fileKey;
+      inputStream = openInputStream();
+      if (inputStream != null) {
+         // The body is written to the temp file while it is parsed, the file is committed to the cache after the parsing
+         teeStream = new TeeInputStream(inputStream, diskCache.newTempFile(), dataProcessor.getCompressedStorage());
+         inputStream = teeStream;
+         diskCacheKey = key;
+      }
+   }
+
+   /**
+    * Move the downloaded body from the temp file to the disk cache or to the cache file of the request, if it was received completely.
+    * Then wake up the requests waiting for the file. Called after the input stream is closed.
+    */
+   private void commitDownload() {
+      if (teeStream != null) {
+         File temp = teeStream.getFile();
+         int status = request.getStatusCode();
+         if (teeStream.isComplete() && !isAborted && (status == ConnectionConstants.HTTP_OK || status == ConnectionConstants.FILE_SUCCESS)) {
+            try {
+               if (diskCacheKey != null) {
+                  dataProcessor.getDiskCache().commit(diskCacheKey, temp);
+               } else {
+                  FileDownloads.moveTo(temp, new File(cacheFileName));
+               }
+            } catch (IOException e) {
+               Log.w("Can't save the response to the cache " + request, e);
+            }
+         }
+         // Not moved temp file is not needed anymore
+         temp.delete();
+         teeStream = null;
+         diskCacheKey = null;
+      }
+      if (downloadKey != null) {
+         dataProcessor.getFileDownloads().release(downloadKey);
+         downloadKey = null;
+      }
+   }
+
+   private void saveToFile() throws IOException {
+      File f = new File(cacheFileName);
+      FileDownloads downloads = dataProcessor.getFileDownloads();
+      String fileKey = f.getAbsolutePath();
+      boolean isRewrite = request.isNeedToRewriteFile();
+      request.setFromCache(false);
+      while (true) {
+         // A file appears under its name only when it is completed, so an existing file is read without locking
+         if (!isRewrite && f.exists() && f.length() > 0) {
+            if (DataProcessor.getInstance().getConfiguration().isLogEnabled()) {
+               Log.w(FILE_EXIST + cacheFileName);
+            }
+            try {
+               inputStream = dataProcessor.getCompressedStorage().open(f);
+               request.setFromCache(true);
+               return;
+            } catch (FileNotFoundException e) {
+               // Deleted meanwhile, download it again
+            }
+         }
+         if (downloads.tryAcquire(fileKey)) {
+            break;
+         }
+         // Another request downloads the same file, its file is fresh for this request too
+         downloads.await(fileKey, dataProcessor.getConfiguration().getTimeout());
+         isRewrite = false;
+      }
+      downloadKey = fileKey;
+      inputStream = openInputStream();
+      if (inputStream != null) {
+         // The body is parsed while it is written to a temp file, the temp file replaces the file after the parsing
+         File parent = f.getAbsoluteFile().getParentFile();
+         teeStream = new TeeInputStream(inputStream, File.createTempFile("." + f.getName() + "-", ".tmp", parent),
+                 dataProcessor.getCompressedStorage());
+         inputStream = teeStream;
+      }
+   }
+
+   public void setCallback(Callback<T> callback) {
+      this.callback = callback;
+   }
+
+   /**
+    * Return resulting object
+    *
+    * @return
+    */
+   public T getResult() {
+      return result;
+   }
+
+   /**
+    * @return
+    */
+   public int getStatus() {
+      return statusCode;
+   }
+
+   /**
+    * Return Data class
+    *
+    * @return
+    */
+   public Class<?> getDataClass() {
+      return clazz.getClass();
+   }
+
+   /**
+    * @return
+    */
+   public boolean isFinished() {
+      return isFinished;
+   }
+
+   /**
+    * Returns the time when the result was received.
+    *
+    * @return time in ms
+    */
+   public long getFinishTime() {
+      return finishTime;
+   }
+
+   /**
+    * Redelivery result in callback
+    */
+   public void redelivery() {
+      redelivery(callback);
+   }
+
+   /**
+    * Redelivery result of the finished processor in the given callback, in the calling thread. The callback of the processor is not
+    * replaced, so the result can be redelivered from several threads at once.
+    *
+    * @param callback callback
+    */
+   public void redelivery(Callback<T> callback) {
+      T result;
+      int statusCode;
+      synchronized (this) {
+         result = this.result;
+         statusCode = this.statusCode;
+      }
+      if (callback != null) {
+         callback.onFinish(result, statusCode, getStatusMessage());
+      }
+   }
+
+   private void setResult(T result) {
+      this.result = result;
+      finishTime = System.currentTimeMillis();
+      isFinished = true;
+   }
+
+   /**
+    * @param statusCode
+    */
+   private void setStatus( @ConnectionConstants.ConnectionResponseCode int statusCode) {
+      this.statusCode = statusCode;
+   }
+
+   /**
+    * Callback of a request which joined the execution, delivered in the thread which added it.
+    */
+   private final class Follower implements RequestHandle {
+
+      private final Callback<T> callback;
+      private final Thread thread = Thread.currentThread();
+      private final Executor callbackExecutor;
+      private volatile boolean isCancelled;
+
+      private Follower(Callback<T> callback) {
+         this.callback = callback;
+         callbackExecutor = Platform.get().getCurrentThreadExecutor();
+      }
+
+      private void deliver(final T object, final int statusCode, final String errMessage) {
+         if (callback == null || isCancelled) {
+            return;
+         }
+         if (thread == Thread.currentThread() || callbackExecutor == null) {
+            callback.onFinish(object, statusCode, errMessage);
+         } else {
+            callbackExecutor.execute(new Runnable() {
+
+               @Override
+               public void run() {
+                  callback.onFinish(object, statusCode, errMessage);
+               }
+            });
+         }
+      }
+
+      @Override
+      public boolean cancel() {
+         synchronized (Processor.this) {
+            if (isFinished || isCancelled) {
+               return false;
+            }
+            isCancelled = true;
+            followers.remove(this);
+            if (!Processor.this.isCancelled || !followers.isEmpty()) {
+               return true;
+            }
+            isAborted = true;
+         }
+         abort();
+         return true;
+      }
+
+      @Override
+      public boolean isCancelled() {
+         return isCancelled;
+      }
+
+      @Override
+      public boolean isDone() {
+         return isFinished || isCancelled;
+      }
+
+   }
+
+   /**
+    * The request was not sent, its host reached the in-flight limit.
+    */
+   private static class HostLimitExceededException extends IOException {
+
+      private static final long serialVersionUID = 1L;
+
+      private HostLimitExceededException(String message) {
+         super(message);
+      }
+
+   }
+
+   public interface Callback<T> {
+
+      /**
+       * Return resulted object which implemented {@link InputStreamDataInterface} or {@link StringDataInterface}.
+       *
+       * @param obj        created object or null
+       * @param statusCode status of request execution. <br>
+       *                   For http request - HTTP Status Code see {@link ConnectionConstants} constant.<br>
+       * @param errMessage result message
+       */
+      void onFinish(T obj, @ConnectionConstants.ConnectionResponseCode int statusCode, String errMessage);
+
+   }
+
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.processors;
+
+/**
+ * Handle of an async request, allows to cancel it when the result is no longer needed.
+ *
+ * @author lordtao
+ */
+public interface RequestHandle {
+
+   /**
+    * Cancel the request. The callback of the request will not be called.
+    *
+    * @return false if the request was already finished or cancelled
+    */
+   boolean cancel();
+
+   /**
+    * Returns whether the request was cancelled.
+    *
+    * @return is cancelled
+    */
+   boolean isCancelled();
+
+   /**
+    * Returns whether the request was finished or cancelled.
+    *
+    * @return is done
+    */
+   boolean isDone();
+
+}
@@ -0,0 +1,375 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.processors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
+import ua.at.tsvetkov.data_processor.platform.Log;
+import ua.at.tsvetkov.data_processor.processors.Processor.Callback;
+
+/**
+ * Result of an async request. Callbacks and dependent stages run in the executor given to them, or in the default executor of the
+ * future. If the executor is null they run in the thread which completed the future, usually the worker thread, so the chains of
+ * requests and transformations do not pass through the UI thread.
+ * <p>
+ * A stage is successful if its result object is not null. A dependent stage of an unsuccessful one is not executed and completes with
+ * null result and the same status.
+ *
+ * @param <T> result class
+ * @author lordtao
+ */
+public class ResultFuture<T> implements Future<T> {
+
+   private final CountDownLatch latch = new CountDownLatch(1);
+   private final Executor executor;
+   private List<Runnable> listeners = new ArrayList<Runnable>();
+   private volatile RequestHandle handle;
+   private volatile boolean isCancelled;
+   private T result;
+   private int statusCode;
+   private String statusMessage;
+
+   /**
+    * @param executor default executor of callbacks and dependent stages, null - the thread which completes the future
+    */
+   public ResultFuture(Executor executor) {
+      this.executor = executor;
+   }
+
+   /**
+    * Complete the future with the request result.
+    *
+    * @return false if the future is already completed or cancelled
+    */
+   public boolean complete(T result, @ConnectionConstants.ConnectionResponseCode int statusCode, String statusMessage) {
+      List<Runnable> listeners;
+      synchronized (this) {
+         if (this.listeners == null) {
+            return false;
+         }
+         this.result = result;
+         this.statusCode = statusCode;
+         this.statusMessage = statusMessage;
+         listeners = this.listeners;
+         this.listeners = null;
+      }
+      latch.countDown();
+      runListeners(listeners);
+      return true;
+   }
+
+   /**
+    * Cancel the future and the request which completes it.
+    *
+    * @param mayInterruptIfRunning ignored, a running request is always aborted
+    */
+   @Override
+   public boolean cancel(boolean mayInterruptIfRunning) {
+      List<Runnable> listeners;
+      synchronized (this) {
+         if (this.listeners == null) {
+            return false;
+         }
+         isCancelled = true;
+         listeners = this.listeners;
+         this.listeners = null;
+      }
+      latch.countDown();
+      RequestHandle handle = this.handle;
+      if (handle != null) {
+         handle.cancel();
+      }
+      runListeners(listeners);
+      return true;
+   }
+
+   @Override
+   public boolean isCancelled() {
+      return isCancelled;
+   }
+
+   @Override
+   public boolean isDone() {
+      return latch.getCount() == 0;
+   }
+
+   @Override
+   public T get() throws InterruptedException {
+      latch.await();
+      return getResult();
+   }
+
+   @Override
+   public T get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+      if (!latch.await(timeout, unit)) {
+         throw new TimeoutException();
+      }
+      return getResult();
+   }
+
+   /**
+    * Returns the status of the completed request, see {@link ConnectionConstants}.
+    *
+    * @return status code
+    */
+   public int getStatusCode() {
+      return statusCode;
+   }
+
+   /**
+    * Returns the message of the completed request.
+    *
+    * @return status message
+    */
+   public String getStatusMessage() {
+      return statusMessage;
+   }
+
+   /**
+    * Call the callback in the default executor when the future is completed. Not called if the future is cancelled.
+    *
+    * @param callback callback
+    * @return this future
+    */
+   public ResultFuture<T> addCallback(Callback<T> callback) {
+      return addCallback(callback, executor);
+   }
+
+   /**
+    * Call the callback in the given executor when the future is completed. Not called if the future is cancelled.
+    *
+    * @param callback callback
+    * @param executor executor of the callback, null - the thread which completes the future
+    * @return this future
+    */
+   public ResultFuture<T> addCallback(final Callback<T> callback, Executor executor) {
+      addListener(new Runnable() {
+
+         @Override
+         public void run() {
+            if (!isCancelled) {
+               callback.onFinish(result, statusCode, statusMessage);
+            }
+         }
+      }, executor);
+      return this;
+   }
+
+   /**
+    * Returns the future of the transformation of the result, executed in the default executor.
+    *
+    * @param transformation transformation of the result
+    * @param <R>            class of the transformed result
+    * @return dependent future
+    */
+   public <R> ResultFuture<R> thenApply(Transformation<? super T, ? extends R> transformation) {
+      return thenApply(transformation, executor);
+   }
+
+   /**
+    * Returns the future of the transformation of the result, executed in the given executor.
+    *
+    * @param transformation transformation of the result
+    * @param executor       executor of the transformation and the default executor of the dependent future
+    * @param <R>            class of the transformed result
+    * @return dependent future
+    */
+   public <R> ResultFuture<R> thenApply(final Transformation<? super T, ? extends R> transformation, Executor executor) {
+      final ResultFuture<R> next = new ResultFuture<R>(executor);
+      next.handle = new CancelSource(this);
+      addListener(new Runnable() {
+
+         @Override
+         public void run() {
+            if (isCancelled) {
+               next.cancel(false);
+            } else if (result == null) {
+               next.complete(null, statusCode, statusMessage);
+            } else {
+               try {
+                  next.complete(transformation.apply(result), statusCode, statusMessage);
+               } catch (Exception e) {
+                  Log.e("Transformation error", e);
+                  next.complete(null, Processor.ERROR, e.getMessage());
+               }
+            }
+         }
+      }, executor);
+      return next;
+   }
+
+   /**
+    * Returns the future of a dependent request, started in the default executor with the result of this one.
+    *
+    * @param transformation creates the dependent request from the result, for example with
+    *                       {@link ua.at.tsvetkov.data_processor.DataProcessor#executeFuture(ua.at.tsvetkov.data_processor.requests.Request, Class, Executor) executeFuture}
+    * @param <R>            class of the dependent request result
+    * @return dependent future
+    */
+   public <R> ResultFuture<R> thenCompose(Transformation<? super T, ResultFuture<R>> transformation) {
+      return thenCompose(transformation, executor);
+   }
+
+   /**
+    * Returns the future of a dependent request, started in the given executor with the result of this one.
+    *
+    * @param transformation creates the dependent request from the result
+    * @param executor       executor of the transformation and the default executor of the dependent future
+    * @param <R>            class of the dependent request result
+    * @return dependent future
+    */
+   public <R> ResultFuture<R> thenCompose(final Transformation<? super T, ResultFuture<R>> transformation, Executor executor) {
+      final ResultFuture<R> next = new ResultFuture<R>(executor);
+      next.handle = new CancelSource(this);
+      addListener(new Runnable() {
+
+         @Override
+         public void run() {
+            if (isCancelled) {
+               next.cancel(false);
+            } else if (result == null) {
+               next.complete(null, statusCode, statusMessage);
+            } else {
+               try {
+                  final ResultFuture<R> inner = transformation.apply(result);
+                  next.handle = new CancelSource(inner);
+                  inner.addListener(new Runnable() {
+
+                     @Override
+                     public void run() {
+                        if (inner.isCancelled) {
+                           next.cancel(false);
+                        } else {
+                           next.complete(inner.result, inner.statusCode, inner.statusMessage);
+                        }
+                     }
+                  }, null);
+               } catch (Exception e) {
+                  Log.e("Transformation error", e);
+                  next.complete(null, Processor.ERROR, e.getMessage());
+               }
+            }
+         }
+      }, executor);
+      return next;
+   }
+
+   /**
+    * Set the handle of the request which completes the future, it is cancelled with the future.
+    *
+    * @param handle request handle
+    */
+   void setHandle(RequestHandle handle) {
+      this.handle = handle;
+      if (isCancelled) {
+         handle.cancel();
+      }
+   }
+
+   private T getResult() {
+      if (isCancelled) {
+         throw new CancellationException();
+      }
+      return result;
+   }
+
+   private void addListener(final Runnable listener, final Executor executor) {
+      Runnable task = listener;
+      if (executor != null) {
+         task = new Runnable() {
+
+            @Override
+            public void run() {
+               executor.execute(listener);
+            }
+         };
+      }
+      synchronized (this) {
+         if (listeners != null) {
+            listeners.add(task);
+            return;
+         }
+      }
+      task.run();
+   }
+
+   private static void runListeners(List<Runnable> listeners) {
+      for (Runnable listener : listeners) {
+         try {
+            listener.run();
+         } catch (Exception e) {
+            Log.e("Error in result listener", e);
+         }
+      }
+   }
+
+   /**
+    * Transformation of a stage result.
+    *
+    * @param <T> source class
+    * @param <R> result class
+    */
+   public interface Transformation<T, R> {
+
+      R apply(T obj) throws Exception;
+
+   }
+
+   /**
+    * Cancels the source future when the dependent one is cancelled.
+    */
+   private static final class CancelSource implements RequestHandle {
+
+      private final ResultFuture<?> source;
+
+      private CancelSource(ResultFuture<?> source) {
+         this.source = source;
+      }
+
+      @Override
+      public boolean cancel() {
+         return source.cancel(true);
+      }
+
+      @Override
+      public boolean isCancelled() {
+         return source.isCancelled();
+      }
+
+      @Override
+      public boolean isDone() {
+         return source.isDone();
+      }
+
+   }
+
+}
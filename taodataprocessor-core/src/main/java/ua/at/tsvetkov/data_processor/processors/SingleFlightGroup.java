@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.processors;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import ua.at.tsvetkov.data_processor.processors.Processor.Callback;
+
+/**
+ * Group of in-flight executions keyed by request. A request equal to an in-flight one does not start its own execution, but joins the
+ * running one and receives the same result in its callback. Thus one network fetch and one parse serve all of them.
+ *
+ * @author lordtao
+ */
+public class SingleFlightGroup {
+
+   private final ConcurrentHashMap<String, Processor<?>> flights = new ConcurrentHashMap<String, Processor<?>>();
+
+   /**
+    * Start async execution of the processor, or join the callback to the in-flight execution with the same key.
+    *
+    * @param key       key of the execution, must include the request key and the result class
+    * @param processor processor to start if there is no in-flight execution with the key
+    * @param callback  callback of the request
+    * @param <T>       result class
+    * @return handle of the started processor or of the callback joined to the in-flight execution
+    */
+   public <T> RequestHandle executeAsync(String key, Processor<T> processor, Callback<T> callback) {
+      while (true) {
+         Processor<?> leader = flights.putIfAbsent(key, processor);
+         if (leader == null) {
+            processor.setSingleFlight(this, key);
+            return processor.executeAsync();
+         }
+         @SuppressWarnings("unchecked")
+         Processor<T> inFlight = (Processor<T>) leader;
+         RequestHandle handle = inFlight.addFollower(callback);
+         if (handle != null) {
+            return handle;
+         }
+         // The leader has just finished or was aborted, try to become a new leader
+         flights.remove(key, leader);
+      }
+   }
+
+   /**
+    * Returns the number of in-flight executions.
+    *
+    * @return in-flight executions count
+    */
+   public int size() {
+      return flights.size();
+   }
+
+   void remove(String key, Processor<?> processor) {
+      flights.remove(key, processor);
+   }
+
+}
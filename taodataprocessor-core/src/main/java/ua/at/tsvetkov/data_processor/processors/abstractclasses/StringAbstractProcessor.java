@@ -27,8 +27,9 @@ import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 
-import ua.at.tsvetkov.util.Log;
+import ua.at.tsvetkov.data_processor.platform.Log;
 
 /**
  * Base String parser. Can be implemented for parse JSON, CSV and etc. data.
@@ -57,6 +58,9 @@ public abstract class StringAbstractProcessor<T> extends AbstractProcessor<T> {
       byte[]                buffer = new byte[1024];
       int                   length;
       while ((length = inputStream.read(buffer)) != -1) {
+         if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Reading is interrupted, the request was cancelled.");
+         }
          result.write(buffer, 0, length);
       }
       process(result.toString("UTF-8"));
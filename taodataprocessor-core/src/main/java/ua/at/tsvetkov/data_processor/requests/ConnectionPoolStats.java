@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.requests;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Counters of the keep-alive connections of the web requests. {@link java.net.HttpURLConnection HttpURLConnection} does not tell whether
+ * a connection was reused, so the counters follow a model of its pool: a connection released with the fully read body stays idle until
+ * its keep-alive duration expires, at most the max idle connections per host, and the next request to the host takes it instead of a
+ * new connection.
+ *
+ * @author lordtao
+ */
+public class ConnectionPoolStats {
+
+   public static final int  DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+   public static final long DEFAULT_KEEP_ALIVE_DURATION  = 5 * 60 * 1000;
+
+   private final HashMap<String, ArrayDeque<Long>> idleConnections = new HashMap<String, ArrayDeque<Long>>();
+   private final int  maxIdleConnections;
+   private final long keepAliveDuration;
+   private long connections;
+   private long reused;
+   private long released;
+   private long discarded;
+
+   public ConnectionPoolStats() {
+      this(DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE_DURATION);
+   }
+
+   /**
+    * @param maxIdleConnections max idle connections per host
+    * @param keepAliveDuration  time in ms an idle connection is kept
+    */
+   public ConnectionPoolStats(int maxIdleConnections, long keepAliveDuration) {
+      this.maxIdleConnections = maxIdleConnections;
+      this.keepAliveDuration = keepAliveDuration;
+   }
+
+   /**
+    * Record a connection opened by a request.
+    *
+    * @param host host and port
+    * @return true if an idle connection is expected to be reused
+    */
+   public synchronized boolean onConnect(String host) {
+      connections++;
+      ArrayDeque<Long> idle = getIdle(host, System.currentTimeMillis());
+      if (idle == null || idle.isEmpty()) {
+         return false;
+      }
+      idle.pollLast();
+      reused++;
+      return true;
+   }
+
+   /**
+    * Record a connection released to the pool after its body was read completely.
+    *
+    * @param host host and port
+    */
+   public synchronized void onRelease(String host) {
+      released++;
+      long now = System.currentTimeMillis();
+      ArrayDeque<Long> idle = getIdle(host, now);
+      if (idle == null) {
+         idle = new ArrayDeque<Long>();
+         idleConnections.put(host, idle);
+      }
+      idle.addLast(now);
+      while (idle.size() > maxIdleConnections) {
+         idle.pollFirst();
+      }
+   }
+
+   /**
+    * Record a connection closed with {@code disconnect()}, it can't be reused.
+    */
+   public synchronized void onDiscard() {
+      discarded++;
+   }
+
+   public synchronized long getConnections() {
+      return connections;
+   }
+
+   /**
+    * Returns the number of the connections which are expected to be taken from the pool.
+    *
+    * @return reused connections count
+    */
+   public synchronized long getReused() {
+      return reused;
+   }
+
+   /**
+    * Returns the number of the connections released to the pool.
+    *
+    * @return released connections count
+    */
+   public synchronized long getReleased() {
+      return released;
+   }
+
+   /**
+    * Returns the number of the disconnected connections.
+    *
+    * @return discarded connections count
+    */
+   public synchronized long getDiscarded() {
+      return discarded;
+   }
+
+   /**
+    * Returns the part of the connections taken from the pool. It is an estimate of the model of the pool, not a measurement: the
+    * platform may close an idle connection earlier, for example when the server closes it, so the real reuse rate may be lower.
+    *
+    * @return reuse rate from 0 to 1
+    */
+   public synchronized double getReuseRate() {
+      return connections == 0 ? 0 : (double) reused / connections;
+   }
+
+   /**
+    * Returns the number of the idle connections of all hosts, which are not expired.
+    *
+    * @return idle connections count
+    */
+   public synchronized int getIdleCount() {
+      long now = System.currentTimeMillis();
+      int count = 0;
+      Iterator<String> iterator = idleConnections.keySet().iterator();
+      while (iterator.hasNext()) {
+         String host = iterator.next();
+         ArrayDeque<Long> idle = idleConnections.get(host);
+         expire(idle, now);
+         if (idle.isEmpty()) {
+            iterator.remove();
+         } else {
+            count += idle.size();
+         }
+      }
+      return count;
+   }
+
+   public int getMaxIdleConnections() {
+      return maxIdleConnections;
+   }
+
+   public long getKeepAliveDuration() {
+      return keepAliveDuration;
+   }
+
+   @Override
+   public synchronized String toString() {
+      return "ConnectionPoolStats [connections=" + connections + ", reused=" + reused + ", released=" + released + ", discarded="
+              + discarded + ", reuseRate=" + getReuseRate() + "]";
+   }
+
+   private ArrayDeque<Long> getIdle(String host, long now) {
+      ArrayDeque<Long> idle = idleConnections.get(host);
+      if (idle != null) {
+         expire(idle, now);
+      }
+      return idle;
+   }
+
+   private void expire(ArrayDeque<Long> idle, long now) {
+      while (!idle.isEmpty() && now - idle.peekFirst() >= keepAliveDuration) {
+         idle.pollFirst();
+      }
+   }
+
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.requests;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decodes a response body with {@code Content-Encoding} gzip or deflate while it is read. The decoder is created on the first read, so a
+ * response without a body, for example 204 or 304, is not an error. The deflate body is accepted both with the zlib wrapper, as the
+ * standard requires, and raw, as some servers send it.
+ *
+ * @author lordtao
+ */
+class ContentDecodingInputStream extends FilterInputStream {
+
+   static final String GZIP    = "gzip";
+   static final String X_GZIP  = "x-gzip";
+   static final String DEFLATE = "deflate";
+
+   private static final int BUFFER = 8 * 1024;
+
+   private final boolean  isGzip;
+   private       boolean  isOpened;
+   private       Inflater inflater;
+
+   /**
+    * @param in     response body
+    * @param isGzip gzip if true, deflate otherwise
+    */
+   ContentDecodingInputStream(InputStream in, boolean isGzip) {
+      super(in);
+      this.isGzip = isGzip;
+   }
+
+   /**
+    * Returns whether the content encoding is decoded by this stream.
+    *
+    * @param encoding value of the Content-Encoding header
+    * @return is supported
+    */
+   static boolean isSupported(String encoding) {
+      return GZIP.equals(encoding) || X_GZIP.equals(encoding) || DEFLATE.equals(encoding);
+   }
+
+   @Override
+   public int read() throws IOException {
+      open();
+      return in.read();
+   }
+
+   @Override
+   public int read(byte[] buffer, int offset, int count) throws IOException {
+      open();
+      return in.read(buffer, offset, count);
+   }
+
+   @Override
+   public long skip(long count) throws IOException {
+      open();
+      return in.skip(count);
+   }
+
+   @Override
+   public int available() throws IOException {
+      return isOpened ? in.available() : 0;
+   }
+
+   @Override
+   public boolean markSupported() {
+      return false;
+   }
+
+   @Override
+   public void close() throws IOException {
+      try {
+         super.close();
+      } finally {
+         if (inflater != null) {
+            inflater.end();
+            inflater = null;
+         }
+      }
+   }
+
+   private void open() throws IOException {
+      if (isOpened) {
+         return;
+      }
+      isOpened = true;
+      PushbackInputStream pushback = new PushbackInputStream(in, 2);
+      byte[] head = new byte[2];
+      int count = 0;
+      int bytesRead;
+      while (count < head.length && (bytesRead = pushback.read(head, count, head.length - count)) != -1) {
+         count += bytesRead;
+      }
+      if (count == 0) {
+         // No body
+         in = pushback;
+         return;
+      }
+      pushback.unread(head, 0, count);
+      if (isGzip) {
+         in = new GZIPInputStream(pushback, BUFFER);
+      } else {
+         inflater = new Inflater(!isZlibHeader(head, count));
+         in = new InflaterInputStream(pushback, inflater, BUFFER);
+      }
+   }
+
+   private static boolean isZlibHeader(byte[] head, int count) {
+      return count == 2 && (head[0] & 0x0F) == 8 && (((head[0] & 0xFF) << 8) | (head[1] & 0xFF)) % 31 == 0;
+   }
+
+}
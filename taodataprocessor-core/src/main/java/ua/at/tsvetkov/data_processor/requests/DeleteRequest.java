@@ -23,15 +23,14 @@
  ******************************************************************************/
 package ua.at.tsvetkov.data_processor.requests;
 
-import android.content.Context;
-
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.util.HashMap;
 
 import ua.at.tsvetkov.data_processor.helpers.Scheme;
+import ua.at.tsvetkov.data_processor.platform.ProgressIndicator;
+import ua.at.tsvetkov.data_processor.threads.Priority;
 
 /**
  * Delete Request builder.
@@ -55,16 +54,27 @@ public class DeleteRequest extends WebRequest {
             throw new IllegalArgumentException(REQUEST_IS_NOT_BUILDED);
         startTime = System.currentTimeMillis();
 
-        httpURLConnection = (HttpURLConnection) getURL().openConnection();
-        httpURLConnection.setRequestMethod("DELETE");
-        httpURLConnection.setReadTimeout(configuration.getTimeout());
-        httpURLConnection.setConnectTimeout(configuration.getTimeout());
+        openExchange("DELETE");
+        addAcceptEncoding();
 
         printToLogUrl();
 
         return getStream();
     }
 
+    @Override
+    public String getMethod() {
+        return "DELETE";
+    }
+
+    /**
+     * DELETE changes the server state, so equal requests are never coalesced.
+     */
+    @Override
+    public boolean isCoalescingAllowed() {
+        return false;
+    }
+
     // ********************************************************************************
 
     /**
@@ -293,8 +303,14 @@ public class DeleteRequest extends WebRequest {
 
 
     @Override
-    public DeleteRequest addProgressDialog(Context context, String title, String message) {
-        setupProgress(context, title, message);
+    public DeleteRequest setProgressIndicator(ProgressIndicator progressIndicator) {
+        this.progressIndicator = progressIndicator;
+        return this;
+    }
+
+    @Override
+    public DeleteRequest setPriority(Priority priority) {
+        this.priority = priority;
         return this;
     }
 
@@ -23,14 +23,14 @@
  ******************************************************************************/
 package ua.at.tsvetkov.data_processor.requests;
 
-import android.content.Context;
-
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+import ua.at.tsvetkov.data_processor.DataProcessor;
 import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
+import ua.at.tsvetkov.data_processor.platform.ProgressIndicator;
+import ua.at.tsvetkov.data_processor.threads.Priority;
 
 /**
  * The main class for the file request building. If not specified the request be built with basic configuration parameters specified in
@@ -40,7 +40,7 @@ import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
  */
 public class FileRequest extends Request {
 
-    private FileInputStream inputStream;
+    private InputStream inputStream;
 
     public FileRequest() {
 
@@ -56,13 +56,13 @@ public class FileRequest extends Request {
     }
 
     /**
-     * Starts the request and returns a response data as InputStream
+     * Starts the request and returns a response data as InputStream. A file written by the compressed cache storage is decompressed.
      *
      * @return
      * @throws IOException
      */
     public InputStream getInputStream() throws IOException {
-        inputStream = new FileInputStream(new File(toString()));
+        inputStream = DataProcessor.getInstance().getCompressedStorage().open(new File(toString()));
         statusCode = ConnectionConstants.FILE_SUCCESS;
         return inputStream;
     }
@@ -88,8 +88,14 @@ public class FileRequest extends Request {
     }
 
     @Override
-    public FileRequest addProgressDialog(Context context, String title, String message) {
-        setupProgress(context, title, message);
+    public FileRequest setProgressIndicator(ProgressIndicator progressIndicator) {
+        this.progressIndicator = progressIndicator;
+        return this;
+    }
+
+    @Override
+    public FileRequest setPriority(Priority priority) {
+        this.priority = priority;
         return this;
     }
 
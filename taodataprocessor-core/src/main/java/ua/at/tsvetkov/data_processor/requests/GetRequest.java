@@ -23,16 +23,15 @@
  ******************************************************************************/
 package ua.at.tsvetkov.data_processor.requests;
 
-import android.content.Context;
-
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.util.HashMap;
 import java.util.Map;
 
 import ua.at.tsvetkov.data_processor.helpers.Scheme;
+import ua.at.tsvetkov.data_processor.platform.ProgressIndicator;
+import ua.at.tsvetkov.data_processor.threads.Priority;
 
 /**
  * Get Request builder.
@@ -54,27 +53,42 @@ public class GetRequest extends WebRequest {
 
     @Override
     public InputStream getInputStream() throws IOException {
+        return getInputStream(isNoCache, isStaleAllowed);
+    }
+
+    @Override
+    public InputStream getInputStream(boolean isNoCache, boolean isStaleAllowed) throws IOException {
         if (!isBuild()) {
             throw new IllegalArgumentException(REQUEST_IS_NOT_BUILDED);
         }
         startTime = System.currentTimeMillis();
 
-        httpURLConnection = (HttpURLConnection) getURL().openConnection();
-        httpURLConnection.setRequestMethod("GET");
-        httpURLConnection.setReadTimeout(configuration.getTimeout());
-        httpURLConnection.setConnectTimeout(configuration.getTimeout());
+        InputStream cachedStream = getFreshCachedStream(isNoCache, isStaleAllowed);
+        if (cachedStream != null) {
+            printToLogUrl();
+            return cachedStream;
+        }
+
+        openExchange("GET");
         setRequestProperties();
+        addAcceptEncoding();
+        addValidators();
 
         printToLogUrl();
 
-        return getStream();
+        return getCachingStream();
+    }
+
+    @Override
+    protected void appendToRequestKey(RequestKey.Builder key) {
+        key.addHeaders(requestProperties);
     }
 
     // ********************************************************************************
 
     private void setRequestProperties() {
         for (Map.Entry<String, String> entry : requestProperties.entrySet()) {
-            httpURLConnection.setRequestProperty(entry.getKey(), entry.getValue());
+            exchange.setRequestHeader(entry.getKey(), entry.getValue());
         }
     }
 
@@ -289,11 +303,37 @@ public class GetRequest extends WebRequest {
         return this;
     }
 
+    /**
+     * Save received data to the disk cache of the data processor, the cache key is derived from the request. If the response is cached it
+     * is used without a network request. The disk cache must be set up with
+     * {@link ua.at.tsvetkov.data_processor.DataProcessorConfiguration.Builder#setDiskCache(java.io.File, long)}.
+     *
+     * @return
+     */
+    public GetRequest saveToDiskCache() {
+        this.isDiskCached = true;
+        this.isRewriteFile = false;
+        return this;
+    }
+
+    /**
+     * Save received data to the disk cache of the data processor, replacing the cached response.
+     *
+     * @return
+     */
+    public GetRequest rewriteDiskCache() {
+        this.isDiskCached = true;
+        this.isRewriteFile = true;
+        return this;
+    }
+
     /**
      * Save received data to cache file. Skip it if exist.
      *
      * @param cacheFileName
+     * @deprecated the file is not bounded by size and never evicted, use {@link #saveToDiskCache()}
      */
+    @Deprecated
     public GetRequest saveToCacheFile(String cacheFileName) {
         this.cacheFileName = cacheFileName;
         this.isRewriteFile = false;
@@ -304,7 +344,9 @@ public class GetRequest extends WebRequest {
      * Save received data to cache file. Rewrite it if exist.
      *
      * @param cacheFileName
+     * @deprecated the file is not bounded by size and never evicted, use {@link #rewriteDiskCache()}
      */
+    @Deprecated
     public GetRequest rewriteCacheFile(String cacheFileName) {
         this.cacheFileName = cacheFileName;
         this.isRewriteFile = true;
@@ -312,8 +354,32 @@ public class GetRequest extends WebRequest {
     }
 
     @Override
-    public GetRequest addProgressDialog(Context context, String title, String message) {
-        setupProgress(context, title, message);
+    public GetRequest setProgressIndicator(ProgressIndicator progressIndicator) {
+        this.progressIndicator = progressIndicator;
+        return this;
+    }
+
+    @Override
+    public GetRequest setCacheTtl(long ttl) {
+        this.cacheTtl = ttl;
+        return this;
+    }
+
+    @Override
+    public GetRequest setNoCache(boolean isNoCache) {
+        this.isNoCache = isNoCache;
+        return this;
+    }
+
+    @Override
+    public GetRequest setStaleAllowed(boolean isStaleAllowed) {
+        this.isStaleAllowed = isStaleAllowed;
+        return this;
+    }
+
+    @Override
+    public GetRequest setPriority(Priority priority) {
+        this.priority = priority;
         return this;
     }
 }
@@ -23,21 +23,19 @@
  ******************************************************************************/
 package ua.at.tsvetkov.data_processor.requests;
 
-import android.content.Context;
-
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
 import java.net.URLEncoder;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 import ua.at.tsvetkov.data_processor.helpers.Scheme;
-import ua.at.tsvetkov.util.Log;
+import ua.at.tsvetkov.data_processor.platform.Log;
+import ua.at.tsvetkov.data_processor.platform.ProgressIndicator;
+import ua.at.tsvetkov.data_processor.threads.Priority;
+import ua.at.tsvetkov.data_processor.transport.ByteArrayBodyWriter;
 
 
 public class PostRequest extends WebRequest {
@@ -70,30 +68,14 @@ public class PostRequest extends WebRequest {
 
       String postDataString = getPostDataString();
 
-      httpURLConnection = (HttpURLConnection) getURL().openConnection();
-      httpURLConnection.setRequestMethod("POST");
-      httpURLConnection.setDoInput(true);
-      httpURLConnection.setDoOutput(true);
-      httpURLConnection.setChunkedStreamingMode(0);
-      httpURLConnection.setReadTimeout(configuration.getTimeout());
-      httpURLConnection.setConnectTimeout(configuration.getTimeout());
+      openExchange("POST");
       setRequestProperties();
+      addAcceptEncoding();
 
       if (postDataString != null) {
-         httpURLConnection.setRequestProperty("Content-Length", Integer.toString(postDataString.length()));
-
-         OutputStream os = httpURLConnection.getOutputStream();
-         BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"));
-         writer.write(postDataString);
-         writer.flush();
-         writer.close();
+         exchange.setBody(new ByteArrayBodyWriter(postDataString.getBytes("UTF-8")));
       } else if (bodyB != null) {
-         httpURLConnection.setRequestProperty("Content-Length", Integer.toString(bodyB.length));
-
-         OutputStream os = httpURLConnection.getOutputStream();
-         os.write(bodyB, 0, bodyB.length);
-         os.flush();
-         os.close();
+         exchange.setBody(new ByteArrayBodyWriter(bodyB));
       }
 
       printToLogUrl();
@@ -104,7 +86,7 @@ public class PostRequest extends WebRequest {
 
    private void setRequestProperties() {
       for (Map.Entry<String, String> entry : requestProperties.entrySet()) {
-         httpURLConnection.setRequestProperty(entry.getKey(), entry.getValue());
+         exchange.setRequestHeader(entry.getKey(), entry.getValue());
       }
    }
 
@@ -114,7 +96,7 @@ public class PostRequest extends WebRequest {
       }
       StringBuilder result = new StringBuilder();
       boolean first = true;
-      for (Map.Entry<String, String> entry : postData.entrySet()) {
+      for (Map.Entry<String, String> entry : new TreeMap<String, String>(postData).entrySet()) {
          if (first)
             first = false;
          else
@@ -221,6 +203,31 @@ public class PostRequest extends WebRequest {
       return this;
    }
 
+   @Override
+   public String getMethod() {
+      return "POST";
+   }
+
+   @Override
+   protected void appendToRequestKey(RequestKey.Builder key) {
+      key.addHeaders(requestProperties);
+      if (body != null) {
+         key.setBody(body);
+      } else if (!postData.isEmpty()) {
+         key.setBody(getPostDataString());
+      } else {
+         key.setBody(bodyB);
+      }
+   }
+
+   /**
+    * POST changes the server state, so equal requests are never coalesced.
+    */
+   @Override
+   public boolean isCoalescingAllowed() {
+      return false;
+   }
+
    // ********************************************************************************
 
    /**
@@ -467,8 +474,14 @@ public class PostRequest extends WebRequest {
    }
 
    @Override
-   public PostRequest addProgressDialog(Context context, String title, String message) {
-      setupProgress(context, title, message);
+   public PostRequest setProgressIndicator(ProgressIndicator progressIndicator) {
+      this.progressIndicator = progressIndicator;
+      return this;
+   }
+
+   @Override
+   public PostRequest setPriority(Priority priority) {
+      this.priority = priority;
       return this;
    }
 
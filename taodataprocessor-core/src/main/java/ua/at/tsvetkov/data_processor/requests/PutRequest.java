@@ -23,19 +23,16 @@
  ******************************************************************************/
 package ua.at.tsvetkov.data_processor.requests;
 
-import android.content.Context;
-
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
 import java.util.HashMap;
 import java.util.Map;
 
 import ua.at.tsvetkov.data_processor.helpers.Scheme;
-import ua.at.tsvetkov.util.Log;
+import ua.at.tsvetkov.data_processor.platform.Log;
+import ua.at.tsvetkov.data_processor.platform.ProgressIndicator;
+import ua.at.tsvetkov.data_processor.threads.Priority;
+import ua.at.tsvetkov.data_processor.transport.ByteArrayBodyWriter;
 
 /**
  * Put Request builder.
@@ -64,30 +61,16 @@ public class PutRequest extends WebRequest {
       }
       startTime = System.currentTimeMillis();
 
-      httpURLConnection = (HttpURLConnection) getURL().openConnection();
-      httpURLConnection.setRequestMethod("PUT");
-      httpURLConnection.setDoInput(true);
-      httpURLConnection.setDoOutput(true);
-      httpURLConnection.setChunkedStreamingMode(0);
-      httpURLConnection.setReadTimeout(configuration.getTimeout());
-      httpURLConnection.setConnectTimeout(configuration.getTimeout());
+      openExchange("PUT");
       setRequestProperties();
+      addAcceptEncoding();
 
       if (body != null) {
-         httpURLConnection.setRequestProperty("Content-Length", Integer.toString(body.length()));
-
-         OutputStream os = httpURLConnection.getOutputStream();
-         BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"));
-         writer.write(body);
-         writer.flush();
-         writer.close();
+         exchange.setBody(new ByteArrayBodyWriter(body.getBytes("UTF-8")));
       } else if (bodyB != null) {
-         httpURLConnection.setRequestProperty("Content-Length", Integer.toString(bodyB.length));
-
-         OutputStream os = httpURLConnection.getOutputStream();
-         os.write(bodyB, 0, bodyB.length);
-         os.flush();
-         os.close();
+         exchange.setBody(new ByteArrayBodyWriter(bodyB));
+      } else {
+         exchange.setBody(new ByteArrayBodyWriter(new byte[0]));
       }
 
       printToLogUrl();
@@ -97,10 +80,33 @@ public class PutRequest extends WebRequest {
 
    private void setRequestProperties() {
       for (Map.Entry<String, String> entry : requestProperties.entrySet()) {
-         httpURLConnection.setRequestProperty(entry.getKey(), entry.getValue());
+         exchange.setRequestHeader(entry.getKey(), entry.getValue());
+      }
+   }
+
+   @Override
+   public String getMethod() {
+      return "PUT";
+   }
+
+   @Override
+   protected void appendToRequestKey(RequestKey.Builder key) {
+      key.addHeaders(requestProperties);
+      if (body != null) {
+         key.setBody(body);
+      } else {
+         key.setBody(bodyB);
       }
    }
 
+   /**
+    * PUT changes the server state, so equal requests are never coalesced.
+    */
+   @Override
+   public boolean isCoalescingAllowed() {
+      return false;
+   }
+
    // ********************************************************************************
 
    /**
@@ -336,8 +342,14 @@ public class PutRequest extends WebRequest {
    }
 
    @Override
-   public PutRequest addProgressDialog(Context context, String title, String message) {
-      setupProgress(context, title, message);
+   public PutRequest setProgressIndicator(ProgressIndicator progressIndicator) {
+      this.progressIndicator = progressIndicator;
+      return this;
+   }
+
+   @Override
+   public PutRequest setPriority(Priority priority) {
+      this.priority = priority;
       return this;
    }
 
@@ -23,9 +23,6 @@
  ******************************************************************************/
 package ua.at.tsvetkov.data_processor.requests;
 
-import android.app.ProgressDialog;
-import android.content.Context;
-
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -34,13 +31,16 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.util.HashMap;
+import java.util.TreeMap;
 import java.util.Map.Entry;
 
 import ua.at.tsvetkov.data_processor.DataProcessor;
 import ua.at.tsvetkov.data_processor.DataProcessorConfiguration;
 import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
 import ua.at.tsvetkov.data_processor.helpers.Scheme;
-import ua.at.tsvetkov.util.Log;
+import ua.at.tsvetkov.data_processor.platform.Log;
+import ua.at.tsvetkov.data_processor.platform.ProgressIndicator;
+import ua.at.tsvetkov.data_processor.threads.Priority;
 
 /**
  * Abstract class for a Request building. If not specified the request be built with basic configuration parameters specified in
@@ -56,6 +56,7 @@ public abstract class Request {
    private static final   String PASSWORD_IS_NOT_SPECIFIED = "Username is available in the request, but the password is not specified";
    protected static final String CONFIGURATION_ERROR       = "DataProcessor configuration is not initialized.";
    protected static final String REQUEST_IS_NOT_BUILDED    = "Request is not builded";
+   public static final    long   TTL_NOT_SET               = -1;
    private static final   String AR_R                      = "\u2192";
 
    protected DataProcessorConfiguration configuration = DataProcessor.getInstance().getConfiguration();
@@ -73,16 +74,18 @@ public abstract class Request {
    protected String                  cacheFileName;
    protected String                  tag;
    protected boolean                 isRewriteFile;
+   protected boolean                 isDiskCached;
+   protected boolean                 isFromCache;
+   protected long                    cacheTtl = TTL_NOT_SET;
+   protected boolean                 isNoCache;
+   protected boolean                 isStaleAllowed;
+   protected Priority                priority = Priority.FOREGROUND;
    protected long                    startTime;
    @ConnectionConstants.ConnectionResponseCode
    protected int                     statusCode;
    protected String statusMessage = "";
 
-   protected boolean isNeedProgressDialog = false;
-   protected Context        context;
-   protected String         progressDialogTitle;
-   protected String         progressDialogMessage;
-   protected ProgressDialog progressDialog;
+   protected ProgressIndicator progressIndicator;
 
    protected Request() {
       if (configuration == null || configuration.getHttpUserAgent() == null) {
@@ -98,6 +101,19 @@ public abstract class Request {
     */
    public abstract InputStream getInputStream() throws IOException;
 
+   /**
+    * Starts the request with the cache flags of one execution instead of {@link #isNoCache()} and {@link #isStaleAllowed()}. The flags
+    * of the request are not changed. The requests which are not served from the response cache ignore them.
+    *
+    * @param isNoCache      is revalidation required
+    * @param isStaleAllowed is expired response allowed
+    * @return response data as InputStream
+    * @throws IOException
+    */
+   public InputStream getInputStream(boolean isNoCache, boolean isStaleAllowed) throws IOException {
+      return getInputStream();
+   }
+
    /**
     * Release resources associated with this request.
     *
@@ -105,6 +121,17 @@ public abstract class Request {
     */
    public abstract void close() throws Exception;
 
+   /**
+    * Abort the request from another thread. Releases its resources, so the blocked reading of the response fails.
+    */
+   public void abort() {
+      try {
+         close();
+      } catch (Exception e) {
+         Log.w("Error during aborting the request " + this, e);
+      }
+   }
+
    /**
     * Build prepared request.
     *
@@ -143,7 +170,7 @@ public abstract class Request {
          if (queries != null) {
             sb.append('?');
             int count = queries.size();
-            for (Entry<String, String> query : queries.entrySet()) {
+            for (Entry<String, String> query : new TreeMap<String, String>(queries).entrySet()) {
                count--;
                sb.append(query.getKey());
                sb.append('=');
@@ -164,47 +191,52 @@ public abstract class Request {
    }
 
    /**
-    * Add and show during execution standard ProgressDialog.
+    * Add and show during execution a progress indicator. On Android use
+    * {@code new ProgressDialogIndicator(context, title, message)} for the standard ProgressDialog.
     *
-    * @param context app context
-    * @param title   dialog title
-    * @param message dialog message
+    * @param progressIndicator progress indicator
     */
-   public Request addProgressDialog(Context context, String title, String message) {
-      setupProgress(context, title, message);
+   public Request setProgressIndicator(ProgressIndicator progressIndicator) {
+      this.progressIndicator = progressIndicator;
       return this;
    }
 
    /**
-    * Add and show during execution standard ProgressDialog. For internal setup.
-    *
-    * @param context context app context
-    * @param title   dialog title
-    * @param message dialog message
+    * Show the progress indicator, if it was added.
     */
-   protected void setupProgress(Context context, String title, String message) {
-      this.isNeedProgressDialog = true;
-      this.context = context;
-      this.progressDialogTitle = title;
-      this.progressDialogMessage = message;
+   public void showProgressDialog() {
+      if (progressIndicator != null) {
+         progressIndicator.show();
+      }
    }
 
    /**
-    * Show standard ProgressDialog.
+    * Dismiss the progress indicator, if it was added.
     */
-   public void showProgressDialog() {
-      if (isNeedProgressDialog && progressDialog == null) {
-         progressDialog = ProgressDialog.show(context, progressDialogTitle, progressDialogMessage);
+   public void dismissProgressDialog() {
+      if (progressIndicator != null) {
+         progressIndicator.dismiss();
       }
    }
 
    /**
-    * Dismiss standard ProgressDialog.
+    * Set the thread pool lane of the request. Background requests are executed after all queued foreground requests and can be
+    * discarded when the queue is full.
+    *
+    * @param priority request priority
     */
-   public void dismissProgressDialog() {
-      if (progressDialog != null && progressDialog.isShowing()) {
-         progressDialog.dismiss();
-      }
+   public Request setPriority(Priority priority) {
+      this.priority = priority;
+      return this;
+   }
+
+   /**
+    * Returns the thread pool lane of the request.
+    *
+    * @return request priority
+    */
+   public Priority getPriority() {
+      return priority;
    }
 
    /**
@@ -225,6 +257,81 @@ public abstract class Request {
       return isRewriteFile;
    }
 
+   /**
+    * Returns whether the response is stored in the disk cache of the data processor.
+    *
+    * @return is disk cached
+    */
+   public boolean isDiskCached() {
+      return isDiskCached;
+   }
+
+   /**
+    * Set the time during which the cached response of this request is used without a request to the server. Overrides the TTL set in the
+    * configuration.
+    *
+    * @param ttl time in ms, 0 - revalidate the cached response on every request
+    */
+   public Request setCacheTtl(long ttl) {
+      this.cacheTtl = ttl;
+      return this;
+   }
+
+   /**
+    * Returns the TTL of the cached response of this request.
+    *
+    * @return time in ms or {@link #TTL_NOT_SET}
+    */
+   public long getCacheTtl() {
+      return cacheTtl;
+   }
+
+   /**
+    * Do not use a fresh cached response, revalidate it with the server.
+    *
+    * @param isNoCache is revalidation required
+    */
+   public Request setNoCache(boolean isNoCache) {
+      this.isNoCache = isNoCache;
+      return this;
+   }
+
+   public boolean isNoCache() {
+      return isNoCache;
+   }
+
+   /**
+    * Use the cached response even if it is expired, without a request to the server.
+    *
+    * @param isStaleAllowed is expired response allowed
+    */
+   public Request setStaleAllowed(boolean isStaleAllowed) {
+      this.isStaleAllowed = isStaleAllowed;
+      return this;
+   }
+
+   public boolean isStaleAllowed() {
+      return isStaleAllowed;
+   }
+
+   /**
+    * Returns whether the response was taken from the cache, without a network request.
+    *
+    * @return is response from cache
+    */
+   public boolean isFromCache() {
+      return isFromCache;
+   }
+
+   /**
+    * Mark that the response is taken from the cache, without a network request.
+    *
+    * @param isFromCache is response from cache
+    */
+   public void setFromCache(boolean isFromCache) {
+      this.isFromCache = isFromCache;
+   }
+
    /**
     * Return start processing time
     *
@@ -309,6 +416,85 @@ public abstract class Request {
       }
    }
 
+   /**
+    * Returns the canonical key of the built request. Requests with the same key fetch the same data. Execution state (start time,
+    * status) and the order in which the query parameters and headers were added do not change the key.
+    *
+    * @return request key
+    */
+   public RequestKey getKey() {
+      if (!isBuild()) {
+         throw new IllegalArgumentException(REQUEST_IS_NOT_BUILDED);
+      }
+      StringBuilder url = new StringBuilder();
+      if (this.url != null) {
+         url.append(this.url);
+      } else {
+         url.append(scheme);
+         if (username != null) {
+            url.append(username);
+            url.append('@');
+         }
+         url.append(host);
+         url.append(port);
+         if (path != null) {
+            url.append(checkForSlash(path));
+         }
+         if (queries != null && !queries.isEmpty()) {
+            url.append('?');
+            int count = queries.size();
+            for (Entry<String, String> query : queries.entrySet()) {
+               count--;
+               url.append(query.getKey());
+               url.append('=');
+               url.append(query.getValue());
+               if (count > 0) {
+                  url.append('&');
+               }
+            }
+         }
+      }
+      RequestKey.Builder key = RequestKey.newBuilder(getMethod(), url.toString(), configuration.getRequestKeyHeaders());
+      appendToRequestKey(key);
+      return key.build();
+   }
+
+   /**
+    * Returns the canonical form of {@link #getKey()}, used as the key of the response and disk caches.
+    *
+    * @return request key
+    */
+   public String getRequestKey() {
+      return getKey().toString();
+   }
+
+   /**
+    * Append to the request key the request specific parts, like headers or body, which change the response.
+    *
+    * @param key request key builder
+    */
+   protected void appendToRequestKey(RequestKey.Builder key) {
+   }
+
+   /**
+    * Returns the request method, which is a part of the request key.
+    *
+    * @return method
+    */
+   public String getMethod() {
+      return "GET";
+   }
+
+   /**
+    * Returns whether the concurrent executions of equal requests may share one execution and its result. False for the requests which
+    * change the server state.
+    *
+    * @return is coalescing allowed
+    */
+   public boolean isCoalescingAllowed() {
+      return true;
+   }
+
    /*
     * (non-Javadoc)
     * @see java.lang.Object#hashCode()
@@ -322,13 +508,12 @@ public abstract class Request {
       result = prime * result + ((fragment == null) ? 0 : fragment.hashCode());
       result = prime * result + ((host == null) ? 0 : host.hashCode());
       result = prime * result + (isRewriteFile ? 1231 : 1237);
+      result = prime * result + (isDiskCached ? 1231 : 1237);
       result = prime * result + ((password == null) ? 0 : password.hashCode());
       result = prime * result + ((path == null) ? 0 : path.hashCode());
       result = prime * result + ((port == null) ? 0 : port.hashCode());
       result = prime * result + ((queries == null) ? 0 : queries.hashCode());
       result = prime * result + ((scheme == null) ? 0 : scheme.hashCode());
-      result = prime * result + (int) (startTime ^ (startTime >>> 32));
-      result = prime * result + statusCode;
       result = prime * result + ((tag == null) ? 0 : tag.hashCode());
       result = prime * result + ((url == null) ? 0 : url.hashCode());
       result = prime * result + ((username == null) ? 0 : username.hashCode());
@@ -382,6 +567,9 @@ public abstract class Request {
       if (isRewriteFile != other.isRewriteFile) {
          return false;
       }
+      if (isDiskCached != other.isDiskCached) {
+         return false;
+      }
       if (password == null) {
          if (other.password != null) {
             return false;
@@ -417,12 +605,6 @@ public abstract class Request {
       } else if (!scheme.equals(other.scheme)) {
          return false;
       }
-      if (startTime != other.startTime) {
-         return false;
-      }
-      if (statusCode != other.statusCode) {
-         return false;
-      }
       if (tag == null) {
          if (other.tag != null) {
             return false;
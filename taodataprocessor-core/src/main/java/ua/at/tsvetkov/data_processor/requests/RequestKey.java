@@ -0,0 +1,382 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.requests;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Canonical key of a request: method, normalized URL with sorted query parameters, the headers which change the response and the digest
+ * of the body, with a 128-bit MurmurHash3 of all of them. Equal requests have equal keys regardless of the order in which their parameters
+ * and headers were added, the execution state of the request is not a part of the key. Only the digest of the credential headers
+ * (Authorization, Proxy-Authorization and Cookie) is kept, so the key can be stored and logged. Used to key the caches and the
+ * single-flight executions, see {@link Request#getKey()}.
+ *
+ * @author lordtao
+ */
+public final class RequestKey {
+
+   private static final Charset UTF_8 = Charset.forName("UTF-8");
+   private static final char[]  HEX   = "0123456789abcdef".toCharArray();
+   private static final long    C1    = 0x87c37b91114253d5L;
+   private static final long    C2    = 0x4cf5ad432745937fL;
+
+   private static final Set<String> CREDENTIAL_HEADERS = new HashSet<String>(Arrays.asList("authorization", "proxy-authorization", "cookie"));
+
+   private final String method;
+   private final String url;
+   private final String headers;
+   private final String bodyDigest;
+   private final String canonical;
+   private final long   hash1;
+   private final long   hash2;
+
+   private RequestKey(Builder builder) {
+      method = builder.method;
+      url = builder.url;
+      headers = builder.headers.isEmpty() ? null : builder.headers.toString();
+      bodyDigest = builder.bodyDigest;
+      StringBuilder sb = new StringBuilder(method).append(' ').append(url);
+      if (headers != null) {
+         sb.append(' ').append(headers);
+      }
+      if (bodyDigest != null) {
+         sb.append(" body:").append(bodyDigest);
+      }
+      canonical = sb.toString();
+      long[] hash = murmur3(canonical.getBytes(UTF_8));
+      hash1 = hash[0];
+      hash2 = hash[1];
+   }
+
+   /**
+    * Returns a new key builder.
+    *
+    * @param method      request method, like "GET"
+    * @param url         request URL, it is normalized by the builder
+    * @param keyHeaders  names of the headers which are a part of the key or null for all headers
+    * @return builder
+    */
+   public static Builder newBuilder(String method, String url, Collection<String> keyHeaders) {
+      return new Builder(method, url, keyHeaders);
+   }
+
+   /**
+    * Returns the URL with lowercase scheme and host, without the fragment and with the query parameters sorted.
+    *
+    * @param url URL
+    * @return normalized URL
+    */
+   public static String normalizeUrl(String url) {
+      int fragment = url.indexOf('#');
+      if (fragment >= 0) {
+         url = url.substring(0, fragment);
+      }
+      String query = null;
+      int queryStart = url.indexOf('?');
+      if (queryStart >= 0) {
+         query = url.substring(queryStart + 1);
+         url = url.substring(0, queryStart);
+      }
+      int authorityStart = url.indexOf("://");
+      authorityStart = authorityStart < 0 ? 0 : authorityStart + 3;
+      int pathStart = url.indexOf('/', authorityStart);
+      if (pathStart < 0) {
+         pathStart = url.length();
+      }
+      StringBuilder sb = new StringBuilder(url.length() + (query == null ? 0 : query.length() + 1));
+      sb.append(url.substring(0, pathStart).toLowerCase(Locale.US));
+      sb.append(url, pathStart, url.length());
+      if (query != null && query.length() > 0) {
+         String[] params = query.split("&");
+         Arrays.sort(params);
+         sb.append('?');
+         for (int i = 0; i < params.length; i++) {
+            if (i > 0) {
+               sb.append('&');
+            }
+            sb.append(params[i]);
+         }
+      }
+      return sb.toString();
+   }
+
+   public String getMethod() {
+      return method;
+   }
+
+   /**
+    * Returns the normalized URL.
+    *
+    * @return URL
+    */
+   public String getUrl() {
+      return url;
+   }
+
+   /**
+    * Returns the digest of the body or null if the request has no body.
+    *
+    * @return 128-bit MurmurHash3 of the body in hex
+    */
+   public String getBodyDigest() {
+      return bodyDigest;
+   }
+
+   /**
+    * Returns the 64-bit hash of the key.
+    *
+    * @return hash
+    */
+   public long getHash64() {
+      return hash1;
+   }
+
+   /**
+    * Returns the 128-bit hash of the key in hex, it can be used as a file name.
+    *
+    * @return 32 hex characters
+    */
+   public String getHash128() {
+      return toHex(new long[]{hash1, hash2});
+   }
+
+   @Override
+   public int hashCode() {
+      return (int) (hash1 ^ (hash1 >>> 32));
+   }
+
+   @Override
+   public boolean equals(Object obj) {
+      if (this == obj) {
+         return true;
+      }
+      if (!(obj instanceof RequestKey)) {
+         return false;
+      }
+      RequestKey other = (RequestKey) obj;
+      return hash1 == other.hash1 && hash2 == other.hash2 && canonical.equals(other.canonical);
+   }
+
+   /**
+    * Returns the canonical form of the key: method, URL, headers and body digest.
+    *
+    * @return canonical key
+    */
+   @Override
+   public String toString() {
+      return canonical;
+   }
+
+   private static void toHex(long value, char[] hex, int offset) {
+      for (int i = 15; i >= 0; i--) {
+         hex[offset + i] = HEX[(int) (value & 0xf)];
+         value >>>= 4;
+      }
+   }
+
+   private static String toHex(long[] hash) {
+      char[] hex = new char[32];
+      toHex(hash[0], hex, 0);
+      toHex(hash[1], hex, 16);
+      return new String(hex);
+   }
+
+   /**
+    * MurmurHash3 x64 128-bit with the seed 0. The cases of the tail switch fall through intentionally, as in the reference
+    * implementation.
+    */
+   @SuppressWarnings("fallthrough")
+   static long[] murmur3(byte[] data) {
+      int length = data.length;
+      int blocks = length >>> 4;
+      long h1 = 0;
+      long h2 = 0;
+      for (int i = 0; i < blocks; i++) {
+         long k1 = getLong(data, i << 4);
+         long k2 = getLong(data, (i << 4) + 8);
+         k1 *= C1;
+         k1 = Long.rotateLeft(k1, 31);
+         k1 *= C2;
+         h1 ^= k1;
+         h1 = Long.rotateLeft(h1, 27);
+         h1 += h2;
+         h1 = h1 * 5 + 0x52dce729;
+         k2 *= C2;
+         k2 = Long.rotateLeft(k2, 33);
+         k2 *= C1;
+         h2 ^= k2;
+         h2 = Long.rotateLeft(h2, 31);
+         h2 += h1;
+         h2 = h2 * 5 + 0x38495ab5;
+      }
+      int tail = blocks << 4;
+      long k1 = 0;
+      long k2 = 0;
+      switch (length & 15) {
+         case 15:
+            k2 ^= ((long) data[tail + 14] & 0xff) << 48;
+         case 14:
+            k2 ^= ((long) data[tail + 13] & 0xff) << 40;
+         case 13:
+            k2 ^= ((long) data[tail + 12] & 0xff) << 32;
+         case 12:
+            k2 ^= ((long) data[tail + 11] & 0xff) << 24;
+         case 11:
+            k2 ^= ((long) data[tail + 10] & 0xff) << 16;
+         case 10:
+            k2 ^= ((long) data[tail + 9] & 0xff) << 8;
+         case 9:
+            k2 ^= (long) data[tail + 8] & 0xff;
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+         case 8:
+            k1 ^= ((long) data[tail + 7] & 0xff) << 56;
+         case 7:
+            k1 ^= ((long) data[tail + 6] & 0xff) << 48;
+         case 6:
+            k1 ^= ((long) data[tail + 5] & 0xff) << 40;
+         case 5:
+            k1 ^= ((long) data[tail + 4] & 0xff) << 32;
+         case 4:
+            k1 ^= ((long) data[tail + 3] & 0xff) << 24;
+         case 3:
+            k1 ^= ((long) data[tail + 2] & 0xff) << 16;
+         case 2:
+            k1 ^= ((long) data[tail + 1] & 0xff) << 8;
+         case 1:
+            k1 ^= (long) data[tail] & 0xff;
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+         default:
+            break;
+      }
+      h1 ^= length;
+      h2 ^= length;
+      h1 += h2;
+      h2 += h1;
+      h1 = fmix(h1);
+      h2 = fmix(h2);
+      h1 += h2;
+      h2 += h1;
+      return new long[]{h1, h2};
+   }
+
+   private static long getLong(byte[] data, int offset) {
+      return ((long) data[offset] & 0xff)
+              | ((long) data[offset + 1] & 0xff) << 8
+              | ((long) data[offset + 2] & 0xff) << 16
+              | ((long) data[offset + 3] & 0xff) << 24
+              | ((long) data[offset + 4] & 0xff) << 32
+              | ((long) data[offset + 5] & 0xff) << 40
+              | ((long) data[offset + 6] & 0xff) << 48
+              | ((long) data[offset + 7] & 0xff) << 56;
+   }
+
+   private static long fmix(long k) {
+      k ^= k >>> 33;
+      k *= 0xff51afd7ed558ccdL;
+      k ^= k >>> 33;
+      k *= 0xc4ceb9fe1a85ec53L;
+      k ^= k >>> 33;
+      return k;
+   }
+
+   public static final class Builder {
+
+      private final String                  method;
+      private final String                  url;
+      private final Set<String>             keyHeaders;
+      private final TreeMap<String, String> headers = new TreeMap<String, String>();
+      private String bodyDigest;
+
+      private Builder(String method, String url, Collection<String> keyHeaders) {
+         this.method = method.toUpperCase(Locale.US);
+         this.url = normalizeUrl(url);
+         if (keyHeaders == null) {
+            this.keyHeaders = null;
+         } else {
+            this.keyHeaders = new HashSet<String>();
+            for (String name : keyHeaders) {
+               this.keyHeaders.add(name.toLowerCase(Locale.US));
+            }
+         }
+      }
+
+      /**
+       * Add the header, if it is a key header. The names are case insensitive. Only the digest of the value of a credential header is
+       * added.
+       *
+       * @param name  header name
+       * @param value header value
+       */
+      public Builder addHeader(String name, String value) {
+         String lowerCaseName = name.toLowerCase(Locale.US);
+         if (keyHeaders == null || keyHeaders.contains(lowerCaseName)) {
+            if (value != null && CREDENTIAL_HEADERS.contains(lowerCaseName)) {
+               value = "digest:" + toHex(murmur3(value.getBytes(UTF_8)));
+            }
+            headers.put(lowerCaseName, value);
+         }
+         return this;
+      }
+
+      public Builder addHeaders(Map<String, String> headers) {
+         for (Map.Entry<String, String> header : headers.entrySet()) {
+            addHeader(header.getKey(), header.getValue());
+         }
+         return this;
+      }
+
+      /**
+       * Set the request body, only its digest is kept in the key.
+       *
+       * @param body body
+       */
+      public Builder setBody(byte[] body) {
+         bodyDigest = body == null ? null : toHex(murmur3(body));
+         return this;
+      }
+
+      public Builder setBody(String body) {
+         return setBody(body == null ? null : body.getBytes(UTF_8));
+      }
+
+      public RequestKey build() {
+         return new RequestKey(this);
+      }
+
+   }
+
+}
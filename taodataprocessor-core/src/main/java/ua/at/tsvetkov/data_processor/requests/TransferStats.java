@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.requests;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bytes of the web responses received from the network, per endpoint. The wire bytes are the response body as it was transferred,
+ * compressed if the server used a {@code Content-Encoding}, the decoded bytes are the body given to the parser. The difference shows the
+ * bandwidth saved by the compressed transfer.
+ *
+ * @author lordtao
+ */
+public class TransferStats {
+
+   private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<String, Endpoint>();
+
+   /**
+    * Record a received response.
+    *
+    * @param endpoint     endpoint, the URL without the query
+    * @param wireBytes    transferred body size in bytes
+    * @param decodedBytes decoded body size in bytes
+    * @param isEncoded    is the body transferred compressed
+    */
+   public void record(String endpoint, long wireBytes, long decodedBytes, boolean isEncoded) {
+      Endpoint stats = endpoints.get(endpoint);
+      if (stats == null) {
+         Endpoint created = new Endpoint();
+         stats = endpoints.putIfAbsent(endpoint, created);
+         if (stats == null) {
+            stats = created;
+         }
+      }
+      stats.responses.incrementAndGet();
+      if (isEncoded) {
+         stats.encodedResponses.incrementAndGet();
+      }
+      stats.wireBytes.addAndGet(wireBytes);
+      stats.decodedBytes.addAndGet(decodedBytes);
+   }
+
+   /**
+    * Returns the statistics of the endpoint.
+    *
+    * @param endpoint endpoint, the URL without the query
+    * @return statistics or null if no response of the endpoint was received
+    */
+   public Endpoint get(String endpoint) {
+      return endpoints.get(endpoint);
+   }
+
+   /**
+    * Returns the statistics of all endpoints.
+    *
+    * @return statistics by endpoint
+    */
+   public Map<String, Endpoint> getEndpoints() {
+      return Collections.unmodifiableMap(new HashMap<String, Endpoint>(endpoints));
+   }
+
+   /**
+    * Returns the total transferred size of the response bodies.
+    *
+    * @return size in bytes
+    */
+   public long getWireBytes() {
+      long bytes = 0;
+      for (Endpoint endpoint : endpoints.values()) {
+         bytes += endpoint.getWireBytes();
+      }
+      return bytes;
+   }
+
+   /**
+    * Returns the total decoded size of the response bodies.
+    *
+    * @return size in bytes
+    */
+   public long getDecodedBytes() {
+      long bytes = 0;
+      for (Endpoint endpoint : endpoints.values()) {
+         bytes += endpoint.getDecodedBytes();
+      }
+      return bytes;
+   }
+
+   public void clear() {
+      endpoints.clear();
+   }
+
+   @Override
+   public String toString() {
+      return "TransferStats " + endpoints;
+   }
+
+   /**
+    * Transfer statistics of one endpoint.
+    */
+   public static class Endpoint {
+
+      private final AtomicLong responses        = new AtomicLong();
+      private final AtomicLong encodedResponses = new AtomicLong();
+      private final AtomicLong wireBytes        = new AtomicLong();
+      private final AtomicLong decodedBytes     = new AtomicLong();
+
+      public long getResponses() {
+         return responses.get();
+      }
+
+      /**
+       * Returns the number of the responses transferred compressed.
+       *
+       * @return responses count
+       */
+      public long getEncodedResponses() {
+         return encodedResponses.get();
+      }
+
+      public long getWireBytes() {
+         return wireBytes.get();
+      }
+
+      public long getDecodedBytes() {
+         return decodedBytes.get();
+      }
+
+      /**
+       * Returns the bytes not transferred thanks to the compression.
+       *
+       * @return size in bytes
+       */
+      public long getSavedBytes() {
+         return decodedBytes.get() - wireBytes.get();
+      }
+
+      @Override
+      public String toString() {
+         return "[responses=" + responses + ", encoded=" + encodedResponses + ", wire=" + wireBytes + ", decoded=" + decodedBytes + "]";
+      }
+
+   }
+
+}
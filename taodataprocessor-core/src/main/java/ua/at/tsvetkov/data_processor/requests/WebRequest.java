@@ -0,0 +1,554 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.requests;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Locale;
+
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.cache.CachedResponse;
+import ua.at.tsvetkov.data_processor.cache.CachingInputStream;
+import ua.at.tsvetkov.data_processor.cache.ResponseCache;
+import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
+import ua.at.tsvetkov.data_processor.helpers.CountingInputStream;
+import ua.at.tsvetkov.data_processor.platform.Log;
+import ua.at.tsvetkov.data_processor.transport.Exchange;
+import ua.at.tsvetkov.data_processor.transport.HttpUrlConnectionTransport;
+import ua.at.tsvetkov.data_processor.transport.Transport;
+
+/**
+ * Abstract class for a Web Request building, sent over the {@link Transport} of the configuration, by default
+ * {@link java.net.HttpURLConnection HttpURLConnection}.</br> If not specified the request be built with basic configuration parameters
+ * specified in {@link ua.at.tsvetkov.data_processor.DataProcessorConfiguration DataProcessorConfiguration}.
+ *
+ * @author lordtao
+ */
+public abstract class WebRequest extends Request {
+
+   private static final String IF_NONE_MATCH     = "If-None-Match";
+   private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+   private static final String ETAG              = "ETag";
+   private static final String LAST_MODIFIED     = "Last-Modified";
+   private static final String CACHE_CONTROL     = "Cache-Control";
+   private static final String CONTENT_ENCODING  = "Content-Encoding";
+   private static final String NO_STORE          = "no-store";
+   private static final String ACCEPT_ENCODING   = "Accept-Encoding";
+   private static final String GZIP_DEFLATE      = "gzip, deflate";
+   private static final int    BUFFER            = 8 * 1024;
+   /**
+    * A longer rest of the body is not read on close, the connection is disconnected instead.
+    */
+   private static final int    MAX_DRAIN_SIZE    = 64 * 1024;
+
+   protected volatile Exchange exchange;
+   protected CachedResponse cachedResponse;
+   protected boolean        isNotModified;
+   protected boolean        isStale;
+   private CountingInputStream wireStream;
+   private CountingInputStream decodedStream;
+   private String              contentEncoding;
+   private long                wireBytes    = -1;
+   private long                decodedBytes = -1;
+   private KeepAliveInputStream bodyStream;
+   private String               connectionHost;
+   private Transport            transport;
+   private boolean              isReleased;
+
+   public WebRequest() {
+
+   }
+
+   protected BufferedInputStream getStream() {
+      InputStream stream = null;
+      try {
+         stream = exchange.getBody();
+      } catch (IOException e) {
+         Log.w("No response body " + this, e);
+      }
+      if (stream == null) {
+         return new BufferedInputStream(null);
+      }
+      return new BufferedInputStream(decode(stream));
+   }
+
+   /**
+    * Ask the server for a compressed response body, unless the Accept-Encoding header is set for this request or the compressed transfer
+    * is disabled in the configuration. Must be called before the connection is established.
+    */
+   protected void addAcceptEncoding() {
+      if (configuration.isTransferCompressionEnabled() && exchange.getRequestHeader(ACCEPT_ENCODING) == null) {
+         exchange.setRequestHeader(ACCEPT_ENCODING, GZIP_DEFLATE);
+      }
+   }
+
+   /**
+    * Open the exchange of this request over its transport, with the timeouts of the configuration. The connection to the host may be
+    * taken from the pool of the keep-alive connections. Only the connections of {@link HttpUrlConnectionTransport} are counted by
+    * {@link DataProcessor#getConnectionPoolStats()}, it models the pool of {@link HttpURLConnection}.
+    *
+    * @param method request method
+    * @return exchange, not executed yet
+    * @throws IOException if the exchange can not be opened
+    */
+   protected Exchange openExchange(String method) throws IOException {
+      URL url = getURL();
+      if (url == null) {
+         throw new MalformedURLException(toString());
+      }
+      exchange = getTransport().newExchange(method, url);
+      isReleased = false;
+      if (getTransport() instanceof HttpUrlConnectionTransport) {
+         connectionHost = url.getProtocol() + "://" + url.getHost() + ':' + url.getPort();
+         DataProcessor.getInstance().getConnectionPoolStats().onConnect(connectionHost);
+      } else {
+         connectionHost = null;
+      }
+      exchange.setTimeouts(configuration.getTimeout(), configuration.getTimeout());
+      return exchange;
+   }
+
+   /**
+    * Send this request over the given transport instead of the transport of the configuration, for example to benchmark the transports
+    * with the same requests. The response cache and the coalescing of the equal requests do not tell the transports apart, disable them
+    * for such requests with {@link #setNoCache(boolean)}.
+    *
+    * @param transport transport or null for the transport of the configuration
+    * @return this request
+    */
+   public WebRequest setTransport(Transport transport) {
+      this.transport = transport;
+      return this;
+   }
+
+   /**
+    * Returns the transport this request is sent over.
+    *
+    * @return transport
+    */
+   public Transport getTransport() {
+      return transport != null ? transport : configuration.getTransport();
+   }
+
+   /**
+    * Decode the body according to its Content-Encoding and count the transferred and the decoded bytes. In the keep-alive mode the rest
+    * of the body is read on close, to release the connection to the pool.
+    */
+   private InputStream decode(InputStream stream) {
+      wireStream = new CountingInputStream(stream);
+      InputStream body = wireStream;
+      if (configuration.isKeepAliveEnabled()) {
+         body = bodyStream = new KeepAliveInputStream(wireStream);
+      }
+      InputStream decoded = body;
+      String encoding = exchange.getResponseHeader(CONTENT_ENCODING);
+      contentEncoding = encoding == null ? null : encoding.trim().toLowerCase(Locale.US);
+      if (contentEncoding != null && ContentDecodingInputStream.isSupported(contentEncoding)) {
+         decoded = new ContentDecodingInputStream(body, !ContentDecodingInputStream.DEFLATE.equals(contentEncoding));
+      } else if (contentEncoding != null && contentEncoding.length() > 0 && !"identity".equals(contentEncoding)) {
+         Log.w("Unsupported Content-Encoding " + contentEncoding + " " + this);
+      }
+      decodedStream = new CountingInputStream(decoded);
+      return decodedStream;
+   }
+
+   /**
+    * Add the transferred and the decoded bytes of the response body to the statistics of the endpoint, see
+    * {@link DataProcessor#getTransferStats()}.
+    */
+   private void recordTransfer() {
+      CountingInputStream wire = wireStream;
+      CountingInputStream decoded = decodedStream;
+      wireStream = null;
+      decodedStream = null;
+      if (wire == null || decoded == null) {
+         return;
+      }
+      URL url = exchange.getURL();
+      String endpoint = url.getProtocol() + "://" + url.getAuthority() + url.getPath();
+      boolean isEncoded = contentEncoding != null && ContentDecodingInputStream.isSupported(contentEncoding);
+      wireBytes = wire.getCount();
+      decodedBytes = decoded.getCount();
+      DataProcessor.getInstance().getTransferStats().record(endpoint, wireBytes, decodedBytes, isEncoded);
+   }
+
+   /**
+    * Look up the response of this request in the response cache. Returns the cached body if the response is fresh, otherwise keeps the
+    * response to revalidate it, see {@link #addValidators()}.
+    *
+    * @param isNoCache      is revalidation required, see {@link #setNoCache(boolean)}
+    * @param isStaleAllowed is expired response allowed, see {@link #setStaleAllowed(boolean)}
+    * @return cached body or null if the request must be sent to the server
+    */
+   protected InputStream getFreshCachedStream(boolean isNoCache, boolean isStaleAllowed) {
+      isNotModified = false;
+      isFromCache = false;
+      isStale = false;
+      cachedResponse = null;
+      ResponseCache cache = DataProcessor.getInstance().getResponseCache();
+      if (cache == null) {
+         return null;
+      }
+      CachedResponse response = cache.get(getRequestKey());
+      if (response == null) {
+         return null;
+      }
+      boolean isFresh = response.isFresh(System.currentTimeMillis());
+      if (!isNoCache && (isFresh || isStaleAllowed)) {
+         isFromCache = true;
+         isStale = !isFresh;
+         cachedResponse = response;
+         return new ByteArrayInputStream(response.getBody());
+      }
+      if (response.hasValidators()) {
+         cachedResponse = response;
+      }
+      return null;
+   }
+
+   /**
+    * Returns whether the response of this request is in the response cache and may be used without a request to the server, as
+    * {@link #getFreshCachedStream(boolean, boolean)} does. The cache hits do not take a slot of the host in-flight limit.
+    *
+    * @param isNoCache      is revalidation required, see {@link #setNoCache(boolean)}
+    * @param isStaleAllowed is expired response allowed, see {@link #setStaleAllowed(boolean)}
+    * @return is fresh cached response available
+    */
+   public boolean hasFreshCachedResponse(boolean isNoCache, boolean isStaleAllowed) {
+      ResponseCache cache = DataProcessor.getInstance().getResponseCache();
+      if (cache == null || isNoCache) {
+         return false;
+      }
+      CachedResponse response = cache.get(getRequestKey());
+      return response != null && (isStaleAllowed || response.isFresh(System.currentTimeMillis()));
+   }
+
+   /**
+    * Look up the response of this request in the response cache regardless of its TTL. It is used instead of the network while the
+    * request is backed off after recent failures, see {@link ua.at.tsvetkov.data_processor.cache.NegativeCache NegativeCache}.
+    *
+    * @param isNoCache is revalidation required, see {@link #setNoCache(boolean)}
+    * @return cached body or null if the response is not cached
+    */
+   public InputStream getStaleCachedStream(boolean isNoCache) {
+      isNotModified = false;
+      isFromCache = false;
+      isStale = false;
+      cachedResponse = null;
+      ResponseCache cache = DataProcessor.getInstance().getResponseCache();
+      if (cache == null || isNoCache) {
+         return null;
+      }
+      CachedResponse response = cache.get(getRequestKey());
+      if (response == null) {
+         return null;
+      }
+      isFromCache = true;
+      isStale = !response.isFresh(System.currentTimeMillis());
+      cachedResponse = response;
+      return new ByteArrayInputStream(response.getBody());
+   }
+
+   /**
+    * Add to the connection the validators of the cached response found by {@link #getFreshCachedStream(boolean, boolean)}. Must be called before the
+    * connection is established.
+    */
+   protected void addValidators() {
+      if (cachedResponse == null) {
+         return;
+      }
+      if (cachedResponse.getETag() != null) {
+         exchange.setRequestHeader(IF_NONE_MATCH, cachedResponse.getETag());
+      }
+      if (cachedResponse.getLastModified() != null) {
+         exchange.setRequestHeader(IF_MODIFIED_SINCE, cachedResponse.getLastModified());
+      }
+   }
+
+   /**
+    * Returns the response body through the response cache: the cached body if the server answered 304 Not Modified, otherwise the stream
+    * of the connection which stores a response with validators to the cache while it is read.
+    *
+    * @return response body
+    */
+   protected InputStream getCachingStream() {
+      ResponseCache cache = DataProcessor.getInstance().getResponseCache();
+      if (cache == null) {
+         return getStream();
+      }
+      int code = getStatusCode();
+      if (code == ConnectionConstants.HTTP_NOT_MODIFIED && cachedResponse != null) {
+         isNotModified = true;
+         return new ByteArrayInputStream(cachedResponse.getBody());
+      }
+      BufferedInputStream stream = getStream();
+      String cacheControl = exchange.getResponseHeader(CACHE_CONTROL);
+      String eTag = exchange.getResponseHeader(ETAG);
+      String lastModified = exchange.getResponseHeader(LAST_MODIFIED);
+      long ttl = configuration.getCacheTtl(this);
+      if (code != ConnectionConstants.HTTP_OK || (eTag == null && lastModified == null && ttl <= 0)
+              || (cacheControl != null && cacheControl.contains(NO_STORE))) {
+         return stream;
+      }
+      return new CachingInputStream(stream, cache, getRequestKey(), eTag, lastModified, Math.max(ttl, 0),
+              configuration.getResponseCacheMaxEntrySize());
+   }
+
+   /**
+    * Returns whether the server answered 304 Not Modified and the response body is taken from the response cache. The status code of
+    * such a request is 200 OK.
+    *
+    * @return is the cached response used
+    */
+   public boolean isNotModified() {
+      return isNotModified;
+   }
+
+   /**
+    * Returns whether the response is taken from the cache after its TTL expired, see {@link #setStaleAllowed(boolean)}.
+    *
+    * @return is stale cached response used
+    */
+   public boolean isStale() {
+      return isStale;
+   }
+
+   /**
+    * Returns the Content-Encoding of the received response body.
+    *
+    * @return content encoding in lower case or null
+    */
+   public String getContentEncoding() {
+      return contentEncoding;
+   }
+
+   /**
+    * Returns the size of the response body as it was transferred by the network, known after the request is closed.
+    *
+    * @return size in bytes or -1
+    */
+   public long getWireBytes() {
+      return wireBytes;
+   }
+
+   /**
+    * Returns the size of the decoded response body read by the parser, known after the request is closed.
+    *
+    * @return size in bytes or -1
+    */
+   public long getDecodedBytes() {
+      return decodedBytes;
+   }
+
+   /**
+    * Returns the cached response whose body is used by this request: a fresh one or one revalidated by the server, see
+    * {@link #isNotModified()}.
+    *
+    * @return cached response or null
+    */
+   public CachedResponse getCachedResponse() {
+      return isNotModified || isFromCache ? cachedResponse : null;
+   }
+
+   @Override
+   public abstract InputStream getInputStream() throws IOException;
+
+   @Override
+   public Request build() {
+      return super.build();
+   }
+
+   /**
+    * Release resources associated with this request. You must call this, or significant resources (sockets and memory) may be leaked.
+    * In the keep-alive mode the connection whose body was read completely is released to the pool instead of being disconnected, see
+    * {@link ua.at.tsvetkov.data_processor.DataProcessorConfiguration.Builder#setKeepAliveEnabled(boolean)}.
+    */
+   @Override
+   public void close() throws Exception {
+      Exchange current = exchange;
+      String host = connectionHost;
+      if (current == null || isReleased) {
+         return;
+      }
+      isReleased = true;
+      connectionHost = null;
+      try {
+         if (isNotModified && bodyStream == null && configuration.isKeepAliveEnabled()) {
+            // The body of 304 is empty, it is read to release the connection
+            getStream().close();
+         }
+      } catch (IOException e) {
+         Log.w("Can't release the connection " + this, e);
+      }
+      recordTransfer();
+      boolean isDrained = bodyStream != null && bodyStream.isDrained;
+      current.release(isDrained);
+      if (host != null) {
+         ConnectionPoolStats pool = DataProcessor.getInstance().getConnectionPoolStats();
+         if (isDrained) {
+            pool.onRelease(host);
+         } else {
+            pool.onDiscard();
+         }
+      }
+      bodyStream = null;
+   }
+
+   /**
+    * Abort the in-flight exchange, if it was opened.
+    */
+   @Override
+   public void abort() {
+      Exchange current = exchange;
+      if (current != null) {
+         current.abort();
+      }
+   }
+
+   /**
+    * Returns the exchange of this request.
+    *
+    * @return exchange or null if the request is not sent
+    */
+   public Exchange getExchange() {
+      return exchange;
+   }
+
+   /**
+    * Returns the connection of this request if it is sent over {@link HttpUrlConnectionTransport}.
+    *
+    * @return connection or null
+    */
+   public HttpURLConnection getHttpURLConnection() {
+      Exchange current = exchange;
+      if (current instanceof HttpUrlConnectionTransport.UrlConnectionExchange) {
+         return ((HttpUrlConnectionTransport.UrlConnectionExchange) current).getConnection();
+      }
+      return null;
+   }
+
+   @Override
+   public int getStatusCode() {
+      if (isNotModified || isFromCache) {
+         statusCode = ConnectionConstants.HTTP_OK;
+         return statusCode;
+      }
+      if (exchange == null) {
+         statusCode = ConnectionConstants.NO_INTERNET_CONNECTION;
+         return statusCode;
+      }
+      try {
+         statusCode = exchange.getStatusCode();
+      } catch (IOException e) {
+         Log.e("IO error during the retrieval response code.", e);
+         statusCode = ConnectionConstants.NO_INTERNET_CONNECTION;
+      }
+      return statusCode;
+   }
+
+   @Override
+   public String getStatusMessage() {
+      if (isNotModified || isFromCache) {
+         return "OK";
+      }
+      String message = "";
+      if (exchange == null) {
+         return "No internet connection.";
+      }
+      try {
+         message = exchange.getStatusMessage();
+      } catch (IOException e) {
+         Log.e("IO error during the retrieval response message.", e);
+         message = "No internet connection.";
+      }
+      return message;
+   }
+
+   /**
+    * Reads the rest of the body on close, so that the connection is released to the pool of the keep-alive connections instead of being
+    * closed.
+    */
+   private static class KeepAliveInputStream extends FilterInputStream {
+
+      private volatile boolean isDrained;
+      private boolean isClosed;
+
+      private KeepAliveInputStream(InputStream in) {
+         super(in);
+      }
+
+      @Override
+      public int read() throws IOException {
+         int b = in.read();
+         if (b == -1) {
+            isDrained = true;
+         }
+         return b;
+      }
+
+      @Override
+      public int read(byte[] buffer, int offset, int count) throws IOException {
+         int bytesRead = in.read(buffer, offset, count);
+         if (bytesRead == -1) {
+            isDrained = true;
+         }
+         return bytesRead;
+      }
+
+      @Override
+      public boolean markSupported() {
+         return false;
+      }
+
+      @Override
+      public void close() throws IOException {
+         if (isClosed) {
+            return;
+         }
+         isClosed = true;
+         try {
+            byte[] buffer = new byte[BUFFER];
+            int left = MAX_DRAIN_SIZE;
+            while (!isDrained && left > 0) {
+               int bytesRead = read(buffer, 0, Math.min(buffer.length, left));
+               if (bytesRead > 0) {
+                  left -= bytesRead;
+               }
+            }
+         } catch (IOException e) {
+            // Not released, the connection is disconnected
+         } finally {
+            in.close();
+         }
+      }
+
+   }
+
+}
@@ -25,7 +25,7 @@ package ua.at.tsvetkov.data_processor.threads;
 
 import java.util.concurrent.ThreadFactory;
 
-import ua.at.tsvetkov.util.Log;
+import ua.at.tsvetkov.data_processor.platform.Log;
 
 /**
  * @author lordtao
@@ -37,6 +37,20 @@ public class DataProcessingThreadFactory implements ThreadFactory {
      */
     private static final int THREAD_PRIORITY = 4;
     public static final String THREAD_NAME = "Data Processor async request";
+    public static final String PARSE_THREAD_NAME = "Data Processor parsing";
+
+    private final String name;
+
+    public DataProcessingThreadFactory() {
+        this(THREAD_NAME);
+    }
+
+    /**
+     * @param name name of the created threads
+     */
+    public DataProcessingThreadFactory(String name) {
+        this.name = name;
+    }
 
     /*
      * (non-Javadoc)
@@ -46,7 +60,7 @@ public class DataProcessingThreadFactory implements ThreadFactory {
     public Thread newThread(Runnable r) {
         Thread thread = new Thread(r);
         thread.setPriority(THREAD_PRIORITY);
-        thread.setName(THREAD_NAME);
+        thread.setName(name);
         thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
 
             @Override
@@ -0,0 +1,432 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * tao-data-processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.threads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread pool with a bounded queue and two priority lanes, see {@link Priority}. When the queue is full the new task is handled
+ * according to the {@link RejectionPolicy}. Discarded tasks which implement {@link DiscardableRunnable} are notified.
+ * <p/>
+ * The pool is elastic: it keeps the min number of threads and starts new ones up to the max number while all threads are busy, instead of
+ * queueing the task. Threads above the min number are stopped after being idle for the keep alive time.
+ *
+ * @author lordtao
+ */
+public class DataProcessorThreadPool extends ThreadPoolExecutor implements RequestExecutor {
+
+    public static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+    /**
+     * Expected ratio of the time a request waits for the network to the time it uses the CPU.
+     */
+    public static final double DEFAULT_BLOCKING_RATIO = 4;
+    public static final int MAX_POOL_SIZE_LIMIT = 64;
+    public static final int DEFAULT_MIN_POOL_SIZE = 2;
+    public static final int DEFAULT_MAX_POOL_SIZE = getBlockingPoolSize(DEFAULT_BLOCKING_RATIO);
+    public static final long DEFAULT_KEEP_ALIVE_TIME = 30000;
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+    public static final RejectionPolicy DEFAULT_REJECTION_POLICY = RejectionPolicy.DISCARD_OLDEST_BACKGROUND;
+
+    private static final String TASK_REJECTED = "Task rejected, the queue is full: capacity = ";
+
+    private final int queueCapacity;
+    private final RejectionPolicy rejectionPolicy;
+    private final AtomicInteger queuedTasks = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong discardedTasks = new AtomicLong();
+    private final AtomicLong[] startedTasks = newCounters();
+    private final AtomicLong[] queueWaitTime = newCounters();
+    private final AtomicLong[] maxQueueWaitTime = newCounters();
+    private final AtomicLong[] completedTasks = newCounters();
+    private final AtomicLong[] executionTime = newCounters();
+
+    private final AtomicInteger runningTasks = new AtomicInteger();
+
+    public DataProcessorThreadPool() {
+        this(DEFAULT_MIN_POOL_SIZE, DEFAULT_MAX_POOL_SIZE, DEFAULT_KEEP_ALIVE_TIME, false, DEFAULT_QUEUE_CAPACITY, DEFAULT_REJECTION_POLICY);
+    }
+
+    /**
+     * Create the pool with a fixed number of threads which are started at once.
+     *
+     * @param poolSize        number of worker threads
+     * @param queueCapacity   max number of tasks waiting for a worker
+     * @param rejectionPolicy what to do with a new task when the queue is full
+     */
+    public DataProcessorThreadPool(int poolSize, int queueCapacity, RejectionPolicy rejectionPolicy) {
+        this(poolSize, poolSize, 0L, true, queueCapacity, rejectionPolicy);
+    }
+
+    /**
+     * @param minPoolSize     number of threads kept when idle
+     * @param maxPoolSize     max number of worker threads
+     * @param keepAliveTime   time in ms after which an idle thread above the min number is stopped
+     * @param isPrestart      start the min number of threads at once, not on the first tasks
+     * @param queueCapacity   max number of tasks waiting for a worker
+     * @param rejectionPolicy what to do with a new task when the queue is full
+     */
+    public DataProcessorThreadPool(int minPoolSize, int maxPoolSize, long keepAliveTime, boolean isPrestart, int queueCapacity,
+                                   RejectionPolicy rejectionPolicy) {
+        this(minPoolSize, maxPoolSize, keepAliveTime, new TaskQueue(), queueCapacity, rejectionPolicy);
+        if (isPrestart) {
+            prestartAllCoreThreads();
+        }
+    }
+
+    private DataProcessorThreadPool(int minPoolSize, int maxPoolSize, long keepAliveTime, TaskQueue queue, int queueCapacity,
+                                    RejectionPolicy rejectionPolicy) {
+        super(minPoolSize, maxPoolSize, keepAliveTime, TimeUnit.MILLISECONDS, queue, new DataProcessingThreadFactory(), new QueueingHandler());
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+        this.rejectionPolicy = rejectionPolicy == null ? DEFAULT_REJECTION_POLICY : rejectionPolicy;
+        queue.pool = this;
+    }
+
+    /**
+     * Returns the max pool size for the work which blocks on I/O: the threads waiting for the network do not use the CPU, so the pool
+     * needs {@code cores * (1 + blockingRatio)} threads to keep the CPU busy.
+     *
+     * @param blockingRatio ratio of the time a task waits for I/O to the time it uses the CPU
+     * @return pool size, not less than {@link #DEFAULT_MIN_POOL_SIZE} and not more than {@link #MAX_POOL_SIZE_LIMIT}
+     */
+    public static int getBlockingPoolSize(double blockingRatio) {
+        if (blockingRatio < 0) {
+            throw new IllegalArgumentException("Blocking ratio can not be negative: " + blockingRatio);
+        }
+        int size = (int) Math.ceil(CPU_COUNT * (1 + blockingRatio));
+        return Math.max(DEFAULT_MIN_POOL_SIZE, Math.min(MAX_POOL_SIZE_LIMIT, size));
+    }
+
+    /**
+     * Execute the task in the {@link Priority#FOREGROUND} lane.
+     */
+    @Override
+    public void execute(Runnable command) {
+        execute(command, Priority.FOREGROUND);
+    }
+
+    /**
+     * Execute the task in the given lane.
+     *
+     * @param command  task
+     * @param priority lane of the task
+     */
+    @Override
+    public void execute(Runnable command, Priority priority) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        Task task = new Task(command, priority == null ? Priority.FOREGROUND : priority, sequence.getAndIncrement());
+        if (!reserveSlot() && !reject(task)) {
+            return;
+        }
+        task.isCounted = true;
+        try {
+            super.execute(task);
+        } catch (RejectedExecutionException e) {
+            queuedTasks.decrementAndGet();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean remove(Runnable command) {
+        for (Runnable runnable : getQueue()) {
+            Task task = (Task) runnable;
+            if ((task == command || task.command == command) && super.remove(task)) {
+                queuedTasks.decrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the list of the original tasks which never commenced execution.
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks = super.shutdownNow();
+        queuedTasks.set(0);
+        List<Runnable> commands = new ArrayList<Runnable>(tasks.size());
+        for (Runnable task : tasks) {
+            commands.add(((Task) task).command);
+        }
+        return commands;
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable runnable) {
+        Task task = (Task) runnable;
+        if (task.isCounted) {
+            queuedTasks.decrementAndGet();
+        }
+        runningTasks.incrementAndGet();
+        int lane = task.priority.ordinal();
+        task.startTime = System.nanoTime();
+        long wait = task.startTime - task.enqueueTime;
+        startedTasks[lane].incrementAndGet();
+        queueWaitTime[lane].addAndGet(wait);
+        long max;
+        do {
+            max = maxQueueWaitTime[lane].get();
+        } while (wait > max && !maxQueueWaitTime[lane].compareAndSet(max, wait));
+        super.beforeExecute(thread, runnable);
+    }
+
+    @Override
+    protected void afterExecute(Runnable runnable, Throwable throwable) {
+        super.afterExecute(runnable, throwable);
+        runningTasks.decrementAndGet();
+        Task task = (Task) runnable;
+        int lane = task.priority.ordinal();
+        completedTasks[lane].incrementAndGet();
+        executionTime[lane].addAndGet(System.nanoTime() - task.startTime);
+    }
+
+    /**
+     * Returns the number of tasks waiting for a worker.
+     *
+     * @return queue size
+     */
+    public int getQueueSize() {
+        return queuedTasks.get();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public RejectionPolicy getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+
+    /**
+     * Returns the number of tasks discarded because the queue was full.
+     *
+     * @return discarded tasks count
+     */
+    public long getDiscardedTaskCount() {
+        return discardedTasks.get();
+    }
+
+    /**
+     * Returns average time which the tasks of the lane spent in the queue before execution.
+     *
+     * @param priority lane
+     * @return time in ms
+     */
+    public long getAverageQueueWaitTime(Priority priority) {
+        long count = startedTasks[priority.ordinal()].get();
+        if (count == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(queueWaitTime[priority.ordinal()].get() / count);
+    }
+
+    /**
+     * Returns max time which a task of the lane spent in the queue before execution.
+     *
+     * @param priority lane
+     * @return time in ms
+     */
+    public long getMaxQueueWaitTime(Priority priority) {
+        return TimeUnit.NANOSECONDS.toMillis(maxQueueWaitTime[priority.ordinal()].get());
+    }
+
+    /**
+     * Returns the number of finished tasks of the lane.
+     *
+     * @param priority lane
+     * @return finished tasks count
+     */
+    public long getCompletedTaskCount(Priority priority) {
+        return completedTasks[priority.ordinal()].get();
+    }
+
+    /**
+     * Returns average time which a task of the lane runs in the worker thread.
+     *
+     * @param priority lane
+     * @return time in ms
+     */
+    public long getAverageExecutionTime(Priority priority) {
+        long count = completedTasks[priority.ordinal()].get();
+        if (count == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(executionTime[priority.ordinal()].get() / count);
+    }
+
+    // ********************************************************************************
+
+    private boolean reserveSlot() {
+        int count;
+        do {
+            count = queuedTasks.get();
+            if (count >= queueCapacity) {
+                return false;
+            }
+        } while (!queuedTasks.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    /**
+     * Apply the rejection policy to the task which does not fit to the queue.
+     *
+     * @return true if the task took the slot of a discarded background task and must be queued
+     */
+    private boolean reject(Task task) {
+        switch (rejectionPolicy) {
+            case ABORT:
+                throw new RejectedExecutionException(TASK_REJECTED + queueCapacity);
+            case CALLER_RUNS:
+                if (!isShutdown()) {
+                    task.run();
+                }
+                return false;
+            case DISCARD_OLDEST_BACKGROUND:
+                if (task.priority != Priority.BACKGROUND) {
+                    Task oldest = findOldestBackgroundTask();
+                    if (oldest != null && super.remove(oldest)) {
+                        discard(oldest);
+                        return true;
+                    }
+                }
+                discard(task);
+                return false;
+            default:
+                discard(task);
+                return false;
+        }
+    }
+
+    private Task findOldestBackgroundTask() {
+        Task oldest = null;
+        for (Runnable runnable : getQueue()) {
+            Task task = (Task) runnable;
+            if (task.priority == Priority.BACKGROUND && (oldest == null || task.sequence < oldest.sequence)) {
+                oldest = task;
+            }
+        }
+        return oldest;
+    }
+
+    private void discard(Task task) {
+        discardedTasks.incrementAndGet();
+        if (task.command instanceof DiscardableRunnable) {
+            ((DiscardableRunnable) task.command).onDiscard();
+        }
+    }
+
+    private static AtomicLong[] newCounters() {
+        AtomicLong[] counters = new AtomicLong[Priority.values().length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new AtomicLong();
+        }
+        return counters;
+    }
+
+    /**
+     * Queue which refuses a task while all threads are busy and the pool can grow, so the executor starts a new thread for it. A task which
+     * goes directly to a new thread is counted against the queue capacity until it starts.
+     */
+    private static final class TaskQueue extends PriorityBlockingQueue<Runnable> {
+
+        private static final long serialVersionUID = 1L;
+
+        private transient DataProcessorThreadPool pool;
+
+        @Override
+        public boolean offer(Runnable runnable) {
+            int poolSize = pool.getPoolSize();
+            if (poolSize < pool.getMaximumPoolSize() && pool.runningTasks.get() + size() >= poolSize) {
+                return false;
+            }
+            return super.offer(runnable);
+        }
+
+        private boolean force(Runnable runnable) {
+            return super.offer(runnable);
+        }
+
+    }
+
+    /**
+     * Queues the task refused by {@link TaskQueue} when the pool has reached the max size meanwhile.
+     */
+    private static final class QueueingHandler implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Thread pool is shut down");
+            }
+            ((TaskQueue) executor.getQueue()).force(runnable);
+        }
+
+    }
+
+    private static final class Task implements Runnable, Comparable<Task> {
+
+        private final Runnable command;
+        private final Priority priority;
+        private final long sequence;
+        private final long enqueueTime = System.nanoTime();
+        private long startTime;
+        private boolean isCounted;
+
+        private Task(Runnable command, Priority priority, long sequence) {
+            this.command = command;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            command.run();
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int result = priority.compareTo(other.priority);
+            if (result == 0) {
+                result = sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+            }
+            return result;
+        }
+
+    }
+
+}
@@ -23,18 +23,16 @@
  ******************************************************************************/
 package ua.at.tsvetkov.data_processor.threads;
 
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-
 /**
+ * Task which must be notified if {@link DataProcessorThreadPool} discards it without execution.
+ *
  * @author lordtao
  */
-public class DataProcessorThreadPool extends ThreadPoolExecutor {
+public interface DiscardableRunnable extends Runnable {
 
-    public DataProcessorThreadPool() {
-        super(Runtime.getRuntime().availableProcessors() * 2, Runtime.getRuntime().availableProcessors() * 2, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
-                new DataProcessingThreadFactory());
-    }
+    /**
+     * Called instead of {@link #run()} when the task was shed by the pool.
+     */
+    void onDiscard();
 
 }
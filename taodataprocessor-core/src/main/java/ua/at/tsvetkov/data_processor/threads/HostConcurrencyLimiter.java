@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * tao-data-processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.threads;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of in-flight requests per host. The limit of each host adapts to the observed response time (AIMD): it grows by
+ * one per limit-sized round of fast responses and is cut by {@link #BACKOFF_RATIO} when a response is much slower than the best seen,
+ * or failed. A slow host therefore holds only a few workers of the thread pool, while healthy hosts keep theirs.
+ *
+ * @author lordtao
+ */
+public class HostConcurrencyLimiter {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 8;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 32;
+
+    /**
+     * Multiplicative decrease of the limit on a slow or failed response.
+     */
+    private static final double BACKOFF_RATIO = 0.75;
+    /**
+     * A response slower than the best response time multiplied by this value is treated as a congestion signal.
+     */
+    private static final double LATENCY_TOLERANCE = 2.0;
+    /**
+     * The best response time drifts to the current ones with this weight, so the limit recovers after a lasting backend slowdown.
+     */
+    private static final int MIN_RESPONSE_TIME_DRIFT = 64;
+
+    private final ConcurrentHashMap<String, HostLimit> hosts = new ConcurrentHashMap<String, HostLimit>();
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long waitTimeout;
+
+    public HostConcurrencyLimiter() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, 0);
+    }
+
+    /**
+     * @param initialLimit limit of a host which was not requested before
+     * @param minLimit     the limit never drops below this value
+     * @param maxLimit     the limit never grows above this value
+     * @param waitTimeout  how long, in ms, a request waits for a free slot of its host. 0 - fail fast
+     */
+    public HostConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long waitTimeout) {
+        if (minLimit <= 0 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Wrong host limits: initial = " + initialLimit + ", min = " + minLimit + ", max = " + maxLimit);
+        }
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.waitTimeout = waitTimeout;
+    }
+
+    /**
+     * Take an in-flight slot of the host. Waits up to the wait timeout if the host is at its limit.
+     *
+     * @param host host and port of the request
+     * @return true if the slot was taken and must be released with {@link #release(String, long, boolean)}
+     */
+    public boolean acquire(String host) {
+        try {
+            return getHostLimit(host).acquire(waitTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Release the slot taken by {@link #acquire(String)} and adapt the host limit.
+     *
+     * @param host         host and port of the request
+     * @param responseTime time to the response headers in ns, 0 if the response was not received from the network
+     * @param isFailed     true if the request failed with a timeout, connection or server error
+     */
+    public void release(String host, long responseTime, boolean isFailed) {
+        getHostLimit(host).release(responseTime, isFailed);
+    }
+
+    /**
+     * Release the slot taken by {@link #acquire(String)} without adapting the host limit, e.g. when the request was cancelled.
+     *
+     * @param host host and port of the request
+     */
+    public void release(String host) {
+        getHostLimit(host).release();
+    }
+
+    /**
+     * Returns the current in-flight limit of the host.
+     *
+     * @param host host and port
+     * @return limit
+     */
+    public int getLimit(String host) {
+        HostLimit hostLimit = hosts.get(host);
+        return hostLimit == null ? initialLimit : hostLimit.getLimit();
+    }
+
+    /**
+     * Returns the current in-flight limits of all requested hosts.
+     *
+     * @return host to limit map
+     */
+    public Map<String, Integer> getLimits() {
+        HashMap<String, Integer> limits = new HashMap<String, Integer>();
+        for (Map.Entry<String, HostLimit> entry : hosts.entrySet()) {
+            limits.put(entry.getKey(), entry.getValue().getLimit());
+        }
+        return limits;
+    }
+
+    /**
+     * Returns the number of in-flight requests to the host.
+     *
+     * @param host host and port
+     * @return in-flight requests count
+     */
+    public int getInFlight(String host) {
+        HostLimit hostLimit = hosts.get(host);
+        return hostLimit == null ? 0 : hostLimit.getInFlight();
+    }
+
+    private HostLimit getHostLimit(String host) {
+        HostLimit hostLimit = hosts.get(host);
+        if (hostLimit == null) {
+            HostLimit newLimit = new HostLimit();
+            hostLimit = hosts.putIfAbsent(host, newLimit);
+            if (hostLimit == null) {
+                hostLimit = newLimit;
+            }
+        }
+        return hostLimit;
+    }
+
+    /**
+     * Guarded by a {@link ReentrantLock}, not a monitor: a virtual thread waiting in {@link Object#wait()} pins its carrier thread on JDK
+     * 21-23, so many requests waiting for one host would block all carriers.
+     */
+    private final class HostLimit {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition isSlotFree = lock.newCondition();
+        private double limit = initialLimit;
+        private int inFlight;
+        private long minResponseTime = Long.MAX_VALUE;
+
+        boolean acquire(long timeout) throws InterruptedException {
+            lock.lock();
+            try {
+                long left = TimeUnit.MILLISECONDS.toNanos(timeout);
+                while (inFlight >= (int) limit) {
+                    if (left <= 0) {
+                        return false;
+                    }
+                    left = isSlotFree.awaitNanos(left);
+                }
+                inFlight++;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(long responseTime, boolean isFailed) {
+            lock.lock();
+            try {
+                boolean isSaturated = inFlight * 2 >= (int) limit;
+                inFlight--;
+                isSlotFree.signalAll();
+                if (!isFailed && responseTime <= 0) {
+                    // Served without the network, e.g. from the cache file, it is not a latency sample
+                    return;
+                }
+                if (isFailed || (minResponseTime != Long.MAX_VALUE && responseTime > minResponseTime * LATENCY_TOLERANCE)) {
+                    limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                } else if (isSaturated) {
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+                if (!isFailed) {
+                    if (responseTime < minResponseTime) {
+                        minResponseTime = responseTime;
+                    } else {
+                        minResponseTime += (responseTime - minResponseTime) / MIN_RESPONSE_TIME_DRIFT;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release() {
+            lock.lock();
+            try {
+                inFlight--;
+                isSlotFree.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int getLimit() {
+            lock.lock();
+            try {
+                return (int) limit;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int getInFlight() {
+            lock.lock();
+            try {
+                return inFlight;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * tao-data-processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.threads;
+
+/**
+ * Execution lane of a request in {@link DataProcessorThreadPool}. Queued foreground requests are always taken before background ones.
+ *
+ * @author lordtao
+ */
+public enum Priority {
+
+    /**
+     * User-visible request, the default lane.
+     */
+    FOREGROUND,
+    /**
+     * Prefetch or any other request that nobody is waiting for. Can be shed when the queue is full.
+     */
+    BACKGROUND
+
+}
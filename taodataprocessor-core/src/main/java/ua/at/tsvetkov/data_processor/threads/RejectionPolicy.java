@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * tao-data-processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.threads;
+
+/**
+ * What {@link DataProcessorThreadPool} does with a new task when its queue is full.
+ *
+ * @author lordtao
+ */
+public enum RejectionPolicy {
+
+    /**
+     * Throw {@link java.util.concurrent.RejectedExecutionException RejectedExecutionException} to the caller.
+     */
+    ABORT,
+    /**
+     * Run the task in the calling thread.
+     */
+    CALLER_RUNS,
+    /**
+     * Discard the new task.
+     */
+    DISCARD,
+    /**
+     * Discard the oldest queued background task to make room for the new one. If there is no queued background task, or the new task is
+     * a background task itself, the new task is discarded.
+     */
+    DISCARD_OLDEST_BACKGROUND
+
+}
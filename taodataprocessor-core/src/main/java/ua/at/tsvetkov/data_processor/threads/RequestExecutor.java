@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * tao-data-processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.threads;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Executor of async requests.
+ *
+ * @author lordtao
+ */
+public interface RequestExecutor extends Executor {
+
+    /**
+     * Execute the task in the given lane, if the executor supports lanes.
+     *
+     * @param command  task
+     * @param priority lane of the task
+     */
+    void execute(Runnable command, Priority priority);
+
+    /**
+     * Remove the task if it was not started yet.
+     *
+     * @param command task
+     * @return true if the task was removed
+     */
+    boolean remove(Runnable command);
+
+    /**
+     * Initiates an orderly shutdown in which previously submitted tasks are executed, but no new tasks will be accepted.
+     */
+    void shutdown();
+
+    /**
+     * Attempts to stop all actively executing tasks and returns the list of the tasks that were awaiting execution.
+     *
+     * @return list of tasks that never commenced execution
+     */
+    List<Runnable> shutdownNow();
+
+    boolean isShutdown();
+
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * tao-data-processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.threads;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs each request on its own virtual thread. A blocked {@link java.net.HttpURLConnection HttpURLConnection} does not hold a platform
+ * thread, so thousands of requests can wait for the network at once. Requires JDK 21+, which is checked at runtime, so the class can be
+ * loaded on Android and older JVMs. Virtual threads are not queued, so the lanes of {@link Priority} are ignored.
+ *
+ * @author lordtao
+ */
+public class VirtualThreadExecutor implements RequestExecutor {
+
+    private static final int    MIN_JDK_VERSION = 21;
+    private static final Method NEW_EXECUTOR    = findFactoryMethod();
+
+    private final ExecutorService executor;
+
+    /**
+     * Returns whether the runtime supports virtual threads.
+     *
+     * @return is supported
+     */
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    public VirtualThreadExecutor() {
+        if (!isSupported()) {
+            throw new IllegalStateException("Virtual threads are not supported by this runtime, JDK 21+ is required.");
+        }
+        try {
+            executor = (ExecutorService) NEW_EXECUTOR.invoke(null);
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't create virtual thread executor.", e);
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        executor.execute(command);
+    }
+
+    @Override
+    public void execute(Runnable command, Priority priority) {
+        executor.execute(command);
+    }
+
+    /**
+     * Tasks are started at once, so there is nothing to remove.
+     *
+     * @return false
+     */
+    @Override
+    public boolean remove(Runnable command) {
+        return false;
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return executor.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    /**
+     * Virtual threads are a preview feature of JDK 19 and 20: the factory method exists there, but fails without --enable-preview. So
+     * the feature version of the runtime is checked too.
+     */
+    private static Method findFactoryMethod() {
+        try {
+            Object version = Runtime.class.getMethod("version").invoke(null);
+            int feature = (Integer) version.getClass().getMethod("feature").invoke(version);
+            if (feature < MIN_JDK_VERSION) {
+                return null;
+            }
+            return Class.forName("java.util.concurrent.Executors").getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+}
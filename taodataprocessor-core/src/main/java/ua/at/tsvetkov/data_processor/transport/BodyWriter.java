@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writer of a request body, see {@link Exchange#setBody(BodyWriter)}.
+ *
+ * @author lordtao
+ */
+public interface BodyWriter {
+
+   /**
+    * Returns the length of the body.
+    *
+    * @return length in bytes or -1 if unknown, then the body is streamed in chunks
+    */
+   long getContentLength();
+
+   /**
+    * Write the body. The stream is closed by the transport.
+    *
+    * @param out stream of the body
+    * @throws IOException if the body can not be written
+    */
+   void writeTo(OutputStream out) throws IOException;
+
+}
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Request body held in memory.
+ *
+ * @author lordtao
+ */
+public class ByteArrayBodyWriter implements BodyWriter {
+
+   private final byte[] body;
+
+   public ByteArrayBodyWriter(byte[] body) {
+      this.body = body;
+   }
+
+   @Override
+   public long getContentLength() {
+      return body.length;
+   }
+
+   @Override
+   public void writeTo(OutputStream out) throws IOException {
+      out.write(body, 0, body.length);
+      out.flush();
+   }
+
+}
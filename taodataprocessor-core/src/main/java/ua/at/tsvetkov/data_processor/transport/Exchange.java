@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * One request and its response over a {@link Transport}: the request line, the request headers and the body writer are set first, then
+ * the exchange is executed and the status, the response headers and the streaming body are read. The response getters execute the
+ * exchange if it was not executed yet.
+ *
+ * @author lordtao
+ */
+public interface Exchange {
+
+   /**
+    * Returns the request method.
+    *
+    * @return method
+    */
+   String getMethod();
+
+   /**
+    * Returns the url of the response, it differs from the request url if the request was redirected.
+    *
+    * @return url
+    */
+   URL getURL();
+
+   /**
+    * Set the timeouts. Must be called before the exchange is executed.
+    *
+    * @param connectTimeout connect timeout in ms, 0 is infinite
+    * @param readTimeout    read timeout in ms, 0 is infinite
+    */
+   void setTimeouts(int connectTimeout, int readTimeout);
+
+   /**
+    * Set the request header, replacing the previous value. Must be called before the exchange is executed.
+    *
+    * @param name  header name
+    * @param value header value
+    */
+   void setRequestHeader(String name, String value);
+
+   /**
+    * Returns the request header.
+    *
+    * @param name header name, case insensitive
+    * @return value or null
+    */
+   String getRequestHeader(String name);
+
+   /**
+    * Set the request body. Must be called before the exchange is executed.
+    *
+    * @param body body writer
+    */
+   void setBody(BodyWriter body);
+
+   /**
+    * Send the request and receive the status and the headers of the response. The next calls return at once or throw the same exception.
+    *
+    * @throws IOException if the request can not be sent or the response is not received
+    */
+   void execute() throws IOException;
+
+   /**
+    * Returns the status code of the response.
+    *
+    * @return status code
+    * @throws IOException if the exchange failed
+    */
+   int getStatusCode() throws IOException;
+
+   /**
+    * Returns the status message of the response.
+    *
+    * @return status message or null
+    * @throws IOException if the exchange failed
+    */
+   String getStatusMessage() throws IOException;
+
+   /**
+    * Returns the response header.
+    *
+    * @param name header name, case insensitive
+    * @return value or null if there is no such header or the exchange failed
+    */
+   String getResponseHeader(String name);
+
+   /**
+    * Returns the stream of the response body, the error body for the error status codes.
+    *
+    * @return body or null if there is no body
+    * @throws IOException if the exchange failed
+    */
+   InputStream getBody() throws IOException;
+
+   /**
+    * Release the exchange after its body is closed.
+    *
+    * @param isReusable whether the body was read completely, so the connection may be reused by the next exchanges
+    */
+   void release(boolean isReusable);
+
+   /**
+    * Abort the exchange from another thread. The blocked calls fail with an exception.
+    */
+   void abort();
+
+}
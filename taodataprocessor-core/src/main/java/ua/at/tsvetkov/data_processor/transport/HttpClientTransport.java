@@ -0,0 +1,622 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP/2 transport over {@code java.net.http.HttpClient} for the JVM deployments. All exchanges of the transport share one client, so
+ * the concurrent requests to a host are multiplexed as streams of one HTTP/2 connection instead of each holding its own HTTP/1.1
+ * connection. The https hosts negotiate HTTP/2 with ALPN, the http hosts are asked to upgrade to h2c, the hosts without HTTP/2 are
+ * served over HTTP/1.1. Requires JDK 11+, which is checked at runtime, so the class can be loaded on Android and older JVMs. The client
+ * has its own connection pool, the idle connection limits of the configuration do not apply to it.
+ *
+ * @author lordtao
+ */
+public class HttpClientTransport implements Transport {
+
+   private static final String HTTP_2 = "HTTP_2";
+
+   private final Object     client;
+   private final AtomicLong exchangeCount = new AtomicLong();
+   private final AtomicLong http2Count    = new AtomicLong();
+
+   /**
+    * Returns whether the runtime has {@code java.net.http.HttpClient}.
+    *
+    * @return is supported
+    */
+   public static boolean isSupported() {
+      return Api.IS_SUPPORTED;
+   }
+
+   public HttpClientTransport() {
+      if (!isSupported()) {
+         throw new IllegalStateException("java.net.http.HttpClient is not supported by this runtime, JDK 11+ is required.");
+      }
+      try {
+         Object builder = Api.newClientBuilder.invoke(null);
+         Api.clientVersion.invoke(builder, Api.versionHttp2);
+         Api.clientFollowRedirects.invoke(builder, Api.redirectNormal);
+         client = Api.clientBuild.invoke(builder);
+      } catch (Exception e) {
+         throw new IllegalStateException("Can't create HttpClient.", e);
+      }
+   }
+
+   @Override
+   public Exchange newExchange(String method, URL url) throws IOException {
+      try {
+         return new ClientExchange(method, url.toURI());
+      } catch (URISyntaxException e) {
+         throw new MalformedURLException(e.getMessage());
+      }
+   }
+
+   /**
+    * Returns the number of the executed exchanges.
+    *
+    * @return count
+    */
+   public long getExchangeCount() {
+      return exchangeCount.get();
+   }
+
+   /**
+    * Returns the number of the exchanges served over HTTP/2.
+    *
+    * @return count
+    */
+   public long getHttp2Count() {
+      return http2Count.get();
+   }
+
+   @Override
+   public String toString() {
+      return "HttpClientTransport [exchangeCount=" + exchangeCount + ", http2Count=" + http2Count + "]";
+   }
+
+   /**
+    * Exchange over {@code java.net.http.HttpClient}. The request is sent when the exchange is executed, the body is streamed as it
+    * arrives.
+    */
+   public class ClientExchange implements Exchange {
+
+      private final String method;
+      private final URI    uri;
+      private final Map<String, String> requestHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      private          int         timeout;
+      private          int         readTimeout;
+      private          BodyWriter  body;
+      private          boolean     isExecuted;
+      private          IOException failure;
+      private          Object      response;
+      private          InputStream responseBody;
+      private volatile Future<?>   future;
+      private volatile boolean     isAborted;
+
+      private ClientExchange(String method, URI uri) {
+         this.method = method;
+         this.uri = uri;
+      }
+
+      @Override
+      public String getMethod() {
+         return method;
+      }
+
+      @Override
+      public URL getURL() {
+         try {
+            return (response == null ? uri : (URI) Api.responseUri.invoke(response)).toURL();
+         } catch (Exception e) {
+            return null;
+         }
+      }
+
+      /**
+       * Returns the protocol of the response.
+       *
+       * @return HTTP_2, HTTP_1_1 or null if the exchange is not executed
+       */
+      public String getProtocol() {
+         try {
+            return response == null ? null : String.valueOf(Api.responseVersion.invoke(response));
+         } catch (Exception e) {
+            return null;
+         }
+      }
+
+      /**
+       * The request timeout of the client limits only the wait for the response headers, it is the sum of the timeouts. A read of the
+       * body which is blocked longer than the read timeout closes the body and fails with {@link SocketTimeoutException}, the same as
+       * the read timeout of {@link java.net.HttpURLConnection}.
+       */
+      @Override
+      public void setTimeouts(int connectTimeout, int readTimeout) {
+         timeout = connectTimeout > 0 && readTimeout > 0 ? connectTimeout + readTimeout : 0;
+         this.readTimeout = readTimeout;
+      }
+
+      @Override
+      public void setRequestHeader(String name, String value) {
+         requestHeaders.put(name, value);
+      }
+
+      @Override
+      public String getRequestHeader(String name) {
+         return requestHeaders.get(name);
+      }
+
+      @Override
+      public void setBody(BodyWriter body) {
+         this.body = body;
+      }
+
+      @Override
+      public synchronized void execute() throws IOException {
+         if (isExecuted) {
+            if (failure != null) {
+               throw failure;
+            }
+            return;
+         }
+         isExecuted = true;
+         try {
+            future = (Future<?>) Api.clientSendAsync.invoke(client, newRequest(), Api.bodyHandlerOfInputStream);
+            if (isAborted) {
+               future.cancel(true);
+            }
+            response = future.get();
+            responseBody = (InputStream) Api.responseBody.invoke(response);
+            if (readTimeout > 0) {
+               responseBody = new DeadlineInputStream(responseBody, readTimeout);
+            }
+            exchangeCount.incrementAndGet();
+            if (HTTP_2.equals(getProtocol())) {
+               http2Count.incrementAndGet();
+            }
+         } catch (ExecutionException e) {
+            failure = toIOException(e.getCause());
+         } catch (CancellationException e) {
+            failure = new InterruptedIOException("Exchange is aborted");
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = new InterruptedIOException("Exchange is interrupted");
+         } catch (InvocationTargetException e) {
+            failure = toIOException(e.getCause());
+         } catch (IOException e) {
+            failure = e;
+         } catch (Exception e) {
+            failure = toIOException(e);
+         }
+         if (failure != null) {
+            throw failure;
+         }
+      }
+
+      private Object newRequest() throws Exception {
+         Object builder = Api.newRequestBuilder.invoke(null, uri);
+         Object publisher;
+         if (body == null) {
+            publisher = Api.noBody.invoke(null);
+         } else {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.getContentLength() > 0 ? (int) body.getContentLength() : 256);
+            body.writeTo(out);
+            publisher = Api.ofByteArray.invoke(null, (Object) out.toByteArray());
+         }
+         Api.requestMethod.invoke(builder, method, publisher);
+         for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+            if (!isRestricted(header.getKey())) {
+               Api.requestHeader.invoke(builder, header.getKey(), header.getValue());
+            }
+         }
+         if (timeout > 0) {
+            Api.requestTimeout.invoke(builder, Api.ofMillis.invoke(null, (long) timeout));
+         }
+         return Api.requestBuild.invoke(builder);
+      }
+
+      @Override
+      public int getStatusCode() throws IOException {
+         execute();
+         try {
+            return (Integer) Api.responseStatusCode.invoke(response);
+         } catch (Exception e) {
+            throw toIOException(e);
+         }
+      }
+
+      /**
+       * HTTP/2 has no reason phrase, so the message is empty for the HTTP/2 responses. The client does not expose the reason phrase of
+       * HTTP/1.1, the standard phrase of the status code is returned for them.
+       */
+      @Override
+      public String getStatusMessage() throws IOException {
+         int code = getStatusCode();
+         return HTTP_2.equals(getProtocol()) ? "" : getReasonPhrase(code);
+      }
+
+      @Override
+      public String getResponseHeader(String name) {
+         try {
+            execute();
+            List<?> values = (List<?>) Api.headersAllValues.invoke(Api.responseHeaders.invoke(response), name);
+            return values.isEmpty() ? null : (String) values.get(0);
+         } catch (Exception e) {
+            return null;
+         }
+      }
+
+      @Override
+      public InputStream getBody() throws IOException {
+         execute();
+         return responseBody;
+      }
+
+      /**
+       * The body is closed in any case: an unread HTTP/2 stream is reset without closing the connection of the other streams.
+       */
+      @Override
+      public void release(boolean isReusable) {
+         InputStream stream = responseBody;
+         if (stream != null) {
+            try {
+               stream.close();
+            } catch (IOException e) {
+               // Already closed
+            }
+         }
+      }
+
+      @Override
+      public void abort() {
+         isAborted = true;
+         Future<?> current = future;
+         if (current != null) {
+            current.cancel(true);
+         }
+         release(false);
+      }
+
+   }
+
+   /**
+    * Returns the reason phrase of RFC 7231 for the status code.
+    */
+   static String getReasonPhrase(int code) {
+      switch (code) {
+         case 100:
+            return "Continue";
+         case 101:
+            return "Switching Protocols";
+         case 200:
+            return "OK";
+         case 201:
+            return "Created";
+         case 202:
+            return "Accepted";
+         case 203:
+            return "Non-Authoritative Information";
+         case 204:
+            return "No Content";
+         case 205:
+            return "Reset Content";
+         case 206:
+            return "Partial Content";
+         case 300:
+            return "Multiple Choices";
+         case 301:
+            return "Moved Permanently";
+         case 302:
+            return "Found";
+         case 303:
+            return "See Other";
+         case 304:
+            return "Not Modified";
+         case 305:
+            return "Use Proxy";
+         case 307:
+            return "Temporary Redirect";
+         case 308:
+            return "Permanent Redirect";
+         case 400:
+            return "Bad Request";
+         case 401:
+            return "Unauthorized";
+         case 402:
+            return "Payment Required";
+         case 403:
+            return "Forbidden";
+         case 404:
+            return "Not Found";
+         case 405:
+            return "Method Not Allowed";
+         case 406:
+            return "Not Acceptable";
+         case 407:
+            return "Proxy Authentication Required";
+         case 408:
+            return "Request Timeout";
+         case 409:
+            return "Conflict";
+         case 410:
+            return "Gone";
+         case 411:
+            return "Length Required";
+         case 412:
+            return "Precondition Failed";
+         case 413:
+            return "Payload Too Large";
+         case 414:
+            return "URI Too Long";
+         case 415:
+            return "Unsupported Media Type";
+         case 416:
+            return "Range Not Satisfiable";
+         case 417:
+            return "Expectation Failed";
+         case 426:
+            return "Upgrade Required";
+         case 429:
+            return "Too Many Requests";
+         case 500:
+            return "Internal Server Error";
+         case 501:
+            return "Not Implemented";
+         case 502:
+            return "Bad Gateway";
+         case 503:
+            return "Service Unavailable";
+         case 504:
+            return "Gateway Timeout";
+         case 505:
+            return "HTTP Version Not Supported";
+         default:
+            return "";
+      }
+   }
+
+   private static boolean isRestricted(String name) {
+      String header = name.toLowerCase(Locale.US);
+      return header.equals("connection") || header.equals("content-length") || header.equals("expect") || header.equals("host")
+              || header.equals("upgrade");
+   }
+
+   /**
+    * The timeouts of the client are reported as {@link SocketTimeoutException}, the same as by {@link java.net.HttpURLConnection}.
+    */
+   private static IOException toIOException(Throwable cause) {
+      String name = cause.getClass().getName();
+      if (cause instanceof IOException && name.startsWith("java.net.http.") && name.endsWith("TimeoutException")) {
+         SocketTimeoutException timeout = new SocketTimeoutException(cause.getMessage());
+         timeout.initCause(cause);
+         return timeout;
+      }
+      if (cause instanceof IOException) {
+         return (IOException) cause;
+      }
+      return new IOException(cause);
+   }
+
+   /**
+    * Body with the read timeout: a read which is blocked longer than the timeout closes the body, which wakes up the reading thread.
+    */
+   private static class DeadlineInputStream extends FilterInputStream {
+
+      private final int readTimeout;
+      private volatile boolean isTimedOut;
+      private final Runnable closer = new Runnable() {
+
+         @Override
+         public void run() {
+            isTimedOut = true;
+            try {
+               in.close();
+            } catch (IOException e) {
+               // Closed anyway
+            }
+         }
+
+      };
+
+      private DeadlineInputStream(InputStream in, int readTimeout) {
+         super(in);
+         this.readTimeout = readTimeout;
+      }
+
+      @Override
+      public int read() throws IOException {
+         ScheduledFuture<?> deadline = Watchdog.EXECUTOR.schedule(closer, readTimeout, TimeUnit.MILLISECONDS);
+         try {
+            return checkTimeout(super.read());
+         } catch (IOException e) {
+            throw toTimeout(e);
+         } finally {
+            deadline.cancel(false);
+         }
+      }
+
+      @Override
+      public int read(byte[] buffer, int offset, int count) throws IOException {
+         ScheduledFuture<?> deadline = Watchdog.EXECUTOR.schedule(closer, readTimeout, TimeUnit.MILLISECONDS);
+         try {
+            return checkTimeout(super.read(buffer, offset, count));
+         } catch (IOException e) {
+            throw toTimeout(e);
+         } finally {
+            deadline.cancel(false);
+         }
+      }
+
+      private int checkTimeout(int result) throws IOException {
+         if (result == -1 && isTimedOut) {
+            throw new SocketTimeoutException("Read timed out");
+         }
+         return result;
+      }
+
+      private IOException toTimeout(IOException e) {
+         if (!isTimedOut || e instanceof SocketTimeoutException) {
+            return e;
+         }
+         SocketTimeoutException timeout = new SocketTimeoutException("Read timed out");
+         timeout.initCause(e);
+         return timeout;
+      }
+
+   }
+
+   /**
+    * One daemon thread closes the bodies of all transports whose reads are timed out, it is started with the first body.
+    */
+   private static class Watchdog {
+
+      private static final ScheduledThreadPoolExecutor EXECUTOR = newExecutor();
+
+      private static ScheduledThreadPoolExecutor newExecutor() {
+         ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+               Thread thread = new Thread(r, "Data Processor read timeout");
+               thread.setDaemon(true);
+               return thread;
+            }
+
+         });
+         // The deadlines are cancelled after almost every read, they must not stay in the queue
+         executor.setRemoveOnCancelPolicy(true);
+         return executor;
+      }
+
+   }
+
+   /**
+    * Methods of {@code java.net.http} looked up once.
+    */
+   private static class Api {
+
+      private static final boolean IS_SUPPORTED;
+      private static Method newClientBuilder;
+      private static Method clientVersion;
+      private static Method clientFollowRedirects;
+      private static Method clientBuild;
+      private static Method clientSendAsync;
+      private static Method newRequestBuilder;
+      private static Method requestMethod;
+      private static Method requestHeader;
+      private static Method requestTimeout;
+      private static Method requestBuild;
+      private static Method noBody;
+      private static Method ofByteArray;
+      private static Method ofMillis;
+      private static Method responseStatusCode;
+      private static Method responseHeaders;
+      private static Method responseBody;
+      private static Method responseUri;
+      private static Method responseVersion;
+      private static Method headersAllValues;
+      private static Object versionHttp2;
+      private static Object redirectNormal;
+      private static Object bodyHandlerOfInputStream;
+
+      static {
+         boolean isSupported;
+         try {
+            lookUp();
+            isSupported = true;
+         } catch (Exception e) {
+            isSupported = false;
+         } catch (LinkageError e) {
+            isSupported = false;
+         }
+         IS_SUPPORTED = isSupported;
+      }
+
+      @SuppressWarnings({"unchecked", "rawtypes"})
+      private static void lookUp() throws Exception {
+         Class<?> client = Class.forName("java.net.http.HttpClient");
+         Class<?> clientBuilder = Class.forName("java.net.http.HttpClient$Builder");
+         Class<?> version = Class.forName("java.net.http.HttpClient$Version");
+         Class<?> redirect = Class.forName("java.net.http.HttpClient$Redirect");
+         Class<?> request = Class.forName("java.net.http.HttpRequest");
+         Class<?> requestBuilder = Class.forName("java.net.http.HttpRequest$Builder");
+         Class<?> publisher = Class.forName("java.net.http.HttpRequest$BodyPublisher");
+         Class<?> publishers = Class.forName("java.net.http.HttpRequest$BodyPublishers");
+         Class<?> response = Class.forName("java.net.http.HttpResponse");
+         Class<?> handler = Class.forName("java.net.http.HttpResponse$BodyHandler");
+         Class<?> handlers = Class.forName("java.net.http.HttpResponse$BodyHandlers");
+         Class<?> headers = Class.forName("java.net.http.HttpHeaders");
+         Class<?> duration = Class.forName("java.time.Duration");
+         newClientBuilder = client.getMethod("newBuilder");
+         clientVersion = clientBuilder.getMethod("version", version);
+         clientFollowRedirects = clientBuilder.getMethod("followRedirects", redirect);
+         clientBuild = clientBuilder.getMethod("build");
+         clientSendAsync = client.getMethod("sendAsync", request, handler);
+         newRequestBuilder = request.getMethod("newBuilder", URI.class);
+         requestMethod = requestBuilder.getMethod("method", String.class, publisher);
+         requestHeader = requestBuilder.getMethod("header", String.class, String.class);
+         requestTimeout = requestBuilder.getMethod("timeout", duration);
+         requestBuild = requestBuilder.getMethod("build");
+         noBody = publishers.getMethod("noBody");
+         ofByteArray = publishers.getMethod("ofByteArray", byte[].class);
+         ofMillis = duration.getMethod("ofMillis", long.class);
+         responseStatusCode = response.getMethod("statusCode");
+         responseHeaders = response.getMethod("headers");
+         responseBody = response.getMethod("body");
+         responseUri = response.getMethod("uri");
+         responseVersion = response.getMethod("version");
+         headersAllValues = headers.getMethod("allValues", String.class);
+         versionHttp2 = Enum.valueOf((Class) version, HTTP_2);
+         redirectNormal = Enum.valueOf((Class) redirect, "NORMAL");
+         bodyHandlerOfInputStream = handlers.getMethod("ofInputStream").invoke(null);
+      }
+
+   }
+
+}
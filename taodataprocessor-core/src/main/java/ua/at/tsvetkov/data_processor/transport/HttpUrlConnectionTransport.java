@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Default transport over {@link java.net.HttpURLConnection HttpURLConnection} of the platform, with its pool of the keep-alive
+ * connections.
+ *
+ * @author lordtao
+ */
+public class HttpUrlConnectionTransport implements Transport {
+
+   @Override
+   public Exchange newExchange(String method, URL url) throws IOException {
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      connection.setRequestMethod(method);
+      return new UrlConnectionExchange(connection);
+   }
+
+   @Override
+   public String toString() {
+      return "HttpUrlConnectionTransport";
+   }
+
+   /**
+    * Exchange over one {@link HttpURLConnection}.
+    */
+   public static class UrlConnectionExchange implements Exchange {
+
+      private final HttpURLConnection connection;
+      private BodyWriter  body;
+      private boolean     isExecuted;
+      private IOException failure;
+
+      private UrlConnectionExchange(HttpURLConnection connection) {
+         this.connection = connection;
+      }
+
+      /**
+       * Returns the connection of this exchange.
+       *
+       * @return connection
+       */
+      public HttpURLConnection getConnection() {
+         return connection;
+      }
+
+      @Override
+      public String getMethod() {
+         return connection.getRequestMethod();
+      }
+
+      @Override
+      public URL getURL() {
+         return connection.getURL();
+      }
+
+      @Override
+      public void setTimeouts(int connectTimeout, int readTimeout) {
+         connection.setConnectTimeout(connectTimeout);
+         connection.setReadTimeout(readTimeout);
+      }
+
+      @Override
+      public void setRequestHeader(String name, String value) {
+         connection.setRequestProperty(name, value);
+      }
+
+      @Override
+      public String getRequestHeader(String name) {
+         return connection.getRequestProperty(name);
+      }
+
+      @Override
+      public void setBody(BodyWriter body) {
+         this.body = body;
+      }
+
+      @Override
+      public synchronized void execute() throws IOException {
+         if (isExecuted) {
+            if (failure != null) {
+               throw failure;
+            }
+            return;
+         }
+         isExecuted = true;
+         try {
+            if (body != null) {
+               writeBody();
+            }
+            connection.getResponseCode();
+         } catch (IOException e) {
+            failure = e;
+            throw e;
+         }
+      }
+
+      private void writeBody() throws IOException {
+         long length = body.getContentLength();
+         connection.setDoOutput(true);
+         if (length >= 0 && length <= Integer.MAX_VALUE) {
+            connection.setFixedLengthStreamingMode((int) length);
+         } else {
+            connection.setChunkedStreamingMode(0);
+         }
+         OutputStream out = connection.getOutputStream();
+         try {
+            body.writeTo(out);
+         } finally {
+            out.close();
+         }
+      }
+
+      @Override
+      public int getStatusCode() throws IOException {
+         execute();
+         return connection.getResponseCode();
+      }
+
+      @Override
+      public String getStatusMessage() throws IOException {
+         execute();
+         return connection.getResponseMessage();
+      }
+
+      @Override
+      public String getResponseHeader(String name) {
+         try {
+            execute();
+         } catch (IOException e) {
+            return null;
+         }
+         return connection.getHeaderField(name);
+      }
+
+      @Override
+      public InputStream getBody() throws IOException {
+         execute();
+         try {
+            return connection.getInputStream();
+         } catch (IOException e) {
+            return connection.getErrorStream();
+         }
+      }
+
+      @Override
+      public void release(boolean isReusable) {
+         // The connection whose body is read to the end is already returned to the pool
+         if (!isReusable) {
+            connection.disconnect();
+         }
+      }
+
+      @Override
+      public void abort() {
+         connection.disconnect();
+      }
+
+   }
+
+}
@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport that answers the requests with the responses held in memory, without the network. It runs the same request definitions as
+ * the network transports, so the parsing and the caching can be benchmarked and tested apart from the network. The requests to an
+ * unknown url are answered with 404 Not Found.
+ *
+ * @author lordtao
+ */
+public class MemoryTransport implements Transport {
+
+   private static final Response NOT_FOUND = new Response(404, "Not Found", new byte[0]);
+
+   private final ConcurrentHashMap<String, Response> responses = new ConcurrentHashMap<>();
+   private final AtomicLong exchangeCount = new AtomicLong();
+   private final AtomicLong sentBytes     = new AtomicLong();
+
+   /**
+    * Set the response of the url, replacing the previous one.
+    *
+    * @param url      request url with the query
+    * @param response response
+    * @return this transport
+    */
+   public MemoryTransport setResponse(String url, Response response) {
+      responses.put(url, response);
+      return this;
+   }
+
+   /**
+    * Set the response of the url, replacing the previous one.
+    *
+    * @param url        request url with the query
+    * @param statusCode status code
+    * @param body       response body
+    * @return this transport
+    */
+   public MemoryTransport setResponse(String url, int statusCode, byte[] body) {
+      return setResponse(url, new Response(statusCode, statusCode == 200 ? "OK" : "", body));
+   }
+
+   /**
+    * Remove all responses and reset the counters.
+    */
+   public void clear() {
+      responses.clear();
+      exchangeCount.set(0);
+      sentBytes.set(0);
+   }
+
+   /**
+    * Returns the number of the executed exchanges.
+    *
+    * @return count
+    */
+   public long getExchangeCount() {
+      return exchangeCount.get();
+   }
+
+   /**
+    * Returns the total size of the written request bodies.
+    *
+    * @return size in bytes
+    */
+   public long getSentBytes() {
+      return sentBytes.get();
+   }
+
+   @Override
+   public Exchange newExchange(String method, URL url) throws IOException {
+      return new MemoryExchange(method, url);
+   }
+
+   @Override
+   public String toString() {
+      return "MemoryTransport [responses=" + responses.size() + ", exchangeCount=" + exchangeCount + ", sentBytes=" + sentBytes + "]";
+   }
+
+   /**
+    * Response held in memory.
+    */
+   public static class Response {
+
+      private final int    statusCode;
+      private final String statusMessage;
+      private final byte[] body;
+      private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+      public Response(int statusCode, String statusMessage, byte[] body) {
+         this.statusCode = statusCode;
+         this.statusMessage = statusMessage;
+         this.body = body;
+      }
+
+      /**
+       * Set the response header, for example ETag or Content-Encoding. Must be called before the response is set to the transport.
+       *
+       * @param name  header name
+       * @param value header value
+       * @return this response
+       */
+      public Response setHeader(String name, String value) {
+         headers.put(name, value);
+         return this;
+      }
+
+   }
+
+   private class MemoryExchange implements Exchange {
+
+      private final String method;
+      private final URL    url;
+      private final Map<String, String> requestHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      private BodyWriter        body;
+      private Response          response;
+      private volatile boolean  isAborted;
+
+      private MemoryExchange(String method, URL url) {
+         this.method = method;
+         this.url = url;
+      }
+
+      @Override
+      public String getMethod() {
+         return method;
+      }
+
+      @Override
+      public URL getURL() {
+         return url;
+      }
+
+      @Override
+      public void setTimeouts(int connectTimeout, int readTimeout) {
+         // Nothing to wait for
+      }
+
+      @Override
+      public void setRequestHeader(String name, String value) {
+         requestHeaders.put(name, value);
+      }
+
+      @Override
+      public String getRequestHeader(String name) {
+         return requestHeaders.get(name);
+      }
+
+      @Override
+      public void setBody(BodyWriter body) {
+         this.body = body;
+      }
+
+      @Override
+      public synchronized void execute() throws IOException {
+         if (isAborted) {
+            throw new InterruptedIOException("Exchange is aborted");
+         }
+         if (response != null) {
+            return;
+         }
+         if (body != null) {
+            CountingSink sink = new CountingSink();
+            body.writeTo(sink);
+            sentBytes.addAndGet(sink.count);
+         }
+         Response found = responses.get(url.toString());
+         response = found == null ? NOT_FOUND : found;
+         exchangeCount.incrementAndGet();
+      }
+
+      @Override
+      public int getStatusCode() throws IOException {
+         execute();
+         return response.statusCode;
+      }
+
+      @Override
+      public String getStatusMessage() throws IOException {
+         execute();
+         return response.statusMessage;
+      }
+
+      @Override
+      public String getResponseHeader(String name) {
+         try {
+            execute();
+         } catch (IOException e) {
+            return null;
+         }
+         return response.headers.get(name);
+      }
+
+      @Override
+      public InputStream getBody() throws IOException {
+         execute();
+         return new ByteArrayInputStream(response.body);
+      }
+
+      @Override
+      public void release(boolean isReusable) {
+         // Nothing to release
+      }
+
+      @Override
+      public void abort() {
+         isAborted = true;
+      }
+
+   }
+
+   private static class CountingSink extends OutputStream {
+
+      private long count;
+
+      @Override
+      public void write(int b) {
+         count++;
+      }
+
+      @Override
+      public void write(byte[] buffer, int offset, int length) {
+         count += length;
+      }
+
+   }
+
+}
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.transport;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Transport of the web requests: opens the exchanges the requests are sent by. The transport is selected with
+ * {@link ua.at.tsvetkov.data_processor.DataProcessorConfiguration.Builder#setTransport(Transport)} or per request with
+ * {@link ua.at.tsvetkov.data_processor.requests.WebRequest#setTransport(Transport)}, by default {@link HttpUrlConnectionTransport} is
+ * used. Implementations must be thread safe.
+ *
+ * @author lordtao
+ */
+public interface Transport {
+
+   /**
+    * Open a new exchange. Nothing is sent until the exchange is executed.
+    *
+    * @param method request method, GET, POST, PUT or DELETE
+    * @param url    request url
+    * @return exchange
+    * @throws IOException if the exchange can not be opened
+    */
+   Exchange newExchange(String method, URL url) throws IOException;
+
+}
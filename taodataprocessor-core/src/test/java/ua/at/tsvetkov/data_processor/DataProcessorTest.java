@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import ua.at.tsvetkov.data_processor.TestDataProcessor.GatedText;
+import ua.at.tsvetkov.data_processor.TestDataProcessor.Text;
+import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
+import ua.at.tsvetkov.data_processor.processors.Processor;
+import ua.at.tsvetkov.data_processor.processors.Processor.Callback;
+import ua.at.tsvetkov.data_processor.requests.GetRequest;
+import ua.at.tsvetkov.data_processor.requests.PostRequest;
+import ua.at.tsvetkov.data_processor.transport.MemoryTransport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Request flows of the data processor over {@link MemoryTransport}.
+ */
+public class DataProcessorTest {
+
+   private DataProcessor   dataProcessor;
+   private MemoryTransport transport;
+
+   @Before
+   public void setUp() {
+      dataProcessor = TestDataProcessor.init();
+      transport = new MemoryTransport();
+   }
+
+   @Test
+   public void responseIsParsed() throws Exception {
+      String url = TestDataProcessor.newUrl("parsed");
+      transport.setResponse(url, 200, "hello".getBytes("UTF-8"));
+      GetRequest request = TestDataProcessor.newGetRequest(url, transport);
+
+      Text text = dataProcessor.execute(request, Text.class);
+
+      assertEquals("hello", text.value);
+      assertEquals(200, request.getStatusCode());
+      assertEquals(1, transport.getExchangeCount());
+   }
+
+   @Test
+   public void unknownUrlIsNotFound() throws Exception {
+      GetRequest request = TestDataProcessor.newGetRequest(TestDataProcessor.newUrl("missing"), transport);
+
+      dataProcessor.execute(request, Text.class);
+
+      assertEquals(404, request.getStatusCode());
+      assertEquals(1, transport.getExchangeCount());
+   }
+
+   @Test
+   public void freshResponseIsServedFromResponseCache() throws Exception {
+      String url = TestDataProcessor.newUrl("cached");
+      transport.setResponse(url, new MemoryTransport.Response(200, "OK", "cached".getBytes("UTF-8")).setHeader("ETag", "\"1\""));
+      GetRequest first = TestDataProcessor.newGetRequest(url, transport);
+      first.setCacheTtl(60 * 1000);
+      assertEquals("cached", dataProcessor.execute(first, Text.class).value);
+
+      GetRequest second = TestDataProcessor.newGetRequest(url, transport);
+      second.setCacheTtl(60 * 1000);
+      Text text = dataProcessor.execute(second, Text.class);
+
+      assertEquals("cached", text.value);
+      assertTrue(second.isFromCache());
+      assertEquals(1, transport.getExchangeCount());
+   }
+
+   @Test
+   public void noCacheRequestIsSentToServer() throws Exception {
+      String url = TestDataProcessor.newUrl("no-cache");
+      transport.setResponse(url, new MemoryTransport.Response(200, "OK", "v1".getBytes("UTF-8")).setHeader("ETag", "\"1\""));
+      GetRequest first = TestDataProcessor.newGetRequest(url, transport);
+      first.setCacheTtl(60 * 1000);
+      dataProcessor.execute(first, Text.class);
+      transport.setResponse(url, new MemoryTransport.Response(200, "OK", "v2".getBytes("UTF-8")).setHeader("ETag", "\"2\""));
+
+      GetRequest second = TestDataProcessor.newGetRequest(url, transport);
+      second.setCacheTtl(60 * 1000);
+      second.setNoCache(true);
+      Text text = dataProcessor.execute(second, Text.class);
+
+      assertEquals("v2", text.value);
+      assertFalse(second.isFromCache());
+      assertEquals(2, transport.getExchangeCount());
+   }
+
+   @Test
+   public void postBodyIsSent() throws Exception {
+      String url = TestDataProcessor.newUrl("post");
+      transport.setResponse(url, 200, "posted".getBytes("UTF-8"));
+      PostRequest request = PostRequest.newInstance().setUrl(url).addBody("body");
+      request.build();
+      request.setTransport(transport);
+
+      Text text = dataProcessor.execute(request, Text.class);
+
+      assertEquals("posted", text.value);
+      assertEquals(4, transport.getSentBytes());
+   }
+
+   @Test
+   public void asyncRequestCallsBack() throws Exception {
+      String url = TestDataProcessor.newUrl("async");
+      transport.setResponse(url, 200, "async".getBytes("UTF-8"));
+      ResultCallback<Text> callback = new ResultCallback<Text>(1);
+
+      dataProcessor.executeAsync(TestDataProcessor.newGetRequest(url, transport), Text.class, callback);
+
+      assertTrue(callback.await());
+      assertEquals(200, (int) callback.statusCodes.get(0));
+      assertEquals("async", callback.results.get(0).value);
+   }
+
+   @Test
+   public void failedRequestIsBackedOff() throws Exception {
+      String url = TestDataProcessor.newUrl("backoff");
+      transport.setResponse(url, 503, "unavailable".getBytes("UTF-8"));
+      GetRequest first = TestDataProcessor.newGetRequest(url, transport);
+      dataProcessor.execute(first, Text.class);
+      assertTrue(dataProcessor.getNegativeCache().getBackoff(first.getRequestKey()) > 0);
+
+      GetRequest second = TestDataProcessor.newGetRequest(url, transport);
+      Processor<Text> processor = new Processor<Text>(dataProcessor, second, Text.class);
+      processor.execute();
+
+      assertEquals(ConnectionConstants.BACKED_OFF, processor.getStatus());
+      assertEquals(1, transport.getExchangeCount());
+   }
+
+   @Test
+   public void forcedCachedRequestDoesNotChangeRequest() throws Exception {
+      String url = TestDataProcessor.newUrl("force");
+      transport.setResponse(url, new MemoryTransport.Response(200, "OK", "forced".getBytes("UTF-8")).setHeader("ETag", "\"1\""));
+      GetRequest request = TestDataProcessor.newGetRequest(url, transport);
+      request.setCacheTtl(60 * 1000);
+      int key = url.hashCode();
+      ResultCallback<Text> first = new ResultCallback<Text>(1);
+      dataProcessor.executeCachedAsync(key, request, Text.class, first);
+      assertTrue(first.await());
+
+      ResultCallback<GatedText> forced = new ResultCallback<GatedText>(1);
+      GatedText.close();
+      dataProcessor.executeCachedAsyncForce(key, request, GatedText.class, forced);
+      assertTrue(GatedText.awaitStarted());
+      assertFalse(request.isNoCache());
+      GatedText.open();
+
+      assertTrue(forced.await());
+      assertNotNull(forced.results.get(0));
+      assertEquals(2, transport.getExchangeCount());
+      assertFalse(request.isNoCache());
+      assertFalse(request.isStaleAllowed());
+   }
+
+   @Test
+   public void revalidatedChangedResultIsDeliveredAgain() throws Exception {
+      String url = TestDataProcessor.newUrl("revalidate-changed");
+      transport.setResponse(url, 200, "v1".getBytes("UTF-8"));
+      GetRequest request = TestDataProcessor.newGetRequest(url, transport);
+      request.setCacheTtl(0);
+      ResultCallback<Text> first = new ResultCallback<Text>(1);
+      dataProcessor.executeCachedAsyncRevalidate(request, Text.class, first);
+      assertTrue(first.await());
+      transport.setResponse(url, 200, "v2".getBytes("UTF-8"));
+
+      ResultCallback<Text> second = new ResultCallback<Text>(2);
+      dataProcessor.executeCachedAsyncRevalidate(request, Text.class, second);
+
+      assertTrue(second.await());
+      assertEquals("v1", second.results.get(0).value);
+      assertEquals("v2", second.results.get(1).value);
+      assertEquals(2, transport.getExchangeCount());
+      assertFalse(request.isNoCache());
+      assertFalse(request.isStaleAllowed());
+   }
+
+   @Test
+   public void revalidatedSameResultIsNotDeliveredAgain() throws Exception {
+      String url = TestDataProcessor.newUrl("revalidate-same");
+      transport.setResponse(url, 200, "v1".getBytes("UTF-8"));
+      GetRequest request = TestDataProcessor.newGetRequest(url, transport);
+      request.setCacheTtl(0);
+      ResultCallback<Text> first = new ResultCallback<Text>(1);
+      dataProcessor.executeCachedAsyncRevalidate(request, Text.class, first);
+      assertTrue(first.await());
+      Processor<?> cached = dataProcessor.getProcessorsCache().get(request.getKey());
+
+      ResultCallback<Text> second = new ResultCallback<Text>(2);
+      dataProcessor.executeCachedAsyncRevalidate(request, Text.class, second);
+
+      // The revalidation replaces the cached processor before it decides whether to call back
+      long deadline = System.currentTimeMillis() + 5000;
+      while (dataProcessor.getProcessorsCache().get(request.getKey()) == cached && System.currentTimeMillis() < deadline) {
+         Thread.sleep(10);
+      }
+      assertFalse(second.finished.await(200, TimeUnit.MILLISECONDS));
+      assertEquals(1, second.results.size());
+      assertEquals("v1", second.results.get(0).value);
+      assertEquals(2, transport.getExchangeCount());
+   }
+
+   private static class ResultCallback<T> implements Callback<T> {
+
+      private final List<T>        results     = new CopyOnWriteArrayList<T>();
+      private final List<Integer>  statusCodes = new CopyOnWriteArrayList<Integer>();
+      private final CountDownLatch finished;
+
+      private ResultCallback(int count) {
+         finished = new CountDownLatch(count);
+      }
+
+      @Override
+      public void onFinish(T obj, int statusCode, String errMessage) {
+         results.add(obj);
+         statusCodes.add(statusCode);
+         finished.countDown();
+      }
+
+      private boolean await() throws InterruptedException {
+         return finished.await(5, TimeUnit.SECONDS);
+      }
+
+   }
+
+}
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface;
+import ua.at.tsvetkov.data_processor.interfaces.StringDataInterface;
+import ua.at.tsvetkov.data_processor.requests.GetRequest;
+import ua.at.tsvetkov.data_processor.transport.MemoryTransport;
+
+/**
+ * The data processor is a singleton which is configured once, so all tests share this configuration. The tests send their requests over
+ * a {@link MemoryTransport} with their own urls, so they do not share the cached responses.
+ *
+ * @author lordtao
+ */
+public final class TestDataProcessor {
+
+   /**
+    * Fixed number of the worker threads, so a test can occupy all of them.
+    */
+   public static final int THREAD_POOL_SIZE = 4;
+   /**
+    * Max body which is passed to the parse stage.
+    */
+   public static final int PARSE_BUFFER_SIZE = 16 * 1024;
+   /**
+    * Short request timeout, so a test can wait until it expires.
+    */
+   public static final int TIMEOUT = 1000;
+
+   private static final AtomicInteger urlCount = new AtomicInteger();
+
+   private TestDataProcessor() {
+
+   }
+
+   public static synchronized DataProcessor init() {
+      DataProcessor dataProcessor = DataProcessor.getInstance();
+      if (dataProcessor.getConfiguration() == null) {
+         dataProcessor.init(DataProcessorConfiguration.getBuilder()
+                 .setHttpUserAgent("test")
+                 .setHost("localhost")
+                 .setLogEnabled(false)
+                 .setTimeout(TIMEOUT)
+                 .setThreadPoolSize(THREAD_POOL_SIZE)
+                 .setParseStageEnabled(true)
+                 .setParseBufferSize(PARSE_BUFFER_SIZE)
+                 .setCacheEnabled(true)
+                 .setCacheSize(64)
+                 .setResponseCacheEnabled(true)
+                 .setSingleFlightEnabled(true)
+                 .setNegativeCacheEnabled(true)
+                 .build());
+      }
+      return dataProcessor;
+   }
+
+   /**
+    * Returns an url which was not requested by other tests.
+    *
+    * @param name readable part of the url
+    * @return url
+    */
+   public static String newUrl(String name) {
+      return "http://memory.test/" + name + "/" + urlCount.incrementAndGet();
+   }
+
+   /**
+    * Returns a built GET request of the url sent over the transport.
+    */
+   public static GetRequest newGetRequest(String url, MemoryTransport transport) {
+      GetRequest request = GetRequest.newInstance().setUrl(url);
+      request.build();
+      request.setTransport(transport);
+      return request;
+   }
+
+   /**
+    * Result which keeps the response body as is.
+    */
+   public static class Text implements StringDataInterface {
+
+      public String value;
+
+      @Override
+      public void fillFromString(String src) {
+         value = src;
+      }
+
+   }
+
+   /**
+    * Result which reads only the beginning of the body.
+    */
+   public static class PrefixReader implements InputStreamDataInterface {
+
+      public int length;
+
+      @Override
+      public void fillFromInputStream(InputStream in) throws IOException {
+         length = in.read(new byte[10]);
+      }
+
+   }
+
+   /**
+    * Result whose parsing waits until {@link #open()} is called, to keep the request in flight.
+    */
+   public static class GatedText implements StringDataInterface {
+
+      private static volatile CountDownLatch started = new CountDownLatch(1);
+      private static volatile CountDownLatch gate    = new CountDownLatch(1);
+
+      public String value;
+
+      /**
+       * Close the gate before the request is executed.
+       */
+      public static void close() {
+         started = new CountDownLatch(1);
+         gate = new CountDownLatch(1);
+      }
+
+      /**
+       * Wait until a request starts the parsing.
+       *
+       * @return false if no request started the parsing in time
+       */
+      public static boolean awaitStarted() throws InterruptedException {
+         return started.await(5, TimeUnit.SECONDS);
+      }
+
+      public static void open() {
+         gate.countDown();
+      }
+
+      @Override
+      public void fillFromString(String src) throws Exception {
+         started.countDown();
+         if (!gate.await(5, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("The gate is not opened");
+         }
+         value = src;
+      }
+
+   }
+
+}
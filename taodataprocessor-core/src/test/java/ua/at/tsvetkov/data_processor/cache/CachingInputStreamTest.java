@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CachingInputStreamTest {
+
+   private static final String KEY = "GET http://example.com/";
+
+   private final MemoryResponseCache cache = new MemoryResponseCache();
+
+   @Test
+   public void readBodyIsStored() throws Exception {
+      byte[] body = newBody(1000);
+      InputStream in = new CachingInputStream(new ByteArrayInputStream(body), cache, KEY, "\"1\"", null, 0, 4096);
+
+      readFully(in);
+      in.close();
+
+      CachedResponse response = cache.get(KEY);
+      assertArrayEquals(body, response.getBody());
+      assertEquals("\"1\"", response.getETag());
+   }
+
+   @Test
+   public void restOfBodyIsStoredOnClose() throws Exception {
+      byte[] body = newBody(20000);
+      InputStream in = new CachingInputStream(new ByteArrayInputStream(body), cache, KEY, "\"1\"", null, 0, 32 * 1024);
+
+      in.read(new byte[100]);
+      in.close();
+
+      assertArrayEquals(body, cache.get(KEY).getBody());
+   }
+
+   @Test
+   public void bodyLargerThanMaxSizeIsNotStored() throws Exception {
+      InputStream in = new CachingInputStream(new ByteArrayInputStream(newBody(5000)), cache, KEY, "\"1\"", null, 0, 4096);
+
+      readFully(in);
+      in.close();
+
+      assertNull(cache.get(KEY));
+   }
+
+   private static byte[] newBody(int length) {
+      byte[] body = new byte[length];
+      Arrays.fill(body, (byte) 'a');
+      body[length - 1] = 'z';
+      return body;
+   }
+
+   private static void readFully(InputStream in) throws Exception {
+      byte[] buffer = new byte[256];
+      while (in.read(buffer) != -1) {
+         // Read to the end
+      }
+   }
+
+}
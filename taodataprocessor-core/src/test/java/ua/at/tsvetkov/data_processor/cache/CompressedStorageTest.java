@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompressedStorageTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private byte[] body;
+
+   @Before
+   public void setUp() throws Exception {
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < 2000; i++) {
+         text.append("{\"id\":").append(i).append(",\"name\":\"item\"},");
+      }
+      body = text.toString().getBytes("UTF-8");
+   }
+
+   @Test
+   public void rawFileIsWrittenAsIs() throws Exception {
+      CompressedStorage storage = new CompressedStorage();
+      File file = folder.newFile();
+
+      write(storage, file, body);
+
+      assertArrayEquals(body, Files.readAllBytes(file.toPath()));
+      assertArrayEquals(body, read(storage, file));
+      assertEquals(0, storage.getEncodedCount());
+      assertEquals(0, storage.getDecodedCount());
+   }
+
+   @Test
+   public void compressedFileIsRestored() throws Exception {
+      CompressedStorage storage = new CompressedStorage(true, CompressedStorage.DEFAULT_LEVEL);
+      File file = folder.newFile();
+
+      write(storage, file, body);
+
+      assertTrue(file.length() < body.length);
+      assertArrayEquals(body, read(storage, file));
+      assertEquals(1, storage.getEncodedCount());
+      assertEquals(body.length, storage.getEncodedBytes());
+      assertEquals(file.length(), storage.getEncodedStoredSize());
+      assertEquals(1, storage.getDecodedCount());
+      assertEquals(body.length, storage.getDecodedBytes());
+      assertTrue(storage.getCompressionRatio() < 1);
+   }
+
+   @Test
+   public void filesAreReadWhetherCompressionIsEnabledOrNot() throws Exception {
+      CompressedStorage enabled = new CompressedStorage(true, Deflater.BEST_COMPRESSION);
+      CompressedStorage disabled = new CompressedStorage();
+      File compressed = folder.newFile();
+      File raw = folder.newFile();
+
+      write(enabled, compressed, body);
+      write(disabled, raw, body);
+
+      assertArrayEquals(body, read(disabled, compressed));
+      assertArrayEquals(body, read(enabled, raw));
+   }
+
+   @Test
+   public void fileShorterThanHeaderIsReadAsIs() throws Exception {
+      CompressedStorage storage = new CompressedStorage(true, CompressedStorage.DEFAULT_LEVEL);
+      File file = folder.newFile();
+      byte[] shortBody = {0, 'T'};
+      writeFile(file, shortBody);
+
+      assertArrayEquals(shortBody, read(storage, file));
+   }
+
+   @Test(expected = IOException.class)
+   public void unknownCodecIsRejected() throws Exception {
+      File file = folder.newFile();
+      writeFile(file, new byte[]{0, 'T', 'D', 'C', 9, 1, 2, 3});
+
+      new CompressedStorage().open(file);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void wrongLevelIsRejected() {
+      new CompressedStorage(true, Deflater.BEST_COMPRESSION + 1);
+   }
+
+   private static void write(CompressedStorage storage, File file, byte[] data) throws IOException {
+      OutputStream out = storage.newOutputStream(file);
+      try {
+         // Several writes, as the body is copied from the network
+         for (int offset = 0; offset < data.length; offset += 1000) {
+            out.write(data, offset, Math.min(1000, data.length - offset));
+         }
+      } finally {
+         out.close();
+      }
+   }
+
+   private static byte[] read(CompressedStorage storage, File file) throws IOException {
+      InputStream in = storage.open(file);
+      try {
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         byte[] buffer = new byte[512];
+         int count;
+         while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+         }
+         return out.toByteArray();
+      } finally {
+         in.close();
+      }
+   }
+
+   private static void writeFile(File file, byte[] data) throws IOException {
+      OutputStream out = new FileOutputStream(file);
+      try {
+         out.write(data);
+      } finally {
+         out.close();
+      }
+   }
+
+}
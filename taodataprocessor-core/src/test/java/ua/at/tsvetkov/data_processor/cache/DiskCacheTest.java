@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DiskCacheTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private File directory;
+
+   @Before
+   public void setUp() throws Exception {
+      directory = folder.newFolder("cache");
+   }
+
+   @Test
+   public void entriesAreReplayedAfterReopen() throws Exception {
+      DiskCache cache = new DiskCache(directory, 1024);
+      put(cache, "a", 10);
+      put(cache, "b", 20);
+
+      DiskCache reopened = new DiskCache(directory, 1024);
+
+      assertNotNull(reopened.get("a"));
+      assertNotNull(reopened.get("b"));
+      assertEquals(30, reopened.getSize());
+   }
+
+   @Test
+   public void removedEntriesAreNotReplayed() throws Exception {
+      DiskCache cache = new DiskCache(directory, 1024);
+      put(cache, "a", 10);
+      put(cache, "b", 20);
+      cache.remove("a");
+
+      DiskCache reopened = new DiskCache(directory, 1024);
+
+      assertNull(reopened.get("a"));
+      assertNotNull(reopened.get("b"));
+      assertEquals(20, reopened.getSize());
+   }
+
+   @Test
+   public void accessOrderIsReplayed() throws Exception {
+      DiskCache cache = new DiskCache(directory, 30);
+      put(cache, "a", 10);
+      put(cache, "b", 10);
+      cache.get("a");
+      put(cache, "c", 10);
+
+      DiskCache reopened = new DiskCache(directory, 30);
+      put(reopened, "d", 10);
+
+      assertNull(reopened.get("b"));
+      assertNotNull(reopened.get("a"));
+      assertNotNull(reopened.get("c"));
+      assertNotNull(reopened.get("d"));
+   }
+
+   @Test
+   public void incompleteLastLineIsIgnored() throws Exception {
+      DiskCache cache = new DiskCache(directory, 1024);
+      put(cache, "a", 10);
+      append(new File(directory, DiskCache.JOURNAL), "PUT " + DiskCache.toFileName("b"));
+      write(new File(directory, DiskCache.toFileName("b")), 10);
+
+      DiskCache reopened = new DiskCache(directory, 1024);
+
+      assertNotNull(reopened.get("a"));
+      assertNull(reopened.get("b"));
+      assertEquals(10, reopened.getSize());
+   }
+
+   @Test
+   public void corruptedJournalClearsDirectory() throws Exception {
+      DiskCache cache = new DiskCache(directory, 1024);
+      put(cache, "a", 10);
+      write(new File(directory, "orphan"), 10);
+      write(new File(directory, DiskCache.JOURNAL), 10);
+
+      DiskCache reopened = new DiskCache(directory, 1024);
+
+      assertNull(reopened.get("a"));
+      assertEquals(0, reopened.getSize());
+      assertEquals(new HashSet<String>(Arrays.asList(DiskCache.JOURNAL, DiskCache.TEMP_DIR)), new HashSet<String>(Arrays.asList(directory.list())));
+   }
+
+   @Test
+   public void journalIsCompactedOnReads() throws Exception {
+      DiskCache cache = new DiskCache(directory, 1024);
+      put(cache, "a", 10);
+
+      for (int i = 0; i < 5000; i++) {
+         assertNotNull(cache.get("a"));
+      }
+
+      // A read line is 46 bytes, the journal is rebuilt every 2000 of them
+      assertTrue(new File(directory, DiskCache.JOURNAL).length() < 2100 * 46);
+      assertNotNull(new DiskCache(directory, 1024).get("a"));
+   }
+
+   @Test
+   public void eldestEntryIsEvictedOverMaxSize() throws Exception {
+      DiskCache cache = new DiskCache(directory, 10);
+      put(cache, "a", 4);
+      put(cache, "b", 4);
+
+      put(cache, "c", 4);
+
+      assertNull(cache.get("a"));
+      assertNotNull(cache.get("b"));
+      assertNotNull(cache.get("c"));
+      assertEquals(8, cache.getSize());
+   }
+
+   @Test
+   public void fileLargerThanMaxSizeIsNotCached() throws Exception {
+      DiskCache cache = new DiskCache(directory, 10);
+      File tempFile = cache.newTempFile();
+      write(tempFile, 20);
+
+      assertNull(cache.commit("a", tempFile));
+      assertTrue(tempFile.exists());
+      assertEquals(0, cache.getSize());
+   }
+
+   private static void put(DiskCache cache, String key, int length) throws IOException {
+      File tempFile = cache.newTempFile();
+      write(tempFile, length);
+      assertNotNull(cache.commit(key, tempFile));
+   }
+
+   private static void write(File file, int length) throws IOException {
+      OutputStream out = new FileOutputStream(file);
+      try {
+         out.write(new byte[length]);
+      } finally {
+         out.close();
+      }
+   }
+
+   private static void append(File file, String text) throws IOException {
+      OutputStream out = new FileOutputStream(file, true);
+      try {
+         out.write(text.getBytes("UTF-8"));
+      } finally {
+         out.close();
+      }
+   }
+
+}
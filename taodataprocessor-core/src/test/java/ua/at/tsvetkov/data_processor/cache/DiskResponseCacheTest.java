@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DiskResponseCacheTest {
+
+   private static final String KEY = "GET http://example.com/";
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private DiskCache         diskCache;
+   private CompressedStorage storage;
+
+   @Before
+   public void setUp() throws Exception {
+      diskCache = new DiskCache(folder.newFolder("cache"), 64 * 1024);
+      storage = new CompressedStorage(false, CompressedStorage.DEFAULT_LEVEL);
+   }
+
+   @Test
+   public void storedResponseIsRead() throws Exception {
+      DiskResponseCache cache = new DiskResponseCache(diskCache, storage, 1024);
+      cache.put(KEY, newResponse(100));
+
+      CachedResponse response = cache.get(KEY);
+
+      assertArrayEquals(newResponse(100).getBody(), response.getBody());
+      assertEquals("\"1\"", response.getETag());
+      assertEquals(2000, response.getExpiresTime());
+   }
+
+   @Test
+   public void bodyLargerThanMaxEntrySizeIsRemoved() throws Exception {
+      new DiskResponseCache(diskCache, storage, 1024).put(KEY, newResponse(100));
+      DiskResponseCache cache = new DiskResponseCache(diskCache, storage, 10);
+
+      assertNull(cache.get(KEY));
+      assertEquals(0, diskCache.getSize());
+   }
+
+   @Test
+   public void negativeBodyLengthIsRemoved() throws Exception {
+      DiskResponseCache cache = new DiskResponseCache(diskCache, storage, 1024);
+      cache.put(KEY, newResponse(100));
+      RandomAccessFile file = new RandomAccessFile(getFile(), "rw");
+      try {
+         file.seek(file.length() - 100 - 4);
+         file.writeInt(-1);
+      } finally {
+         file.close();
+      }
+
+      assertNull(cache.get(KEY));
+      assertEquals(0, diskCache.getSize());
+   }
+
+   @Test
+   public void truncatedFileIsRemoved() throws Exception {
+      DiskResponseCache cache = new DiskResponseCache(diskCache, storage, 1024);
+      cache.put(KEY, newResponse(100));
+      RandomAccessFile file = new RandomAccessFile(getFile(), "rw");
+      try {
+         file.setLength(file.length() - 50);
+      } finally {
+         file.close();
+      }
+
+      assertNull(cache.get(KEY));
+      assertEquals(0, diskCache.getSize());
+   }
+
+   private File getFile() throws Exception {
+      return diskCache.get("response " + KEY);
+   }
+
+   private static CachedResponse newResponse(int length) {
+      byte[] body = new byte[length];
+      Arrays.fill(body, (byte) 'a');
+      return new CachedResponse(body, "\"1\"", null, 1000, 2000);
+   }
+
+}
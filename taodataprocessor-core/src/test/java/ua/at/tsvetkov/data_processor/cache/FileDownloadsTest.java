@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileDownloadsTest {
+
+   private static final String KEY = "/cache/file";
+
+   private final FileDownloads downloads = new FileDownloads();
+
+   @Test
+   public void onlyOneRequestDownloadsFile() {
+      assertTrue(downloads.tryAcquire(KEY));
+      assertFalse(downloads.tryAcquire(KEY));
+      assertTrue(downloads.tryAcquire("/cache/other"));
+      assertEquals(2, downloads.size());
+
+      downloads.release(KEY);
+
+      assertTrue(downloads.tryAcquire(KEY));
+   }
+
+   @Test
+   public void waitersAreWokenUpOnRelease() throws Exception {
+      downloads.tryAcquire(KEY);
+      final CountDownLatch finished = new CountDownLatch(3);
+      for (int i = 0; i < 3; i++) {
+         new Thread() {
+
+            @Override
+            public void run() {
+               try {
+                  downloads.await(KEY, 0);
+                  finished.countDown();
+               } catch (InterruptedIOException e) {
+                  // Not counted
+               }
+            }
+
+         }.start();
+      }
+      assertFalse(finished.await(100, TimeUnit.MILLISECONDS));
+
+      downloads.release(KEY);
+
+      assertTrue(finished.await(5, TimeUnit.SECONDS));
+      assertEquals(0, downloads.size());
+   }
+
+   @Test
+   public void notDownloadedFileIsNotAwaited() throws Exception {
+      downloads.await(KEY, 0);
+   }
+
+   @Test(expected = SocketTimeoutException.class)
+   public void waitIsTimedOut() throws Exception {
+      downloads.tryAcquire(KEY);
+
+      downloads.await(KEY, 50);
+   }
+
+   @Test(expected = InterruptedIOException.class)
+   public void interruptedWaitIsFailed() throws Exception {
+      downloads.tryAcquire(KEY);
+      Thread.currentThread().interrupt();
+      try {
+         downloads.await(KEY, 0);
+      } finally {
+         assertTrue(Thread.interrupted());
+      }
+   }
+
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrequencySketchTest {
+
+   @Test
+   public void accessesAreCounted() {
+      FrequencySketch sketch = new FrequencySketch(64);
+
+      sketch.increment(42);
+      sketch.increment(42);
+      sketch.increment(42);
+
+      assertEquals(3, sketch.frequency(42));
+      assertEquals(0, sketch.frequency(43));
+   }
+
+   @Test
+   public void frequencyIsSaturated() {
+      FrequencySketch sketch = new FrequencySketch(64);
+
+      for (int i = 0; i < 20; i++) {
+         sketch.increment(42);
+      }
+
+      assertEquals(15, sketch.frequency(42));
+   }
+
+   @Test
+   public void frequencyIsHalvedAfterSample() {
+      FrequencySketch sketch = new FrequencySketch(16);
+      for (int i = 0; i < 8; i++) {
+         sketch.increment(42);
+      }
+      assertEquals(8, sketch.frequency(42));
+
+      // The sample is 10 accesses per counter row, 160 for 16 entries
+      for (int i = 0; i < 160; i++) {
+         sketch.increment(1000 + i);
+      }
+
+      int frequency = sketch.frequency(42);
+      assertTrue("frequency " + frequency, frequency >= 4 && frequency < 8);
+   }
+
+   @Test
+   public void capacityIsPowerOfTwo() {
+      assertEquals(1, FrequencySketch.ceilingPowerOfTwo(1));
+      assertEquals(16, FrequencySketch.ceilingPowerOfTwo(16));
+      assertEquals(32, FrequencySketch.ceilingPowerOfTwo(17));
+      assertEquals(1024, FrequencySketch.ceilingPowerOfTwo(1000));
+   }
+
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NegativeCacheTest {
+
+   private static final String KEY = "GET http://example.com/";
+
+   @Test
+   public void unknownKeyIsNotBackedOff() {
+      assertEquals(0, new NegativeCache().getBackoff(KEY));
+   }
+
+   @Test
+   public void failureBacksOffKey() {
+      NegativeCache cache = new NegativeCache(1000, 4000, false);
+
+      cache.onFailure(KEY, System.currentTimeMillis());
+
+      long backoff = cache.getBackoff(KEY);
+      assertTrue(backoff > 0 && backoff <= 1000);
+      assertEquals(1, cache.size());
+   }
+
+   @Test
+   public void windowIsDoubledUpToMax() {
+      NegativeCache cache = new NegativeCache(1000, 4000, false);
+
+      cache.onFailure(KEY, System.currentTimeMillis());
+      cache.onFailure(KEY, System.currentTimeMillis());
+      assertTrue(cache.getBackoff(KEY) > 1000);
+      cache.onFailure(KEY, System.currentTimeMillis());
+      assertTrue(cache.getBackoff(KEY) > 3000);
+      cache.onFailure(KEY, System.currentTimeMillis());
+
+      long backoff = cache.getBackoff(KEY);
+      assertTrue(backoff > 3000 && backoff <= 4000);
+   }
+
+   @Test
+   public void failuresSentBeforeWindowAreCountedOnce() {
+      NegativeCache cache = new NegativeCache(1000, 4000, false);
+      long sendTime = System.currentTimeMillis() - 100;
+
+      cache.onFailure(KEY, sendTime);
+      cache.onFailure(KEY, sendTime);
+      cache.onFailure(KEY, sendTime);
+
+      assertTrue(cache.getBackoff(KEY) <= 1000);
+   }
+
+   @Test
+   public void successClearsKey() {
+      NegativeCache cache = new NegativeCache(1000, 4000, false);
+      cache.onFailure(KEY, System.currentTimeMillis());
+
+      cache.onSuccess(KEY);
+
+      assertEquals(0, cache.getBackoff(KEY));
+      assertEquals(0, cache.size());
+   }
+
+   @Test
+   public void onlyOneProbeAfterWindow() throws Exception {
+      NegativeCache cache = new NegativeCache(50, 1000, false);
+      cache.onFailure(KEY, System.currentTimeMillis());
+      Thread.sleep(80);
+
+      assertEquals(0, cache.getBackoff(KEY));
+      assertTrue(cache.getBackoff(KEY) > 0);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void zeroBackoffIsRejected() {
+      new NegativeCache(0, 1000, false);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void maxBackoffBelowBackoffIsRejected() {
+      new NegativeCache(1000, 500, false);
+   }
+
+}
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.TestDataProcessor;
+import ua.at.tsvetkov.data_processor.TestDataProcessor.Text;
+import ua.at.tsvetkov.data_processor.processors.Processor;
+import ua.at.tsvetkov.data_processor.transport.MemoryTransport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ProcessorsCacheTest {
+
+   private static final Map<Class<?>, SizeEstimator<?>> NO_ESTIMATORS = Collections.emptyMap();
+   private static final long                            MAX_SIZE      = 1024 * 1024;
+
+   private DataProcessor   dataProcessor;
+   private MemoryTransport transport;
+
+   @Before
+   public void setUp() {
+      dataProcessor = TestDataProcessor.init();
+      transport = new MemoryTransport();
+   }
+
+   @Test
+   public void cacheIsBoundedByCount() throws Exception {
+      ProcessorsCache cache = new ProcessorsCache(4, MAX_SIZE, NO_ESTIMATORS);
+
+      for (int i = 0; i < 10; i++) {
+         cache.put(i, newFinishedProcessor("body"));
+      }
+
+      assertEquals(4, cache.getCount());
+      assertEquals(6, cache.getEvictionCount());
+   }
+
+   @Test
+   public void cacheIsBoundedBySize() throws Exception {
+      ProcessorsCache cache = new ProcessorsCache(100, 5000, newFixedSizeEstimators(1000));
+
+      for (int i = 0; i < 10; i++) {
+         cache.put(i, newFinishedProcessor("body"));
+      }
+
+      assertTrue(cache.getSize() <= 5000);
+      assertEquals(3, cache.getCount());
+   }
+
+   @Test
+   public void cacheIsTrimmedToSize() throws Exception {
+      ProcessorsCache cache = new ProcessorsCache(100, MAX_SIZE, newFixedSizeEstimators(1000));
+      for (int i = 0; i < 5; i++) {
+         cache.put(i, newFinishedProcessor("body"));
+      }
+
+      cache.trimToSize(3000);
+
+      assertTrue(cache.getSize() <= 3000);
+      assertEquals(2, cache.getCount());
+   }
+
+   @Test
+   public void runningProcessorIsNotEvicted() throws Exception {
+      ProcessorsCache cache = new ProcessorsCache(2, MAX_SIZE, NO_ESTIMATORS);
+      Processor<Text> running = newProcessor("running");
+      cache.put("running", running);
+
+      for (int i = 0; i < 5; i++) {
+         cache.put(i, newFinishedProcessor("body"));
+      }
+      assertSame(running, cache.get("running"));
+
+      cache.clear();
+
+      assertSame(running, cache.get("running"));
+      assertEquals(1, cache.getCount());
+   }
+
+   @Test
+   public void frequentlyReadEntrySurvivesScan() throws Exception {
+      ProcessorsCache cache = new ProcessorsCache(10, MAX_SIZE, NO_ESTIMATORS);
+      Processor<Text> hot = newFinishedProcessor("hot");
+      cache.put("hot", hot);
+      for (int i = 0; i < 5; i++) {
+         cache.get("hot");
+      }
+
+      for (int i = 0; i < 100; i++) {
+         cache.put(i, newFinishedProcessor("scan"));
+      }
+
+      assertSame(hot, cache.get("hot"));
+      assertEquals(10, cache.getCount());
+   }
+
+   @Test
+   public void putIfAbsentReturnsPresentProcessor() throws Exception {
+      ProcessorsCache cache = new ProcessorsCache(10, MAX_SIZE, NO_ESTIMATORS);
+      Processor<Text> first = newFinishedProcessor("first");
+
+      assertNull(cache.putIfAbsent("key", first));
+      assertSame(first, cache.putIfAbsent("key", newFinishedProcessor("second")));
+      assertSame(first, cache.get("key"));
+   }
+
+   @Test
+   public void hitsAndMissesAreCounted() throws Exception {
+      ProcessorsCache cache = new ProcessorsCache(10, MAX_SIZE, NO_ESTIMATORS);
+      cache.put("key", newFinishedProcessor("body"));
+
+      assertNotNull(cache.get("key"));
+      assertNotNull(cache.get("key"));
+      assertNull(cache.get("other"));
+
+      assertEquals(2, cache.getHitCount());
+      assertEquals(1, cache.getMissCount());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void zeroCountIsRejected() {
+      new ProcessorsCache(0, MAX_SIZE, NO_ESTIMATORS);
+   }
+
+   private static Map<Class<?>, SizeEstimator<?>> newFixedSizeEstimators(final long size) {
+      Map<Class<?>, SizeEstimator<?>> estimators = new HashMap<Class<?>, SizeEstimator<?>>();
+      estimators.put(Text.class, new SizeEstimator<Text>() {
+
+         @Override
+         public long sizeOf(Text result, long bodySize) {
+            return size;
+         }
+
+      });
+      return estimators;
+   }
+
+   private Processor<Text> newProcessor(String body) throws Exception {
+      String url = TestDataProcessor.newUrl("processors-cache");
+      transport.setResponse(url, 200, body.getBytes("UTF-8"));
+      return new Processor<Text>(dataProcessor, TestDataProcessor.newGetRequest(url, transport), Text.class);
+   }
+
+   private Processor<Text> newFinishedProcessor(String body) throws Exception {
+      Processor<Text> processor = newProcessor(body);
+      processor.execute();
+      assertTrue(processor.isFinished());
+      return processor;
+   }
+
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TeeInputStreamTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private File              file;
+   private CompressedStorage storage;
+
+   @Before
+   public void setUp() throws Exception {
+      file = folder.newFile("body");
+      storage = new CompressedStorage();
+   }
+
+   @Test
+   public void bodyIsReadWhileItIsReceived() throws Exception {
+      PipedOutputStream server = new PipedOutputStream();
+      TeeInputStream in = new TeeInputStream(new PipedInputStream(server), file, storage);
+      server.write("first ".getBytes("UTF-8"));
+
+      byte[] buffer = new byte[64];
+      int count = in.read(buffer);
+
+      assertEquals("first ", new String(buffer, 0, count, "UTF-8"));
+      assertFalse(in.isComplete());
+
+      server.write("second".getBytes("UTF-8"));
+      server.close();
+      readFully(in);
+      in.close();
+
+      assertTrue(in.isComplete());
+      assertArrayEquals("first second".getBytes("UTF-8"), readFile());
+   }
+
+   @Test
+   public void restOfBodyIsWrittenOnClose() throws Exception {
+      byte[] body = newBody(50 * 1024);
+      TeeInputStream in = new TeeInputStream(new ByteArrayInputStream(body), file, storage);
+
+      in.read(new byte[100]);
+      assertFalse(in.isComplete());
+      in.close();
+
+      assertTrue(in.isComplete());
+      assertArrayEquals(body, readFile());
+   }
+
+   @Test
+   public void skippedBytesAreWritten() throws Exception {
+      byte[] body = newBody(20 * 1024);
+      TeeInputStream in = new TeeInputStream(new ByteArrayInputStream(body), file, storage);
+
+      assertEquals(10 * 1024, in.skip(10 * 1024));
+      readFully(in);
+      in.close();
+
+      assertArrayEquals(body, readFile());
+   }
+
+   @Test
+   public void brokenBodyIsNotComplete() throws Exception {
+      InputStream broken = new InputStream() {
+
+         private int count;
+
+         @Override
+         public int read() throws IOException {
+            if (++count > 500) {
+               throw new IOException("Connection reset");
+            }
+            return 'a';
+         }
+
+      };
+      TeeInputStream in = new TeeInputStream(broken, file, storage);
+
+      try {
+         readFully(in);
+      } catch (IOException e) {
+         // The body is broken
+      }
+      in.close();
+
+      assertFalse(in.isComplete());
+   }
+
+   private byte[] readFile() throws IOException {
+      InputStream in = storage.open(file);
+      try {
+         return readFully(in);
+      } finally {
+         in.close();
+      }
+   }
+
+   private static byte[] readFully(InputStream in) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[1000];
+      int count;
+      while ((count = in.read(buffer)) != -1) {
+         out.write(buffer, 0, count);
+      }
+      return out.toByteArray();
+   }
+
+   private static byte[] newBody(int length) {
+      byte[] body = new byte[length];
+      for (int i = 0; i < length; i++) {
+         body[i] = (byte) (i % 251);
+      }
+      return body;
+   }
+
+}
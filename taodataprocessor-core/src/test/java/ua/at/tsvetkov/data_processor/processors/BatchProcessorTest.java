@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.processors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.TestDataProcessor;
+import ua.at.tsvetkov.data_processor.TestDataProcessor.GatedText;
+import ua.at.tsvetkov.data_processor.TestDataProcessor.Text;
+import ua.at.tsvetkov.data_processor.interfaces.StringDataInterface;
+import ua.at.tsvetkov.data_processor.processors.BatchProcessor.BatchCallback;
+import ua.at.tsvetkov.data_processor.requests.GetRequest;
+import ua.at.tsvetkov.data_processor.requests.Request;
+import ua.at.tsvetkov.data_processor.transport.MemoryTransport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchProcessorTest {
+
+   private DataProcessor   dataProcessor;
+   private MemoryTransport transport;
+
+   @Before
+   public void setUp() {
+      dataProcessor = TestDataProcessor.init();
+      transport = new MemoryTransport();
+   }
+
+   @Test
+   public void resultsAreAggregatedInRequestOrder() throws Exception {
+      List<GetRequest> requests = newRequests(4);
+      requests.add(TestDataProcessor.newGetRequest(TestDataProcessor.newUrl("batch-missing"), transport));
+      Recorder<Text> callback = new Recorder<Text>();
+
+      dataProcessor.executeAll(requests, Text.class, 2, callback);
+
+      assertTrue(callback.await());
+      assertEquals(5, callback.itemCount.get());
+      assertEquals(5, callback.results.size());
+      for (int i = 0; i < 4; i++) {
+         assertEquals("item " + i, callback.results.get(i).value);
+      }
+      assertArrayEquals(new int[]{200, 200, 200, 200, 404}, callback.statusCodes);
+   }
+
+   @Test
+   public void parallelismIsBounded() throws Exception {
+      SlowText.reset();
+      Recorder<SlowText> callback = new Recorder<SlowText>();
+
+      dataProcessor.executeAll(newRequests(8), SlowText.class, 2, callback);
+
+      assertTrue(callback.await());
+      assertEquals(8, callback.itemCount.get());
+      assertTrue("max parallel requests " + SlowText.maxRunning.get(), SlowText.maxRunning.get() <= 2);
+   }
+
+   @Test
+   public void cancelledBatchIsNotCalledBack() throws Exception {
+      Recorder<GatedText> callback = new Recorder<GatedText>();
+      GatedText.close();
+      RequestHandle handle = dataProcessor.executeAll(newRequests(3), GatedText.class, 1, callback);
+      assertTrue(GatedText.awaitStarted());
+
+      assertTrue(handle.cancel());
+      GatedText.open();
+
+      assertFalse(callback.finished.await(200, TimeUnit.MILLISECONDS));
+      assertEquals(0, callback.itemCount.get());
+      assertEquals(1, transport.getExchangeCount());
+      assertFalse(handle.cancel());
+   }
+
+   @Test
+   public void emptyBatchIsFinishedAtOnce() throws Exception {
+      Recorder<Text> callback = new Recorder<Text>();
+
+      RequestHandle handle = dataProcessor.executeAll(Collections.<Request>emptyList(), Text.class, 2, callback);
+
+      assertTrue(callback.await());
+      assertTrue(callback.results.isEmpty());
+      assertTrue(handle.isDone());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void zeroParallelismIsRejected() throws Exception {
+      dataProcessor.executeAll(newRequests(1), Text.class, 0, null);
+   }
+
+   private List<GetRequest> newRequests(int count) throws Exception {
+      List<GetRequest> requests = new ArrayList<GetRequest>();
+      for (int i = 0; i < count; i++) {
+         String url = TestDataProcessor.newUrl("batch");
+         transport.setResponse(url, 200, ("item " + i).getBytes("UTF-8"));
+         requests.add(TestDataProcessor.newGetRequest(url, transport));
+      }
+      return requests;
+   }
+
+   /**
+    * Result whose parsing takes a while and counts the parallel parsings.
+    */
+   public static class SlowText implements StringDataInterface {
+
+      private static final AtomicInteger running    = new AtomicInteger();
+      private static final AtomicInteger maxRunning = new AtomicInteger();
+
+      private static void reset() {
+         running.set(0);
+         maxRunning.set(0);
+      }
+
+      @Override
+      public void fillFromString(String src) throws Exception {
+         int count = running.incrementAndGet();
+         int max;
+         do {
+            max = maxRunning.get();
+         } while (count > max && !maxRunning.compareAndSet(max, count));
+         try {
+            Thread.sleep(20);
+         } finally {
+            running.decrementAndGet();
+         }
+      }
+
+   }
+
+   private static class Recorder<T> implements BatchCallback<T> {
+
+      private final AtomicInteger  itemCount = new AtomicInteger();
+      private final CountDownLatch finished  = new CountDownLatch(1);
+      private volatile List<T> results;
+      private volatile int[]   statusCodes;
+
+      @Override
+      public void onItemFinish(int index, T obj, int statusCode, String errMessage) {
+         itemCount.incrementAndGet();
+      }
+
+      @Override
+      public void onFinish(List<T> results, int[] statusCodes) {
+         this.results = results;
+         this.statusCodes = statusCodes;
+         finished.countDown();
+      }
+
+      private boolean await() throws InterruptedException {
+         return finished.await(5, TimeUnit.SECONDS);
+      }
+
+   }
+
+}
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.processors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.TestDataProcessor;
+import ua.at.tsvetkov.data_processor.TestDataProcessor.GatedText;
+import ua.at.tsvetkov.data_processor.TestDataProcessor.PrefixReader;
+import ua.at.tsvetkov.data_processor.TestDataProcessor.Text;
+import ua.at.tsvetkov.data_processor.processors.Processor.Callback;
+import ua.at.tsvetkov.data_processor.requests.GetRequest;
+import ua.at.tsvetkov.data_processor.transport.MemoryTransport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("deprecation")
+public class CacheFileTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private DataProcessor   dataProcessor;
+   private MemoryTransport transport;
+   private File            directory;
+   private File            file;
+   private String          url;
+
+   @Before
+   public void setUp() throws Exception {
+      dataProcessor = TestDataProcessor.init();
+      transport = new MemoryTransport();
+      directory = folder.newFolder("files");
+      file = new File(directory, "body");
+      url = TestDataProcessor.newUrl("cache-file");
+   }
+
+   @Test
+   public void bodyIsSavedWhileItIsParsed() throws Exception {
+      transport.setResponse(url, 200, "saved".getBytes("UTF-8"));
+
+      Text text = dataProcessor.execute(newRequest(), Text.class);
+
+      assertEquals("saved", text.value);
+      assertArrayEquals("saved".getBytes("UTF-8"), readFile());
+      assertEquals(1, directory.list().length);
+   }
+
+   @Test
+   public void restOfBodyIsSavedWhenParserStops() throws Exception {
+      byte[] body = new byte[100 * 1024];
+      for (int i = 0; i < body.length; i++) {
+         body[i] = (byte) i;
+      }
+      transport.setResponse(url, 200, body);
+
+      PrefixReader prefix = dataProcessor.execute(newRequest(), PrefixReader.class);
+
+      assertEquals(10, prefix.length);
+      assertArrayEquals(body, readFile());
+   }
+
+   @Test
+   public void savedFileIsReadWithoutRequest() throws Exception {
+      transport.setResponse(url, 200, "saved".getBytes("UTF-8"));
+      dataProcessor.execute(newRequest(), Text.class);
+
+      GetRequest request = newRequest();
+      Text text = dataProcessor.execute(request, Text.class);
+
+      assertEquals("saved", text.value);
+      assertTrue(request.isFromCache());
+      assertEquals(1, transport.getExchangeCount());
+   }
+
+   @Test
+   public void requestsOfSameFileShareOneDownload() throws Exception {
+      transport.setResponse(url, 200, "shared".getBytes("UTF-8"));
+      final List<String> results = new CopyOnWriteArrayList<String>();
+      final CountDownLatch finished = new CountDownLatch(2);
+      Callback<GatedText> callback = new Callback<GatedText>() {
+
+         @Override
+         public void onFinish(GatedText obj, int statusCode, String errMessage) {
+            results.add(obj == null ? null : obj.value);
+            finished.countDown();
+         }
+
+      };
+      GatedText.close();
+      dataProcessor.executeAsync(newRequest(), GatedText.class, callback);
+      assertTrue(GatedText.awaitStarted());
+
+      // Another url of the same file is not sent, it waits for the file
+      url = TestDataProcessor.newUrl("cache-file");
+      GetRequest waiting = newRequest();
+      dataProcessor.executeAsync(waiting, GatedText.class, callback);
+      Thread.sleep(100);
+      assertEquals(1, dataProcessor.getFileDownloads().size());
+      GatedText.open();
+
+      assertTrue(finished.await(5, TimeUnit.SECONDS));
+      assertEquals("shared", results.get(0));
+      assertEquals("shared", results.get(1));
+      assertTrue(waiting.isFromCache());
+      assertEquals(1, transport.getExchangeCount());
+      assertEquals(0, dataProcessor.getFileDownloads().size());
+   }
+
+   @Test
+   public void timedOutWaitForFileIsNotBackedOff() throws Exception {
+      transport.setResponse(url, 200, "saved".getBytes("UTF-8"));
+      String fileKey = file.getAbsolutePath();
+      assertTrue(dataProcessor.getFileDownloads().tryAcquire(fileKey));
+      GetRequest request = newRequest();
+      try {
+         assertNull(dataProcessor.execute(request, Text.class));
+      } finally {
+         dataProcessor.getFileDownloads().release(fileKey);
+      }
+
+      assertEquals(0, transport.getExchangeCount());
+      assertEquals(0, dataProcessor.getNegativeCache().getBackoff(request.getRequestKey()));
+      assertEquals("saved", dataProcessor.execute(newRequest(), Text.class).value);
+   }
+
+   @Test
+   public void failedResponseIsNotSaved() throws Exception {
+      transport.setResponse(url, 500, "error".getBytes("UTF-8"));
+
+      dataProcessor.execute(newRequest(), Text.class);
+
+      assertFalse(file.exists());
+      assertEquals(0, directory.list().length);
+   }
+
+   private GetRequest newRequest() {
+      GetRequest request = GetRequest.newInstance().setUrl(url).saveToCacheFile(file.getPath());
+      request.build();
+      request.setTransport(transport);
+      return request;
+   }
+
+   private byte[] readFile() throws IOException {
+      InputStream in = dataProcessor.getCompressedStorage().open(file);
+      try {
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         byte[] buffer = new byte[1024];
+         int count;
+         while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+         }
+         return out.toByteArray();
+      } finally {
+         in.close();
+      }
+   }
+
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.processors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.TestDataProcessor;
+import ua.at.tsvetkov.data_processor.interfaces.StringDataInterface;
+import ua.at.tsvetkov.data_processor.processors.Processor.Callback;
+import ua.at.tsvetkov.data_processor.threads.DataProcessingThreadFactory;
+import ua.at.tsvetkov.data_processor.transport.MemoryTransport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ParseStageTest {
+
+   private DataProcessor   dataProcessor;
+   private MemoryTransport transport;
+
+   @Before
+   public void setUp() {
+      dataProcessor = TestDataProcessor.init();
+      transport = new MemoryTransport();
+   }
+
+   @Test
+   public void asyncResponseIsParsedInParseStage() throws Exception {
+      ThreadCallback callback = new ThreadCallback();
+
+      dataProcessor.executeAsync(TestDataProcessor.newGetRequest(newUrl(100), transport), ThreadText.class, callback);
+
+      assertTrue(callback.await());
+      assertEquals(DataProcessingThreadFactory.PARSE_THREAD_NAME, callback.result.threadName);
+      assertEquals(100, callback.result.length);
+      assertEquals(200, callback.statusCode);
+   }
+
+   @Test
+   public void bodyLargerThanParseBufferIsParsedInIoThread() throws Exception {
+      ThreadCallback callback = new ThreadCallback();
+
+      dataProcessor.executeAsync(TestDataProcessor.newGetRequest(newUrl(2 * TestDataProcessor.PARSE_BUFFER_SIZE), transport),
+              ThreadText.class, callback);
+
+      assertTrue(callback.await());
+      assertEquals(DataProcessingThreadFactory.THREAD_NAME, callback.result.threadName);
+      assertEquals(2 * TestDataProcessor.PARSE_BUFFER_SIZE, callback.result.length);
+   }
+
+   @Test
+   public void syncRequestIsParsedInCallingThread() throws Exception {
+      ThreadText result = dataProcessor.execute(TestDataProcessor.newGetRequest(newUrl(100), transport), ThreadText.class);
+
+      assertEquals(Thread.currentThread().getName(), result.threadName);
+   }
+
+   @Test
+   public void parseStageResultIsCached() throws Exception {
+      String url = newUrl(100);
+      ThreadCallback first = new ThreadCallback();
+      dataProcessor.executeCachedAsync(url.hashCode(), TestDataProcessor.newGetRequest(url, transport), ThreadText.class, first);
+      assertTrue(first.await());
+
+      ThreadCallback second = new ThreadCallback();
+      dataProcessor.executeCachedAsync(url.hashCode(), TestDataProcessor.newGetRequest(url, transport), ThreadText.class, second);
+
+      assertTrue(second.await());
+      assertSame(first.result, second.result);
+      assertEquals(1, transport.getExchangeCount());
+   }
+
+   private String newUrl(int length) throws Exception {
+      String url = TestDataProcessor.newUrl("parse-stage");
+      byte[] body = new byte[length];
+      Arrays.fill(body, (byte) 'a');
+      transport.setResponse(url, 200, body);
+      return url;
+   }
+
+   /**
+    * Result which keeps the name of the thread which parsed it.
+    */
+   public static class ThreadText implements StringDataInterface {
+
+      private String threadName;
+      private int    length;
+
+      @Override
+      public void fillFromString(String src) {
+         threadName = Thread.currentThread().getName();
+         length = src.length();
+      }
+
+   }
+
+   private static class ThreadCallback implements Callback<ThreadText> {
+
+      private final CountDownLatch finished = new CountDownLatch(1);
+      private volatile ThreadText result;
+      private volatile int        statusCode;
+
+      @Override
+      public void onFinish(ThreadText obj, int statusCode, String errMessage) {
+         result = obj;
+         this.statusCode = statusCode;
+         finished.countDown();
+      }
+
+      private boolean await() throws InterruptedException {
+         return finished.await(5, TimeUnit.SECONDS);
+      }
+
+   }
+
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.processors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.TestDataProcessor;
+import ua.at.tsvetkov.data_processor.TestDataProcessor.GatedText;
+import ua.at.tsvetkov.data_processor.TestDataProcessor.Text;
+import ua.at.tsvetkov.data_processor.processors.Processor.Callback;
+import ua.at.tsvetkov.data_processor.transport.MemoryTransport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RequestHandleTest {
+
+   private DataProcessor   dataProcessor;
+   private MemoryTransport transport;
+   private String          url;
+
+   @Before
+   public void setUp() throws Exception {
+      dataProcessor = TestDataProcessor.init();
+      transport = new MemoryTransport();
+      url = TestDataProcessor.newUrl("handle");
+      transport.setResponse(url, 200, "body".getBytes("UTF-8"));
+   }
+
+   @Test
+   public void cancelledQueuedRequestIsNotSent() throws Exception {
+      CountDownLatch released = blockWorkers();
+      CountingCallback<Text> callback = new CountingCallback<Text>();
+      RequestHandle handle = dataProcessor.executeAsync(TestDataProcessor.newGetRequest(url, transport), Text.class, callback);
+
+      assertTrue(handle.cancel());
+      released.countDown();
+      awaitIdleWorkers();
+
+      assertTrue(handle.isCancelled());
+      assertTrue(handle.isDone());
+      assertFalse(handle.cancel());
+      assertEquals(0, transport.getExchangeCount());
+      assertFalse(callback.await(100));
+   }
+
+   @Test
+   public void cancelledRunningRequestIsNotCalledBack() throws Exception {
+      CountingCallback<GatedText> callback = new CountingCallback<GatedText>();
+      GatedText.close();
+      RequestHandle handle = dataProcessor.executeAsync(TestDataProcessor.newGetRequest(url, transport), GatedText.class, callback);
+      assertTrue(GatedText.awaitStarted());
+
+      assertTrue(handle.cancel());
+      GatedText.open();
+
+      assertFalse(callback.await(200));
+      assertTrue(handle.isCancelled());
+      assertEquals(1, transport.getExchangeCount());
+   }
+
+   @Test
+   public void finishedRequestIsNotCancelled() throws Exception {
+      CountingCallback<Text> callback = new CountingCallback<Text>();
+      RequestHandle handle = dataProcessor.executeAsync(TestDataProcessor.newGetRequest(url, transport), Text.class, callback);
+      assertTrue(callback.await(5000));
+
+      assertFalse(handle.cancel());
+      assertFalse(handle.isCancelled());
+      assertTrue(handle.isDone());
+   }
+
+   /**
+    * Occupy all worker threads of the data processor until the returned latch is released.
+    */
+   private CountDownLatch blockWorkers() throws InterruptedException {
+      final CountDownLatch started = new CountDownLatch(TestDataProcessor.THREAD_POOL_SIZE);
+      final CountDownLatch released = new CountDownLatch(1);
+      for (int i = 0; i < TestDataProcessor.THREAD_POOL_SIZE; i++) {
+         dataProcessor.getExecutor().execute(new Runnable() {
+
+            @Override
+            public void run() {
+               started.countDown();
+               try {
+                  released.await(5, TimeUnit.SECONDS);
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+               }
+            }
+
+         });
+      }
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      return released;
+   }
+
+   /**
+    * Wait until the worker threads take all queued tasks.
+    */
+   private void awaitIdleWorkers() throws InterruptedException {
+      final CountDownLatch finished = new CountDownLatch(TestDataProcessor.THREAD_POOL_SIZE);
+      for (int i = 0; i < TestDataProcessor.THREAD_POOL_SIZE; i++) {
+         dataProcessor.getExecutor().execute(new Runnable() {
+
+            @Override
+            public void run() {
+               finished.countDown();
+            }
+
+         });
+      }
+      assertTrue(finished.await(5, TimeUnit.SECONDS));
+   }
+
+   private static class CountingCallback<T> implements Callback<T> {
+
+      private final CountDownLatch finished = new CountDownLatch(1);
+
+      @Override
+      public void onFinish(T obj, int statusCode, String errMessage) {
+         finished.countDown();
+      }
+
+      private boolean await(long timeout) throws InterruptedException {
+         return finished.await(timeout, TimeUnit.MILLISECONDS);
+      }
+
+   }
+
+}
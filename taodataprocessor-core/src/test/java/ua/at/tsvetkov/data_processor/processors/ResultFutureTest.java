@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.processors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.TestDataProcessor;
+import ua.at.tsvetkov.data_processor.TestDataProcessor.GatedText;
+import ua.at.tsvetkov.data_processor.TestDataProcessor.Text;
+import ua.at.tsvetkov.data_processor.processors.Processor.Callback;
+import ua.at.tsvetkov.data_processor.processors.ResultFuture.Transformation;
+import ua.at.tsvetkov.data_processor.transport.MemoryTransport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResultFutureTest {
+
+   private DataProcessor   dataProcessor;
+   private MemoryTransport transport;
+
+   @Before
+   public void setUp() {
+      dataProcessor = TestDataProcessor.init();
+      transport = new MemoryTransport();
+   }
+
+   @Test
+   public void futureIsCompletedWithResult() throws Exception {
+      String url = newUrl("body");
+
+      ResultFuture<Text> future = dataProcessor.executeFuture(TestDataProcessor.newGetRequest(url, transport), Text.class);
+
+      assertEquals("body", future.get(5, TimeUnit.SECONDS).value);
+      assertEquals(200, future.getStatusCode());
+      assertTrue(future.isDone());
+   }
+
+   @Test
+   public void resultIsTransformed() throws Exception {
+      String url = newUrl("body");
+
+      ResultFuture<Integer> length = dataProcessor.executeFuture(TestDataProcessor.newGetRequest(url, transport), Text.class)
+              .thenApply(new Transformation<Text, Integer>() {
+
+                 @Override
+                 public Integer apply(Text obj) {
+                    return obj.value.length();
+                 }
+
+              });
+
+      assertEquals(4, (int) length.get(5, TimeUnit.SECONDS));
+      assertEquals(200, length.getStatusCode());
+   }
+
+   @Test
+   public void dependentRequestIsStartedWithResult() throws Exception {
+      final String second = newUrl("second");
+      String first = newUrl(second);
+
+      ResultFuture<Text> future = dataProcessor.executeFuture(TestDataProcessor.newGetRequest(first, transport), Text.class)
+              .thenCompose(new Transformation<Text, ResultFuture<Text>>() {
+
+                 @Override
+                 public ResultFuture<Text> apply(Text obj) {
+                    return dataProcessor.executeFuture(TestDataProcessor.newGetRequest(obj.value, transport), Text.class);
+                 }
+
+              });
+
+      assertEquals("second", future.get(5, TimeUnit.SECONDS).value);
+      assertEquals(2, transport.getExchangeCount());
+   }
+
+   @Test
+   public void failedStageSkipsTransformation() throws Exception {
+      ResultFuture<String> future = new ResultFuture<String>(null);
+      final AtomicInteger calls = new AtomicInteger();
+      ResultFuture<Integer> dependent = future.thenApply(new Transformation<String, Integer>() {
+
+         @Override
+         public Integer apply(String obj) {
+            calls.incrementAndGet();
+            return obj.length();
+         }
+
+      });
+
+      assertTrue(future.complete(null, 404, "Not Found"));
+
+      assertNull(dependent.get(5, TimeUnit.SECONDS));
+      assertEquals(404, dependent.getStatusCode());
+      assertEquals("Not Found", dependent.getStatusMessage());
+      assertEquals(0, calls.get());
+   }
+
+   @Test
+   public void failedTransformationCompletesWithError() throws Exception {
+      ResultFuture<String> future = new ResultFuture<String>(null);
+      ResultFuture<Integer> dependent = future.thenApply(new Transformation<String, Integer>() {
+
+         @Override
+         public Integer apply(String obj) throws Exception {
+            throw new IllegalStateException("broken");
+         }
+
+      });
+
+      future.complete("value", 200, "OK");
+
+      assertNull(dependent.get(5, TimeUnit.SECONDS));
+      assertEquals(Processor.ERROR, dependent.getStatusCode());
+   }
+
+   @Test
+   public void callbackIsCalledInGivenExecutor() throws Exception {
+      ResultFuture<String> future = new ResultFuture<String>(null);
+      final AtomicInteger executions = new AtomicInteger();
+      final CountDownLatch called = new CountDownLatch(1);
+      future.addCallback(new Callback<String>() {
+
+         @Override
+         public void onFinish(String obj, int statusCode, String errMessage) {
+            if ("value".equals(obj)) {
+               called.countDown();
+            }
+         }
+
+      }, new Executor() {
+
+         @Override
+         public void execute(Runnable command) {
+            executions.incrementAndGet();
+            command.run();
+         }
+
+      });
+
+      future.complete("value", 200, "OK");
+
+      assertTrue(called.await(5, TimeUnit.SECONDS));
+      assertEquals(1, executions.get());
+      assertFalse(future.complete("other", 200, "OK"));
+   }
+
+   @Test
+   public void cancelOfDependentCancelsRequest() throws Exception {
+      String url = newUrl("body");
+      GatedText.close();
+      ResultFuture<GatedText> future = dataProcessor.executeFuture(TestDataProcessor.newGetRequest(url, transport), GatedText.class);
+      final CountDownLatch called = new CountDownLatch(1);
+      future.addCallback(new Callback<GatedText>() {
+
+         @Override
+         public void onFinish(GatedText obj, int statusCode, String errMessage) {
+            called.countDown();
+         }
+
+      });
+      ResultFuture<String> dependent = future.thenApply(new Transformation<GatedText, String>() {
+
+         @Override
+         public String apply(GatedText obj) {
+            return obj.value;
+         }
+
+      });
+      assertTrue(GatedText.awaitStarted());
+
+      assertTrue(dependent.cancel(true));
+      GatedText.open();
+
+      assertTrue(future.isCancelled());
+      assertTrue(dependent.isCancelled());
+      assertFalse(called.await(200, TimeUnit.MILLISECONDS));
+      try {
+         future.get();
+         throw new AssertionError("The result of the cancelled future is returned");
+      } catch (CancellationException e) {
+         // Expected
+      }
+   }
+
+   @Test(expected = TimeoutException.class)
+   public void getTimesOut() throws Exception {
+      new ResultFuture<String>(null).get(10, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Returns a new url which responds with the body.
+    */
+   private String newUrl(String body) throws Exception {
+      String url = TestDataProcessor.newUrl("future");
+      transport.setResponse(url, 200, body.getBytes("UTF-8"));
+      return url;
+   }
+
+}
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.processors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.TestDataProcessor;
+import ua.at.tsvetkov.data_processor.TestDataProcessor.GatedText;
+import ua.at.tsvetkov.data_processor.processors.Processor.Callback;
+import ua.at.tsvetkov.data_processor.transport.MemoryTransport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SingleFlightGroupTest {
+
+   private DataProcessor     dataProcessor;
+   private MemoryTransport   transport;
+   private SingleFlightGroup group;
+   private String            url;
+
+   @Before
+   public void setUp() throws Exception {
+      dataProcessor = TestDataProcessor.init();
+      transport = new MemoryTransport();
+      group = new SingleFlightGroup();
+      url = TestDataProcessor.newUrl("single-flight");
+      transport.setResponse(url, 200, "shared".getBytes("UTF-8"));
+   }
+
+   @Test
+   public void followersShareLeaderExecution() throws Exception {
+      ResultCallback callback = new ResultCallback(3);
+      GatedText.close();
+
+      execute(callback);
+      assertTrue(GatedText.awaitStarted());
+      assertEquals(1, group.size());
+      execute(callback);
+      execute(callback);
+      GatedText.open();
+
+      assertTrue(callback.await());
+      assertEquals(1, transport.getExchangeCount());
+      assertNotNull(callback.results.get(0));
+      assertSame(callback.results.get(0), callback.results.get(1));
+      assertSame(callback.results.get(0), callback.results.get(2));
+      assertTrue(awaitEmpty());
+   }
+
+   @Test
+   public void finishedFlightIsNotJoined() throws Exception {
+      ResultCallback first = new ResultCallback(1);
+      GatedText.close();
+      GatedText.open();
+      execute(first);
+      assertTrue(first.await());
+      assertTrue(awaitEmpty());
+
+      ResultCallback second = new ResultCallback(1);
+      execute(second);
+
+      assertTrue(second.await());
+      assertEquals(2, transport.getExchangeCount());
+   }
+
+   @Test
+   public void cancelledFollowerIsNotCalledBack() throws Exception {
+      ResultCallback leader = new ResultCallback(1);
+      ResultCallback follower = new ResultCallback(1);
+      GatedText.close();
+      execute(leader);
+      assertTrue(GatedText.awaitStarted());
+
+      RequestHandle handle = execute(follower);
+      assertTrue(handle.cancel());
+      GatedText.open();
+
+      assertTrue(leader.await());
+      assertTrue(awaitEmpty());
+      assertFalse(follower.finished.await(100, TimeUnit.MILLISECONDS));
+      assertTrue(handle.isCancelled());
+   }
+
+   @Test
+   public void equalAsyncRequestsOfDataProcessorShareOneExchange() throws Exception {
+      ResultCallback callback = new ResultCallback(3);
+      GatedText.close();
+
+      dataProcessor.executeAsync(TestDataProcessor.newGetRequest(url, transport), GatedText.class, callback);
+      assertTrue(GatedText.awaitStarted());
+      dataProcessor.executeAsync(TestDataProcessor.newGetRequest(url, transport), GatedText.class, callback);
+      dataProcessor.executeAsync(TestDataProcessor.newGetRequest(url, transport), GatedText.class, callback);
+      GatedText.open();
+
+      assertTrue(callback.await());
+      assertEquals(1, transport.getExchangeCount());
+      assertEquals("shared", callback.results.get(0).value);
+      assertSame(callback.results.get(0), callback.results.get(1));
+      assertSame(callback.results.get(0), callback.results.get(2));
+   }
+
+   private RequestHandle execute(ResultCallback callback) {
+      Processor<GatedText> processor = new Processor<GatedText>(dataProcessor, TestDataProcessor.newGetRequest(url, transport),
+              GatedText.class, callback);
+      return group.executeAsync(url, processor, callback);
+   }
+
+   private boolean awaitEmpty() throws InterruptedException {
+      long deadline = System.currentTimeMillis() + 5000;
+      while (group.size() > 0) {
+         if (System.currentTimeMillis() > deadline) {
+            return false;
+         }
+         Thread.sleep(5);
+      }
+      return true;
+   }
+
+   private static class ResultCallback implements Callback<GatedText> {
+
+      private final List<GatedText>  results = new CopyOnWriteArrayList<GatedText>();
+      private final CountDownLatch   finished;
+
+      private ResultCallback(int count) {
+         finished = new CountDownLatch(count);
+      }
+
+      @Override
+      public void onFinish(GatedText obj, int statusCode, String errMessage) {
+         results.add(obj);
+         finished.countDown();
+      }
+
+      private boolean await() throws InterruptedException {
+         return finished.await(5, TimeUnit.SECONDS);
+      }
+
+   }
+
+}
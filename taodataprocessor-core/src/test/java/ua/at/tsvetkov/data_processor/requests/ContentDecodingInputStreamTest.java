@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.requests;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.TestDataProcessor;
+import ua.at.tsvetkov.data_processor.TestDataProcessor.Text;
+import ua.at.tsvetkov.data_processor.transport.MemoryTransport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ContentDecodingInputStreamTest {
+
+   private static final byte[] BODY = newBody();
+
+   @Test
+   public void gzipBodyIsDecoded() throws Exception {
+      assertArrayEquals(BODY, decode(gzip(BODY), true));
+   }
+
+   @Test
+   public void zlibDeflateBodyIsDecoded() throws Exception {
+      assertArrayEquals(BODY, decode(deflate(BODY, false), false));
+   }
+
+   @Test
+   public void rawDeflateBodyIsDecoded() throws Exception {
+      assertArrayEquals(BODY, decode(deflate(BODY, true), false));
+   }
+
+   @Test
+   public void emptyBodyIsNotAnError() throws Exception {
+      assertEquals(0, decode(new byte[0], true).length);
+      assertEquals(0, decode(new byte[0], false).length);
+   }
+
+   @Test
+   public void supportedEncodings() {
+      assertTrue(ContentDecodingInputStream.isSupported("gzip"));
+      assertTrue(ContentDecodingInputStream.isSupported("x-gzip"));
+      assertTrue(ContentDecodingInputStream.isSupported("deflate"));
+      assertFalse(ContentDecodingInputStream.isSupported("br"));
+   }
+
+   @Test
+   public void wireAndDecodedBytesAreCounted() throws Exception {
+      DataProcessor dataProcessor = TestDataProcessor.init();
+      MemoryTransport transport = new MemoryTransport();
+      String url = TestDataProcessor.newUrl("gzip");
+      byte[] gzipped = gzip(BODY);
+      transport.setResponse(url, new MemoryTransport.Response(200, "OK", gzipped).setHeader("Content-Encoding", "gzip"));
+      GetRequest request = TestDataProcessor.newGetRequest(url, transport);
+
+      Text text = dataProcessor.execute(request, Text.class);
+
+      assertEquals(new String(BODY, "UTF-8"), text.value);
+      assertEquals("gzip", request.getContentEncoding());
+      assertEquals(gzipped.length, request.getWireBytes());
+      assertEquals(BODY.length, request.getDecodedBytes());
+      TransferStats.Endpoint endpoint = dataProcessor.getTransferStats().get(url);
+      assertEquals(1, endpoint.getEncodedResponses());
+      assertEquals(BODY.length - gzipped.length, endpoint.getSavedBytes());
+   }
+
+   private static byte[] decode(byte[] body, boolean isGzip) throws IOException {
+      InputStream in = new ContentDecodingInputStream(new ByteArrayInputStream(body), isGzip);
+      try {
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         byte[] buffer = new byte[1000];
+         int count;
+         while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+         }
+         return out.toByteArray();
+      } finally {
+         in.close();
+      }
+   }
+
+   private static byte[] gzip(byte[] body) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      GZIPOutputStream gzip = new GZIPOutputStream(out);
+      gzip.write(body);
+      gzip.close();
+      return out.toByteArray();
+   }
+
+   private static byte[] deflate(byte[] body, boolean isRaw) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, isRaw);
+      DeflaterOutputStream deflate = new DeflaterOutputStream(out, deflater);
+      deflate.write(body);
+      deflate.close();
+      deflater.end();
+      return out.toByteArray();
+   }
+
+   private static byte[] newBody() {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 2000; i++) {
+         sb.append("line ").append(i).append('\n');
+      }
+      try {
+         return sb.toString().getBytes("UTF-8");
+      } catch (IOException e) {
+         throw new IllegalStateException(e);
+      }
+   }
+
+}
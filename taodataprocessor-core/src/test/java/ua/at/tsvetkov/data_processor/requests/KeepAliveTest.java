@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.requests;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.TestDataProcessor;
+import ua.at.tsvetkov.data_processor.TestDataProcessor.PrefixReader;
+import ua.at.tsvetkov.data_processor.transport.Exchange;
+import ua.at.tsvetkov.data_processor.transport.MemoryTransport;
+import ua.at.tsvetkov.data_processor.transport.Transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeepAliveTest {
+
+   private DataProcessor   dataProcessor;
+   private MemoryTransport transport;
+   private ReleaseRecorder recorder;
+   private String          url;
+
+   @Before
+   public void setUp() {
+      dataProcessor = TestDataProcessor.init();
+      transport = new MemoryTransport();
+      recorder = new ReleaseRecorder(transport);
+      url = TestDataProcessor.newUrl("keep-alive");
+   }
+
+   @Test
+   public void readBodyIsReleasedForReuse() throws Exception {
+      transport.setResponse(url, 200, new byte[1000]);
+
+      PrefixReader reader = dataProcessor.execute(newRequest(), PrefixReader.class);
+
+      assertEquals(10, reader.length);
+      assertTrue(recorder.isReusable);
+   }
+
+   @Test
+   public void restOfBodyIsDrainedOnClose() throws Exception {
+      transport.setResponse(url, 200, new byte[40 * 1024]);
+      GetRequest request = newRequest();
+
+      dataProcessor.execute(request, PrefixReader.class);
+
+      assertTrue(recorder.isReusable);
+      assertEquals(40 * 1024, request.getWireBytes());
+   }
+
+   @Test
+   public void longRestOfBodyIsNotDrained() throws Exception {
+      transport.setResponse(url, 200, new byte[1024 * 1024]);
+      GetRequest request = newRequest();
+
+      dataProcessor.execute(request, PrefixReader.class);
+
+      assertFalse(recorder.isReusable);
+      assertTrue(request.getWireBytes() < 1024 * 1024);
+   }
+
+   private GetRequest newRequest() {
+      GetRequest request = TestDataProcessor.newGetRequest(url, transport);
+      request.setTransport(recorder);
+      return request;
+   }
+
+   /**
+    * Keeps whether the last exchange was released for reuse.
+    */
+   private static class ReleaseRecorder implements Transport {
+
+      private final Transport transport;
+      private volatile Boolean isReusable;
+
+      private ReleaseRecorder(Transport transport) {
+         this.transport = transport;
+      }
+
+      @Override
+      public Exchange newExchange(String method, URL url) throws IOException {
+         final Exchange exchange = transport.newExchange(method, url);
+         return (Exchange) Proxy.newProxyInstance(Exchange.class.getClassLoader(), new Class<?>[]{Exchange.class}, new InvocationHandler() {
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+               if (method.getName().equals("release")) {
+                  isReusable = (Boolean) args[0];
+               }
+               try {
+                  return method.invoke(exchange, args);
+               } catch (InvocationTargetException e) {
+                  throw e.getCause();
+               }
+            }
+
+         });
+      }
+
+   }
+
+}
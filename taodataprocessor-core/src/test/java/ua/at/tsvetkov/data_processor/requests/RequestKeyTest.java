@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.requests;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+public class RequestKeyTest {
+
+   @Test
+   public void murmur3MatchesReferenceValues() throws Exception {
+      assertArrayEquals(new long[]{0, 0}, RequestKey.murmur3(new byte[0]));
+      assertArrayEquals(new long[]{0xcbd8a7b341bd9b02L, 0x5b1e906a48ae1d19L}, RequestKey.murmur3("hello".getBytes("UTF-8")));
+      assertArrayEquals(new long[]{0xa62dd5f6c0bf2351L, 0x4fccf50c7c544cf0L}, RequestKey.murmur3("0123456789abcde".getBytes("UTF-8")));
+      assertArrayEquals(new long[]{0xe34bbc7bbc071b6cL, 0x7a433ca9c49a9347L},
+              RequestKey.murmur3("The quick brown fox jumps over the lazy dog".getBytes("UTF-8")));
+   }
+
+   @Test
+   public void urlIsNormalized() {
+      assertEquals("http://example.com/Path?a=1&b=2", RequestKey.normalizeUrl("HTTP://Example.COM/Path?b=2&a=1#top"));
+   }
+
+   @Test
+   public void equalRequestsHaveEqualKeys() {
+      RequestKey first = RequestKey.newBuilder("get", "http://example.com/?b=2&a=1", null).addHeader("Accept", "text/plain").build();
+      RequestKey second = RequestKey.newBuilder("GET", "http://EXAMPLE.com/?a=1&b=2", null).addHeader("accept", "text/plain").build();
+
+      assertEquals(first, second);
+      assertEquals(first.getHash128(), second.getHash128());
+   }
+
+   @Test
+   public void headersAndBodyAreParts() {
+      RequestKey key = RequestKey.newBuilder("POST", "http://example.com/", null).setBody("body").build();
+
+      assertNotEquals(key, RequestKey.newBuilder("POST", "http://example.com/", null).setBody("other").build());
+      assertNotEquals(key, RequestKey.newBuilder("POST", "http://example.com/", null).setBody("body").addHeader("Accept", "*/*").build());
+   }
+
+   @Test
+   public void onlyKeyHeadersAreParts() {
+      RequestKey key = RequestKey.newBuilder("GET", "http://example.com/", Arrays.asList("Accept")).addHeader("X-Trace", "1").build();
+
+      assertEquals(RequestKey.newBuilder("GET", "http://example.com/", Arrays.asList("Accept")).build(), key);
+   }
+
+   @Test
+   public void credentialIsNotKeptInKey() {
+      RequestKey key = RequestKey.newBuilder("GET", "http://example.com/", null).addHeader("Authorization", "Bearer secret").build();
+
+      assertFalse(key.toString().contains("secret"));
+      assertNotEquals(key, RequestKey.newBuilder("GET", "http://example.com/", null).addHeader("Authorization", "Bearer other").build());
+   }
+
+}
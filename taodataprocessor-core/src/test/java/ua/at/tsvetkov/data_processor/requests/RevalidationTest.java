@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.requests;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.DataProcessorConfiguration;
+import ua.at.tsvetkov.data_processor.TestDataProcessor;
+import ua.at.tsvetkov.data_processor.TestDataProcessor.Text;
+import ua.at.tsvetkov.data_processor.transport.Exchange;
+import ua.at.tsvetkov.data_processor.transport.MemoryTransport;
+import ua.at.tsvetkov.data_processor.transport.Transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RevalidationTest {
+
+   private static final MemoryTransport.Response NOT_MODIFIED = new MemoryTransport.Response(304, "Not Modified", new byte[0]);
+
+   private DataProcessor     dataProcessor;
+   private MemoryTransport   transport;
+   private RecordingTransport recordingTransport;
+   private String            url;
+
+   @Before
+   public void setUp() {
+      dataProcessor = TestDataProcessor.init();
+      transport = new MemoryTransport();
+      recordingTransport = new RecordingTransport(transport);
+      url = TestDataProcessor.newUrl("revalidation");
+   }
+
+   @Test
+   public void notModifiedResponseIsTakenFromCache() throws Exception {
+      transport.setResponse(url, newResponse("v1").setHeader("ETag", "\"1\""));
+      assertEquals("v1", execute().value);
+      transport.setResponse(url, NOT_MODIFIED);
+
+      GetRequest request = newRequest();
+      Text text = dataProcessor.execute(request, Text.class);
+
+      assertEquals("v1", text.value);
+      assertEquals("\"1\"", recordingTransport.lastExchange.getRequestHeader("If-None-Match"));
+      assertTrue(request.isNotModified());
+      assertEquals(200, request.getStatusCode());
+      assertEquals(2, transport.getExchangeCount());
+   }
+
+   @Test
+   public void lastModifiedIsSentBack() throws Exception {
+      String lastModified = "Wed, 21 Oct 2015 07:28:00 GMT";
+      transport.setResponse(url, newResponse("v1").setHeader("Last-Modified", lastModified));
+      execute();
+      transport.setResponse(url, NOT_MODIFIED);
+
+      assertEquals("v1", execute().value);
+      assertEquals(lastModified, recordingTransport.lastExchange.getRequestHeader("If-Modified-Since"));
+   }
+
+   @Test
+   public void changedResponseReplacesCachedOne() throws Exception {
+      transport.setResponse(url, newResponse("v1").setHeader("ETag", "\"1\""));
+      execute();
+      transport.setResponse(url, newResponse("v2").setHeader("ETag", "\"2\""));
+      assertEquals("v2", execute().value);
+      transport.setResponse(url, NOT_MODIFIED);
+
+      assertEquals("v2", execute().value);
+      assertEquals("\"2\"", recordingTransport.lastExchange.getRequestHeader("If-None-Match"));
+   }
+
+   @Test
+   public void responseWithoutValidatorsIsNotRevalidated() throws Exception {
+      transport.setResponse(url, newResponse("v1"));
+      execute();
+      transport.setResponse(url, newResponse("v2"));
+
+      GetRequest request = newRequest();
+      dataProcessor.execute(request, Text.class);
+
+      assertNull(recordingTransport.lastExchange.getRequestHeader("If-None-Match"));
+      assertFalse(request.isNotModified());
+   }
+
+   @Test
+   public void noStoreResponseIsNotCached() throws Exception {
+      transport.setResponse(url, newResponse("v1").setHeader("ETag", "\"1\"").setHeader("Cache-Control", "no-store"));
+      execute();
+      transport.setResponse(url, newResponse("v2"));
+
+      execute();
+
+      assertNull(recordingTransport.lastExchange.getRequestHeader("If-None-Match"));
+   }
+
+   @Test
+   public void responseCacheIsDisabledByDefault() {
+      assertFalse(DataProcessorConfiguration.getBuilder().setHost("localhost").build().isResponseCacheEnabled());
+   }
+
+   private Text execute() {
+      return dataProcessor.execute(newRequest(), Text.class);
+   }
+
+   private GetRequest newRequest() {
+      GetRequest request = TestDataProcessor.newGetRequest(url, transport);
+      request.setTransport(recordingTransport);
+      return request;
+   }
+
+   private static MemoryTransport.Response newResponse(String body) throws Exception {
+      return new MemoryTransport.Response(200, "OK", body.getBytes("UTF-8"));
+   }
+
+   /**
+    * Keeps the last exchange to check the headers of the request.
+    */
+   private static class RecordingTransport implements Transport {
+
+      private final Transport transport;
+      private volatile Exchange lastExchange;
+
+      private RecordingTransport(Transport transport) {
+         this.transport = transport;
+      }
+
+      @Override
+      public Exchange newExchange(String method, URL url) throws IOException {
+         lastExchange = transport.newExchange(method, url);
+         return lastExchange;
+      }
+
+   }
+
+}
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.threads;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DataProcessorThreadPoolTest {
+
+    private final List<String> events = new CopyOnWriteArrayList<String>();
+    private DataProcessorThreadPool pool;
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void foregroundTasksRunBeforeBackgroundOnes() throws Exception {
+        pool = new DataProcessorThreadPool(1, 8, RejectionPolicy.ABORT);
+        Blocker blocker = block();
+        CountDownLatch finished = new CountDownLatch(4);
+
+        pool.execute(new Event("background 1", finished), Priority.BACKGROUND);
+        pool.execute(new Event("foreground 1", finished), Priority.FOREGROUND);
+        pool.execute(new Event("background 2", finished), Priority.BACKGROUND);
+        pool.execute(new Event("foreground 2", finished));
+        blocker.release();
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals("[foreground 1, foreground 2, background 1, background 2]", events.toString());
+    }
+
+    @Test
+    public void abortPolicyThrowsWhenQueueIsFull() throws Exception {
+        pool = new DataProcessorThreadPool(1, 1, RejectionPolicy.ABORT);
+        block();
+        pool.execute(new Event("queued", null));
+
+        try {
+            pool.execute(new Event("rejected", null));
+            throw new AssertionError("The task is accepted");
+        } catch (RejectedExecutionException e) {
+            assertEquals(1, pool.getQueueSize());
+        }
+    }
+
+    @Test
+    public void callerRunsPolicyRunsTaskInCallerThread() throws Exception {
+        pool = new DataProcessorThreadPool(1, 1, RejectionPolicy.CALLER_RUNS);
+        block();
+        pool.execute(new Event("queued", null));
+        final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                thread.set(Thread.currentThread());
+            }
+        });
+
+        assertSame(Thread.currentThread(), thread.get());
+    }
+
+    @Test
+    public void discardPolicyNotifiesDiscardedTask() throws Exception {
+        pool = new DataProcessorThreadPool(1, 1, RejectionPolicy.DISCARD);
+        Blocker blocker = block();
+        CountDownLatch finished = new CountDownLatch(1);
+        pool.execute(new Event("queued", finished), Priority.BACKGROUND);
+
+        pool.execute(new Event("discarded", null));
+        blocker.release();
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals("[discard discarded, queued]", events.toString());
+        assertEquals(1, pool.getDiscardedTaskCount());
+    }
+
+    @Test
+    public void foregroundTaskTakesSlotOfOldestBackgroundTask() throws Exception {
+        pool = new DataProcessorThreadPool(1, 2, RejectionPolicy.DISCARD_OLDEST_BACKGROUND);
+        Blocker blocker = block();
+        CountDownLatch finished = new CountDownLatch(2);
+        pool.execute(new Event("background 1", finished), Priority.BACKGROUND);
+        pool.execute(new Event("background 2", finished), Priority.BACKGROUND);
+
+        pool.execute(new Event("foreground", finished));
+        blocker.release();
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals("[discard background 1, foreground, background 2]", events.toString());
+    }
+
+    @Test
+    public void backgroundTaskIsDiscardedWhenQueueIsFull() throws Exception {
+        pool = new DataProcessorThreadPool(1, 1, RejectionPolicy.DISCARD_OLDEST_BACKGROUND);
+        Blocker blocker = block();
+        CountDownLatch finished = new CountDownLatch(1);
+        pool.execute(new Event("background 1", finished), Priority.BACKGROUND);
+
+        pool.execute(new Event("background 2", null), Priority.BACKGROUND);
+        blocker.release();
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals("[discard background 2, background 1]", events.toString());
+    }
+
+    @Test
+    public void queuedTaskIsRemoved() throws Exception {
+        pool = new DataProcessorThreadPool(1, 4, RejectionPolicy.ABORT);
+        block();
+        Event event = new Event("removed", null);
+        pool.execute(event);
+
+        assertTrue(pool.remove(event));
+        assertFalse(pool.remove(event));
+        assertEquals(0, pool.getQueueSize());
+    }
+
+    @Test
+    public void poolGrowsWhileBusyAndStopsIdleThreads() throws Exception {
+        pool = new DataProcessorThreadPool(1, 3, 100, false, 8, RejectionPolicy.ABORT);
+        Blocker first = block();
+        Blocker second = block();
+        Blocker third = block();
+        assertEquals(3, pool.getPoolSize());
+        CountDownLatch finished = new CountDownLatch(1);
+
+        pool.execute(new Event("queued", finished));
+        assertEquals(1, pool.getQueueSize());
+        first.release();
+        second.release();
+        third.release();
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.getPoolSize() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, pool.getPoolSize());
+    }
+
+    /**
+     * Occupy a worker thread until the returned blocker is released.
+     */
+    private Blocker block() throws InterruptedException {
+        Blocker blocker = new Blocker();
+        pool.execute(blocker);
+        assertTrue(blocker.started.await(5, TimeUnit.SECONDS));
+        return blocker;
+    }
+
+    private static final class Blocker implements Runnable {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public void run() {
+            started.countDown();
+            try {
+                released.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void release() {
+            released.countDown();
+        }
+
+    }
+
+    private final class Event implements DiscardableRunnable {
+
+        private final String name;
+        private final CountDownLatch finished;
+
+        private Event(String name, CountDownLatch finished) {
+            this.name = name;
+            this.finished = finished;
+        }
+
+        @Override
+        public void run() {
+            events.add(name);
+            if (finished != null) {
+                finished.countDown();
+            }
+        }
+
+        @Override
+        public void onDiscard() {
+            events.add("discard " + name);
+        }
+
+    }
+
+}
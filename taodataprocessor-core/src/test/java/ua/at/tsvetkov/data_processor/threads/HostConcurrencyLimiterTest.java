@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.threads;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HostConcurrencyLimiterTest {
+
+    private static final String HOST = "example.com:80";
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void failsFastAtLimit() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(2, 1, 2, 0);
+
+        assertTrue(limiter.acquire(HOST));
+        assertTrue(limiter.acquire(HOST));
+        assertFalse(limiter.acquire(HOST));
+        assertTrue(limiter.acquire("other.com:80"));
+        assertEquals(2, limiter.getInFlight(HOST));
+    }
+
+    @Test
+    public void waiterTimesOut() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(1, 1, 1, 100);
+        assertTrue(limiter.acquire(HOST));
+
+        long start = System.nanoTime();
+        assertFalse(limiter.acquire(HOST));
+
+        assertTrue(System.nanoTime() - start >= 90 * MS);
+    }
+
+    @Test
+    public void releaseWakesWaiter() throws Exception {
+        final HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(1, 1, 1, 2000);
+        assertTrue(limiter.acquire(HOST));
+        final AtomicBoolean isAcquired = new AtomicBoolean();
+        final CountDownLatch finished = new CountDownLatch(1);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                isAcquired.set(limiter.acquire(HOST));
+                finished.countDown();
+            }
+        }).start();
+        Thread.sleep(50);
+
+        limiter.release(HOST);
+
+        assertTrue(finished.await(1, TimeUnit.SECONDS));
+        assertTrue(isAcquired.get());
+    }
+
+    @Test
+    public void failureCutsLimit() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter();
+        limiter.acquire(HOST);
+
+        limiter.release(HOST, 0, true);
+
+        assertEquals(6, limiter.getLimit(HOST));
+        assertEquals(0, limiter.getInFlight(HOST));
+    }
+
+    @Test
+    public void slowResponseCutsLimit() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter();
+        limiter.acquire(HOST);
+        limiter.release(HOST, MS, false);
+        assertEquals(8, limiter.getLimit(HOST));
+
+        limiter.acquire(HOST);
+        limiter.release(HOST, 10 * MS, false);
+
+        assertEquals(6, limiter.getLimit(HOST));
+    }
+
+    @Test
+    public void saturatedFastRoundsGrowLimit() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(2, 1, 32, 0);
+
+        for (int round = 0; round < 10; round++) {
+            int limit = limiter.getLimit(HOST);
+            for (int i = 0; i < limit; i++) {
+                assertTrue(limiter.acquire(HOST));
+            }
+            for (int i = 0; i < limit; i++) {
+                limiter.release(HOST, MS, false);
+            }
+        }
+
+        assertTrue(limiter.getLimit(HOST) > 2);
+    }
+
+    @Test
+    public void responseWithoutNetworkIsNotLatencySample() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter();
+        limiter.acquire(HOST);
+        limiter.release(HOST, MS, false);
+        limiter.acquire(HOST);
+        limiter.release(HOST, 0, false);
+
+        limiter.acquire(HOST);
+        limiter.release(HOST, MS + MS / 2, false);
+
+        assertEquals(8, limiter.getLimit(HOST));
+    }
+
+    @Test
+    public void releaseWithoutSampleKeepsLimit() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter();
+        limiter.acquire(HOST);
+
+        limiter.release(HOST);
+
+        assertEquals(8, limiter.getLimit(HOST));
+        assertEquals(0, limiter.getInFlight(HOST));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void minLimitAboveMaxIsRejected() {
+        new HostConcurrencyLimiter(4, 8, 2, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void initialLimitOutOfRangeIsRejected() {
+        new HostConcurrencyLimiter(64, 1, 32, 0);
+    }
+
+}
@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal h2c server for the transport tests: it upgrades an HTTP/1.1 request with "Upgrade: h2c" to HTTP/2 and answers every stream
+ * with the given status and a body "stream [id]" after the response delay. The request headers are not decoded. Counts the accepted
+ * connections and the max number of the streams in flight on one connection.
+ *
+ * @author lordtao
+ */
+class H2cServer implements Closeable {
+
+   private static final byte[] PREFACE      = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes();
+   private static final int    DATA         = 0x0;
+   private static final int    HEADERS      = 0x1;
+   private static final int    SETTINGS     = 0x4;
+   private static final int    PING         = 0x6;
+   private static final int    GOAWAY       = 0x7;
+   private static final int    CONTINUATION = 0x9;
+   private static final int    END_STREAM   = 0x1;
+   private static final int    ACK          = 0x1;
+   private static final int    END_HEADERS  = 0x4;
+
+   private final ServerSocket    serverSocket;
+   private final int             status;
+   private final long            responseDelay;
+   private final ExecutorService executor = Executors.newCachedThreadPool();
+   private final List<Socket>    sockets  = new CopyOnWriteArrayList<Socket>();
+   private final AtomicInteger   connectionCount = new AtomicInteger();
+   private final AtomicInteger   maxStreamsInFlight = new AtomicInteger();
+
+   /**
+    * @param status        status code of the responses
+    * @param responseDelay time in ms before a stream is answered
+    */
+   H2cServer(int status, long responseDelay) throws IOException {
+      this.status = status;
+      this.responseDelay = responseDelay;
+      serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+      executor.execute(new Runnable() {
+
+         @Override
+         public void run() {
+            accept();
+         }
+
+      });
+   }
+
+   String getUrl(String path) {
+      return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+   }
+
+   int getConnectionCount() {
+      return connectionCount.get();
+   }
+
+   int getMaxStreamsInFlight() {
+      return maxStreamsInFlight.get();
+   }
+
+   @Override
+   public void close() throws IOException {
+      serverSocket.close();
+      for (Socket socket : sockets) {
+         socket.close();
+      }
+      executor.shutdownNow();
+      try {
+         executor.awaitTermination(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   private void accept() {
+      while (!serverSocket.isClosed()) {
+         try {
+            final Socket socket = serverSocket.accept();
+            sockets.add(socket);
+            connectionCount.incrementAndGet();
+            executor.execute(new Runnable() {
+
+               @Override
+               public void run() {
+                  try {
+                     new Connection(socket).serve();
+                  } catch (IOException e) {
+                     // The client or the test closed the connection
+                  } finally {
+                     try {
+                        socket.close();
+                     } catch (IOException ignored) {
+                        // Closed anyway
+                     }
+                  }
+               }
+
+            });
+         } catch (IOException e) {
+            return;
+         }
+      }
+   }
+
+   private class Connection {
+
+      private final DataInputStream in;
+      private final OutputStream    out;
+      private final AtomicInteger   streamsInFlight = new AtomicInteger();
+
+      private Connection(Socket socket) throws IOException {
+         in = new DataInputStream(socket.getInputStream());
+         out = socket.getOutputStream();
+      }
+
+      private void serve() throws IOException {
+         String head = readHead(in);
+         if (!head.toLowerCase(Locale.US).contains("upgrade: h2c")) {
+            writeRaw("HTTP/1.1 505 HTTP Version Not Supported\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+            return;
+         }
+         writeRaw("HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: h2c\r\n\r\n");
+         writeFrame(SETTINGS, 0, 0, new byte[0]);
+         // The upgraded request is the stream 1
+         respond(1);
+         byte[] preface = new byte[PREFACE.length];
+         in.readFully(preface);
+         while (true) {
+            int length = in.readUnsignedByte() << 16 | in.readUnsignedShort();
+            int type = in.readUnsignedByte();
+            int flags = in.readUnsignedByte();
+            int streamId = in.readInt() & 0x7fffffff;
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            if (type == SETTINGS && (flags & ACK) == 0) {
+               writeFrame(SETTINGS, ACK, 0, new byte[0]);
+            } else if (type == PING && (flags & ACK) == 0) {
+               writeFrame(PING, ACK, 0, payload);
+            } else if ((type == HEADERS || type == CONTINUATION) && (flags & END_HEADERS) != 0) {
+               respond(streamId);
+            } else if (type == GOAWAY) {
+               return;
+            }
+         }
+      }
+
+      private void respond(final int streamId) {
+         int inFlight = streamsInFlight.incrementAndGet();
+         int max;
+         while (inFlight > (max = maxStreamsInFlight.get()) && !maxStreamsInFlight.compareAndSet(max, inFlight)) {
+            // Retry with the new max
+         }
+         executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+               try {
+                  Thread.sleep(responseDelay);
+                  byte[] body = ("stream " + streamId).getBytes("UTF-8");
+                  streamsInFlight.decrementAndGet();
+                  writeFrame(HEADERS, END_HEADERS, streamId, encodeHeaders(body.length));
+                  writeFrame(DATA, END_STREAM, streamId, body);
+               } catch (InterruptedException e) {
+                  // The server is closed
+               } catch (IOException e) {
+                  // The client closed the connection
+               }
+            }
+
+         });
+      }
+
+      /**
+       * HPACK literals without indexing and without Huffman coding: :status and content-length by their static table indexes.
+       */
+      private byte[] encodeHeaders(int contentLength) {
+         ByteArrayOutputStream block = new ByteArrayOutputStream();
+         writeLiteral(block, new byte[]{0x08}, String.valueOf(status));
+         writeLiteral(block, new byte[]{0x0f, 0x0d}, String.valueOf(contentLength));
+         return block.toByteArray();
+      }
+
+      private void writeLiteral(ByteArrayOutputStream block, byte[] name, String value) {
+         block.write(name, 0, name.length);
+         block.write(value.length());
+         block.write(value.getBytes(), 0, value.length());
+      }
+
+      private synchronized void writeFrame(int type, int flags, int streamId, byte[] payload) throws IOException {
+         byte[] header = new byte[]{(byte) (payload.length >>> 16), (byte) (payload.length >>> 8), (byte) payload.length, (byte) type,
+                 (byte) flags, (byte) (streamId >>> 24), (byte) (streamId >>> 16), (byte) (streamId >>> 8), (byte) streamId};
+         out.write(header);
+         out.write(payload);
+         out.flush();
+      }
+
+      private synchronized void writeRaw(String text) throws IOException {
+         out.write(text.getBytes("US-ASCII"));
+         out.flush();
+      }
+
+   }
+
+   /**
+    * Read the request line and the headers of an HTTP/1.1 request.
+    */
+   static String readHead(InputStream in) throws IOException {
+      StringBuilder head = new StringBuilder();
+      int b;
+      while ((b = in.read()) != -1) {
+         head.append((char) b);
+         if (head.length() >= 4 && head.lastIndexOf("\r\n\r\n") == head.length() - 4) {
+            return head.toString();
+         }
+      }
+      throw new EOFException("Connection is closed before the request headers");
+   }
+
+}
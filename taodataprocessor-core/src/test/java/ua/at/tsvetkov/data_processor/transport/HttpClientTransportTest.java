@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.transport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class HttpClientTransportTest {
+
+   private static final int TIMEOUT = 5000;
+
+   private HttpClientTransport transport;
+   private H2cServer           server;
+   private ServerSocket        http11Server;
+
+   @Before
+   public void setUp() {
+      assumeTrue(HttpClientTransport.isSupported());
+      transport = new HttpClientTransport();
+   }
+
+   @After
+   public void tearDown() throws IOException {
+      if (server != null) {
+         server.close();
+      }
+      if (http11Server != null) {
+         http11Server.close();
+      }
+   }
+
+   @Test
+   public void parallelRequestsAreMultiplexedOverOneConnection() throws Exception {
+      server = new H2cServer(200, 300);
+      // The first request upgrades the connection to h2c
+      assertEquals("stream 1", fetch(server.getUrl("/warm-up")));
+      int count = 8;
+      final List<String> bodies = new CopyOnWriteArrayList<String>();
+      final List<Throwable> failures = new CopyOnWriteArrayList<Throwable>();
+      List<Thread> threads = new ArrayList<Thread>();
+      for (int i = 0; i < count; i++) {
+         final String url = server.getUrl("/parallel/" + i);
+         Thread thread = new Thread() {
+
+            @Override
+            public void run() {
+               try {
+                  bodies.add(fetch(url));
+               } catch (Throwable e) {
+                  failures.add(e);
+               }
+            }
+
+         };
+         threads.add(thread);
+         thread.start();
+      }
+      for (Thread thread : threads) {
+         thread.join(TIMEOUT);
+      }
+
+      assertTrue(failures.toString(), failures.isEmpty());
+      assertEquals(count, bodies.size());
+      assertEquals(1, server.getConnectionCount());
+      assertTrue("streams in flight " + server.getMaxStreamsInFlight(), server.getMaxStreamsInFlight() > 1);
+      assertEquals(count + 1, transport.getExchangeCount());
+      assertEquals(count + 1, transport.getHttp2Count());
+   }
+
+   @Test
+   public void http2StatusMessageIsEmpty() throws Exception {
+      server = new H2cServer(404, 0);
+      Exchange exchange = transport.newExchange("GET", new URL(server.getUrl("/missing")));
+      exchange.setTimeouts(TIMEOUT, TIMEOUT);
+
+      assertEquals(404, exchange.getStatusCode());
+      assertEquals("HTTP_2", ((HttpClientTransport.ClientExchange) exchange).getProtocol());
+      assertEquals("", exchange.getStatusMessage());
+      exchange.release(false);
+   }
+
+   @Test
+   public void http11StatusMessageIsReasonPhrase() throws Exception {
+      String url = serveHttp11("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n");
+      Exchange exchange = transport.newExchange("GET", new URL(url));
+      exchange.setTimeouts(TIMEOUT, TIMEOUT);
+
+      assertEquals(404, exchange.getStatusCode());
+      assertEquals("HTTP_1_1", ((HttpClientTransport.ClientExchange) exchange).getProtocol());
+      assertEquals("Not Found", exchange.getStatusMessage());
+      assertEquals(0, transport.getHttp2Count());
+      exchange.release(false);
+   }
+
+   @Test
+   public void blockedBodyReadTimesOut() throws Exception {
+      String url = serveHttp11("HTTP/1.1 200 OK\r\nContent-Length: 100\r\n\r\nstalled");
+      Exchange exchange = transport.newExchange("GET", new URL(url));
+      exchange.setTimeouts(TIMEOUT, 300);
+      InputStream body = exchange.getBody();
+      byte[] buffer = new byte[100];
+      int total = 0;
+      long start = System.currentTimeMillis();
+      try {
+         int bytesRead;
+         while ((bytesRead = body.read(buffer)) != -1) {
+            total += bytesRead;
+         }
+         fail("The body is read to the end");
+      } catch (SocketTimeoutException e) {
+         long time = System.currentTimeMillis() - start;
+         assertEquals(7, total);
+         assertTrue("timed out after " + time + " ms", time >= 300 && time < TIMEOUT);
+      } finally {
+         exchange.release(false);
+      }
+   }
+
+   private String fetch(String url) throws IOException {
+      Exchange exchange = transport.newExchange("GET", new URL(url));
+      exchange.setTimeouts(TIMEOUT, TIMEOUT);
+      try {
+         assertEquals(200, exchange.getStatusCode());
+         InputStream body = exchange.getBody();
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         byte[] buffer = new byte[1024];
+         int bytesRead;
+         while ((bytesRead = body.read(buffer)) != -1) {
+            out.write(buffer, 0, bytesRead);
+         }
+         return out.toString("UTF-8");
+      } finally {
+         exchange.release(true);
+      }
+   }
+
+   /**
+    * Answer one HTTP/1.1 request with the raw response, without the upgrade to h2c, and keep the connection open.
+    */
+   private String serveHttp11(final String response) throws IOException {
+      http11Server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+      Thread thread = new Thread() {
+
+         @Override
+         public void run() {
+            try {
+               Socket socket = http11Server.accept();
+               H2cServer.readHead(socket.getInputStream());
+               OutputStream out = socket.getOutputStream();
+               out.write(response.getBytes("US-ASCII"));
+               out.flush();
+            } catch (IOException e) {
+               // The server is closed
+            }
+         }
+
+      };
+      thread.setDaemon(true);
+      thread.start();
+      return "http://127.0.0.1:" + http11Server.getLocalPort() + "/";
+   }
+
+}
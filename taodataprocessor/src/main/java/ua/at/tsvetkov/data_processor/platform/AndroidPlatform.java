@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.platform;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Android implementation of the {@link Platform}. Callbacks are posted to the {@link Looper} of the thread which starts a request and
+ * the log is printed through the TAO Core Log.
+ *
+ * @author lordtao
+ */
+public class AndroidPlatform extends Platform {
+
+   @Override
+   public Executor getCurrentThreadExecutor() {
+      if (Looper.myLooper() == null) {
+         return null;
+      }
+      return new HandlerExecutor(new Handler());
+   }
+
+   @Override
+   public boolean hasMainThread() {
+      return true;
+   }
+
+   @Override
+   public boolean isMainThread() {
+      return Looper.getMainLooper().getThread() == Thread.currentThread();
+   }
+
+   @Override
+   public void log(int level, String message, Throwable throwable) {
+      if (throwable != null) {
+         if (level >= Log.ERROR) {
+            ua.at.tsvetkov.util.Log.e(message, throwable);
+         } else {
+            ua.at.tsvetkov.util.Log.w(message + ": " + throwable);
+         }
+         return;
+      }
+      switch (level) {
+         case Log.VERBOSE:
+            ua.at.tsvetkov.util.Log.v(message);
+            break;
+         case Log.DEBUG:
+            ua.at.tsvetkov.util.Log.d(message);
+            break;
+         case Log.INFO:
+            ua.at.tsvetkov.util.Log.i(message);
+            break;
+         case Log.WARN:
+            ua.at.tsvetkov.util.Log.w(message);
+            break;
+         default:
+            ua.at.tsvetkov.util.Log.e(message);
+            break;
+      }
+   }
+
+   @Override
+   public void logThreadInfo(Thread thread, Throwable throwable) {
+      ua.at.tsvetkov.util.Log.threadInfo(thread, throwable);
+   }
+
+   private static class HandlerExecutor implements Executor {
+
+      private final Handler handler;
+
+      HandlerExecutor(Handler handler) {
+         this.handler = handler;
+      }
+
+      @Override
+      public void execute(Runnable command) {
+         handler.post(command);
+      }
+
+   }
+
+}
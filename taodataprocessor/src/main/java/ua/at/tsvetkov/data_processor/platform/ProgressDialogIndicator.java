@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.platform;
+
+import android.app.ProgressDialog;
+import android.content.Context;
+
+/**
+ * Shows the standard ProgressDialog during the execution of a request.
+ *
+ * @author lordtao
+ */
+public class ProgressDialogIndicator implements ProgressIndicator {
+
+   private final Context  context;
+   private final String   title;
+   private final String   message;
+   private ProgressDialog progressDialog;
+
+   /**
+    * @param context app context
+    * @param title   dialog title
+    * @param message dialog message
+    */
+   public ProgressDialogIndicator(Context context, String title, String message) {
+      this.context = context;
+      this.title = title;
+      this.message = message;
+   }
+
+   @Override
+   public void show() {
+      if (progressDialog == null) {
+         progressDialog = ProgressDialog.show(context, title, message);
+      }
+   }
+
+   @Override
+   public void dismiss() {
+      if (progressDialog != null && progressDialog.isShowing()) {
+         progressDialog.dismiss();
+      }
+   }
+
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.platform;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import ua.at.tsvetkov.data_processor.DataProcessor;
+
+/**
+ * Passes the memory pressure signals of the system to {@link DataProcessor#trimMemory(int)}, so the caches of the data processor shrink
+ * on low-RAM devices. Register it once in {@code Application.onCreate()}:
+ * <pre>
+ * TrimMemoryCallbacks.register(this);
+ * </pre>
+ *
+ * @author lordtao
+ */
+public class TrimMemoryCallbacks implements ComponentCallbacks2 {
+
+   /**
+    * Register the callbacks in the application context.
+    *
+    * @param context any context of the application
+    * @return registered callbacks, to unregister them later
+    */
+   public static TrimMemoryCallbacks register(Context context) {
+      TrimMemoryCallbacks callbacks = new TrimMemoryCallbacks();
+      context.getApplicationContext().registerComponentCallbacks(callbacks);
+      return callbacks;
+   }
+
+   @Override
+   public void onTrimMemory(int level) {
+      DataProcessor.getInstance().trimMemory(level);
+   }
+
+   @Override
+   public void onLowMemory() {
+      DataProcessor.getInstance().trimMemory(MemoryTrimLevel.COMPLETE);
+   }
+
+   @Override
+   public void onConfigurationChanged(Configuration newConfig) {
+
+   }
+
+}
@@ -30,6 +30,9 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
+import ua.at.tsvetkov.data_processor.platform.ProgressDialogIndicator;
+import ua.at.tsvetkov.data_processor.platform.ProgressIndicator;
+import ua.at.tsvetkov.data_processor.threads.Priority;
 
 /**
  * The main class for the assets file request building. If not specified the request be built with basic configuration parameters specified
@@ -93,9 +96,26 @@ public class AssetsRequest extends Request {
         return this;
     }
 
-    @Override
+    /**
+     * Add and show during execution standard ProgressDialog.
+     *
+     * @param context app context
+     * @param title   dialog title
+     * @param message dialog message
+     */
     public AssetsRequest addProgressDialog(Context context, String title, String message) {
-        setupProgress(context, title, message);
+        return setProgressIndicator(new ProgressDialogIndicator(context, title, message));
+    }
+
+    @Override
+    public AssetsRequest setProgressIndicator(ProgressIndicator progressIndicator) {
+        this.progressIndicator = progressIndicator;
+        return this;
+    }
+
+    @Override
+    public AssetsRequest setPriority(Priority priority) {
+        this.priority = priority;
         return this;
     }
 